@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jclouds.domain.JsonBall;
+import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Carries binary payloads in message bodies as a small JSON envelope, optionally compressed.
+ * <p/>
+ * A body looks like {@code {"content_type":"application/x-protobuf","content_encoding":"deflate","data":"eJzT..."}},
+ * where {@code data} is the Base64 of the payload, deflated when that makes it smaller. The content type lets
+ * consumers tell payload formats apart, and {@link #decode(String)} rejects bodies of another content type.
+ * <p/>
+ * {@link #createMessage(int, ByteBuffer)} sends the envelope as the JSON body of the message itself, through
+ * {@link CreateMessage.Builder#body(JsonBall)}, rather than escaped into a JSON string, so the payload is
+ * Base64-encoded once, straight from the payload bytes, and decoded straight from the body text without parsing it
+ * into another string.
+ * <p/>
+ * The codec is not bound into {@link org.jclouds.openstack.marconi.v1.features.MessageApi}: callers encode the
+ * messages they create and decode the messages they read, and bodies sent with {@link CreateMessage.Builder#body(String)}
+ * are unaffected.
+ * <p/>
+ * Example:
+ * <pre>
+ * EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().contentType("application/x-protobuf").deflate().build();
+ * CreateMessage create = codec.createMessage(300, ByteBuffer.wrap(event.toByteArray()));
+ * ...
+ * Event event = Event.parseFrom(codec.decode(message).array());
+ * </pre>
+ */
+public class EnvelopeBodyCodec implements MessageBodyCodec {
+
+   /**
+    * How the payload bytes are compressed before they are Base64-encoded.
+    */
+   public enum Compression {
+      NONE("identity"), DEFLATE("deflate");
+
+      private final String value;
+
+      Compression(String value) {
+         this.value = value;
+      }
+
+      public String value() {
+         return value;
+      }
+
+      public static Compression fromValue(String value) {
+         for (Compression compression : values()) {
+            if (compression.value.equals(value)) {
+               return compression;
+            }
+         }
+         throw new IllegalArgumentException("unknown content_encoding " + value);
+      }
+   }
+
+   /**
+    * The largest payload {@link #decode(String)} inflates, so that a malicious body cannot exhaust the heap.
+    */
+   public static final int DEFAULT_MAX_DECODED_SIZE = 16 * 1024 * 1024;
+
+   private static final String CONTENT_TYPE = "\"content_type\":\"";
+   private static final String CONTENT_ENCODING = "\"content_encoding\":\"";
+   private static final String DATA = "\"data\":\"";
+   private static final BaseEncoding BASE64 = BaseEncoding.base64();
+
+   private final String contentType;
+   private final Compression compression;
+   private final int level;
+   private final int maxDecodedSize;
+
+   protected EnvelopeBodyCodec(String contentType, Compression compression, int level, int maxDecodedSize) {
+      this.contentType = checkNotNull(contentType, "contentType");
+      checkArgument(CharMatcher.anyOf("\"\\").matchesNoneOf(contentType), "contentType must not contain \" or \\");
+      this.compression = checkNotNull(compression, "compression");
+      this.level = level;
+      this.maxDecodedSize = maxDecodedSize;
+   }
+
+   public String getContentType() {
+      return contentType;
+   }
+
+   public Compression getCompression() {
+      return compression;
+   }
+
+   @Override
+   public String encode(ByteBuffer payload) {
+      checkNotNull(payload, "payload");
+      byte[] bytes;
+      int offset;
+      int length = payload.remaining();
+      if (payload.hasArray()) {
+         bytes = payload.array();
+         offset = payload.arrayOffset() + payload.position();
+      } else {
+         bytes = new byte[length];
+         payload.duplicate().get(bytes);
+         offset = 0;
+      }
+      Compression used = Compression.NONE;
+      if (compression == Compression.DEFLATE && length > 0) {
+         byte[] deflated = deflate(bytes, offset, length);
+         // small or random payloads grow when deflated
+         if (deflated.length < length) {
+            bytes = deflated;
+            offset = 0;
+            length = deflated.length;
+            used = Compression.DEFLATE;
+         }
+      }
+      String data = BASE64.encode(bytes, offset, length);
+      return new StringBuilder(data.length() + contentType.length() + 64)
+            .append('{').append(CONTENT_TYPE).append(contentType)
+            .append("\",").append(CONTENT_ENCODING).append(used.value())
+            .append("\",").append(DATA).append(data).append("\"}").toString();
+   }
+
+   @Override
+   public ByteBuffer decode(String body) {
+      checkNotNull(body, "body");
+      String bodyContentType = field(body, CONTENT_TYPE);
+      checkArgument(contentType.equals(bodyContentType), "expected content_type %s, not %s", contentType,
+            bodyContentType);
+      String encoding = field(body, CONTENT_ENCODING);
+      Compression used = encoding == null ? Compression.NONE : Compression.fromValue(encoding);
+      int start = body.indexOf(DATA);
+      checkArgument(start != -1, "body has no data");
+      start += DATA.length();
+      int end = body.indexOf('"', start);
+      checkArgument(end != -1, "body has unterminated data");
+      // decodes from a view of the body instead of a substring of it
+      byte[] bytes = BASE64.decode(CharBuffer.wrap(body, start, end));
+      if (used == Compression.DEFLATE) {
+         bytes = inflate(bytes);
+      }
+      return ByteBuffer.wrap(bytes);
+   }
+
+   /**
+    * @return A message carrying {@code payload} for {@code ttl} seconds.
+    */
+   public CreateMessage createMessage(int ttl, ByteBuffer payload) {
+      return CreateMessage.builder().ttl(ttl).body(new JsonBall(encode(payload))).build();
+   }
+
+   /**
+    * @return The payload of {@code message}.
+    */
+   public ByteBuffer decode(Message message) {
+      return decode(message.getBody());
+   }
+
+   /**
+    * @return The value of a string field of the envelope, or null if it has none.
+    */
+   private static String field(String body, String key) {
+      int start = body.indexOf(key);
+      if (start == -1) {
+         return null;
+      }
+      start += key.length();
+      int end = body.indexOf('"', start);
+      checkArgument(end != -1, "body has unterminated %s", key);
+      return body.substring(start, end);
+   }
+
+   private byte[] deflate(byte[] bytes, int offset, int length) {
+      Deflater deflater = new Deflater(level);
+      try {
+         deflater.setInput(bytes, offset, length);
+         deflater.finish();
+         // stops as soon as the output is no smaller than the input
+         byte[] out = new byte[length];
+         int size = 0;
+         while (!deflater.finished() && size < out.length) {
+            size += deflater.deflate(out, size, out.length - size);
+         }
+         return deflater.finished() ? Arrays.copyOf(out, size) : bytes;
+      } finally {
+         deflater.end();
+      }
+   }
+
+   private byte[] inflate(byte[] bytes) {
+      Inflater inflater = new Inflater();
+      try {
+         inflater.setInput(bytes);
+         byte[] out = new byte[Math.max(64, Math.min(bytes.length * 4, maxDecodedSize))];
+         int size = 0;
+         while (!inflater.finished()) {
+            if (size == out.length) {
+               checkArgument(out.length < maxDecodedSize, "payload larger than %s bytes", maxDecodedSize);
+               out = Arrays.copyOf(out, (int) Math.min((long) out.length * 2, maxDecodedSize));
+            }
+            int inflated = inflater.inflate(out, size, out.length - size);
+            if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+               throw new IllegalArgumentException("truncated deflate data");
+            }
+            size += inflated;
+         }
+         return size == out.length ? out : Arrays.copyOf(out, size);
+      } catch (DataFormatException e) {
+         throw new IllegalArgumentException("invalid deflate data", e);
+      } finally {
+         inflater.end();
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "EnvelopeBodyCodec(" + contentType + ", " + compression.value() + ")";
+   }
+
+   public static Builder builder() {
+      return new Builder();
+   }
+
+   public static class Builder {
+      private String contentType = "application/octet-stream";
+      private Compression compression = Compression.NONE;
+      private int level = Deflater.DEFAULT_COMPRESSION;
+      private int maxDecodedSize = DEFAULT_MAX_DECODED_SIZE;
+
+      /**
+       * The content type of the payloads, recorded in every body. Defaults to {@code application/octet-stream}.
+       */
+      public Builder contentType(String contentType) {
+         this.contentType = contentType;
+         return this;
+      }
+
+      /**
+       * Deflates payloads with the default compression level when that makes them smaller.
+       */
+      public Builder deflate() {
+         return deflate(Deflater.DEFAULT_COMPRESSION);
+      }
+
+      /**
+       * Deflates payloads with {@code level}, from 1 (fastest) to 9 (smallest), when that makes them smaller.
+       */
+      public Builder deflate(int level) {
+         checkArgument(level == Deflater.DEFAULT_COMPRESSION || level >= 1 && level <= 9,
+               "level must be between 1 and 9");
+         this.compression = Compression.DEFLATE;
+         this.level = level;
+         return this;
+      }
+
+      /**
+       * @see EnvelopeBodyCodec#DEFAULT_MAX_DECODED_SIZE
+       */
+      public Builder maxDecodedSize(int maxDecodedSize) {
+         checkArgument(maxDecodedSize > 0, "maxDecodedSize must be positive");
+         this.maxDecodedSize = maxDecodedSize;
+         return this;
+      }
+
+      public EnvelopeBodyCodec build() {
+         return new EnvelopeBodyCodec(contentType, compression, level, maxDecodedSize);
+      }
+   }
+}
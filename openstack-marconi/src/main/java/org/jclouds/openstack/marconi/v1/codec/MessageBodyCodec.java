@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.codec;
+
+import java.nio.ByteBuffer;
+
+import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+
+/**
+ * Turns binary payloads into the text bodies of {@link CreateMessage} and back from the bodies of {@link Message}.
+ */
+public interface MessageBodyCodec {
+
+   /**
+    * Encodes the remaining bytes of {@code payload} into a message body. The position of {@code payload} is left
+    * unchanged.
+    */
+   String encode(ByteBuffer payload);
+
+   /**
+    * Decodes a message body produced by {@link #encode(ByteBuffer)}.
+    *
+    * @throws IllegalArgumentException if the body was not produced by this codec.
+    */
+   ByteBuffer decode(String body);
+}
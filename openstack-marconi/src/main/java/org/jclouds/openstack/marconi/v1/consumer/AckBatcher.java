@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Acknowledges processed messages by deleting them in batches per claim.
+ * <p/>
+ * The ids acknowledged under a claim are collected and deleted with a single
+ * {@link MessageApi#deleteByClaim(Iterable, String)} once {@code batchSize} of them are pending, once
+ * {@code maxDelay} milliseconds have passed since the first of them, or when the claim is {@link #flush flushed}.
+ * A batch is also sent early when adding an id would make the query string longer than {@code maxQueryLength}.
+ */
+public class AckBatcher implements Closeable {
+
+   /**
+    * The most message ids Marconi accepts in one request.
+    */
+   public static final int MAX_BATCH_SIZE = 20;
+
+   /**
+    * Keeps the request line well under the 4 KB many proxies and servers accept.
+    */
+   public static final int DEFAULT_MAX_QUERY_LENGTH = 2000;
+
+   private static final Function<List<Boolean>, Boolean> ALL_TRUE = new Function<List<Boolean>, Boolean>() {
+      @Override
+      public Boolean apply(List<Boolean> input) {
+         return !input.contains(Boolean.FALSE);
+      }
+   };
+
+   private static final Predicate<ListenableFuture<Boolean>> DELETED = new Predicate<ListenableFuture<Boolean>>() {
+      @Override
+      public boolean apply(ListenableFuture<Boolean> input) {
+         if (!input.isDone()) {
+            return false;
+         }
+         try {
+            return Futures.getUnchecked(input);
+         } catch (RuntimeException e) {
+            return false;
+         }
+      }
+   };
+
+   private final MessageApi messageApi;
+   private final int batchSize;
+   private final long maxDelay;
+   private final int maxQueryLength;
+   private final ScheduledExecutorService timer;
+   private final boolean ownsTimer;
+   private final Map<String, Batch> pending = Maps.newHashMap();
+   private final Map<String, List<ListenableFuture<Boolean>>> unflushed = Maps.newHashMap();
+
+   public AckBatcher(MessageApi messageApi, int batchSize, long maxDelay) {
+      this(messageApi, batchSize, maxDelay, DEFAULT_MAX_QUERY_LENGTH);
+   }
+
+   public AckBatcher(MessageApi messageApi, int batchSize, long maxDelay, int maxQueryLength) {
+      this(messageApi, batchSize, maxDelay, maxQueryLength, Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("marconi-acks").setDaemon(true).build()), true);
+   }
+
+   /**
+    * Sends the delayed batches from {@code timer}, which is shared with other batchers and left running on
+    * {@link #close()}.
+    */
+   AckBatcher(MessageApi messageApi, int batchSize, long maxDelay, ScheduledExecutorService timer) {
+      this(messageApi, batchSize, maxDelay, DEFAULT_MAX_QUERY_LENGTH, timer, false);
+   }
+
+   private AckBatcher(MessageApi messageApi, int batchSize, long maxDelay, int maxQueryLength,
+         ScheduledExecutorService timer, boolean ownsTimer) {
+      this.messageApi = checkNotNull(messageApi, "messageApi");
+      checkArgument(batchSize >= 1 && batchSize <= MAX_BATCH_SIZE, "batchSize must be between 1 and %s",
+            MAX_BATCH_SIZE);
+      checkArgument(maxDelay >= 0, "maxDelay must be non-negative");
+      checkArgument(maxQueryLength > 0, "maxQueryLength must be positive");
+      this.batchSize = batchSize;
+      this.maxDelay = maxDelay;
+      this.maxQueryLength = maxQueryLength;
+      this.timer = checkNotNull(timer, "timer");
+      this.ownsTimer = ownsTimer;
+   }
+
+   /**
+    * Acknowledges a message processed under a claim.
+    *
+    * @return whether the message was deleted, once its batch is sent.
+    */
+   public ListenableFuture<Boolean> ack(String messageId, final String claimId) {
+      checkNotNull(messageId, "messageId");
+      checkNotNull(claimId, "claimId");
+      SettableFuture<Boolean> deleted = SettableFuture.create();
+      List<Batch> toSend = Lists.newArrayListWithCapacity(2);
+      synchronized (this) {
+         Batch batch = pending.get(claimId);
+         if (batch != null && batch.queryLength(messageId) > maxQueryLength) {
+            toSend.add(pending.remove(claimId));
+            batch = null;
+         }
+         if (batch == null) {
+            batch = new Batch(claimId);
+            pending.put(claimId, batch);
+            final Batch scheduled = batch;
+            timer.schedule(new Runnable() {
+               @Override
+               public void run() {
+                  synchronized (AckBatcher.this) {
+                     if (pending.get(claimId) != scheduled) {
+                        return;
+                     }
+                     pending.remove(claimId);
+                  }
+                  scheduled.send();
+               }
+            }, maxDelay, TimeUnit.MILLISECONDS);
+         }
+         batch.add(messageId, deleted);
+         if (batch.ids.size() >= batchSize) {
+            toSend.add(pending.remove(claimId));
+         }
+         List<ListenableFuture<Boolean>> futures = unflushed.get(claimId);
+         if (futures == null) {
+            unflushed.put(claimId, futures = Lists.newArrayList());
+         }
+         // keeps what flush reports on, without holding every message of a long claim
+         Iterables.removeIf(futures, DELETED);
+         futures.add(deleted);
+      }
+      for (Batch batch : toSend) {
+         batch.send();
+      }
+      return deleted;
+   }
+
+   /**
+    * Sends the acknowledgements pending for a claim. Call this before releasing the claim, so that the messages
+    * already processed are not handed to another worker.
+    *
+    * @return whether every message acknowledged under the claim was deleted, once all of their batches are sent.
+    */
+   public ListenableFuture<Boolean> flush(String claimId) {
+      Batch batch;
+      List<ListenableFuture<Boolean>> futures;
+      synchronized (this) {
+         batch = pending.remove(claimId);
+         futures = unflushed.remove(claimId);
+      }
+      if (batch != null) {
+         batch.send();
+      }
+      if (futures == null) {
+         return Futures.immediateFuture(true);
+      }
+      return Futures.transform(Futures.allAsList(futures), ALL_TRUE);
+   }
+
+   /**
+    * Sends the acknowledgements pending for every claim.
+    */
+   public void flush() {
+      List<String> claimIds;
+      synchronized (this) {
+         claimIds = ImmutableList.copyOf(unflushed.keySet());
+      }
+      for (String claimId : claimIds) {
+         flush(claimId);
+      }
+   }
+
+   /**
+    * Sends the pending acknowledgements and stops the timer, unless it is shared.
+    */
+   @Override
+   public void close() {
+      flush();
+      if (ownsTimer) {
+         timer.shutdownNow();
+      }
+   }
+
+   private class Batch {
+      private final String claimId;
+      private final List<String> ids = Lists.newArrayList();
+      private final List<SettableFuture<Boolean>> results = Lists.newArrayList();
+      private int idsLength;
+
+      private Batch(String claimId) {
+         this.claimId = claimId;
+      }
+
+      /**
+       * @return the length of {@code ids=...&claim_id=...} with {@code messageId} added.
+       */
+      private int queryLength(String messageId) {
+         return "ids=".length() + idsLength + ids.size() + messageId.length() + "&claim_id=".length()
+               + claimId.length();
+      }
+
+      private void add(String messageId, SettableFuture<Boolean> result) {
+         ids.add(messageId);
+         results.add(result);
+         idsLength += messageId.length();
+      }
+
+      private void send() {
+         try {
+            boolean deleted = messageApi.deleteByClaim(ids, claimId);
+            for (SettableFuture<Boolean> result : results) {
+               result.set(deleted);
+            }
+         } catch (RuntimeException e) {
+            for (SettableFuture<Boolean> result : results) {
+               result.setException(e);
+            }
+         }
+      }
+   }
+}
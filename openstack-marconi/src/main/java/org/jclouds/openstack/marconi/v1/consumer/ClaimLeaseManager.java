@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps claims from expiring while their messages are processed.
+ * <p/>
+ * Every claim acquired as a {@link Lease} is renewed with {@link ClaimApi#update} once half of its TTL has passed,
+ * so a handler running longer than the TTL keeps its messages instead of having them handed to another consumer.
+ * A single thread renews all of the leases, sleeping until the next one is due and then renewing every lease due
+ * at that time, so thousands of claims cost one thread. A failed renewal is retried until the claim expires; a claim
+ * the server no longer knows is counted as lost.
+ * <p/>
+ * Example:
+ * <pre>
+ * ClaimLeaseManager leases = new ClaimLeaseManager(300);
+ * List&lt;Message&gt; messages = claimApi.claim(300, 60, 10);
+ * Lease lease = leases.acquire(claimApi, messages.get(0).getClaimId().get());
+ * ...
+ * lease.release();
+ * </pre>
+ */
+public class ClaimLeaseManager implements Closeable {
+
+   /**
+    * The longest wait before retrying a failed renewal.
+    */
+   private static final long RETRY_DELAY = TimeUnit.SECONDS.toNanos(5);
+
+   private final int ttl;
+   private final long maxLease;
+   private final DelayQueue<Lease> due = new DelayQueue<Lease>();
+   private final Set<Lease> active = Sets.newConcurrentHashSet();
+   private final ExecutorService renewer;
+
+   private final AtomicLong renewals = new AtomicLong();
+   private final AtomicLong renewalFailures = new AtomicLong();
+   private final AtomicLong lost = new AtomicLong();
+   private final AtomicLong released = new AtomicLong();
+
+   private volatile boolean closed;
+
+   /**
+    * @param ttl The TTL, in seconds, the claims were made with and are renewed with.
+    */
+   public ClaimLeaseManager(int ttl) {
+      this(ttl, 0);
+   }
+
+   /**
+    * @param ttl      The TTL, in seconds, the claims were made with and are renewed with.
+    * @param maxLease How long, in seconds, a claim may be held before it is released instead of renewed, so that a
+    *                 stuck handler does not hold its messages forever; 0 renews for as long as the lease is held.
+    */
+   public ClaimLeaseManager(int ttl, long maxLease) {
+      checkArgument(ttl >= 60 && ttl <= 43200, "ttl must be between 60 and 43200 seconds");
+      checkArgument(maxLease >= 0, "maxLease must be non-negative");
+      this.ttl = ttl;
+      this.maxLease = TimeUnit.SECONDS.toNanos(maxLease);
+      this.renewer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("marconi-leases").setDaemon(true).build());
+      renewer.execute(new Runnable() {
+         @Override
+         public void run() {
+            renewLoop();
+         }
+      });
+   }
+
+   /**
+    * Starts renewing a claim made just now with the TTL of this manager.
+    */
+   public Lease acquire(ClaimApi claimApi, String claimId) {
+      checkState(!closed, "lease manager is closed");
+      Lease lease = new Lease(checkNotNull(claimApi, "claimApi"), checkNotNull(claimId, "claimId"));
+      active.add(lease);
+      due.add(lease);
+      return lease;
+   }
+
+   /**
+    * Renews every lease now, whether or not it is due.
+    */
+   public void renewAll() {
+      for (Lease lease : ImmutableList.copyOf(active)) {
+         // a lease is only changed while out of the queue, which orders on its renewal time
+         if (due.remove(lease)) {
+            renew(lease);
+            if (lease.held) {
+               due.add(lease);
+            }
+         }
+      }
+   }
+
+   /**
+    * @return The number of leases held.
+    */
+   public int getActiveLeases() {
+      return active.size();
+   }
+
+   /**
+    * @return The number of successful renewals.
+    */
+   public long getRenewals() {
+      return renewals.get();
+   }
+
+   /**
+    * @return The number of renewal requests that failed and were retried.
+    */
+   public long getRenewalFailures() {
+      return renewalFailures.get();
+   }
+
+   /**
+    * @return The number of leases whose claim expired or was gone before it could be renewed.
+    */
+   public long getLostLeases() {
+      return lost.get();
+   }
+
+   /**
+    * @return The number of leases released.
+    */
+   public long getReleasedLeases() {
+      return released.get();
+   }
+
+   /**
+    * Stops renewing and releases the leases still held.
+    */
+   @Override
+   public void close() {
+      closed = true;
+      renewer.shutdownNow();
+      for (Lease lease : ImmutableList.copyOf(active)) {
+         lease.release();
+      }
+   }
+
+   private void renewLoop() {
+      List<Lease> batch = Lists.newArrayList();
+      while (!closed) {
+         try {
+            batch.add(due.take());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+         due.drainTo(batch);
+         for (Lease lease : batch) {
+            renew(lease);
+            if (lease.held) {
+               due.add(lease);
+            }
+         }
+         batch.clear();
+      }
+   }
+
+   private void renew(Lease lease) {
+      if (!lease.held) {
+         return;
+      }
+      long now = System.nanoTime();
+      if (lease.expiresAt - now <= 0) {
+         lease.lose();
+         return;
+      }
+      if (maxLease > 0 && now - lease.acquiredAt >= maxLease) {
+         lease.release();
+         return;
+      }
+      try {
+         if (lease.claimApi.update(lease.claimId, ttl)) {
+            renewals.incrementAndGet();
+            lease.renewed(now);
+         } else {
+            lease.lose();
+         }
+      } catch (RuntimeException e) {
+         renewalFailures.incrementAndGet();
+         long left = lease.expiresAt - System.nanoTime();
+         if (left <= 0) {
+            lease.lose();
+         } else {
+            lease.renewAt = System.nanoTime() + Math.min(RETRY_DELAY, left / 2);
+         }
+      }
+   }
+
+   /**
+    * A claim kept alive by the manager until it is released.
+    */
+   public class Lease implements Delayed {
+      private final ClaimApi claimApi;
+      private final String claimId;
+      private final long acquiredAt;
+      private volatile long expiresAt;
+      private volatile long renewAt;
+      private volatile boolean held = true;
+
+      private Lease(ClaimApi claimApi, String claimId) {
+         this.claimApi = claimApi;
+         this.claimId = claimId;
+         this.acquiredAt = System.nanoTime();
+         renewed(acquiredAt);
+      }
+
+      public String getClaimId() {
+         return claimId;
+      }
+
+      /**
+       * @return Whether the claim is still held, so that its messages may be deleted under it.
+       */
+      public boolean isHeld() {
+         return held && expiresAt - System.nanoTime() > 0;
+      }
+
+      /**
+       * Stops renewing the claim and releases it, which hands the messages not deleted to other consumers right
+       * away. Does nothing if the lease was already released or lost.
+       */
+      public void release() {
+         if (end()) {
+            released.incrementAndGet();
+            try {
+               claimApi.release(claimId);
+            } catch (RuntimeException e) {
+               // the claim expires on its own
+            }
+         }
+      }
+
+      private void renewed(long now) {
+         expiresAt = now + TimeUnit.SECONDS.toNanos(ttl);
+         renewAt = now + TimeUnit.SECONDS.toNanos(ttl) / 2;
+      }
+
+      private void lose() {
+         if (end()) {
+            lost.incrementAndGet();
+         }
+      }
+
+      private synchronized boolean end() {
+         if (!held) {
+            return false;
+         }
+         held = false;
+         active.remove(this);
+         return true;
+      }
+
+      @Override
+      public long getDelay(TimeUnit unit) {
+         return unit.convert(renewAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+
+      @Override
+      public int compareTo(Delayed o) {
+         return Longs.compare(renewAt, Lease.class.cast(o).renewAt);
+      }
+
+      @Override
+      public String toString() {
+         return claimId;
+      }
+   }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Options used to control how a {@link QueueConsumer} claims and processes messages.
+ */
+public class ConsumerOptions {
+
+   public static final ConsumerOptions NONE = new ConsumerOptions();
+
+   private int ttl = 300;
+   private int grace = 60;
+   private int limit = 10;
+   private int prefetch = 2;
+   private int workers = 8;
+   private long idleDelay = 1000;
+   private long maxIdleDelay = 30000;
+   private int ackBatchSize = 20;
+   private long ackDelay = 100;
+
+   /**
+    * Specifies how long, in seconds, the server waits before releasing a claim. Claims still being processed are
+    * renewed with this TTL every half of it. Must be between 60 and 43200 seconds. Defaults to 300.
+    */
+   public ConsumerOptions ttl(int ttl) {
+      checkArgument(ttl >= 60 && ttl <= 43200, "ttl must be between 60 and 43200 seconds");
+      this.ttl = ttl;
+      return this;
+   }
+
+   /**
+    * Specifies the message grace period, in seconds, of each claim. Must be between 60 and 43200 seconds. Defaults to
+    * 60.
+    */
+   public ConsumerOptions grace(int grace) {
+      checkArgument(grace >= 60 && grace <= 43200, "grace must be between 60 and 43200 seconds");
+      this.grace = grace;
+      return this;
+   }
+
+   /**
+    * Specifies how many messages each claim requests, up to 20. Defaults to 10.
+    */
+   public ConsumerOptions limit(int limit) {
+      checkArgument(limit >= 1 && limit <= 20, "limit must be between 1 and 20");
+      this.limit = limit;
+      return this;
+   }
+
+   /**
+    * Specifies how many claims may be outstanding at a time, so that the next batch of messages is claimed while the
+    * current one is processed. Defaults to 2.
+    */
+   public ConsumerOptions prefetch(int prefetch) {
+      checkArgument(prefetch > 0, "prefetch must be positive");
+      this.prefetch = prefetch;
+      return this;
+   }
+
+   /**
+    * Specifies how many messages are processed at the same time. Defaults to 8.
+    */
+   public ConsumerOptions workers(int workers) {
+      checkArgument(workers > 0, "workers must be positive");
+      this.workers = workers;
+      return this;
+   }
+
+   /**
+    * Specifies how long, in milliseconds, to wait before claiming again when the queue is empty or a claim fails.
+    * The wait doubles on every further empty or failed claim, up to {@link #maxIdleDelay(long)}, and is skipped
+    * again as soon as a claim returns messages. Defaults to 1000.
+    */
+   public ConsumerOptions idleDelay(long idleDelay) {
+      checkArgument(idleDelay >= 0, "idleDelay must be non-negative");
+      this.idleDelay = idleDelay;
+      return this;
+   }
+
+   /**
+    * Specifies the longest wait, in milliseconds, between claims while the queue stays empty. Waits are randomized
+    * between half and all of the current delay, so that idle consumers started together do not claim in step. A
+    * value not above {@link #idleDelay(long)} keeps the wait constant. Defaults to 30000.
+    */
+   public ConsumerOptions maxIdleDelay(long maxIdleDelay) {
+      checkArgument(maxIdleDelay >= 0, "maxIdleDelay must be non-negative");
+      this.maxIdleDelay = maxIdleDelay;
+      return this;
+   }
+
+   /**
+    * Specifies how many processed messages of a claim are deleted in one request, up to 20. Defaults to 20, so that a
+    * claim is usually acknowledged with a single request.
+    *
+    * @see AckBatcher
+    */
+   public ConsumerOptions ackBatchSize(int ackBatchSize) {
+      checkArgument(ackBatchSize >= 1 && ackBatchSize <= AckBatcher.MAX_BATCH_SIZE,
+            "ackBatchSize must be between 1 and %s", AckBatcher.MAX_BATCH_SIZE);
+      this.ackBatchSize = ackBatchSize;
+      return this;
+   }
+
+   /**
+    * Specifies how long, in milliseconds, a processed message may wait for others before it is deleted. Defaults to
+    * 100.
+    */
+   public ConsumerOptions ackDelay(long ackDelay) {
+      checkArgument(ackDelay >= 0, "ackDelay must be non-negative");
+      this.ackDelay = ackDelay;
+      return this;
+   }
+
+   public int getTTL() {
+      return ttl;
+   }
+
+   public int getGrace() {
+      return grace;
+   }
+
+   public int getLimit() {
+      return limit;
+   }
+
+   public int getPrefetch() {
+      return prefetch;
+   }
+
+   public int getWorkers() {
+      return workers;
+   }
+
+   public long getIdleDelay() {
+      return idleDelay;
+   }
+
+   public long getMaxIdleDelay() {
+      return maxIdleDelay;
+   }
+
+   public int getAckBatchSize() {
+      return ackBatchSize;
+   }
+
+   public long getAckDelay() {
+      return ackDelay;
+   }
+
+   @Override
+   public String toString() {
+      return MoreObjects.toStringHelper(this).add("ttl", ttl).add("grace", grace).add("limit", limit)
+            .add("prefetch", prefetch).add("workers", workers).add("idleDelay", idleDelay).add("maxIdleDelay", maxIdleDelay).add("ackBatchSize", ackBatchSize)
+            .add("ackDelay", ackDelay).toString();
+   }
+
+   public static class Builder {
+      /**
+       * @see ConsumerOptions#ttl(int)
+       */
+      public static ConsumerOptions ttl(int ttl) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.ttl(ttl);
+      }
+
+      /**
+       * @see ConsumerOptions#grace(int)
+       */
+      public static ConsumerOptions grace(int grace) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.grace(grace);
+      }
+
+      /**
+       * @see ConsumerOptions#limit(int)
+       */
+      public static ConsumerOptions limit(int limit) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.limit(limit);
+      }
+
+      /**
+       * @see ConsumerOptions#prefetch(int)
+       */
+      public static ConsumerOptions prefetch(int prefetch) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.prefetch(prefetch);
+      }
+
+      /**
+       * @see ConsumerOptions#workers(int)
+       */
+      public static ConsumerOptions workers(int workers) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.workers(workers);
+      }
+
+      /**
+       * @see ConsumerOptions#idleDelay(long)
+       */
+      public static ConsumerOptions idleDelay(long idleDelay) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.idleDelay(idleDelay);
+      }
+
+      /**
+       * @see ConsumerOptions#maxIdleDelay(long)
+       */
+      public static ConsumerOptions maxIdleDelay(long maxIdleDelay) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.maxIdleDelay(maxIdleDelay);
+      }
+
+      /**
+       * @see ConsumerOptions#ackBatchSize(int)
+       */
+      public static ConsumerOptions ackBatchSize(int ackBatchSize) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.ackBatchSize(ackBatchSize);
+      }
+
+      /**
+       * @see ConsumerOptions#ackDelay(long)
+       */
+      public static ConsumerOptions ackDelay(long ackDelay) {
+         ConsumerOptions options = new ConsumerOptions();
+         return options.ackDelay(ackDelay);
+      }
+   }
+}
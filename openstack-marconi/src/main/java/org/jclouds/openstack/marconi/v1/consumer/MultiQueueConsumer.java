@@ -0,0 +1,579 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.openstack.marconi.v1.MarconiApi;
+import org.jclouds.openstack.marconi.v1.consumer.ClaimLeaseManager.Lease;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.domain.MessagesStats;
+import org.jclouds.openstack.marconi.v1.domain.QueueStats;
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.jclouds.openstack.marconi.v1.features.QueueApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Consumes the messages of many queues with a single claiming thread and a fixed pool of workers.
+ * <p/>
+ * Queues are claimed from in proportion to their weight, the square root of their backlog of free messages scaled
+ * up by the age of their oldest message. Every {@link MultiQueueOptions#getStatsInterval()}, a few queues in turn
+ * have their stats read with {@link QueueApi#getStats}, while the queues that claims return messages from are
+ * weighted by the age of those messages instead. A queue never has more than its concurrency of messages in process,
+ * so a hot queue drains with that many workers while the others keep the rest. Claims only ask for as many messages
+ * as there are free workers and room in the queue, so claimed messages do not wait for a worker.
+ * <p/>
+ * An empty queue is claimed from less and less often, as {@link QueueConsumer} does, until a claim or its stats show
+ * messages again. Handled messages are deleted in batches per claim by an {@link AckBatcher} for each queue, which
+ * is flushed once all of the messages of the claim are done, and the claim is then released. Claims still being
+ * processed are kept by a {@link ClaimLeaseManager}.
+ * <p/>
+ * Example:
+ * <pre>
+ * MultiQueueConsumer consumer = new MultiQueueConsumer(api, "DFW", clientId, handler,
+ *       MultiQueueOptions.Builder.workers(32).queueConcurrency(8));
+ * consumer.addQueue("orders");
+ * consumer.addQueue("audit", 2);
+ * consumer.start();
+ * ...
+ * consumer.close();
+ * </pre>
+ */
+public class MultiQueueConsumer implements Closeable {
+
+   /**
+    * Age, in seconds, of the oldest free message that doubles the weight of its queue.
+    */
+   private static final double AGE_SCALE = 60;
+
+   private final LoadingCache<String, ClaimApi> claimApis;
+   private final LoadingCache<String, MessageApi> messageApis;
+   private final LoadingCache<String, AckBatcher> acks;
+   private final QueueApi queueApi;
+   private final MessageHandler handler;
+   private final MultiQueueOptions options;
+   private final ExecutorService claimer;
+   private final ExecutorService workers;
+   private final ScheduledExecutorService scheduler;
+   private final ScheduledExecutorService ackTimer;
+   private final Map<String, QueueState> queues = Maps.newLinkedHashMap();
+   private final ClaimLeaseManager leases;
+   private int freeWorkers;
+   private double virtualTime;
+   private int statsCursor;
+
+   private final AtomicLong processed = new AtomicLong();
+   private final AtomicLong failed = new AtomicLong();
+   private final AtomicLong claimFailures = new AtomicLong();
+   private final AtomicLong emptyClaims = new AtomicLong();
+
+   private volatile boolean running;
+   private boolean started;
+
+   public MultiQueueConsumer(final MarconiApi api, final String region, final UUID clientId, MessageHandler handler,
+         MultiQueueOptions options) {
+      this(new Function<String, ClaimApi>() {
+         @Override
+         public ClaimApi apply(String queue) {
+            return api.getClaimApi(region, clientId, queue);
+         }
+      }, new Function<String, MessageApi>() {
+         @Override
+         public MessageApi apply(String queue) {
+            return api.getMessageApi(region, clientId, queue);
+         }
+      }, api.getQueueApi(region, clientId), handler, options);
+   }
+
+   @VisibleForTesting
+   MultiQueueConsumer(Function<String, ClaimApi> claimApis, Function<String, MessageApi> messageApis,
+         QueueApi queueApi, MessageHandler handler, MultiQueueOptions options) {
+      this.claimApis = CacheBuilder.newBuilder().build(CacheLoader.from(checkNotNull(claimApis, "claimApis")));
+      this.messageApis = CacheBuilder.newBuilder().build(CacheLoader.from(checkNotNull(messageApis, "messageApis")));
+      this.queueApi = checkNotNull(queueApi, "queueApi");
+      this.handler = checkNotNull(handler, "handler");
+      this.options = checkNotNull(options, "options");
+      this.freeWorkers = options.getWorkers();
+      this.leases = new ClaimLeaseManager(options.getTTL());
+      this.claimer = Executors.newSingleThreadExecutor(threads("marconi-multi-consumer-claimer"));
+      this.workers = Executors.newFixedThreadPool(options.getWorkers(), threads("marconi-multi-consumer-worker-%d"));
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(threads("marconi-multi-consumer-scheduler"));
+      this.ackTimer = Executors.newSingleThreadScheduledExecutor(threads("marconi-multi-consumer-acks"));
+      this.acks = CacheBuilder.newBuilder().build(new CacheLoader<String, AckBatcher>() {
+         @Override
+         public AckBatcher load(String queue) {
+            return new AckBatcher(MultiQueueConsumer.this.messageApis.getUnchecked(queue),
+                  MultiQueueConsumer.this.options.getAckBatchSize(), MultiQueueConsumer.this.options.getAckDelay(),
+                  ackTimer);
+         }
+      });
+   }
+
+   private static ThreadFactory threads(String nameFormat) {
+      return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+   }
+
+   /**
+    * Adds a queue with the default concurrency of {@link MultiQueueOptions#getQueueConcurrency()}.
+    */
+   public void addQueue(String queue) {
+      addQueue(queue, options.getQueueConcurrency());
+   }
+
+   /**
+    * Adds a queue, of which at most {@code maxConcurrency} messages are processed at the same time.
+    */
+   public synchronized void addQueue(String queue, int maxConcurrency) {
+      checkNotNull(queue, "queue");
+      checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+      checkState(!queues.containsKey(queue), "queue %s already added", queue);
+      queues.put(queue, new QueueState(queue, maxConcurrency, virtualTime));
+      notifyAll();
+   }
+
+   /**
+    * Stops claiming from a queue. The messages already claimed from it are still processed.
+    */
+   public synchronized void removeQueue(String queue) {
+      queues.remove(queue);
+   }
+
+   /**
+    * Starts claiming and processing messages.
+    */
+   public synchronized void start() {
+      checkState(!started, "already started");
+      started = true;
+      running = true;
+      claimer.execute(new Runnable() {
+         @Override
+         public void run() {
+            claimLoop();
+         }
+      });
+      if (options.getStatsInterval() > 0) {
+         scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+               refreshStats();
+            }
+         }, 0, options.getStatsInterval(), TimeUnit.MILLISECONDS);
+      }
+   }
+
+   /**
+    * @return The number of messages handled and deleted.
+    */
+   public long getProcessed() {
+      return processed.get();
+   }
+
+   /**
+    * @return The number of messages of {@code queue} handled and deleted since it was added, or 0 if it is not
+    *         consumed.
+    */
+   public synchronized long getProcessed(String queue) {
+      QueueState state = queues.get(queue);
+      return state == null ? 0 : state.processed.get();
+   }
+
+   /**
+    * @return The number of messages whose handler threw.
+    */
+   public long getFailed() {
+      return failed.get();
+   }
+
+   /**
+    * @return The number of claim requests that failed.
+    */
+   public long getClaimFailures() {
+      return claimFailures.get();
+   }
+
+   /**
+    * @return The number of claim requests that found no message.
+    */
+   public long getEmptyClaims() {
+      return emptyClaims.get();
+   }
+
+   /**
+    * @return The number of claims whose messages are still being processed.
+    */
+   public int getActiveClaims() {
+      return leases.getActiveLeases();
+   }
+
+   /**
+    * @return The number of claims that expired, or were gone, before they could be renewed.
+    */
+   public long getLostClaims() {
+      return leases.getLostLeases();
+   }
+
+   /**
+    * Stops claiming, waits for the messages already claimed to be processed, then releases any claim left.
+    */
+   @Override
+   public void close() {
+      running = false;
+      claimer.shutdownNow();
+      workers.shutdown();
+      try {
+         workers.awaitTermination(options.getTTL(), TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         scheduler.shutdownNow();
+         workers.shutdownNow();
+         for (AckBatcher batcher : acks.asMap().values()) {
+            batcher.close();
+         }
+         ackTimer.shutdownNow();
+         leases.close();
+      }
+   }
+
+   private void claimLoop() {
+      while (running) {
+         try {
+            Reservation reservation = reserve();
+            String queue = reservation.queue.name;
+            List<Message> messages;
+            try {
+               messages = claimApis.getUnchecked(queue).claim(options.getTTL(), options.getGrace(),
+                     reservation.size);
+            } catch (RuntimeException e) {
+               claimFailures.incrementAndGet();
+               messages = null;
+            }
+            claimed(reservation, messages);
+            if (messages != null && !messages.isEmpty()) {
+               dispatch(reservation.queue, messages);
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+      }
+   }
+
+   /**
+    * Waits for a free worker and a queue due for a claim, then reserves workers for the claim from the queue that
+    * is furthest behind its share.
+    */
+   private synchronized Reservation reserve() throws InterruptedException {
+      while (true) {
+         long now = System.nanoTime();
+         long wait = Long.MAX_VALUE;
+         QueueState next = null;
+         if (freeWorkers > 0) {
+            for (QueueState queue : queues.values()) {
+               if (queue.inFlight >= queue.maxConcurrency) {
+                  continue;
+               }
+               long due = queue.nextClaimAt - now;
+               if (due > 0) {
+                  wait = Math.min(wait, due);
+               } else if (next == null || queue.pass < next.pass) {
+                  next = queue;
+               }
+            }
+         }
+         if (next != null) {
+            int size = Math.min(options.getLimit(), Math.min(next.maxConcurrency - next.inFlight, freeWorkers));
+            next.inFlight += size;
+            freeWorkers -= size;
+            virtualTime = Math.max(virtualTime, next.pass);
+            return new Reservation(next, size);
+         }
+         if (wait == Long.MAX_VALUE) {
+            wait();
+         } else {
+            TimeUnit.NANOSECONDS.timedWait(this, wait);
+         }
+      }
+   }
+
+   /**
+    * Gives back the workers a claim did not fill, and advances the queue by the messages claimed, or backs it off if
+    * there were none.
+    */
+   private synchronized void claimed(Reservation reservation, List<Message> messages) {
+      QueueState queue = reservation.queue;
+      int count = messages == null ? 0 : messages.size();
+      int unused = reservation.size - count;
+      queue.inFlight -= unused;
+      freeWorkers += unused;
+      if (count == 0) {
+         if (messages != null) {
+            emptyClaims.incrementAndGet();
+         }
+         queue.idleDelay = nextIdleDelay(queue.idleDelay);
+         long delay = queue.idleDelay - ThreadLocalRandom.current().nextLong(queue.idleDelay / 2 + 1);
+         queue.nextClaimAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      } else {
+         queue.idleDelay = 0;
+         if (options.getStatsInterval() > 0) {
+            // claims hand out the oldest messages first
+            int age = 0;
+            for (Message message : messages) {
+               age = Math.max(age, message.getAge());
+            }
+            queue.free = Math.max(0, queue.free - count);
+            queue.weight = weight(queue.free, age);
+            queue.claimedSinceStats = true;
+         }
+         // a queue coming back from idle starts level with the others instead of catching up
+         queue.pass = Math.max(queue.pass, virtualTime) + count / queue.weight;
+      }
+      if (unused > 0) {
+         notifyAll();
+      }
+   }
+
+   /**
+    * @see QueueConsumer
+    */
+   private long nextIdleDelay(long previous) {
+      if (previous == 0) {
+         return options.getIdleDelay();
+      }
+      return Math.min(previous * 2, Math.max(options.getIdleDelay(), options.getMaxIdleDelay()));
+   }
+
+   private void dispatch(QueueState queue, List<Message> messages) {
+      // all the messages of a claim share its id
+      String claimId = messages.get(0).getClaimId().orNull();
+      Lease lease = claimId == null ? null : leases.acquire(claimApis.getUnchecked(queue.name), claimId);
+      final ClaimedBatch batch = new ClaimedBatch(queue, claimId, lease, messages.size());
+      for (final Message message : messages) {
+         try {
+            workers.execute(new Runnable() {
+               @Override
+               public void run() {
+                  process(batch, message);
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            // closed meanwhile; the message goes back to the queue with the claim
+            done(batch);
+         }
+      }
+   }
+
+   private void process(ClaimedBatch batch, Message message) {
+      try {
+         handler.handle(message);
+         if (batch.claimId != null) {
+            Futures.addCallback(acks.getUnchecked(batch.queue.name).ack(message.getId(), batch.claimId),
+                  new CountDeleted(batch.queue));
+         } else if (messageApis.getUnchecked(batch.queue.name).delete(ImmutableList.of(message.getId()))) {
+            countDeleted(batch.queue);
+         }
+      } catch (Exception e) {
+         failed.incrementAndGet();
+      } finally {
+         done(batch);
+      }
+   }
+
+   /**
+    * Completes the claim after its last message, then frees the worker, so that the worker deleting the messages
+    * and releasing the claim still counts against the limits.
+    */
+   private void done(ClaimedBatch batch) {
+      try {
+         if (batch.remaining.decrementAndGet() == 0) {
+            complete(batch);
+         }
+      } finally {
+         synchronized (this) {
+            batch.queue.inFlight--;
+            freeWorkers++;
+            notifyAll();
+         }
+      }
+   }
+
+   private void complete(ClaimedBatch batch) {
+      if (batch.claimId == null) {
+         return;
+      }
+      try {
+         acks.getUnchecked(batch.queue.name).flush(batch.claimId).get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+         // the messages not deleted are handed out again
+      }
+      batch.lease.release();
+   }
+
+   private void countDeleted(QueueState queue) {
+      queue.processed.incrementAndGet();
+      processed.incrementAndGet();
+   }
+
+   /**
+    * Counts a handled message once the batch deleting it succeeded.
+    */
+   private class CountDeleted implements FutureCallback<Boolean> {
+      private final QueueState queue;
+
+      private CountDeleted(QueueState queue) {
+         this.queue = queue;
+      }
+
+      @Override
+      public void onSuccess(Boolean deleted) {
+         if (Boolean.TRUE.equals(deleted)) {
+            countDeleted(queue);
+         }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+      }
+   }
+
+   /**
+    * Weights the next queues in turn by their backlog and the age of their oldest message, and claims again right
+    * away from the idle ones that have free messages. Queues that claims returned messages from since their last turn
+    * are skipped, as those claims weighted them.
+    */
+   @VisibleForTesting
+   void refreshStats() {
+      List<QueueState> sample = Lists.newArrayList();
+      synchronized (this) {
+         List<QueueState> all = ImmutableList.copyOf(queues.values());
+         int visited = 0;
+         while (visited < all.size() && sample.size() < options.getStatsSampleSize()) {
+            QueueState queue = all.get((statsCursor + visited++) % all.size());
+            if (queue.claimedSinceStats) {
+               queue.claimedSinceStats = false;
+            } else {
+               sample.add(queue);
+            }
+         }
+         statsCursor = all.isEmpty() ? 0 : (statsCursor + visited) % all.size();
+      }
+      for (QueueState queue : sample) {
+         MessagesStats stats;
+         try {
+            QueueStats queueStats = queueApi.getStats(queue.name);
+            if (queueStats == null) {
+               continue;
+            }
+            stats = queueStats.getMessagesStats();
+         } catch (RuntimeException e) {
+            // keeps the previous weight
+            continue;
+         }
+         int age = stats.getOldest().isPresent() ? stats.getOldest().get().getAge() : 0;
+         synchronized (this) {
+            queue.free = stats.getFree();
+            queue.weight = weight(stats.getFree(), age);
+            if (stats.getFree() > 0 && queue.idleDelay > 0) {
+               queue.idleDelay = 0;
+               queue.nextClaimAt = System.nanoTime();
+               notifyAll();
+            }
+         }
+      }
+   }
+
+   private static double weight(int free, int age) {
+      return Math.sqrt(1 + free) * (1 + Math.max(0, age) / AGE_SCALE);
+   }
+
+   /**
+    * The scheduling state of a queue, guarded by the consumer.
+    */
+   private static class QueueState {
+      private final String name;
+      private final int maxConcurrency;
+      private final AtomicLong processed = new AtomicLong();
+      private int inFlight;
+      private int free;
+      private boolean claimedSinceStats;
+      private double weight = 1;
+      private double pass;
+      private long idleDelay;
+      private long nextClaimAt = System.nanoTime();
+
+      private QueueState(String name, int maxConcurrency, double pass) {
+         this.name = name;
+         this.maxConcurrency = maxConcurrency;
+         this.pass = pass;
+      }
+   }
+
+   private static class Reservation {
+      private final QueueState queue;
+      private final int size;
+
+      private Reservation(QueueState queue, int size) {
+         this.queue = queue;
+         this.size = size;
+      }
+   }
+
+   private static class ClaimedBatch {
+      private final QueueState queue;
+      private final String claimId;
+      private final Lease lease;
+      private final AtomicInteger remaining;
+
+      private ClaimedBatch(QueueState queue, String claimId, Lease lease, int size) {
+         this.queue = queue;
+         this.claimId = claimId;
+         this.lease = lease;
+         this.remaining = new AtomicInteger(size);
+      }
+   }
+}
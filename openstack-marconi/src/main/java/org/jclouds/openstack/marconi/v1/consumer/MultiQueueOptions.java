@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Options used to control how a {@link MultiQueueConsumer} shares its workers between queues.
+ */
+public class MultiQueueOptions {
+
+   public static final MultiQueueOptions NONE = new MultiQueueOptions();
+
+   private int ttl = 300;
+   private int grace = 60;
+   private int limit = 10;
+   private int workers = 16;
+   private int queueConcurrency = 4;
+   private long idleDelay = 1000;
+   private long maxIdleDelay = 30000;
+   private long statsInterval = 60000;
+   private int statsSampleSize = 10;
+   private int ackBatchSize = 20;
+   private long ackDelay = 100;
+
+   /**
+    * @see ConsumerOptions#ttl(int)
+    */
+   public MultiQueueOptions ttl(int ttl) {
+      checkArgument(ttl >= 60 && ttl <= 43200, "ttl must be between 60 and 43200 seconds");
+      this.ttl = ttl;
+      return this;
+   }
+
+   /**
+    * @see ConsumerOptions#grace(int)
+    */
+   public MultiQueueOptions grace(int grace) {
+      checkArgument(grace >= 60 && grace <= 43200, "grace must be between 60 and 43200 seconds");
+      this.grace = grace;
+      return this;
+   }
+
+   /**
+    * Specifies the most messages a claim requests, up to 20. Fewer are requested when the workers or the queue have
+    * less room. Defaults to 10.
+    */
+   public MultiQueueOptions limit(int limit) {
+      checkArgument(limit >= 1 && limit <= 20, "limit must be between 1 and 20");
+      this.limit = limit;
+      return this;
+   }
+
+   /**
+    * Specifies how many messages are processed at the same time, across all queues. Defaults to 16.
+    */
+   public MultiQueueOptions workers(int workers) {
+      checkArgument(workers > 0, "workers must be positive");
+      this.workers = workers;
+      return this;
+   }
+
+   /**
+    * Specifies how many messages of one queue are processed at the same time, unless given when the queue is added.
+    * Defaults to 4, so that a single hot queue leaves workers to the others.
+    */
+   public MultiQueueOptions queueConcurrency(int queueConcurrency) {
+      checkArgument(queueConcurrency > 0, "queueConcurrency must be positive");
+      this.queueConcurrency = queueConcurrency;
+      return this;
+   }
+
+   /**
+    * @see ConsumerOptions#idleDelay(long)
+    */
+   public MultiQueueOptions idleDelay(long idleDelay) {
+      checkArgument(idleDelay >= 0, "idleDelay must be non-negative");
+      this.idleDelay = idleDelay;
+      return this;
+   }
+
+   /**
+    * @see ConsumerOptions#maxIdleDelay(long)
+    */
+   public MultiQueueOptions maxIdleDelay(long maxIdleDelay) {
+      checkArgument(maxIdleDelay >= 0, "maxIdleDelay must be non-negative");
+      this.maxIdleDelay = maxIdleDelay;
+      return this;
+   }
+
+   /**
+    * Specifies how often, in milliseconds, queue stats are read to weight claims by backlog and age, and to wake idle
+    * queues that have messages again. 0 turns it off and weights every queue the same. Defaults to 60000.
+    *
+    * @see #statsSampleSize(int)
+    */
+   public MultiQueueOptions statsInterval(long statsInterval) {
+      checkArgument(statsInterval >= 0, "statsInterval must be non-negative");
+      this.statsInterval = statsInterval;
+      return this;
+   }
+
+   /**
+    * Specifies how many queues have their stats read every {@link #statsInterval(long)}, taking the queues in turn.
+    * Reading stats costs a request per queue; queues whose claims returned messages since their last read are
+    * weighted by the age of those messages instead. Defaults to 10.
+    */
+   public MultiQueueOptions statsSampleSize(int statsSampleSize) {
+      checkArgument(statsSampleSize > 0, "statsSampleSize must be positive");
+      this.statsSampleSize = statsSampleSize;
+      return this;
+   }
+
+   /**
+    * @see ConsumerOptions#ackBatchSize(int)
+    */
+   public MultiQueueOptions ackBatchSize(int ackBatchSize) {
+      checkArgument(ackBatchSize >= 1 && ackBatchSize <= AckBatcher.MAX_BATCH_SIZE,
+            "ackBatchSize must be between 1 and %s", AckBatcher.MAX_BATCH_SIZE);
+      this.ackBatchSize = ackBatchSize;
+      return this;
+   }
+
+   /**
+    * @see ConsumerOptions#ackDelay(long)
+    */
+   public MultiQueueOptions ackDelay(long ackDelay) {
+      checkArgument(ackDelay >= 0, "ackDelay must be non-negative");
+      this.ackDelay = ackDelay;
+      return this;
+   }
+
+   public int getTTL() {
+      return ttl;
+   }
+
+   public int getGrace() {
+      return grace;
+   }
+
+   public int getLimit() {
+      return limit;
+   }
+
+   public int getWorkers() {
+      return workers;
+   }
+
+   public int getQueueConcurrency() {
+      return queueConcurrency;
+   }
+
+   public long getIdleDelay() {
+      return idleDelay;
+   }
+
+   public long getMaxIdleDelay() {
+      return maxIdleDelay;
+   }
+
+   public long getStatsInterval() {
+      return statsInterval;
+   }
+
+   public int getStatsSampleSize() {
+      return statsSampleSize;
+   }
+
+   public int getAckBatchSize() {
+      return ackBatchSize;
+   }
+
+   public long getAckDelay() {
+      return ackDelay;
+   }
+
+   @Override
+   public String toString() {
+      return MoreObjects.toStringHelper(this).add("ttl", ttl).add("grace", grace).add("limit", limit)
+            .add("workers", workers).add("queueConcurrency", queueConcurrency).add("idleDelay", idleDelay)
+            .add("maxIdleDelay", maxIdleDelay).add("statsInterval", statsInterval)
+            .add("statsSampleSize", statsSampleSize).add("ackBatchSize", ackBatchSize).add("ackDelay", ackDelay)
+            .toString();
+   }
+
+   public static class Builder {
+      /**
+       * @see MultiQueueOptions#ttl(int)
+       */
+      public static MultiQueueOptions ttl(int ttl) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.ttl(ttl);
+      }
+
+      /**
+       * @see MultiQueueOptions#grace(int)
+       */
+      public static MultiQueueOptions grace(int grace) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.grace(grace);
+      }
+
+      /**
+       * @see MultiQueueOptions#limit(int)
+       */
+      public static MultiQueueOptions limit(int limit) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.limit(limit);
+      }
+
+      /**
+       * @see MultiQueueOptions#workers(int)
+       */
+      public static MultiQueueOptions workers(int workers) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.workers(workers);
+      }
+
+      /**
+       * @see MultiQueueOptions#queueConcurrency(int)
+       */
+      public static MultiQueueOptions queueConcurrency(int queueConcurrency) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.queueConcurrency(queueConcurrency);
+      }
+
+      /**
+       * @see MultiQueueOptions#idleDelay(long)
+       */
+      public static MultiQueueOptions idleDelay(long idleDelay) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.idleDelay(idleDelay);
+      }
+
+      /**
+       * @see MultiQueueOptions#maxIdleDelay(long)
+       */
+      public static MultiQueueOptions maxIdleDelay(long maxIdleDelay) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.maxIdleDelay(maxIdleDelay);
+      }
+
+      /**
+       * @see MultiQueueOptions#statsInterval(long)
+       */
+      public static MultiQueueOptions statsInterval(long statsInterval) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.statsInterval(statsInterval);
+      }
+
+      /**
+       * @see MultiQueueOptions#statsSampleSize(int)
+       */
+      public static MultiQueueOptions statsSampleSize(int statsSampleSize) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.statsSampleSize(statsSampleSize);
+      }
+
+      /**
+       * @see MultiQueueOptions#ackBatchSize(int)
+       */
+      public static MultiQueueOptions ackBatchSize(int ackBatchSize) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.ackBatchSize(ackBatchSize);
+      }
+
+      /**
+       * @see MultiQueueOptions#ackDelay(long)
+       */
+      public static MultiQueueOptions ackDelay(long ackDelay) {
+         MultiQueueOptions options = new MultiQueueOptions();
+         return options.ackDelay(ackDelay);
+      }
+   }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import org.jclouds.collect.IterableWithMarker;
+import org.jclouds.collect.PagedIterable;
+import org.jclouds.openstack.marconi.v1.MarconiApi;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.domain.MessageStream;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Pages through the messages of a queue with {@link MessageApi#stream}, fetching the next page in the background
+ * while the current one is consumed.
+ * <p/>
+ * Iteration is lazy and starts over from the given options each time {@link #iterator()} is called. It ends at the
+ * first empty page, which Marconi answers with a 204. Each page is a {@link MessageStream}, so a reader that needs
+ * to resume later can persist {@code page.nextStreamOptions().getMarker()} once it is done with a page, and start
+ * a new stream from {@link StreamMessagesOptions.Builder#marker(String)}.
+ * <p/>
+ * Example:
+ * <pre>
+ * PrefetchingMessageStream stream = new PrefetchingMessageStream(api, "DFW", clientId, "audit", marker(saved));
+ * for (Message message : stream.concat()) {
+ *    ...
+ * }
+ * stream.close();
+ * </pre>
+ */
+public class PrefetchingMessageStream extends PagedIterable<Message> implements Closeable {
+
+   private final MessageApi messageApi;
+   private final StreamMessagesOptions options;
+   private final ListeningExecutorService fetcher;
+
+   public PrefetchingMessageStream(MarconiApi api, String region, UUID clientId, String queue,
+         StreamMessagesOptions options) {
+      this(api.getMessageApi(region, clientId, queue), options);
+   }
+
+   @VisibleForTesting
+   PrefetchingMessageStream(MessageApi messageApi, StreamMessagesOptions options) {
+      this.messageApi = checkNotNull(messageApi, "messageApi");
+      this.options = checkNotNull(options, "options");
+      // threads of an abandoned stream exit once idle, so forgetting to close it does not leak them
+      this.fetcher = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("marconi-stream-%d").setDaemon(true).build()));
+   }
+
+   @Override
+   public Iterator<IterableWithMarker<Message>> iterator() {
+      return new AbstractIterator<IterableWithMarker<Message>>() {
+         private ListenableFuture<MessageStream> next;
+         private boolean started;
+
+         @Override
+         protected IterableWithMarker<Message> computeNext() {
+            MessageStream page;
+            if (!started) {
+               started = true;
+               page = messageApi.stream(options);
+            } else if (next != null) {
+               page = get(next);
+            } else {
+               return endOfData();
+            }
+            next = null;
+            if (Iterables.isEmpty(page)) {
+               return endOfData();
+            }
+            if (page.nextMarker().isPresent()) {
+               next = fetch(page.nextStreamOptions());
+            }
+            return page;
+         }
+      };
+   }
+
+   /**
+    * Stops fetching pages in the background. Iterators already handed out fail on their next page.
+    */
+   @Override
+   public void close() {
+      fetcher.shutdownNow();
+   }
+
+   private ListenableFuture<MessageStream> fetch(final StreamMessagesOptions nextOptions) {
+      return fetcher.submit(new Callable<MessageStream>() {
+         @Override
+         public MessageStream call() {
+            return messageApi.stream(nextOptions);
+         }
+      });
+   }
+
+   private static MessageStream get(ListenableFuture<MessageStream> page) {
+      try {
+         return Uninterruptibles.getUninterruptibly(page);
+      } catch (ExecutionException e) {
+         throw Throwables.propagate(e.getCause());
+      }
+   }
+}
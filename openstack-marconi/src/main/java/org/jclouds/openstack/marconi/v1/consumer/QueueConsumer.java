@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.openstack.marconi.v1.MarconiApi;
+import org.jclouds.openstack.marconi.v1.consumer.ClaimLeaseManager.Lease;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Consumes the messages of a queue with a pool of workers.
+ * <p/>
+ * Up to {@link ConsumerOptions#getPrefetch()} claims are kept outstanding, so that the next batch of messages is
+ * already claimed when a worker becomes free. Each claimed message is handed to a {@link MessageHandler} and deleted
+ * under its claim once handled. Claims still being processed are kept by a {@link ClaimLeaseManager}, and each claim
+ * is released as soon as a handler throws, or else once all of its messages are done, which makes the messages that
+ * failed available to other consumers right away. Handled messages are deleted in batches per claim by an
+ * {@link AckBatcher}, which is flushed before the claim is released; the messages of a released claim that were
+ * being handled meanwhile are deleted without it, and those not started yet are left to whoever claims them next.
+ * <p/>
+ * While the queue is empty, the wait between claims grows from {@link ConsumerOptions#getIdleDelay()} up to
+ * {@link ConsumerOptions#getMaxIdleDelay()}, so that idle consumers make few requests; the next claim that returns
+ * messages brings it back to claiming without waiting.
+ * <p/>
+ * Example:
+ * <pre>
+ * QueueConsumer consumer = new QueueConsumer(api, "DFW", clientId, "jobs", handler,
+ *       ConsumerOptions.Builder.workers(32).prefetch(4));
+ * consumer.start();
+ * ...
+ * consumer.close();
+ * </pre>
+ */
+public class QueueConsumer implements Closeable {
+
+   private final ClaimApi claimApi;
+   private final MessageApi messageApi;
+   private final AckBatcher acks;
+   private final ClaimLeaseManager leases;
+   private final MessageHandler handler;
+   private final ConsumerOptions options;
+   private final Semaphore claimPermits;
+   private final ExecutorService claimer;
+   private final ExecutorService workers;
+
+   private final AtomicLong processed = new AtomicLong();
+   private final AtomicLong failed = new AtomicLong();
+   private final AtomicLong claimFailures = new AtomicLong();
+   private final AtomicLong emptyClaims = new AtomicLong();
+
+   /**
+    * Counts a handled message once the batch deleting it succeeded; the messages not deleted are handed out again.
+    */
+   private final FutureCallback<Boolean> countDeleted = new FutureCallback<Boolean>() {
+      @Override
+      public void onSuccess(Boolean deleted) {
+         if (Boolean.TRUE.equals(deleted)) {
+            processed.incrementAndGet();
+         }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+      }
+   };
+
+   private volatile boolean running;
+   private boolean started;
+
+   public QueueConsumer(MarconiApi api, String region, UUID clientId, String queue, MessageHandler handler,
+         ConsumerOptions options) {
+      this(api.getClaimApi(region, clientId, queue), api.getMessageApi(region, clientId, queue), queue, handler,
+            options);
+   }
+
+   @VisibleForTesting
+   QueueConsumer(ClaimApi claimApi, MessageApi messageApi, String queue, MessageHandler handler,
+         ConsumerOptions options) {
+      this.claimApi = checkNotNull(claimApi, "claimApi");
+      this.messageApi = checkNotNull(messageApi, "messageApi");
+      this.acks = new AckBatcher(messageApi, options.getAckBatchSize(), options.getAckDelay());
+      this.leases = new ClaimLeaseManager(options.getTTL());
+      this.handler = checkNotNull(handler, "handler");
+      this.options = checkNotNull(options, "options");
+      this.claimPermits = new Semaphore(options.getPrefetch());
+      String prefix = "marconi-consumer-" + checkNotNull(queue, "queue");
+      this.claimer = Executors.newSingleThreadExecutor(threads(prefix + "-claimer"));
+      this.workers = Executors.newFixedThreadPool(options.getWorkers(), threads(prefix + "-worker-%d"));
+   }
+
+   private static ThreadFactory threads(String nameFormat) {
+      return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+   }
+
+   /**
+    * Starts claiming and processing messages.
+    */
+   public synchronized void start() {
+      checkState(!started, "already started");
+      started = true;
+      running = true;
+      claimer.execute(new Runnable() {
+         @Override
+         public void run() {
+            claimLoop();
+         }
+      });
+   }
+
+   /**
+    * @return The number of messages handled and deleted.
+    */
+   public long getProcessed() {
+      return processed.get();
+   }
+
+   /**
+    * @return The number of messages whose handler threw.
+    */
+   public long getFailed() {
+      return failed.get();
+   }
+
+   /**
+    * @return The number of claim requests that failed.
+    */
+   public long getClaimFailures() {
+      return claimFailures.get();
+   }
+
+   /**
+    * @return The number of claim requests that found no message.
+    */
+   public long getEmptyClaims() {
+      return emptyClaims.get();
+   }
+
+   /**
+    * @return The number of claims whose messages are still being processed.
+    */
+   public int getActiveClaims() {
+      return leases.getActiveLeases();
+   }
+
+   /**
+    * @return The number of claims that expired, or were gone, before they could be renewed.
+    */
+   public long getLostClaims() {
+      return leases.getLostLeases();
+   }
+
+   /**
+    * Stops claiming, waits for the messages already claimed to be processed, then releases any claim left.
+    */
+   @Override
+   public void close() {
+      running = false;
+      claimer.shutdownNow();
+      workers.shutdown();
+      try {
+         workers.awaitTermination(options.getTTL(), TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         workers.shutdownNow();
+         acks.close();
+         leases.close();
+      }
+   }
+
+   private void claimLoop() {
+      long idleDelay = 0;
+      while (running) {
+         try {
+            claimPermits.acquire();
+            List<Message> messages;
+            try {
+               messages = claimApi.claim(options.getTTL(), options.getGrace(), options.getLimit());
+            } catch (RuntimeException e) {
+               claimFailures.incrementAndGet();
+               messages = null;
+            }
+            if (messages == null || messages.isEmpty()) {
+               if (messages != null) {
+                  emptyClaims.incrementAndGet();
+               }
+               claimPermits.release();
+               idleDelay = nextIdleDelay(idleDelay);
+               sleep(idleDelay - ThreadLocalRandom.current().nextLong(idleDelay / 2 + 1));
+            } else {
+               idleDelay = 0;
+               dispatch(messages);
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+      }
+   }
+
+   /**
+    * @return The delay after an idle claim, given the one after the previous claim, or 0 if it returned messages.
+    */
+   private long nextIdleDelay(long previous) {
+      if (previous == 0) {
+         return options.getIdleDelay();
+      }
+      return Math.min(previous * 2, Math.max(options.getIdleDelay(), options.getMaxIdleDelay()));
+   }
+
+   /**
+    * Waits between idle claims.
+    */
+   @VisibleForTesting
+   void sleep(long millis) throws InterruptedException {
+      Thread.sleep(millis);
+   }
+
+   private void dispatch(List<Message> messages) {
+      // all the messages of a claim share its id
+      String claimId = messages.get(0).getClaimId().orNull();
+      Lease lease = claimId == null ? null : leases.acquire(claimApi, claimId);
+      final ClaimedBatch batch = new ClaimedBatch(claimId, lease, messages.size());
+      for (final Message message : messages) {
+         try {
+            workers.execute(new Runnable() {
+               @Override
+               public void run() {
+                  process(batch, message);
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            // closed meanwhile; the message goes back to the queue with the claim
+            if (batch.remaining.decrementAndGet() == 0) {
+               complete(batch);
+            }
+         }
+      }
+   }
+
+   private void process(ClaimedBatch batch, Message message) {
+      try {
+         // a message of a released claim is back in the queue already
+         if (!batch.isReleased()) {
+            handler.handle(message);
+            delete(batch, message);
+         }
+      } catch (Exception e) {
+         failed.incrementAndGet();
+         release(batch);
+      } finally {
+         if (batch.remaining.decrementAndGet() == 0) {
+            complete(batch);
+         }
+      }
+   }
+
+   private void delete(ClaimedBatch batch, Message message) {
+      if (batch.claimId != null) {
+         synchronized (batch) {
+            if (!batch.released) {
+               Futures.addCallback(acks.ack(message.getId(), batch.claimId), countDeleted);
+               return;
+            }
+         }
+      }
+      if (messageApi.delete(ImmutableList.of(message.getId()))) {
+         processed.incrementAndGet();
+      }
+   }
+
+   /**
+    * Deletes the messages acknowledged under the claim of a batch, then releases the claim. Does nothing if it was
+    * already released.
+    */
+   private void release(ClaimedBatch batch) {
+      if (batch.claimId == null) {
+         return;
+      }
+      synchronized (batch) {
+         if (batch.released) {
+            return;
+         }
+         batch.released = true;
+      }
+      try {
+         acks.flush(batch.claimId).get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+         // the messages not deleted are handed out again
+      }
+      batch.lease.release();
+   }
+
+   private void complete(ClaimedBatch batch) {
+      release(batch);
+      claimPermits.release();
+   }
+
+   @VisibleForTesting
+   void renewClaims() {
+      leases.renewAll();
+   }
+
+   private static class ClaimedBatch {
+      private final String claimId;
+      private final Lease lease;
+      private final AtomicInteger remaining;
+      private boolean released;
+
+      private ClaimedBatch(String claimId, Lease lease, int size) {
+         this.claimId = claimId;
+         this.lease = lease;
+         this.remaining = new AtomicInteger(size);
+      }
+
+      private synchronized boolean isReleased() {
+         return released;
+      }
+   }
+}
@@ -29,13 +29,19 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class CreateMessage {
 
    private int ttl;
-   private String body;
+   // a String is written as a JSON string, a JsonBall as the raw JSON document it holds
+   private Object body;
 
    protected CreateMessage(int ttl, String body) {
       this.ttl = ttl;
       this.body = checkNotNull(body, "body required");
    }
 
+   protected CreateMessage(int ttl, JsonBall body) {
+      this.ttl = ttl;
+      this.body = checkNotNull(body, "body required");
+   }
+
    /**
     * @see Builder#ttl(int)
     */
@@ -45,9 +51,10 @@ public class CreateMessage {
 
    /**
     * @see Builder#body(String)
+    * @see Builder#body(JsonBall)
     */
    public String getBody() {
-      return body;
+      return body.toString();
    }
 
    @Override
@@ -86,6 +93,7 @@ public class CreateMessage {
 
       protected int ttl;
       protected String body;
+      protected JsonBall rawBody;
 
       /**
        * @param ttl The time-to-live of the message in seconds. The ttl attribute specifies how long the server waits
@@ -109,15 +117,27 @@ public class CreateMessage {
       public Builder body(String json) {
          checkNotNull(json, "body required");
          this.body = new JsonBall(json).toString();
+         this.rawBody = null;
+         return self();
+      }
+
+      /**
+       * @param json Specifies a JSON document that is sent as the body of the message as is, rather than escaped into
+       *             a JSON string. It must be well-formed JSON.
+       */
+      public Builder body(JsonBall json) {
+         this.rawBody = checkNotNull(json, "body required");
+         this.body = null;
          return self();
       }
 
       public CreateMessage build() {
-         return new CreateMessage(ttl, body);
+         return rawBody != null ? new CreateMessage(ttl, rawBody) : new CreateMessage(ttl, body);
       }
 
       public Builder fromMessage(CreateMessage in) {
-         return this.ttl(in.getTTL()).body(in.getBody());
+         this.ttl(in.getTTL());
+         return in.body instanceof JsonBall ? this.body((JsonBall) in.body) : this.body(in.getBody());
       }
    }
 
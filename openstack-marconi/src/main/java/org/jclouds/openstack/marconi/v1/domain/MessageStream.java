@@ -19,8 +19,8 @@ package org.jclouds.openstack.marconi.v1.domain;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Multimap;
 import org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions;
 import org.jclouds.openstack.v2_0.domain.Link;
 import org.jclouds.openstack.v2_0.domain.PaginatedCollection;
@@ -28,6 +28,12 @@ import org.jclouds.openstack.v2_0.domain.PaginatedCollection;
 import static org.jclouds.http.utils.Queries.queryParser;
 
 public class MessageStream extends PaginatedCollection<Message> {
+
+   /**
+    * The query of the next link, parsed on first use so that paging does not parse it again on every call.
+    */
+   private transient volatile Optional<ImmutableMultimap<String, String>> nextQuery;
+
    protected MessageStream(Iterable<Message> resources, Iterable<Link> links) {
       super(resources, links);
    }
@@ -43,8 +49,12 @@ public class MessageStream extends PaginatedCollection<Message> {
 
    @Override
    public Optional<Object> nextMarker() {
-      Optional<Link> nextMarkerLink = Iterables.tryFind(getLinks(), IS_NEXT_LINK);
-      return nextMarkerLink.transform(TO_LIST_OPTIONS);
+      Optional<ImmutableMultimap<String, String>> query = nextQuery;
+      if (query == null) {
+         query = Iterables.tryFind(getLinks(), IS_NEXT_LINK).transform(TO_QUERY);
+         nextQuery = query;
+      }
+      return query.transform(TO_STREAM_OPTIONS);
    }
 
    private static final Predicate<Link> IS_NEXT_LINK = new Predicate<Link>() {
@@ -54,13 +64,22 @@ public class MessageStream extends PaginatedCollection<Message> {
       }
    };
 
-   private static final Function<Link, Object> TO_LIST_OPTIONS = new Function<Link, Object>() {
+   private static final Function<Link, ImmutableMultimap<String, String>> TO_QUERY =
+         new Function<Link, ImmutableMultimap<String, String>>() {
       @Override
-      public Object apply(Link link) {
-         Multimap<String, String> queryParams = queryParser().apply(link.getHref().getRawQuery());
-         StreamMessagesOptions paginationOptions = StreamMessagesOptions.Builder.queryParameters(queryParams);
+      public ImmutableMultimap<String, String> apply(Link link) {
+         return ImmutableMultimap.copyOf(queryParser().apply(link.getHref().getRawQuery()));
+      }
+   };
 
-         return paginationOptions;
+   /**
+    * Builds new options from the parsed query every time, as callers may modify the options they are given.
+    */
+   private static final Function<ImmutableMultimap<String, String>, Object> TO_STREAM_OPTIONS =
+         new Function<ImmutableMultimap<String, String>, Object>() {
+      @Override
+      public Object apply(ImmutableMultimap<String, String> queryParams) {
+         return StreamMessagesOptions.Builder.queryParameters(queryParams);
       }
    };
 }
@@ -20,6 +20,8 @@ package org.jclouds.openstack.marconi.v1.domain;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 
+import org.jclouds.javax.annotation.Nullable;
+
 import javax.inject.Named;
 import java.beans.ConstructorProperties;
 import java.util.List;
@@ -33,24 +35,35 @@ public class MessagesCreated {
 
    @Named("resources")
    private final List<String> messageIds;
+   @Named("partial")
+   private final Boolean partial;
 
    @ConstructorProperties({
-         "resources"
+         "resources", "partial"
    })
-   protected MessagesCreated(List<String> messageIds) {
+   protected MessagesCreated(List<String> messageIds, @Nullable Boolean partial) {
       this.messageIds = checkNotNull(messageIds, "messageIds required");
+      this.partial = partial;
    }
 
    /**
-    * @return A list of message ids that correspond to each message submitted in the request, in order.
+    * @return A list of message ids that correspond to each message submitted in the request, in order. If the
+    *         response is {@link #isPartial() partial}, only the messages created are listed.
     */
    public List<String> getMessageIds() {
       return messageIds;
    }
 
+   /**
+    * @return True if only the first {@link #getMessageIds()} messages of the request were created.
+    */
+   public boolean isPartial() {
+      return Boolean.TRUE.equals(partial);
+   }
+
    @Override
    public int hashCode() {
-      return Objects.hashCode(messageIds);
+      return Objects.hashCode(messageIds, isPartial());
    }
 
    @Override
@@ -58,11 +71,11 @@ public class MessagesCreated {
       if (this == obj) return true;
       if (obj == null || getClass() != obj.getClass()) return false;
       MessagesCreated that = MessagesCreated.class.cast(obj);
-      return Objects.equal(this.messageIds, that.messageIds);
+      return Objects.equal(this.messageIds, that.messageIds) && this.isPartial() == that.isPartial();
    }
 
    protected MoreObjects.ToStringHelper string() {
-      return MoreObjects.toStringHelper(this).add("messageIds", messageIds);
+      return MoreObjects.toStringHelper(this).add("messageIds", messageIds).add("partial", isPartial());
    }
 
    @Override
@@ -82,6 +95,7 @@ public class MessagesCreated {
       protected abstract Builder self();
 
       protected List<String> messageIds;
+      protected boolean partial;
 
       /**
        * @see MessagesCreated#getMessageIds()
@@ -91,12 +105,20 @@ public class MessagesCreated {
          return self();
       }
 
+      /**
+       * @see MessagesCreated#isPartial()
+       */
+      public Builder partial(boolean partial) {
+         this.partial = partial;
+         return self();
+      }
+
       public MessagesCreated build() {
-         return new MessagesCreated(messageIds);
+         return new MessagesCreated(messageIds, partial);
       }
 
       public Builder fromMessageCreated(MessagesCreated in) {
-         return this.messageIds(in.getMessageIds());
+         return this.messageIds(in.getMessageIds()).partial(in.isPartial());
       }
    }
 
@@ -134,4 +134,17 @@ public interface MessageApi {
    @Fallback(FalseOnNotFoundOr404.class)
    boolean deleteByClaim(@PathParam("message_id") String id,
                          @QueryParam("claim_id") String claimId);
+
+   /**
+    * Deletes specific messages, only if they have the specified claim ID and that claim has not expired. This lets a
+    * worker acknowledge the messages it processed under a claim with a single request.
+    *
+    * @param ids      Specifies the IDs of the messages to delete.
+    * @param claimId  Specific claim ID of the messages to delete.
+    */
+   @Named("message:delete")
+   @DELETE
+   @Fallback(FalseOnNotFoundOr404.class)
+   boolean deleteByClaim(@BinderParam(BindIdsToQueryParam.class) Iterable<String> ids,
+                         @QueryParam("claim_id") String claimId);
 }
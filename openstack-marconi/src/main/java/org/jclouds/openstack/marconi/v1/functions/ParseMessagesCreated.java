@@ -46,6 +46,7 @@ public class ParseMessagesCreated implements Function<HttpResponse, MessagesCrea
 
       MessagesCreated messagesCreated = MessagesCreated.builder()
             .messageIds(messageIds)
+            .partial(rawMessagesCreated.isPartial())
             .build();
 
       return messagesCreated;
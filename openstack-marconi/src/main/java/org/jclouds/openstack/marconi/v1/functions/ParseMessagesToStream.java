@@ -18,7 +18,8 @@ package org.jclouds.openstack.marconi.v1.functions;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
+import com.google.gson.JsonParser;
+import org.jclouds.domain.JsonBall;
 import org.jclouds.http.HttpResponse;
 import org.jclouds.http.functions.ParseJson;
 import org.jclouds.openstack.marconi.v1.domain.Message;
@@ -28,13 +29,10 @@ import org.jclouds.openstack.v2_0.domain.PaginatedCollection;
 
 import javax.inject.Inject;
 import java.beans.ConstructorProperties;
-import java.net.URI;
-import java.net.URISyntaxException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Iterables.transform;
-import static org.jclouds.http.utils.Queries.queryParser;
+import static org.jclouds.util.Strings2.urlDecode;
 
 public class ParseMessagesToStream implements Function<HttpResponse, MessageStream> {
 
@@ -58,44 +56,72 @@ public class ParseMessagesToStream implements Function<HttpResponse, MessageStre
       return new Messages(messages, messagesWithHref.getLinks());
    }
 
+   private static final String CLAIM_ID = "claim_id=";
+
    /**
     * Strip off everything but the message id.
     */
    private static String getIdFromHref(String rawMessageHref) {
+      if (rawMessageHref == null) {
+         return null;
+      }
       int indexOfQuestionMark = rawMessageHref.indexOf('?');
-      int lastIndexOfSlash = rawMessageHref.lastIndexOf('/') + 1;
+      int end = indexOfQuestionMark == -1 ? rawMessageHref.length() : indexOfQuestionMark;
 
-      if (indexOfQuestionMark > lastIndexOfSlash) {
-         return rawMessageHref.substring(lastIndexOfSlash, indexOfQuestionMark);
-      }
-      else {
-         return rawMessageHref.substring(lastIndexOfSlash);
-      }
+      return rawMessageHref.substring(rawMessageHref.lastIndexOf('/', end - 1) + 1, end);
    }
 
+   /**
+    * Finds the {@code claim_id} parameter of the query by scanning the href, without building a URI or a multimap
+    * of the whole query.
+    */
    private static String getClaimIdFromHref(String rawMessageHref) {
-      try {
-         String query = new URI(rawMessageHref).getQuery();
-
-         if (query != null) {
-            Multimap<String, String> queryParams = queryParser().apply(query);
-            return getOnlyElement(queryParams.get("claim_id"), null);
+      if (rawMessageHref == null) {
+         return null;
+      }
+      int start = rawMessageHref.indexOf('?') + 1;
+      if (start == 0) {
+         return null;
+      }
+      while (start < rawMessageHref.length()) {
+         int end = rawMessageHref.indexOf('&', start);
+         if (end == -1) {
+            end = rawMessageHref.length();
          }
-         else {
-            return null;
+         if (rawMessageHref.startsWith(CLAIM_ID, start)) {
+            String claimId = rawMessageHref.substring(start + CLAIM_ID.length(), end);
+            return claimId.indexOf('%') == -1 && claimId.indexOf('+') == -1 ? claimId : urlDecode(claimId);
          }
+         start = end + 1;
       }
-      catch (URISyntaxException e) {
+      return null;
+   }
+
+   /**
+    * Bodies posted as JSON strings are unwrapped into their value. Any other JSON document is kept as it was sent,
+    * rather than being escaped into a string and unescaped again.
+    */
+   private static String getBodyFromJson(JsonBall body) {
+      if (body == null) {
          return null;
       }
+      String json = body.toString().trim();
+      return json.startsWith("\"") ? new JsonParser().parse(json).getAsString() : json;
    }
 
+   /**
+    * The id and claim id are already decoded from the href while deserializing, this only copies them into a plain
+    * {@link Message} so that it equals messages built elsewhere.
+    */
    protected static final Function<MessageWithHref, Message> TO_MESSAGE = new Function<MessageWithHref, Message>() {
       @Override
       public Message apply(MessageWithHref messageWithHref) {
-         return messageWithHref.toBuilder()
-               .id(getIdFromHref(messageWithHref.getId()))
-               .claimId(getClaimIdFromHref(messageWithHref.getId()))
+         return Message.builder()
+               .id(messageWithHref.getId())
+               .ttl(messageWithHref.getTTL())
+               .body(messageWithHref.getBody())
+               .age(messageWithHref.getAge())
+               .claimId(messageWithHref.getClaimId().orNull())
                .build();
       }
    };
@@ -126,8 +152,8 @@ public class ParseMessagesToStream implements Function<HttpResponse, MessageStre
    protected static class MessageWithHref extends Message {
 
       @ConstructorProperties({ "href", "ttl", "body", "age" })
-      protected MessageWithHref(String href, int ttl, String body, int age) {
-         super(href, ttl, body, age, null);
+      protected MessageWithHref(String href, int ttl, JsonBall body, int age) {
+         super(getIdFromHref(href), ttl, getBodyFromJson(body), age, getClaimIdFromHref(href));
       }
    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.producer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Options used to control how a {@link QueueProducer} batches messages.
+ */
+public class ProducerOptions {
+
+   public static final ProducerOptions NONE = new ProducerOptions();
+
+   private int batchSize = 10;
+   private int maxBatchBytes = 256 * 1024;
+   private long linger = 5;
+   private int senders = 4;
+
+   /**
+    * Specifies how many messages are sent in one request, up to the Marconi maximum of 10. Defaults to 10.
+    */
+   public ProducerOptions batchSize(int batchSize) {
+      checkArgument(batchSize >= 1 && batchSize <= 10, "batchSize must be between 1 and 10");
+      this.batchSize = batchSize;
+      return this;
+   }
+
+   /**
+    * Specifies the largest request body, in bytes, that a batch may produce. Defaults to 262144, the default limit of
+    * Marconi.
+    */
+   public ProducerOptions maxBatchBytes(int maxBatchBytes) {
+      checkArgument(maxBatchBytes > 0, "maxBatchBytes must be positive");
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+   }
+
+   /**
+    * Specifies how long, in milliseconds, a batch that is not full waits for more messages before it is sent.
+    * Defaults to 5.
+    */
+   public ProducerOptions linger(long linger) {
+      checkArgument(linger >= 0, "linger must be non-negative");
+      this.linger = linger;
+      return this;
+   }
+
+   /**
+    * Specifies how many batches are sent at the same time. Defaults to 4.
+    */
+   public ProducerOptions senders(int senders) {
+      checkArgument(senders > 0, "senders must be positive");
+      this.senders = senders;
+      return this;
+   }
+
+   public int getBatchSize() {
+      return batchSize;
+   }
+
+   public int getMaxBatchBytes() {
+      return maxBatchBytes;
+   }
+
+   public long getLinger() {
+      return linger;
+   }
+
+   public int getSenders() {
+      return senders;
+   }
+
+   @Override
+   public String toString() {
+      return MoreObjects.toStringHelper(this).add("batchSize", batchSize).add("maxBatchBytes", maxBatchBytes)
+            .add("linger", linger).add("senders", senders).toString();
+   }
+
+   public static class Builder {
+      /**
+       * @see ProducerOptions#batchSize(int)
+       */
+      public static ProducerOptions batchSize(int batchSize) {
+         ProducerOptions options = new ProducerOptions();
+         return options.batchSize(batchSize);
+      }
+
+      /**
+       * @see ProducerOptions#maxBatchBytes(int)
+       */
+      public static ProducerOptions maxBatchBytes(int maxBatchBytes) {
+         ProducerOptions options = new ProducerOptions();
+         return options.maxBatchBytes(maxBatchBytes);
+      }
+
+      /**
+       * @see ProducerOptions#linger(long)
+       */
+      public static ProducerOptions linger(long linger) {
+         ProducerOptions options = new ProducerOptions();
+         return options.linger(linger);
+      }
+
+      /**
+       * @see ProducerOptions#senders(int)
+       */
+      public static ProducerOptions senders(int senders) {
+         ProducerOptions options = new ProducerOptions();
+         return options.senders(senders);
+      }
+   }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.producer;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.openstack.marconi.v1.MarconiApi;
+import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
+import org.jclouds.openstack.marconi.v1.domain.MessagesCreated;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sends messages to queues in batches.
+ * <p/>
+ * Messages are buffered per queue and sent with a single {@link MessageApi#create} once
+ * {@link ProducerOptions#getBatchSize()} messages or {@link ProducerOptions#getMaxBatchBytes()} bytes are buffered,
+ * or {@link ProducerOptions#getLinger()} milliseconds after the first message of the batch, whichever comes first.
+ * The future returned for each message completes with its id, or fails with the error of its batch. When the queue
+ * creates only part of a batch, the futures of the messages created complete and only the others fail.
+ * <p/>
+ * Example:
+ * <pre>
+ * QueueProducer producer = new QueueProducer(api, "DFW", clientId, ProducerOptions.NONE);
+ * ListenableFuture&lt;String&gt; id = producer.send("jobs", CreateMessage.builder().ttl(300).body(json).build());
+ * ...
+ * producer.close();
+ * </pre>
+ */
+public class QueueProducer implements Closeable {
+
+   /**
+    * Bytes a message adds to the request body besides its body, for {@code {"ttl": 1209600, "body": }}.
+    */
+   private static final int MESSAGE_OVERHEAD = 32;
+
+   private final LoadingCache<String, MessageApi> messageApis;
+   private final ProducerOptions options;
+   private final ScheduledExecutorService lingerTimer;
+   private final ExecutorService senders;
+   private final Map<String, Batch> batches = Maps.newHashMap();
+
+   private final AtomicLong requests = new AtomicLong();
+   private boolean closed;
+
+   public QueueProducer(final MarconiApi api, final String region, final UUID clientId, ProducerOptions options) {
+      this(new Function<String, MessageApi>() {
+         @Override
+         public MessageApi apply(String queue) {
+            return api.getMessageApi(region, clientId, queue);
+         }
+      }, options);
+   }
+
+   @VisibleForTesting
+   QueueProducer(Function<String, MessageApi> messageApis, ProducerOptions options) {
+      this.messageApis = CacheBuilder.newBuilder().build(CacheLoader.from(checkNotNull(messageApis, "messageApis")));
+      this.options = checkNotNull(options, "options");
+      this.lingerTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("marconi-producer-linger").setDaemon(true).build());
+      this.senders = Executors.newFixedThreadPool(options.getSenders(), new ThreadFactoryBuilder()
+            .setNameFormat("marconi-producer-sender-%d").setDaemon(true).build());
+   }
+
+   /**
+    * Buffers a message to be sent to {@code queue}.
+    *
+    * @return The id of the message once it is created. The future fails if the queue does not exist, the message
+    *         alone is larger than {@link ProducerOptions#getMaxBatchBytes()}, or its batch could not be sent.
+    */
+   public ListenableFuture<String> send(final String queue, CreateMessage message) {
+      checkNotNull(queue, "queue");
+      checkNotNull(message, "message");
+      SettableFuture<String> id = SettableFuture.create();
+      int bytes = message.getBody().getBytes(UTF_8).length + MESSAGE_OVERHEAD;
+      if (bytes > options.getMaxBatchBytes()) {
+         id.setException(new IllegalArgumentException(String.format(
+               "message of %d bytes exceeds maxBatchBytes %d", bytes, options.getMaxBatchBytes())));
+         return id;
+      }
+      synchronized (this) {
+         checkState(!closed, "producer is closed");
+         Batch batch = batches.get(queue);
+         if (batch != null && batch.bytes + bytes > options.getMaxBatchBytes()) {
+            dispatch(batches.remove(queue));
+            batch = null;
+         }
+         if (batch == null) {
+            batch = new Batch(queue);
+            batches.put(queue, batch);
+            final Batch lingering = batch;
+            lingerTimer.schedule(new Runnable() {
+               @Override
+               public void run() {
+                  synchronized (QueueProducer.this) {
+                     if (batches.get(queue) != lingering) {
+                        return;
+                     }
+                     batches.remove(queue);
+                  }
+                  dispatch(lingering);
+               }
+            }, options.getLinger(), TimeUnit.MILLISECONDS);
+         }
+         batch.add(message, id, bytes);
+         if (batch.messages.size() >= options.getBatchSize()) {
+            dispatch(batches.remove(queue));
+         }
+      }
+      return id;
+   }
+
+   /**
+    * Sends every buffered message without waiting for its batch to fill.
+    */
+   public void flush() {
+      List<Batch> toSend;
+      synchronized (this) {
+         toSend = ImmutableList.copyOf(batches.values());
+         batches.clear();
+      }
+      for (Batch batch : toSend) {
+         dispatch(batch);
+      }
+   }
+
+   /**
+    * @return The number of create requests sent.
+    */
+   public long getRequests() {
+      return requests.get();
+   }
+
+   /**
+    * Sends the buffered messages and waits for every batch to be sent.
+    */
+   @Override
+   public void close() {
+      synchronized (this) {
+         closed = true;
+      }
+      flush();
+      lingerTimer.shutdownNow();
+      senders.shutdown();
+      try {
+         senders.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private void dispatch(final Batch batch) {
+      senders.execute(new Runnable() {
+         @Override
+         public void run() {
+            batch.send();
+         }
+      });
+   }
+
+   private class Batch {
+      private final String queue;
+      private final List<CreateMessage> messages = Lists.newArrayList();
+      private final List<SettableFuture<String>> ids = Lists.newArrayList();
+      private int bytes;
+
+      private Batch(String queue) {
+         this.queue = queue;
+      }
+
+      private void add(CreateMessage message, SettableFuture<String> id, int messageBytes) {
+         messages.add(message);
+         ids.add(id);
+         bytes += messageBytes;
+      }
+
+      private void send() {
+         try {
+            requests.incrementAndGet();
+            MessagesCreated created = messageApis.getUnchecked(queue).create(messages);
+            checkState(created != null, "queue %s does not exist", queue);
+            List<String> messageIds = created.getMessageIds();
+            if (created.isPartial()) {
+               checkArgument(messageIds.size() <= ids.size(), "%s ids returned for %s messages",
+                     messageIds.size(), ids.size());
+            } else {
+               checkArgument(messageIds.size() == ids.size(), "%s ids returned for %s messages",
+                     messageIds.size(), ids.size());
+            }
+            // the messages created are listed first, in the order they were sent
+            for (int i = 0; i < messageIds.size(); i++) {
+               ids.get(i).set(messageIds.get(i));
+            }
+            for (int i = messageIds.size(); i < ids.size(); i++) {
+               ids.get(i).setException(new IllegalStateException(String.format(
+                     "queue %s created only %s of %s messages", queue, messageIds.size(), ids.size())));
+            }
+         } catch (RuntimeException e) {
+            for (SettableFuture<String> id : ids) {
+               id.setException(e);
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.codec;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+
+@Test(groups = "unit", testName = "EnvelopeBodyCodecTest")
+public class EnvelopeBodyCodecTest {
+
+   private static final byte[] REPETITIVE = Strings.repeat("{\"event\":\"login\",\"user\":\"bob\"}", 100).getBytes(UTF_8);
+
+   public void testRoundTripWithoutCompression() {
+      EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().contentType("application/x-protobuf").build();
+
+      String body = codec.encode(ByteBuffer.wrap(new byte[] { 0, 1, 2, (byte) 0xff }));
+
+      assertEquals(body, "{\"content_type\":\"application/x-protobuf\",\"content_encoding\":\"identity\","
+            + "\"data\":\"AAEC/w==\"}");
+      assertEquals(codec.decode(body), ByteBuffer.wrap(new byte[] { 0, 1, 2, (byte) 0xff }));
+   }
+
+   public void testDeflateShrinksRepetitivePayloads() {
+      EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().deflate().build();
+
+      String body = codec.encode(ByteBuffer.wrap(REPETITIVE));
+
+      assertTrue(body.contains("\"content_encoding\":\"deflate\""), body);
+      assertTrue(body.length() < REPETITIVE.length / 4, "body of " + body.length() + " bytes");
+      assertEquals(codec.decode(body), ByteBuffer.wrap(REPETITIVE));
+   }
+
+   public void testIncompressiblePayloadIsNotDeflated() {
+      byte[] random = new byte[256];
+      new Random(42).nextBytes(random);
+      EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().deflate(9).build();
+
+      String body = codec.encode(ByteBuffer.wrap(random));
+
+      assertTrue(body.contains("\"content_encoding\":\"identity\""), body);
+      assertEquals(codec.decode(body), ByteBuffer.wrap(random));
+   }
+
+   public void testEncodesRemainingBytesOfAnyBuffer() {
+      EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().deflate().build();
+      ByteBuffer direct = ByteBuffer.allocateDirect(REPETITIVE.length);
+      direct.put(REPETITIVE).flip();
+      ByteBuffer slice = ByteBuffer.wrap(REPETITIVE, 10, 100);
+
+      assertEquals(codec.decode(codec.encode(direct)), ByteBuffer.wrap(REPETITIVE));
+      assertEquals(direct.position(), 0);
+      assertEquals(codec.decode(codec.encode(slice)), ByteBuffer.wrap(REPETITIVE, 10, 100));
+      assertEquals(slice.position(), 10);
+   }
+
+   public void testCreateMessage() {
+      EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().build();
+
+      CreateMessage message = codec.createMessage(300, ByteBuffer.wrap(new byte[] { 1 }));
+
+      assertEquals(message.getTTL(), 300);
+      assertEquals(codec.decode(message.getBody()), ByteBuffer.wrap(new byte[] { 1 }));
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testOtherContentTypeIsRejected() {
+      String body = EnvelopeBodyCodec.builder().contentType("application/json").build()
+            .encode(ByteBuffer.wrap(new byte[] { 1 }));
+
+      EnvelopeBodyCodec.builder().contentType("application/x-protobuf").build().decode(body);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testPlainJsonBodyIsRejected() {
+      EnvelopeBodyCodec.builder().build().decode("{\"event\":\"login\"}");
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testInflatingPastMaxDecodedSizeIsRejected() {
+      String body = EnvelopeBodyCodec.builder().deflate().build().encode(ByteBuffer.wrap(REPETITIVE));
+
+      EnvelopeBodyCodec.builder().maxDecodedSize(1000).build().decode(body);
+   }
+}
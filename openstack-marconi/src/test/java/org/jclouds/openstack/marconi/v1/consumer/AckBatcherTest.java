@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+@Test(groups = "unit", testName = "AckBatcherTest")
+public class AckBatcherTest {
+
+   public void testFullBatchIsDeletedAtOnce() throws Exception {
+      RecordingMessageApi api = new RecordingMessageApi();
+      AckBatcher acks = new AckBatcher(api.messageApi(), 3, 60000);
+
+      ListenableFuture<Boolean> first = acks.ack("a", "claim");
+      acks.ack("b", "claim");
+      assertFalse(first.isDone());
+      acks.ack("c", "claim");
+
+      assertTrue(first.get(1, TimeUnit.SECONDS));
+      assertEquals(api.deletes, ImmutableList.of("claim:a,b,c"));
+      acks.close();
+   }
+
+   public void testClaimsAreBatchedSeparately() throws Exception {
+      RecordingMessageApi api = new RecordingMessageApi();
+      AckBatcher acks = new AckBatcher(api.messageApi(), 20, 60000);
+
+      acks.ack("a", "one");
+      acks.ack("b", "two");
+      acks.ack("c", "one");
+      assertTrue(acks.flush("one").get(1, TimeUnit.SECONDS));
+
+      assertEquals(api.deletes, ImmutableList.of("one:a,c"));
+      acks.close();
+      assertEquals(api.deletes, ImmutableList.of("one:a,c", "two:b"));
+   }
+
+   public void testDeadlineSendsPartialBatch() throws Exception {
+      RecordingMessageApi api = new RecordingMessageApi();
+      AckBatcher acks = new AckBatcher(api.messageApi(), 20, 10);
+
+      ListenableFuture<Boolean> deleted = acks.ack("a", "claim");
+
+      assertTrue(deleted.get(5, TimeUnit.SECONDS));
+      assertEquals(api.deletes, ImmutableList.of("claim:a"));
+      acks.close();
+   }
+
+   public void testLongIdsAreSplitToFitQueryLength() throws Exception {
+      RecordingMessageApi api = new RecordingMessageApi();
+      String claimId = Strings.repeat("c", 24);
+      // ids=<24>,<24>&claim_id=<24> is 87 characters, a third id makes it 112
+      AckBatcher acks = new AckBatcher(api.messageApi(), 20, 60000, 100);
+
+      for (int i = 0; i < 5; i++) {
+         acks.ack(Strings.repeat(String.valueOf(i), 24), claimId);
+      }
+      assertTrue(acks.flush(claimId).get(1, TimeUnit.SECONDS));
+
+      assertEquals(api.deletes.size(), 3);
+      for (String delete : api.deletes) {
+         String query = "ids=" + delete.substring(claimId.length() + 1) + "&claim_id=" + claimId;
+         assertTrue(query.length() <= 100, query);
+      }
+      acks.close();
+   }
+
+   public void testFlushReportsFailedDeletes() throws Exception {
+      RecordingMessageApi api = new RecordingMessageApi();
+      api.result = false;
+      AckBatcher acks = new AckBatcher(api.messageApi(), 1, 60000);
+
+      acks.ack("a", "expired");
+
+      assertFalse(acks.flush("expired").get(1, TimeUnit.SECONDS));
+      acks.close();
+   }
+
+   public void testErrorsFailEveryAckOfTheBatch() throws Exception {
+      RecordingMessageApi api = new RecordingMessageApi();
+      api.error = new IllegalStateException("503");
+      AckBatcher acks = new AckBatcher(api.messageApi(), 2, 60000);
+
+      ListenableFuture<Boolean> first = acks.ack("a", "claim");
+      ListenableFuture<Boolean> second = acks.ack("b", "claim");
+
+      for (ListenableFuture<Boolean> future : ImmutableList.of(first, second)) {
+         try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("expected failure");
+         } catch (ExecutionException e) {
+            assertEquals(e.getCause(), api.error);
+         }
+      }
+      acks.close();
+   }
+
+   private static class RecordingMessageApi {
+      private final List<String> deletes = Lists.newCopyOnWriteArrayList();
+      private volatile boolean result = true;
+      private volatile RuntimeException error;
+
+      MessageApi messageApi() {
+         MessageApi messageApi = createMock(MessageApi.class);
+         expect(messageApi.deleteByClaim(EasyMock.<Iterable<String>> anyObject(), anyString())).andAnswer(
+               new IAnswer<Boolean>() {
+                  @Override
+                  public Boolean answer() {
+                     if (error != null) {
+                        throw error;
+                     }
+                     StringBuilder ids = new StringBuilder();
+                     for (Object id : (Iterable<?>) getCurrentArguments()[0]) {
+                        ids.append(ids.length() == 0 ? "" : ",").append(id);
+                     }
+                     deletes.add(getCurrentArguments()[1] + ":" + ids);
+                     return result;
+                  }
+               }).anyTimes();
+         replay(messageApi);
+         return messageApi;
+      }
+   }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.easymock.IAnswer;
+import org.jclouds.openstack.marconi.v1.consumer.ClaimLeaseManager.Lease;
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+@Test(groups = "unit", testName = "ClaimLeaseManagerTest")
+public class ClaimLeaseManagerTest {
+
+   public void testRenewAllExtendsEveryLease() {
+      FakeClaims claims = new FakeClaims();
+      ClaimLeaseManager leases = new ClaimLeaseManager(300);
+      for (String claimId : ImmutableList.of("a", "b", "c")) {
+         leases.acquire(claims.api(), claimId);
+      }
+
+      leases.renewAll();
+
+      assertEquals(ImmutableSet.copyOf(claims.updated), ImmutableSet.of("a", "b", "c"));
+      assertEquals(leases.getRenewals(), 3);
+      assertEquals(leases.getActiveLeases(), 3);
+      leases.close();
+   }
+
+   public void testGoneClaimIsLost() {
+      FakeClaims claims = new FakeClaims();
+      claims.gone.add("b");
+      ClaimLeaseManager leases = new ClaimLeaseManager(300);
+      Lease a = leases.acquire(claims.api(), "a");
+      Lease b = leases.acquire(claims.api(), "b");
+
+      leases.renewAll();
+
+      assertTrue(a.isHeld());
+      assertFalse(b.isHeld());
+      assertEquals(leases.getLostLeases(), 1);
+      assertEquals(leases.getActiveLeases(), 1);
+      leases.close();
+      // a lost claim is not released
+      assertEquals(claims.released, ImmutableList.of("a"));
+   }
+
+   public void testFailedRenewalIsRetried() {
+      FakeClaims claims = new FakeClaims();
+      claims.failing.add("a");
+      ClaimLeaseManager leases = new ClaimLeaseManager(300);
+      Lease a = leases.acquire(claims.api(), "a");
+
+      leases.renewAll();
+      assertTrue(a.isHeld());
+      assertEquals(leases.getRenewalFailures(), 1);
+
+      claims.failing.clear();
+      leases.renewAll();
+      assertEquals(leases.getRenewals(), 1);
+      leases.close();
+   }
+
+   public void testReleaseReleasesOnce() {
+      FakeClaims claims = new FakeClaims();
+      ClaimLeaseManager leases = new ClaimLeaseManager(300);
+      Lease a = leases.acquire(claims.api(), "a");
+
+      a.release();
+      a.release();
+      leases.renewAll();
+
+      assertFalse(a.isHeld());
+      assertEquals(claims.released, ImmutableList.of("a"));
+      assertEquals(claims.updated, ImmutableList.of());
+      assertEquals(leases.getReleasedLeases(), 1);
+      assertEquals(leases.getActiveLeases(), 0);
+      leases.close();
+   }
+
+   public void testCloseReleasesHeldLeases() {
+      FakeClaims claims = new FakeClaims();
+      ClaimLeaseManager leases = new ClaimLeaseManager(300);
+      leases.acquire(claims.api(), "a");
+      leases.acquire(claims.api(), "b");
+
+      leases.close();
+
+      assertEquals(ImmutableSet.copyOf(claims.released), ImmutableSet.of("a", "b"));
+      assertEquals(leases.getActiveLeases(), 0);
+   }
+
+   private static class FakeClaims {
+      private final List<String> updated = Lists.newCopyOnWriteArrayList();
+      private final List<String> released = Lists.newCopyOnWriteArrayList();
+      private final Set<String> gone = Sets.newConcurrentHashSet();
+      private final Set<String> failing = Sets.newConcurrentHashSet();
+
+      private ClaimApi api() {
+         ClaimApi claimApi = createMock(ClaimApi.class);
+         expect(claimApi.update(anyString(), anyInt())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               String claimId = (String) getCurrentArguments()[0];
+               if (failing.contains(claimId)) {
+                  throw new IllegalStateException("503");
+               }
+               if (gone.contains(claimId)) {
+                  return false;
+               }
+               updated.add(claimId);
+               return true;
+            }
+         }).anyTimes();
+         expect(claimApi.release(anyString())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               released.add((String) getCurrentArguments()[0]);
+               return true;
+            }
+         }).anyTimes();
+         replay(claimApi);
+         return claimApi;
+      }
+   }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.IAnswer;
+import org.jclouds.openstack.marconi.v1.consumer.QueueConsumerTest.FakeQueue;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.domain.MessagesStats;
+import org.jclouds.openstack.marconi.v1.domain.QueueStats;
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.jclouds.openstack.marconi.v1.features.QueueApi;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+@Test(groups = "unit", testName = "MultiQueueConsumerTest")
+public class MultiQueueConsumerTest {
+
+   public void testDrainsEveryQueue() throws Exception {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("hot", 60, "warm", 7, "cold", 0));
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, MultiQueueOptions.Builder.workers(4).queueConcurrency(2).idleDelay(10).statsInterval(0));
+
+      consumer.start();
+      try {
+         for (FakeQueue queue : queues.queues.values()) {
+            assertTrue(queue.awaitEmpty(5, TimeUnit.SECONDS));
+         }
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getProcessed(), 67);
+      assertEquals(consumer.getProcessed("hot"), 60);
+      assertEquals(consumer.getProcessed("warm"), 7);
+      assertEquals(consumer.getFailed(), 0);
+      assertEquals(consumer.getActiveClaims(), 0);
+   }
+
+   public void testBusyQueueDoesNotStarveOthers() throws Exception {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("hot", 100, "cold", 3));
+      final CountDownLatch unblock = new CountDownLatch(1);
+      final AtomicInteger hotInFlight = new AtomicInteger();
+      final AtomicInteger hotMaxInFlight = new AtomicInteger();
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) throws Exception {
+            if (Integer.parseInt(message.getBody()) < 100) {
+               int inFlight = hotInFlight.incrementAndGet();
+               synchronized (hotMaxInFlight) {
+                  hotMaxInFlight.set(Math.max(hotMaxInFlight.get(), inFlight));
+               }
+               unblock.await();
+               hotInFlight.decrementAndGet();
+            }
+         }
+      }, MultiQueueOptions.Builder.workers(4).idleDelay(10).statsInterval(0), ImmutableMap.of("hot", 3));
+
+      consumer.start();
+      try {
+         // the hot queue holds three workers while blocked, the cold one drains with the last
+         assertTrue(queues.queues.get("cold").awaitEmpty(5, TimeUnit.SECONDS));
+         assertEquals(hotMaxInFlight.get(), 3);
+      } finally {
+         unblock.countDown();
+      }
+      try {
+         assertTrue(queues.queues.get("hot").awaitEmpty(5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(hotMaxInFlight.get(), 3);
+      assertEquals(consumer.getProcessed(), 103);
+   }
+
+   public void testStatsWakeIdleQueue() throws Exception {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("jobs", 0));
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, MultiQueueOptions.Builder.idleDelay(60000).statsInterval(0));
+      FakeQueue jobs = queues.queues.get("jobs");
+
+      consumer.start();
+      try {
+         assertTrue(jobs.awaitClaimRequests(1, 5, TimeUnit.SECONDS));
+         for (int i = 0; i < 5; i++) {
+            jobs.add(String.valueOf(i));
+         }
+         Thread.sleep(100);
+         // backed off for at least 30 seconds
+         assertEquals(jobs.claimRequests.get(), 1);
+         assertEquals(consumer.getEmptyClaims(), 1);
+
+         consumer.refreshStats();
+         assertTrue(jobs.awaitEmpty(5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getProcessed(), 5);
+   }
+
+   public void testMessagesNotDeletedAreNotCounted() throws Exception {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("jobs", 4));
+      FakeQueue jobs = queues.queues.get("jobs");
+      jobs.rejectDeletes = true;
+      final CountDownLatch done = new CountDownLatch(4);
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+            done.countDown();
+         }
+      }, MultiQueueOptions.Builder.limit(4).idleDelay(60000).statsInterval(0));
+
+      consumer.start();
+      try {
+         assertTrue(done.await(5, TimeUnit.SECONDS));
+         assertTrue(jobs.awaitReleased(1, 5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getProcessed(), 0);
+      assertEquals(consumer.getProcessed("jobs"), 0);
+      assertEquals(consumer.getFailed(), 0);
+      assertEquals(jobs.messages.size(), 4);
+   }
+
+   public void testDeletesInBatchesPerClaim() throws Exception {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("jobs", 10));
+      FakeQueue jobs = queues.queues.get("jobs");
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, MultiQueueOptions.Builder.limit(10).workers(10).queueConcurrency(10).ackBatchSize(3).ackDelay(60000)
+            .idleDelay(60000).statsInterval(0));
+
+      consumer.start();
+      try {
+         assertTrue(jobs.awaitEmpty(5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      // three full batches, and the last message when the claim is flushed
+      assertEquals(jobs.deleteRequests.get(), 4);
+      assertEquals(consumer.getProcessed(), 10);
+   }
+
+   public void testClaimsAfterTheWorkerReleasedThePreviousClaim() throws Exception {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("jobs", 20));
+      FakeQueue jobs = queues.queues.get("jobs");
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, MultiQueueOptions.Builder.limit(1).workers(1).idleDelay(10).statsInterval(0));
+
+      consumer.start();
+      try {
+         assertTrue(jobs.awaitEmpty(5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      // the only worker is busy until its claim is deleted and released
+      assertEquals(jobs.maxUnreleasedClaims, 0);
+      assertEquals(consumer.getProcessed(), 20);
+   }
+
+   public void testReadsStatsOfAFewQueuesInTurn() {
+      FakeQueues queues = new FakeQueues(ImmutableMap.of("a", 0, "b", 0, "c", 0, "d", 0, "e", 0));
+      MultiQueueConsumer consumer = queues.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, MultiQueueOptions.Builder.statsInterval(0).statsSampleSize(2));
+      try {
+         consumer.refreshStats();
+         consumer.refreshStats();
+         consumer.refreshStats();
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(queues.statsRequests, ImmutableList.of("a", "b", "c", "d", "e", "a"));
+   }
+
+   /**
+    * Fake queues whose messages are numbered across queues, so that the handler can tell them apart.
+    */
+   private static class FakeQueues {
+      private final Map<String, FakeQueue> queues;
+      private final List<String> statsRequests = Lists.newCopyOnWriteArrayList();
+
+      private FakeQueues(Map<String, Integer> sizes) {
+         ImmutableMap.Builder<String, FakeQueue> builder = ImmutableMap.builder();
+         int first = 0;
+         for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+            FakeQueue queue = new FakeQueue(0);
+            for (int i = first; i < first + size.getValue(); i++) {
+               queue.add(String.valueOf(i));
+            }
+            first += size.getValue();
+            builder.put(size.getKey(), queue);
+         }
+         this.queues = builder.build();
+      }
+
+      private MultiQueueConsumer consumer(MessageHandler handler, MultiQueueOptions options) {
+         return consumer(handler, options, ImmutableMap.<String, Integer> of());
+      }
+
+      private MultiQueueConsumer consumer(MessageHandler handler, MultiQueueOptions options,
+            Map<String, Integer> concurrency) {
+         MultiQueueConsumer consumer = new MultiQueueConsumer(new Function<String, ClaimApi>() {
+            @Override
+            public ClaimApi apply(String queue) {
+               return queues.get(queue).claimApi();
+            }
+         }, new Function<String, MessageApi>() {
+            @Override
+            public MessageApi apply(String queue) {
+               return queues.get(queue).messageApi();
+            }
+         }, queueApi(), handler, options);
+         for (String queue : queues.keySet()) {
+            if (concurrency.containsKey(queue)) {
+               consumer.addQueue(queue, concurrency.get(queue));
+            } else {
+               consumer.addQueue(queue);
+            }
+         }
+         return consumer;
+      }
+
+      private QueueApi queueApi() {
+         QueueApi queueApi = createMock(QueueApi.class);
+         expect(queueApi.getStats(anyString())).andAnswer(new IAnswer<QueueStats>() {
+            @Override
+            public QueueStats answer() {
+               statsRequests.add((String) getCurrentArguments()[0]);
+               FakeQueue queue = queues.get(getCurrentArguments()[0]);
+               int free = queue.messages.size() - queue.claimOf.size();
+               return QueueStats.builder().messageStats(MessagesStats.builder().free(free)
+                     .claimed(queue.claimOf.size()).total(queue.messages.size()).build()).build();
+            }
+         }).anyTimes();
+         replay(queueApi);
+         return queueApi;
+      }
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions.Builder.limit;
+import static org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions.Builder.marker;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IAnswer;
+import org.jclouds.collect.IterableWithMarker;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.domain.MessageStream;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions;
+import org.jclouds.openstack.v2_0.domain.Link;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+@Test(groups = "unit", testName = "PrefetchingMessageStreamTest")
+public class PrefetchingMessageStreamTest {
+
+   public void testConcatReadsEveryPageUntilEmpty() {
+      FakeStream fake = new FakeStream(3, 2);
+      PrefetchingMessageStream stream = new PrefetchingMessageStream(fake.api(), limit(2));
+
+      List<String> ids = Lists.newArrayList();
+      for (Message message : stream.concat()) {
+         ids.add(message.getId());
+      }
+      stream.close();
+
+      assertEquals(ids, ImmutableList.of("0", "1", "2", "3", "4", "5"));
+      assertEquals(fake.markers, Lists.newArrayList(null, "2", "4", "6"));
+   }
+
+   public void testEmptyQueueEndsAfterOneRequest() {
+      FakeStream fake = new FakeStream(0, 2);
+      PrefetchingMessageStream stream = new PrefetchingMessageStream(fake.api(), StreamMessagesOptions.NONE);
+
+      assertTrue(stream.concat().isEmpty());
+      stream.close();
+
+      assertEquals(fake.markers.size(), 1);
+   }
+
+   public void testResumesFromMarker() {
+      FakeStream fake = new FakeStream(3, 2);
+      PrefetchingMessageStream stream = new PrefetchingMessageStream(fake.api(), marker("4"));
+
+      assertEquals(stream.concat().transform(TO_ID).toList(), ImmutableList.of("4", "5"));
+      stream.close();
+   }
+
+   public void testNextPageIsFetchedWhileCurrentIsConsumed() throws Exception {
+      FakeStream fake = new FakeStream(2, 2);
+      PrefetchingMessageStream stream = new PrefetchingMessageStream(fake.api(), limit(2));
+
+      Iterator<IterableWithMarker<Message>> pages = stream.iterator();
+      MessageStream first = (MessageStream) pages.next();
+      assertTrue(fake.fetched.await(5, TimeUnit.SECONDS), "second page was not prefetched");
+      assertEquals(first.nextStreamOptions().getMarker(), "2");
+
+      assertEquals(ImmutableList.copyOf(pages.next()).size(), 2);
+      assertFalse(pages.hasNext());
+      stream.close();
+   }
+
+   public void testFailedPrefetchIsThrownWhenReached() {
+      FakeStream fake = new FakeStream(3, 2);
+      fake.failAt = "2";
+      PrefetchingMessageStream stream = new PrefetchingMessageStream(fake.api(), limit(2));
+
+      Iterator<IterableWithMarker<Message>> pages = stream.iterator();
+      pages.next();
+      try {
+         pages.next();
+         fail("expected the error of the prefetch");
+      } catch (IllegalStateException e) {
+         assertEquals(e.getMessage(), "marker 2");
+      }
+      stream.close();
+   }
+
+   private static final Function<Message, String> TO_ID = new Function<Message, String>() {
+      @Override
+      public String apply(Message input) {
+         return input.getId();
+      }
+   };
+
+   /**
+    * Serves {@code pages} pages of {@code pageSize} messages with numeric ids; the marker is the next id.
+    */
+   private static class FakeStream {
+      private final int total;
+      private final int pageSize;
+      private final List<String> markers = Lists.newArrayList();
+      private final CountDownLatch fetched = new CountDownLatch(2);
+      private volatile String failAt;
+
+      private FakeStream(int pages, int pageSize) {
+         this.total = pages * pageSize;
+         this.pageSize = pageSize;
+      }
+
+      private MessageApi api() {
+         MessageApi messageApi = createMock(MessageApi.class);
+         expect(messageApi.stream(anyObject(StreamMessagesOptions.class))).andAnswer(new IAnswer<MessageStream>() {
+            @Override
+            public MessageStream answer() {
+               StreamMessagesOptions options = (StreamMessagesOptions) getCurrentArguments()[0];
+               return stream(options.buildQueryParameters().containsKey("marker") ? options.getMarker() : null);
+            }
+         }).anyTimes();
+         replay(messageApi);
+         return messageApi;
+      }
+
+      private synchronized MessageStream stream(String marker) {
+         markers.add(marker);
+         fetched.countDown();
+         if (marker != null && marker.equals(failAt)) {
+            throw new IllegalStateException("marker " + marker);
+         }
+         int start = marker == null ? 0 : Integer.parseInt(marker);
+         if (start >= total) {
+            return new MessageStream(ImmutableSet.<Message> of(), ImmutableSet.<Link> of()) { };
+         }
+         List<Message> messages = Lists.newArrayList();
+         for (int i = start; i < Math.min(start + pageSize, total); i++) {
+            messages.add(Message.builder().id(Integer.toString(i)).ttl(60).body("{}").age(0).build());
+         }
+         int next = start + messages.size();
+         Link link = Link.create(Link.Relation.NEXT,
+               URI.create("/v1/queues/audit/messages?marker=" + next + "&limit=" + pageSize));
+         return new MessageStream(messages, ImmutableSet.of(link)) { };
+      }
+   }
+}
@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.consumer;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+@Test(groups = "unit", testName = "QueueConsumerTest")
+public class QueueConsumerTest {
+
+   public void testProcessesAndDeletesEveryMessage() throws Exception {
+      FakeQueue queue = new FakeQueue(100);
+      final Set<String> handled = Sets.newConcurrentHashSet();
+      QueueConsumer consumer = queue.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+            handled.add(message.getBody());
+         }
+      }, ConsumerOptions.Builder.workers(4).prefetch(3).idleDelay(10));
+
+      consumer.start();
+      try {
+         assertTrue(queue.awaitEmpty(5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(handled.size(), 100);
+      assertEquals(consumer.getProcessed(), 100);
+      assertEquals(consumer.getFailed(), 0);
+      assertEquals(Sets.newHashSet(queue.released), Sets.newHashSet(queue.claimed));
+      assertEquals(consumer.getActiveClaims(), 0);
+   }
+
+   public void testFailedMessagesAreLeftAndClaimReleased() throws Exception {
+      FakeQueue queue = new FakeQueue(4);
+      final Set<String> handled = Sets.newConcurrentHashSet();
+      final CountDownLatch done = new CountDownLatch(3);
+      QueueConsumer consumer = queue.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) throws Exception {
+            if (message.getBody().equals("1")) {
+               throw new Exception("boom");
+            }
+            if (handled.add(message.getBody())) {
+               done.countDown();
+            }
+         }
+      }, ConsumerOptions.Builder.limit(4).prefetch(1).idleDelay(10000));
+
+      consumer.start();
+      try {
+         assertTrue(done.await(5, TimeUnit.SECONDS));
+         assertTrue(queue.awaitReleased(1, 5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getProcessed(), 3);
+      // the released message may have been claimed and failed again since
+      assertTrue(consumer.getFailed() >= 1);
+      assertEquals(ImmutableList.copyOf(queue.messages.keySet()), ImmutableList.of("1"));
+   }
+
+   public void testFailureReleasesClaimWithoutWaitingForBatch() throws Exception {
+      final FakeQueue queue = new FakeQueue(2);
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch handled = new CountDownLatch(1);
+      final AtomicBoolean releasedWhileHandling = new AtomicBoolean();
+      QueueConsumer consumer = queue.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) throws Exception {
+            if (message.getBody().equals("1")) {
+               // fail while the other message of the claim is being handled
+               started.await(5, TimeUnit.SECONDS);
+               throw new Exception("boom");
+            }
+            started.countDown();
+            releasedWhileHandling.set(queue.awaitReleased(1, 5, TimeUnit.SECONDS));
+            handled.countDown();
+         }
+      }, ConsumerOptions.Builder.limit(2).prefetch(1).workers(2).idleDelay(10000));
+
+      consumer.start();
+      try {
+         assertTrue(handled.await(10, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertTrue(releasedWhileHandling.get());
+      // handled after its claim was released, so deleted without it
+      assertEquals(consumer.getProcessed(), 1);
+      assertEquals(ImmutableList.copyOf(queue.messages.keySet()), ImmutableList.of("1"));
+   }
+
+   public void testMessagesNotDeletedAreNotCounted() throws Exception {
+      FakeQueue queue = new FakeQueue(4);
+      queue.rejectDeletes = true;
+      final CountDownLatch done = new CountDownLatch(4);
+      QueueConsumer consumer = queue.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+            done.countDown();
+         }
+      }, ConsumerOptions.Builder.limit(4).prefetch(1).idleDelay(10000));
+
+      consumer.start();
+      try {
+         assertTrue(done.await(5, TimeUnit.SECONDS));
+         assertTrue(queue.awaitReleased(1, 5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getProcessed(), 0);
+      assertEquals(consumer.getFailed(), 0);
+      assertEquals(queue.messages.size(), 4);
+   }
+
+   public void testKeepsPrefetchClaimsOutstanding() throws Exception {
+      FakeQueue queue = new FakeQueue(40);
+      final CountDownLatch release = new CountDownLatch(1);
+      QueueConsumer consumer = queue.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) throws Exception {
+            release.await();
+         }
+      }, ConsumerOptions.Builder.limit(5).prefetch(3).workers(2).idleDelay(10));
+
+      consumer.start();
+      try {
+         assertTrue(queue.awaitClaims(3, 5, TimeUnit.SECONDS));
+         Thread.sleep(100);
+         // no more claims while all three are busy
+         assertEquals(queue.claimed.size(), 3);
+         assertEquals(consumer.getActiveClaims(), 3);
+
+         consumer.renewClaims();
+         assertEquals(Sets.newHashSet(queue.renewed), Sets.newHashSet(queue.claimed));
+      } finally {
+         release.countDown();
+         consumer.close();
+      }
+   }
+
+   public void testClaimFailuresAreRetried() throws Exception {
+      FakeQueue queue = new FakeQueue(3);
+      queue.claimFailures.set(2);
+      QueueConsumer consumer = queue.consumer(new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, ConsumerOptions.Builder.idleDelay(10));
+
+      consumer.start();
+      try {
+         assertTrue(queue.awaitEmpty(5, TimeUnit.SECONDS));
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getClaimFailures(), 2);
+   }
+
+   public void testBacksOffWhileEmptyAndResumesOnMessages() throws Exception {
+      FakeQueue queue = new FakeQueue(0);
+      final BlockingQueue<Long> sleeps = new LinkedBlockingQueue<Long>();
+      QueueConsumer consumer = new QueueConsumer(queue.claimApi(), queue.messageApi(), "test", new MessageHandler() {
+         @Override
+         public void handle(Message message) {
+         }
+      }, ConsumerOptions.Builder.limit(1).idleDelay(10).maxIdleDelay(300)) {
+         @Override
+         void sleep(long millis) throws InterruptedException {
+            // records the delay instead of waiting it out
+            sleeps.put(millis);
+            Thread.sleep(1);
+         }
+      };
+
+      consumer.start();
+      try {
+         // each delay is jittered down by up to half
+         for (long delay : new long[] { 10, 20, 40, 80, 160, 300, 300 }) {
+            Long slept = sleeps.poll(5, TimeUnit.SECONDS);
+            assertNotNull(slept);
+            assertTrue(slept >= delay / 2 && slept <= delay, slept + " after " + delay);
+         }
+         assertTrue(consumer.getEmptyClaims() >= 7);
+
+         for (int i = 0; i < 30; i++) {
+            queue.add(String.valueOf(i));
+         }
+         assertTrue(queue.awaitEmpty(5, TimeUnit.SECONDS));
+         // the claims that returned messages brought the delay back to the initial one
+         Long slept;
+         do {
+            slept = sleeps.poll(5, TimeUnit.SECONDS);
+         } while (slept != null && slept > 10);
+         assertNotNull(slept);
+      } finally {
+         consumer.close();
+      }
+
+      assertEquals(consumer.getProcessed(), 30);
+   }
+
+   /**
+    * A queue in memory answering claims from the messages neither claimed nor deleted.
+    */
+   static class FakeQueue {
+      final Map<String, String> messages = Maps.newConcurrentMap();
+      final Map<String, String> claimOf = Maps.newConcurrentMap();
+      final List<String> claimed = Lists.newCopyOnWriteArrayList();
+      final List<String> released = Lists.newCopyOnWriteArrayList();
+      final ConcurrentLinkedQueue<String> renewed = new ConcurrentLinkedQueue<String>();
+      final AtomicInteger claimFailures = new AtomicInteger();
+      final AtomicInteger claimRequests = new AtomicInteger();
+      final AtomicInteger deleteRequests = new AtomicInteger();
+      volatile boolean rejectDeletes;
+      int maxUnreleasedClaims;
+      private int nextClaim;
+
+      FakeQueue(int size) {
+         for (int i = 0; i < size; i++) {
+            messages.put(String.valueOf(i), String.valueOf(i));
+         }
+      }
+
+      QueueConsumer consumer(MessageHandler handler, ConsumerOptions options) {
+         return new QueueConsumer(claimApi(), messageApi(), "test", handler, options);
+      }
+
+      synchronized void add(String id) {
+         messages.put(id, id);
+      }
+
+      synchronized List<Message> claim(int limit) {
+         claimRequests.incrementAndGet();
+         maxUnreleasedClaims = Math.max(maxUnreleasedClaims, claimed.size() - released.size());
+         if (claimFailures.getAndDecrement() > 0) {
+            throw new IllegalStateException("503");
+         }
+         String claimId = "claim-" + nextClaim++;
+         List<Message> batch = Lists.newArrayList();
+         for (Map.Entry<String, String> entry : messages.entrySet()) {
+            if (batch.size() < limit && !claimOf.containsKey(entry.getKey())) {
+               claimOf.put(entry.getKey(), claimId);
+               batch.add(Message.builder().id(entry.getKey()).body(entry.getValue()).claimId(claimId).build());
+            }
+         }
+         if (!batch.isEmpty()) {
+            claimed.add(claimId);
+         }
+         notifyAll();
+         return batch;
+      }
+
+      synchronized boolean delete(String id, String claimId) {
+         if (rejectDeletes || !claimId.equals(claimOf.get(id))) {
+            return false;
+         }
+         messages.remove(id);
+         claimOf.remove(id);
+         notifyAll();
+         return true;
+      }
+
+      synchronized boolean delete(String id) {
+         if (rejectDeletes) {
+            return false;
+         }
+         messages.remove(id);
+         claimOf.remove(id);
+         notifyAll();
+         return true;
+      }
+
+      synchronized boolean release(String claimId) {
+         claimOf.values().removeAll(ImmutableList.of(claimId));
+         released.add(claimId);
+         notifyAll();
+         return true;
+      }
+
+      synchronized boolean awaitEmpty(long timeout, TimeUnit unit) throws InterruptedException {
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         while (!messages.isEmpty() || released.size() < claimed.size()) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) {
+               return false;
+            }
+            wait(left);
+         }
+         return true;
+      }
+
+      synchronized boolean awaitClaims(int count, long timeout, TimeUnit unit) throws InterruptedException {
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         while (claimed.size() < count) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) {
+               return false;
+            }
+            wait(left);
+         }
+         return true;
+      }
+
+      synchronized boolean awaitClaimRequests(int count, long timeout, TimeUnit unit) throws InterruptedException {
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         while (claimRequests.get() < count) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) {
+               return false;
+            }
+            wait(left);
+         }
+         return true;
+      }
+
+      synchronized boolean awaitReleased(int count, long timeout, TimeUnit unit) throws InterruptedException {
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         while (released.size() < count) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) {
+               return false;
+            }
+            wait(left);
+         }
+         return true;
+      }
+
+      ClaimApi claimApi() {
+         ClaimApi claimApi = createMock(ClaimApi.class);
+         expect(claimApi.claim(anyInt(), anyInt(), anyInt())).andAnswer(new IAnswer<List<Message>>() {
+            @Override
+            public List<Message> answer() {
+               return claim((Integer) getCurrentArguments()[2]);
+            }
+         }).anyTimes();
+         expect(claimApi.update(anyString(), anyInt())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               renewed.add((String) getCurrentArguments()[0]);
+               return true;
+            }
+         }).anyTimes();
+         expect(claimApi.release(anyString())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               return release((String) getCurrentArguments()[0]);
+            }
+         }).anyTimes();
+         replay(claimApi);
+         return claimApi;
+      }
+
+      MessageApi messageApi() {
+         MessageApi messageApi = createMock(MessageApi.class);
+         expect(messageApi.deleteByClaim(anyString(), anyString())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               return delete((String) getCurrentArguments()[0], (String) getCurrentArguments()[1]);
+            }
+         }).anyTimes();
+         expect(messageApi.deleteByClaim(EasyMock.<Iterable<String>> anyObject(), anyString())).andAnswer(
+               new IAnswer<Boolean>() {
+                  @Override
+                  public Boolean answer() {
+                     deleteRequests.incrementAndGet();
+                     boolean deleted = true;
+                     for (Object id : (Iterable<?>) getCurrentArguments()[0]) {
+                        deleted &= delete((String) id, (String) getCurrentArguments()[1]);
+                     }
+                     return deleted;
+                  }
+               }).anyTimes();
+         expect(messageApi.delete(EasyMock.<Iterable<String>> anyObject())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               boolean deleted = true;
+               for (Object id : (Iterable<?>) getCurrentArguments()[0]) {
+                  deleted &= delete((String) id);
+               }
+               return deleted;
+            }
+         }).anyTimes();
+         replay(messageApi);
+         return messageApi;
+      }
+   }
+}
@@ -21,6 +21,7 @@ import com.google.common.collect.Iterables;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import org.jclouds.openstack.marconi.v1.MarconiApi;
+import org.jclouds.openstack.marconi.v1.codec.EnvelopeBodyCodec;
 import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
 import org.jclouds.openstack.marconi.v1.domain.Message;
 import org.jclouds.openstack.marconi.v1.domain.MessageStream;
@@ -28,6 +29,7 @@ import org.jclouds.openstack.marconi.v1.domain.MessagesCreated;
 import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.UUID;
 
@@ -93,6 +95,7 @@ public class MessageApiMockTest extends BaseOpenStackMockTest<MarconiApi> {
          assertTrue(messagesCreated.getMessageIds().contains("5265540ef4919b655da1760a"));
          assertTrue(messagesCreated.getMessageIds().contains("5265540ef4919b655da1760b"));
          assertTrue(messagesCreated.getMessageIds().contains("5265540ef4919b655da1760c"));
+         assertFalse(messagesCreated.isPartial());
 
          assertEquals(server.getRequestCount(), 2);
          assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
@@ -103,6 +106,29 @@ public class MessageApiMockTest extends BaseOpenStackMockTest<MarconiApi> {
       }
    }
 
+   public void createMessagesPartially() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(new MockResponse().setBody(accessRackspace));
+      server.enqueue(new MockResponse().setResponseCode(201).setBody("{\"partial\": true, \"resources\": [\"/v1/queues/jclouds-test/messages/5265540ef4919b655da1760a\"]}"));
+
+      try {
+         MarconiApi api = api(server.getUrl("/").toString(), "openstack-marconi");
+         MessageApi messageApi = api.getMessageApi("DFW", CLIENT_ID, "jclouds-test");
+
+         CreateMessage createMessage1 = CreateMessage.builder().ttl(120).body("{\"n\":1}").build();
+         CreateMessage createMessage2 = CreateMessage.builder().ttl(120).body("{\"n\":2}").build();
+
+         MessagesCreated messagesCreated = messageApi.create(ImmutableList.of(createMessage1, createMessage2));
+
+         assertNotNull(messagesCreated);
+         assertTrue(messagesCreated.isPartial());
+         assertEquals(messagesCreated.getMessageIds(), ImmutableList.of("5265540ef4919b655da1760a"));
+      }
+      finally {
+         server.shutdown();
+      }
+   }
+
    public void streamZeroPagesOfMessages() throws Exception {
       MockWebServer server = mockOpenStackServer();
       server.enqueue(new MockResponse().setBody(accessRackspace));
@@ -245,6 +271,52 @@ public class MessageApiMockTest extends BaseOpenStackMockTest<MarconiApi> {
       }
    }
 
+   public void createAndGetEnvelopeMessage() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(new MockResponse().setBody(accessRackspace));
+      server.enqueue(new MockResponse().setResponseCode(201).setBody("{\"partial\": false, \"resources\": [\"/v1/queues/jclouds-test/messages/526550ecef913e655ff84db8\"]}"));
+      server.enqueue(new MockResponse().setResponseCode(200).setBody("{\"body\": {\"content_type\": \"application/x-protobuf\", \"content_encoding\": \"identity\", \"data\": \"AQID\"}, \"age\": 266, \"href\": \"/v1/queues/jclouds-test/messages/526550ecef913e655ff84db8\", \"ttl\": 120}"));
+
+      try {
+         MarconiApi api = api(server.getUrl("/").toString(), "openstack-marconi");
+         MessageApi messageApi = api.getMessageApi("DFW", CLIENT_ID, "jclouds-test");
+         EnvelopeBodyCodec codec = EnvelopeBodyCodec.builder().contentType("application/x-protobuf").build();
+
+         messageApi.create(ImmutableList.of(codec.createMessage(120, ByteBuffer.wrap(new byte[] { 1, 2, 3 }))));
+         Message message = messageApi.get("526550ecef913e655ff84db8");
+
+         assertEquals(codec.decode(message), ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         // the envelope is the body itself, not a JSON string holding it
+         assertEquals(server.takeRequest().getUtf8Body(), "[{\"ttl\":120,\"body\":{\"content_type\":\"application/x-protobuf\",\"content_encoding\":\"identity\",\"data\":\"AQID\"}}]");
+      }
+      finally {
+         server.shutdown();
+      }
+   }
+
+   public void createMessageWithStringBodyEscapesIt() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(new MockResponse().setBody(accessRackspace));
+      server.enqueue(new MockResponse().setResponseCode(201).setBody("{\"partial\": false, \"resources\": [\"/v1/queues/jclouds-test/messages/526550ecef913e655ff84db8\"]}"));
+
+      try {
+         MarconiApi api = api(server.getUrl("/").toString(), "openstack-marconi");
+         MessageApi messageApi = api.getMessageApi("DFW", CLIENT_ID, "jclouds-test");
+
+         messageApi.create(ImmutableList.of(CreateMessage.builder().ttl(120).body("{\"event\": \"BackupStarted\"}").build()));
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getUtf8Body(), "[{\"ttl\":120,\"body\":\"{\\\"event\\\": \\\"BackupStarted\\\"}\"}]");
+      }
+      finally {
+         server.shutdown();
+      }
+   }
+
    public void deleteMessages() throws Exception {
       MockWebServer server = mockOpenStackServer();
       server.enqueue(new MockResponse().setBody(accessRackspace));
@@ -289,4 +361,27 @@ public class MessageApiMockTest extends BaseOpenStackMockTest<MarconiApi> {
          server.shutdown();
       }
    }
+
+   public void deleteMessagesByClaimId() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(new MockResponse().setBody(accessRackspace));
+      server.enqueue(new MockResponse().setResponseCode(204));
+
+      try {
+         MarconiApi api = api(server.getUrl("/").toString(), "openstack-marconi");
+         MessageApi messageApi = api.getMessageApi("DFW", CLIENT_ID, "jclouds-test");
+         List<String> ids = ImmutableList.of("52936b8a3ac24e6ef4c067dd", "5292b30cef913e6d026f4dec");
+
+         boolean success = messageApi.deleteByClaim(ids, "52a64d30ef913e6d05e7f786");
+
+         assertTrue(success);
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "DELETE /v1/123123/queues/jclouds-test/messages?claim_id=52a64d30ef913e6d05e7f786&ids=52936b8a3ac24e6ef4c067dd,5292b30cef913e6d026f4dec HTTP/1.1");
+      }
+      finally {
+         server.shutdown();
+      }
+   }
 }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.functions;
+
+import static org.jclouds.openstack.marconi.v1.functions.ParseMessagesToStream.TO_ID_FROM_HREF;
+import static org.jclouds.openstack.marconi.v1.functions.ParseMessagesToStream.TO_MESSAGE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import org.jclouds.domain.JsonBall;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.functions.ParseMessagesToStream.MessageWithHref;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "ParseMessagesToStreamTest")
+public class ParseMessagesToStreamTest {
+
+   public void testIdAndClaimIdFromHref() {
+      Message message = TO_MESSAGE.apply(new MessageWithHref(
+            "/v1/queues/jobs/messages/52a64d30ef913e6d05e7f785?claim_id=52a64d30ef913e6d05e7f786", 60, new JsonBall("{}"), 3));
+
+      assertEquals(message.getClass(), Message.class);
+      assertEquals(message.getId(), "52a64d30ef913e6d05e7f785");
+      assertEquals(message.getClaimId().get(), "52a64d30ef913e6d05e7f786");
+      assertEquals(message.getTTL(), 60);
+      assertEquals(message.getBody(), "{}");
+      assertEquals(message.getAge(), 3);
+   }
+
+   public void testClaimIdAfterOtherParameters() {
+      Message message = TO_MESSAGE.apply(new MessageWithHref(
+            "/v1/queues/jobs/messages/52a6?echo=true&claim_id=a%2Fb&limit=2", 60, new JsonBall("{}"), 0));
+
+      assertEquals(message.getId(), "52a6");
+      assertEquals(message.getClaimId().get(), "a/b");
+   }
+
+   public void testNoClaimId() {
+      assertFalse(TO_MESSAGE.apply(new MessageWithHref("/v1/queues/jobs/messages/52a6", 60, new JsonBall("{}"), 0))
+            .getClaimId().isPresent());
+      assertFalse(TO_MESSAGE.apply(new MessageWithHref("/v1/queues/jobs/messages/52a6?not_claim_id=1", 60, new JsonBall("{}"), 0))
+            .getClaimId().isPresent());
+   }
+
+   public void testBodyPostedAsStringOrDocument() {
+      assertEquals(TO_MESSAGE.apply(new MessageWithHref("/v1/queues/jobs/messages/52a6", 60,
+            new JsonBall("\"{\\\"event\\\":1}\""), 0)).getBody(), "{\"event\":1}");
+      assertEquals(TO_MESSAGE.apply(new MessageWithHref("/v1/queues/jobs/messages/52a6", 60,
+            new JsonBall("{\"event\":1}"), 0)).getBody(), "{\"event\":1}");
+   }
+
+   public void testIdFromHref() {
+      assertEquals(TO_ID_FROM_HREF.apply("/v1/queues/jobs/claims/52a8d23eb04a584f1bbd4f47"), "52a8d23eb04a584f1bbd4f47");
+      assertEquals(TO_ID_FROM_HREF.apply("52a6?claim_id=x/y"), "52a6");
+   }
+}
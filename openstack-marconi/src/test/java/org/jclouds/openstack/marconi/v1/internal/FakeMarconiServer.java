@@ -0,0 +1,604 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jclouds.http.utils.Queries.queryParser;
+import static org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest.accessRackspace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * A Marconi v1 server in memory, for end-to-end tests and benchmarks of producers and consumers without a cloud.
+ * <p/>
+ * Unlike the canned responses of the mock tests, it keeps state: queues with metadata, messages that expire after
+ * their TTL, claims that expire after theirs and extend the life of their messages by their grace, stats, and
+ * paging links. Streams leave out the messages posted with the same {@code Client-ID} unless {@code echo=true}, and
+ * the claimed ones unless {@code include_claimed=true}. Deleting a claimed message takes its live claim id, as in
+ * Marconi, so consumers whose claims expired see the same 403 they would in production.
+ * <p/>
+ * Time can be moved forward with {@link #elapse(long, TimeUnit)} to expire claims and messages on demand. Every
+ * request is served under one lock, which is plenty for a client running on the same machine.
+ * <p/>
+ * Example:
+ * <pre>
+ * FakeMarconiServer server = new FakeMarconiServer();
+ * MarconiApi api = api(server.getEndpoint(), "openstack-marconi");
+ * api.getQueueApi("DFW", clientId).create("jobs");
+ * ...
+ * server.close();
+ * </pre>
+ */
+public class FakeMarconiServer implements Closeable {
+
+   private static final Pattern URL_TOKEN = Pattern.compile(":\\s*\"\\s*URL");
+   private static final Pattern PATH = Pattern.compile(
+         "/v1/[^/]+/queues(?:/([^/?]+)(?:/(metadata|stats|messages|claims)(?:/([^/?]+))?)?)?");
+   private static final int MAX_LIMIT = 20;
+   private static final int DEFAULT_LIMIT = 10;
+
+   private final MockWebServer server = new MockWebServer();
+   private final String endpoint;
+   private final NavigableMap<String, StoredQueue> queues = Maps.newTreeMap();
+   private final AtomicLong requests = new AtomicLong();
+   private long clockOffset;
+   private long nextId;
+
+   public FakeMarconiServer() throws IOException {
+      server.setDispatcher(new Dispatcher() {
+         @Override
+         public MockResponse dispatch(RecordedRequest request) {
+            requests.incrementAndGet();
+            try {
+               return FakeMarconiServer.this.dispatch(request);
+            } catch (IllegalArgumentException e) {
+               return json(400, error(e.getMessage()));
+            }
+         }
+      });
+      server.play();
+      this.endpoint = server.getUrl("/").toString();
+   }
+
+   /**
+    * @return The identity endpoint to build a {@code MarconiApi} with. Its catalog points every region here.
+    */
+   public String getEndpoint() {
+      return endpoint;
+   }
+
+   /**
+    * @return The number of requests served, including authentication.
+    */
+   public long getRequestCount() {
+      return requests.get();
+   }
+
+   /**
+    * Moves the clock of the server forward, expiring the claims and messages whose time is up.
+    */
+   public synchronized void elapse(long duration, TimeUnit unit) {
+      clockOffset += unit.toMillis(duration);
+   }
+
+   /**
+    * @return The number of messages of {@code queue} that have not expired or been deleted.
+    */
+   public synchronized int size(String queue) {
+      StoredQueue stored = queues.get(queue);
+      if (stored == null) {
+         return 0;
+      }
+      purge(stored);
+      return stored.messages.size();
+   }
+
+   @Override
+   public void close() throws IOException {
+      server.shutdown();
+   }
+
+   private synchronized MockResponse dispatch(RecordedRequest request) {
+      String method = request.getMethod();
+      String path = request.getPath();
+      int question = path.indexOf('?');
+      Multimap<String, String> query = queryParser().apply(question == -1 ? "" : path.substring(question + 1));
+      path = question == -1 ? path : path.substring(0, question);
+
+      if (path.equals("/tokens") && method.equals("POST")) {
+         return json(200, URL_TOKEN.matcher(accessRackspace).replaceAll(
+               ": \"" + Matcher.quoteReplacement(endpoint.substring(0, endpoint.length() - 1))));
+      }
+      Matcher matcher = PATH.matcher(path);
+      if (!matcher.matches()) {
+         return new MockResponse().setResponseCode(404);
+      }
+      String name = matcher.group(1);
+      String resource = matcher.group(2);
+      String id = matcher.group(3);
+      if (name == null) {
+         return method.equals("GET") ? listQueues(query) : status(405);
+      }
+      if (resource == null) {
+         return queue(method, name);
+      }
+      StoredQueue queue = queues.get(name);
+      if (queue == null) {
+         return status(404);
+      }
+      purge(queue);
+      if (resource.equals("metadata")) {
+         return metadata(method, queue, request);
+      } else if (resource.equals("stats")) {
+         return method.equals("GET") ? stats(queue) : status(405);
+      } else if (resource.equals("messages")) {
+         return id == null ? messages(method, queue, query, request) : message(method, queue, id, query);
+      } else {
+         return id == null ? (method.equals("POST") ? claim(queue, query, request) : status(405))
+               : claimById(method, queue, id, request);
+      }
+   }
+
+   private MockResponse queue(String method, String name) {
+      if (method.equals("PUT")) {
+         if (queues.containsKey(name)) {
+            return status(204);
+         }
+         queues.put(name, new StoredQueue(name));
+         return status(201);
+      } else if (method.equals("DELETE")) {
+         queues.remove(name);
+         return status(204);
+      } else if (method.equals("GET") || method.equals("HEAD")) {
+         return status(queues.containsKey(name) ? 204 : 404);
+      }
+      return status(405);
+   }
+
+   private MockResponse listQueues(Multimap<String, String> query) {
+      int limit = limit(query);
+      String marker = first(query, "marker");
+      boolean detailed = Boolean.parseBoolean(first(query, "detailed"));
+      NavigableMap<String, StoredQueue> after = marker == null ? queues : queues.tailMap(marker, false);
+      JsonArray page = new JsonArray();
+      String last = null;
+      for (StoredQueue queue : Iterables.limit(after.values(), limit)) {
+         JsonObject item = new JsonObject();
+         item.addProperty("href", "/v1/queues/" + queue.name);
+         item.addProperty("name", queue.name);
+         if (detailed) {
+            item.add("metadata", queue.metadata);
+         }
+         page.add(item);
+         last = queue.name;
+      }
+      if (last == null) {
+         return status(204);
+      }
+      JsonObject body = new JsonObject();
+      body.add("queues", page);
+      body.add("links", nextLink("/v1/queues?marker=" + last + "&limit=" + limit + (detailed ? "&detailed=true" : "")));
+      return json(200, body);
+   }
+
+   private MockResponse metadata(String method, StoredQueue queue, RecordedRequest request) {
+      if (method.equals("PUT")) {
+         JsonElement metadata = parse(request);
+         checkArgument(metadata.isJsonObject(), "metadata must be an object");
+         queue.metadata = metadata.getAsJsonObject();
+         return status(204);
+      } else if (method.equals("GET")) {
+         return json(200, queue.metadata);
+      }
+      return status(405);
+   }
+
+   private MockResponse stats(StoredQueue queue) {
+      long now = now();
+      int claimed = 0;
+      StoredMessage oldest = null;
+      StoredMessage newest = null;
+      for (StoredMessage message : queue.messages.values()) {
+         if (message.isClaimed(now)) {
+            claimed++;
+         }
+         if (oldest == null) {
+            oldest = message;
+         }
+         newest = message;
+      }
+      JsonObject messages = new JsonObject();
+      messages.addProperty("claimed", claimed);
+      messages.addProperty("free", queue.messages.size() - claimed);
+      messages.addProperty("total", queue.messages.size());
+      if (oldest != null) {
+         messages.add("oldest", aged(queue, oldest, now));
+         messages.add("newest", aged(queue, newest, now));
+      }
+      JsonObject body = new JsonObject();
+      body.add("messages", messages);
+      return json(200, body);
+   }
+
+   private MockResponse messages(String method, StoredQueue queue, Multimap<String, String> query,
+         RecordedRequest request) {
+      String ids = first(query, "ids");
+      if (method.equals("POST")) {
+         return post(queue, request);
+      } else if (method.equals("GET") && ids != null) {
+         JsonArray found = new JsonArray();
+         for (String id : Splitter.on(',').split(ids)) {
+            StoredMessage message = queue.byId.get(id);
+            if (message != null) {
+               found.add(view(queue, message, now(), false));
+            }
+         }
+         return found.size() == 0 ? status(204) : json(200, found);
+      } else if (method.equals("GET")) {
+         return stream(queue, query, request.getHeader("Client-ID"));
+      } else if (method.equals("DELETE") && ids != null) {
+         return delete(queue, Splitter.on(',').split(ids), first(query, "claim_id"));
+      }
+      return status(405);
+   }
+
+   private MockResponse post(StoredQueue queue, RecordedRequest request) {
+      String clientId = request.getHeader("Client-ID");
+      checkArgument(clientId != null, "Client-ID header required");
+      JsonElement created = parse(request);
+      checkArgument(created.isJsonArray() && created.getAsJsonArray().size() > 0, "messages must be a list");
+      long now = now();
+      JsonArray resources = new JsonArray();
+      for (JsonElement element : created.getAsJsonArray()) {
+         JsonObject create = element.getAsJsonObject();
+         checkArgument(create.has("ttl") && create.has("body"), "message needs ttl and body");
+         long seq = ++nextId;
+         StoredMessage message = new StoredMessage(String.format("%024x", seq), seq, create.get("ttl").getAsInt(),
+               create.get("body"), clientId, now);
+         queue.messages.put(seq, message);
+         queue.byId.put(message.id, message);
+         resources.add(new JsonPrimitive(href(queue, message)));
+      }
+      JsonObject body = new JsonObject();
+      body.addProperty("partial", false);
+      body.add("resources", resources);
+      return json(201, body);
+   }
+
+   private MockResponse stream(StoredQueue queue, Multimap<String, String> query, String clientId) {
+      int limit = limit(query);
+      String marker = first(query, "marker");
+      boolean echo = Boolean.parseBoolean(first(query, "echo"));
+      boolean includeClaimed = Boolean.parseBoolean(first(query, "include_claimed"));
+      long now = now();
+      JsonArray page = new JsonArray();
+      long last = marker == null ? 0 : Long.parseLong(marker);
+      for (StoredMessage message : queue.messages.tailMap(last, false).values()) {
+         if (page.size() == limit) {
+            break;
+         }
+         if ((echo || !message.clientId.equals(clientId)) && (includeClaimed || !message.isClaimed(now))) {
+            page.add(view(queue, message, now, false));
+            last = message.seq;
+         }
+      }
+      if (page.size() == 0) {
+         return status(204);
+      }
+      JsonObject body = new JsonObject();
+      body.add("messages", page);
+      body.add("links", nextLink("/v1/queues/" + queue.name + "/messages?marker=" + last + "&limit=" + limit
+            + (echo ? "&echo=true" : "") + (includeClaimed ? "&include_claimed=true" : "")));
+      return json(200, body);
+   }
+
+   private MockResponse message(String method, StoredQueue queue, String id, Multimap<String, String> query) {
+      StoredMessage message = queue.byId.get(id);
+      if (method.equals("GET")) {
+         return message == null ? status(404) : json(200, view(queue, message, now(), false));
+      } else if (method.equals("DELETE")) {
+         return delete(queue, Lists.newArrayList(id), first(query, "claim_id"));
+      }
+      return status(405);
+   }
+
+   /**
+    * Deletes messages if none is held by a live claim other than {@code claimId}.
+    */
+   private MockResponse delete(StoredQueue queue, Iterable<String> ids, String claimId) {
+      long now = now();
+      List<StoredMessage> found = Lists.newArrayList();
+      for (String id : ids) {
+         StoredMessage message = queue.byId.get(id);
+         if (message == null) {
+            continue;
+         }
+         if (message.isClaimed(now) ? !message.claim.id.equals(claimId) : claimId != null) {
+            return json(403, error("message " + id + " is not claimed by " + claimId));
+         }
+         found.add(message);
+      }
+      for (StoredMessage message : found) {
+         remove(queue, message);
+      }
+      return status(204);
+   }
+
+   private MockResponse claim(StoredQueue queue, Multimap<String, String> query, RecordedRequest request) {
+      JsonObject body = parse(request).getAsJsonObject();
+      int ttl = body.get("ttl").getAsInt();
+      int grace = body.get("grace").getAsInt();
+      int limit = limit(query);
+      long now = now();
+      StoredClaim claim = new StoredClaim(String.format("%024x", ++nextId), ttl, grace, now);
+      for (StoredMessage message : queue.messages.values()) {
+         if (claim.messages.size() == limit) {
+            break;
+         }
+         if (!message.isClaimed(now)) {
+            message.claim = claim;
+            claim.messages.add(message);
+         }
+      }
+      if (claim.messages.isEmpty()) {
+         return status(204);
+      }
+      queue.claims.put(claim.id, claim);
+      claim.extend(now);
+      return json(201, claimedMessages(queue, claim, now));
+   }
+
+   private MockResponse claimById(String method, StoredQueue queue, String id, RecordedRequest request) {
+      long now = now();
+      StoredClaim claim = queue.claims.get(id);
+      if (claim == null || claim.expiresAt <= now) {
+         return status(404);
+      }
+      if (method.equals("GET")) {
+         JsonObject body = new JsonObject();
+         body.addProperty("age", (now - claim.createdAt) / 1000);
+         body.addProperty("ttl", claim.ttl);
+         body.addProperty("href", "/v1/queues/" + queue.name + "/claims/" + claim.id);
+         body.add("messages", claimedMessages(queue, claim, now));
+         return json(200, body);
+      } else if (method.equals("PATCH")) {
+         JsonObject body = parse(request).getAsJsonObject();
+         if (body.has("ttl")) {
+            claim.ttl = body.get("ttl").getAsInt();
+         }
+         if (body.has("grace")) {
+            claim.grace = body.get("grace").getAsInt();
+         }
+         claim.extend(now);
+         return status(204);
+      } else if (method.equals("DELETE")) {
+         release(queue, claim);
+         return status(204);
+      }
+      return status(405);
+   }
+
+   private JsonArray claimedMessages(StoredQueue queue, StoredClaim claim, long now) {
+      JsonArray messages = new JsonArray();
+      for (StoredMessage message : claim.messages) {
+         messages.add(view(queue, message, now, true));
+      }
+      return messages;
+   }
+
+   /**
+    * Drops the expired messages and claims of a queue.
+    */
+   private void purge(StoredQueue queue) {
+      long now = now();
+      for (Iterator<StoredClaim> claims = queue.claims.values().iterator(); claims.hasNext();) {
+         StoredClaim claim = claims.next();
+         if (claim.expiresAt <= now) {
+            claims.remove();
+            release(queue, claim);
+         }
+      }
+      for (Iterator<StoredMessage> messages = queue.messages.values().iterator(); messages.hasNext();) {
+         StoredMessage message = messages.next();
+         if (message.expiresAt <= now) {
+            messages.remove();
+            queue.byId.remove(message.id);
+            if (message.claim != null) {
+               message.claim.messages.remove(message);
+            }
+         }
+      }
+   }
+
+   private void release(StoredQueue queue, StoredClaim claim) {
+      queue.claims.remove(claim.id);
+      for (StoredMessage message : claim.messages) {
+         if (message.claim == claim) {
+            message.claim = null;
+         }
+      }
+      claim.messages.clear();
+   }
+
+   private void remove(StoredQueue queue, StoredMessage message) {
+      queue.messages.remove(message.seq);
+      queue.byId.remove(message.id);
+      if (message.claim != null) {
+         message.claim.messages.remove(message);
+      }
+   }
+
+   private long now() {
+      return System.currentTimeMillis() + clockOffset;
+   }
+
+   private static JsonObject view(StoredQueue queue, StoredMessage message, long now, boolean withClaim) {
+      JsonObject view = new JsonObject();
+      view.addProperty("href", href(queue, message)
+            + (withClaim && message.claim != null ? "?claim_id=" + message.claim.id : ""));
+      view.addProperty("ttl", message.ttl);
+      view.addProperty("age", (now - message.createdAt) / 1000);
+      view.add("body", message.body);
+      return view;
+   }
+
+   private static JsonObject aged(StoredQueue queue, StoredMessage message, long now) {
+      SimpleDateFormat iso8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+      iso8601.setTimeZone(TimeZone.getTimeZone("UTC"));
+      JsonObject aged = new JsonObject();
+      aged.addProperty("age", (now - message.createdAt) / 1000);
+      aged.addProperty("href", href(queue, message));
+      aged.addProperty("created", iso8601.format(new Date(message.createdAt)));
+      return aged;
+   }
+
+   private static String href(StoredQueue queue, StoredMessage message) {
+      return "/v1/queues/" + queue.name + "/messages/" + message.id;
+   }
+
+   private static JsonArray nextLink(String href) {
+      JsonObject link = new JsonObject();
+      link.addProperty("href", href);
+      link.addProperty("rel", "next");
+      JsonArray links = new JsonArray();
+      links.add(link);
+      return links;
+   }
+
+   private static int limit(Multimap<String, String> query) {
+      String limit = first(query, "limit");
+      int value = limit == null ? DEFAULT_LIMIT : Integer.parseInt(limit);
+      checkArgument(value >= 1 && value <= MAX_LIMIT, "limit must be between 1 and %s", MAX_LIMIT);
+      return value;
+   }
+
+   private static String first(Multimap<String, String> query, String key) {
+      return Iterables.getFirst(query.get(key), null);
+   }
+
+   private static JsonElement parse(RecordedRequest request) {
+      return new JsonParser().parse(request.getUtf8Body());
+   }
+
+   private static JsonObject error(String description) {
+      JsonObject error = new JsonObject();
+      error.addProperty("description", description);
+      return error;
+   }
+
+   private static MockResponse status(int code) {
+      return new MockResponse().setResponseCode(code);
+   }
+
+   private static MockResponse json(int code, Object body) {
+      return new MockResponse().setResponseCode(code).addHeader("Content-Type", "application/json")
+            .setBody(body.toString());
+   }
+
+   private static class StoredQueue {
+      private final String name;
+      private final NavigableMap<Long, StoredMessage> messages = Maps.newTreeMap();
+      private final Map<String, StoredMessage> byId = Maps.newHashMap();
+      private final Map<String, StoredClaim> claims = Maps.newHashMap();
+      private JsonObject metadata = new JsonObject();
+
+      private StoredQueue(String name) {
+         this.name = name;
+      }
+   }
+
+   private static class StoredMessage {
+      private final String id;
+      private final long seq;
+      private final int ttl;
+      private final JsonElement body;
+      private final String clientId;
+      private final long createdAt;
+      private long expiresAt;
+      private StoredClaim claim;
+
+      private StoredMessage(String id, long seq, int ttl, JsonElement body, String clientId, long createdAt) {
+         this.id = id;
+         this.seq = seq;
+         this.ttl = ttl;
+         this.body = body;
+         this.clientId = clientId;
+         this.createdAt = createdAt;
+         this.expiresAt = createdAt + TimeUnit.SECONDS.toMillis(ttl);
+      }
+
+      private boolean isClaimed(long now) {
+         return claim != null && claim.expiresAt > now;
+      }
+   }
+
+   private static class StoredClaim {
+      private final String id;
+      private final long createdAt;
+      private final Set<StoredMessage> messages = Sets.newLinkedHashSet();
+      private int ttl;
+      private int grace;
+      private long expiresAt;
+
+      private StoredClaim(String id, int ttl, int grace, long createdAt) {
+         this.id = id;
+         this.ttl = ttl;
+         this.grace = grace;
+         this.createdAt = createdAt;
+      }
+
+      /**
+       * Restarts the TTL of the claim, and keeps its messages alive for at least the grace period after it.
+       */
+      private void extend(long now) {
+         expiresAt = now + TimeUnit.SECONDS.toMillis(ttl);
+         long keep = expiresAt + TimeUnit.SECONDS.toMillis(grace);
+         for (StoredMessage message : messages) {
+            message.expiresAt = Math.max(message.expiresAt, keep);
+         }
+      }
+   }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.internal;
+
+import static org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions.Builder.echo;
+import static org.jclouds.openstack.marconi.v1.options.StreamMessagesOptions.Builder.limit;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.openstack.marconi.v1.MarconiApi;
+import org.jclouds.openstack.marconi.v1.consumer.ConsumerOptions;
+import org.jclouds.openstack.marconi.v1.consumer.MessageHandler;
+import org.jclouds.openstack.marconi.v1.consumer.QueueConsumer;
+import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
+import org.jclouds.openstack.marconi.v1.domain.Message;
+import org.jclouds.openstack.marconi.v1.domain.MessageStream;
+import org.jclouds.openstack.marconi.v1.domain.MessagesStats;
+import org.jclouds.openstack.marconi.v1.features.ClaimApi;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.jclouds.openstack.marconi.v1.features.QueueApi;
+import org.jclouds.openstack.marconi.v1.producer.ProducerOptions;
+import org.jclouds.openstack.marconi.v1.producer.QueueProducer;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+@Test(groups = "unit", testName = "FakeMarconiServerTest")
+public class FakeMarconiServerTest extends BaseOpenStackMockTest<MarconiApi> {
+   private static final UUID PRODUCER = UUID.fromString("3381af92-2b9e-11e3-b191-71861300734c");
+   private static final UUID CONSUMER = UUID.fromString("3381af92-2b9e-11e3-b191-71861300734d");
+
+   public void testQueuesAndStats() throws Exception {
+      FakeMarconiServer server = new FakeMarconiServer();
+      try {
+         MarconiApi api = api(server.getEndpoint(), "openstack-marconi");
+         QueueApi queueApi = api.getQueueApi("DFW", PRODUCER);
+
+         assertTrue(queueApi.create("jobs"));
+         assertTrue(queueApi.exists("jobs"));
+         assertFalse(queueApi.exists("other"));
+         assertEquals(queueApi.list(false).concat().size(), 1);
+
+         api.getMessageApi("DFW", PRODUCER, "jobs").create(ImmutableList.of(message("a"), message("b")));
+         api.getClaimApi("DFW", CONSUMER, "jobs").claim(300, 60, 1);
+         MessagesStats stats = queueApi.getStats("jobs").getMessagesStats();
+         assertEquals(stats.getTotal(), 2);
+         assertEquals(stats.getClaimed(), 1);
+         assertEquals(stats.getFree(), 1);
+         assertTrue(stats.getOldest().isPresent());
+
+         assertTrue(queueApi.delete("jobs"));
+         assertFalse(queueApi.exists("jobs"));
+      } finally {
+         server.close();
+      }
+   }
+
+   public void testStreamPagesAndEchoes() throws Exception {
+      FakeMarconiServer server = new FakeMarconiServer();
+      try {
+         MarconiApi api = api(server.getEndpoint(), "openstack-marconi");
+         api.getQueueApi("DFW", PRODUCER).create("jobs");
+         List<CreateMessage> created = Lists.newArrayList();
+         for (int i = 0; i < 5; i++) {
+            created.add(message("message-" + i));
+         }
+         api.getMessageApi("DFW", PRODUCER, "jobs").create(created);
+
+         assertTrue(api.getMessageApi("DFW", PRODUCER, "jobs").stream().isEmpty());
+
+         MessageApi messageApi = api.getMessageApi("DFW", CONSUMER, "jobs");
+         List<CreateMessage> bodies = Lists.newArrayList();
+         MessageStream page = messageApi.stream(limit(2));
+         while (!page.isEmpty()) {
+            for (Message message : page) {
+               bodies.add(CreateMessage.builder().ttl(3600).body(message.getBody()).build());
+            }
+            page = messageApi.stream(page.nextStreamOptions());
+         }
+         assertEquals(bodies, created);
+         assertEquals(api.getMessageApi("DFW", PRODUCER, "jobs").stream(echo(true)).size(), 5);
+      } finally {
+         server.close();
+      }
+   }
+
+   public void testProducerToConsumer() throws Exception {
+      FakeMarconiServer server = new FakeMarconiServer();
+      int count = 200;
+      final CountDownLatch handled = new CountDownLatch(count);
+      final Set<String> bodies = Sets.newConcurrentHashSet();
+      try {
+         MarconiApi api = api(server.getEndpoint(), "openstack-marconi");
+         api.getQueueApi("DFW", PRODUCER).create("jobs");
+         QueueProducer producer = new QueueProducer(api, "DFW", PRODUCER, ProducerOptions.Builder.batchSize(10));
+         QueueConsumer consumer = new QueueConsumer(api, "DFW", CONSUMER, "jobs", new MessageHandler() {
+            @Override
+            public void handle(Message message) {
+               bodies.add(message.getBody());
+               handled.countDown();
+            }
+         }, ConsumerOptions.Builder.limit(10).workers(4).idleDelay(10));
+         try {
+            consumer.start();
+            List<ListenableFuture<String>> sent = Lists.newArrayList();
+            for (int i = 0; i < count; i++) {
+               sent.add(producer.send("jobs", message("message-" + i)));
+            }
+            producer.flush();
+            assertEquals(Futures.allAsList(sent).get(10, TimeUnit.SECONDS).size(), count);
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+         } finally {
+            consumer.close();
+            producer.close();
+         }
+         assertEquals(bodies.size(), count);
+         assertEquals(consumer.getFailed(), 0);
+         assertEquals(server.size("jobs"), 0);
+      } finally {
+         server.close();
+      }
+   }
+
+   public void testExpiredClaimLosesItsMessages() throws Exception {
+      FakeMarconiServer server = new FakeMarconiServer();
+      try {
+         MarconiApi api = api(server.getEndpoint(), "openstack-marconi");
+         api.getQueueApi("DFW", PRODUCER).create("jobs");
+         api.getMessageApi("DFW", PRODUCER, "jobs").create(ImmutableList.of(message("a"), message("b")));
+         ClaimApi first = api.getClaimApi("DFW", CONSUMER, "jobs");
+         ClaimApi second = api.getClaimApi("DFW", PRODUCER, "jobs");
+
+         List<Message> claimed = first.claim(60, 60, 10);
+         assertEquals(claimed.size(), 2);
+         assertTrue(second.claim(60, 60, 10).isEmpty());
+         String claimId = claimed.get(0).getClaimId().get();
+         assertEquals(first.get(claimId).getMessages().size(), 2);
+
+         server.elapse(61, TimeUnit.SECONDS);
+         assertNull(first.get(claimId));
+         assertFalse(first.update(claimId, 60));
+
+         List<Message> reclaimed = second.claim(60, 60, 10);
+         assertEquals(ids(reclaimed), ids(claimed));
+         assertNotEquals(reclaimed.get(0).getClaimId().get(), claimId);
+
+         MessageApi messageApi = api.getMessageApi("DFW", CONSUMER, "jobs");
+         try {
+            messageApi.deleteByClaim(claimed.get(0).getId(), claimId);
+            throw new AssertionError("deleted a message held by another claim");
+         } catch (HttpResponseException expected) {
+            assertEquals(expected.getResponse().getStatusCode(), 403);
+         }
+         assertTrue(messageApi.deleteByClaim(ids(reclaimed), reclaimed.get(0).getClaimId().get()));
+         assertEquals(server.size("jobs"), 0);
+      } finally {
+         server.close();
+      }
+   }
+
+   public void testGraceKeepsClaimedMessagesAlive() throws Exception {
+      FakeMarconiServer server = new FakeMarconiServer();
+      try {
+         MarconiApi api = api(server.getEndpoint(), "openstack-marconi");
+         api.getQueueApi("DFW", PRODUCER).create("jobs");
+         api.getMessageApi("DFW", PRODUCER, "jobs").create(ImmutableList.of(
+               CreateMessage.builder().ttl(60).body("short").build()));
+         api.getClaimApi("DFW", CONSUMER, "jobs").claim(120, 60, 1);
+
+         server.elapse(150, TimeUnit.SECONDS);
+         assertEquals(server.size("jobs"), 1);
+         server.elapse(40, TimeUnit.SECONDS);
+         assertEquals(server.size("jobs"), 0);
+      } finally {
+         server.close();
+      }
+   }
+
+   private static CreateMessage message(String body) {
+      return CreateMessage.builder().ttl(3600).body(body).build();
+   }
+
+   private static Set<String> ids(List<Message> messages) {
+      ImmutableSet.Builder<String> ids = ImmutableSet.builder();
+      for (Message message : messages) {
+         ids.add(message.getId());
+      }
+      return ids.build();
+   }
+}
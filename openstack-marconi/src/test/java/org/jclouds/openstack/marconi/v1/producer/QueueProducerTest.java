@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.marconi.v1.producer;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.openstack.marconi.v1.domain.CreateMessage;
+import org.jclouds.openstack.marconi.v1.domain.MessagesCreated;
+import org.jclouds.openstack.marconi.v1.features.MessageApi;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+
+@Test(groups = "unit", testName = "QueueProducerTest")
+public class QueueProducerTest {
+
+   public void testFullBatchesAreSentTogether() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.linger(60000));
+
+      List<ListenableFuture<String>> ids = Lists.newArrayList();
+      for (int i = 0; i < 20; i++) {
+         ids.add(producer.send("jobs", message(i)));
+      }
+      for (int i = 0; i < 20; i++) {
+         assertEquals(ids.get(i).get(5, TimeUnit.SECONDS), "jobs-" + message(i).getBody());
+      }
+      producer.close();
+
+      assertEquals(producer.getRequests(), 2);
+      assertEquals(queues.batchSizes("jobs"), ImmutableList.of(10, 10));
+   }
+
+   public void testLingerSendsPartialBatch() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.linger(10));
+
+      ListenableFuture<String> first = producer.send("jobs", message(0));
+      ListenableFuture<String> second = producer.send("jobs", message(1));
+
+      assertEquals(first.get(5, TimeUnit.SECONDS), "jobs-" + message(0).getBody());
+      assertEquals(second.get(5, TimeUnit.SECONDS), "jobs-" + message(1).getBody());
+      assertEquals(queues.batchSizes("jobs"), ImmutableList.of(2));
+      producer.close();
+   }
+
+   public void testQueuesAreBatchedSeparately() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.linger(60000));
+
+      producer.send("a", message(0));
+      producer.send("b", message(1));
+      producer.send("a", message(2));
+      producer.close();
+
+      assertEquals(queues.batchSizes("a"), ImmutableList.of(2));
+      assertEquals(queues.batchSizes("b"), ImmutableList.of(1));
+   }
+
+   public void testByteLimitSplitsBatches() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      QueueProducer producer = new QueueProducer(queues,
+            ProducerOptions.Builder.linger(60000).maxBatchBytes(250));
+
+      for (int i = 0; i < 4; i++) {
+         producer.send("jobs", CreateMessage.builder().ttl(60).body("\"" + Strings.repeat("x", 80) + "\"").build());
+      }
+      producer.close();
+
+      assertEquals(queues.batchSizes("jobs"), ImmutableList.of(2, 2));
+   }
+
+   public void testOversizedMessageFails() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.maxBatchBytes(64));
+
+      ListenableFuture<String> id = producer.send("jobs",
+            CreateMessage.builder().ttl(60).body("\"" + Strings.repeat("x", 64) + "\"").build());
+      producer.close();
+
+      assertFailsWith(id, IllegalArgumentException.class);
+      assertEquals(producer.getRequests(), 0);
+   }
+
+   public void testBatchErrorFailsEveryMessage() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      queues.missing = "gone";
+      QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.linger(60000));
+
+      ListenableFuture<String> first = producer.send("gone", message(0));
+      ListenableFuture<String> second = producer.send("gone", message(1));
+      producer.close();
+
+      assertFailsWith(first, IllegalStateException.class);
+      assertFailsWith(second, IllegalStateException.class);
+   }
+
+   public void testPartialBatchFailsOnlyMessagesNotCreated() throws Exception {
+      FakeQueues queues = new FakeQueues();
+      queues.accepted = 2;
+      QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.linger(60000));
+
+      List<ListenableFuture<String>> ids = Lists.newArrayList();
+      for (int i = 0; i < 3; i++) {
+         ids.add(producer.send("jobs", message(i)));
+      }
+      producer.close();
+
+      assertEquals(ids.get(0).get(), "jobs-" + message(0).getBody());
+      assertEquals(ids.get(1).get(), "jobs-" + message(1).getBody());
+      assertFailsWith(ids.get(2), IllegalStateException.class);
+   }
+
+   public void testConcurrentSendersShareBatches() throws Exception {
+      final FakeQueues queues = new FakeQueues();
+      final QueueProducer producer = new QueueProducer(queues, ProducerOptions.Builder.linger(60000));
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicInteger sent = new AtomicInteger();
+      List<Thread> threads = Lists.newArrayList();
+      for (int t = 0; t < 10; t++) {
+         Thread thread = new Thread() {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+                  for (int i = 0; i < 10; i++) {
+                     producer.send("jobs", message(sent.getAndIncrement()));
+                  }
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         };
+         thread.start();
+         threads.add(thread);
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      producer.close();
+
+      assertEquals(producer.getRequests(), 10);
+      int total = 0;
+      for (int size : queues.batchSizes("jobs")) {
+         total += size;
+      }
+      assertEquals(total, 100);
+   }
+
+   private static CreateMessage message(int i) {
+      return CreateMessage.builder().ttl(60).body("{\"n\":" + i + "}").build();
+   }
+
+   private static void assertFailsWith(ListenableFuture<String> future, Class<? extends Exception> type)
+         throws InterruptedException {
+      try {
+         future.get();
+         fail("expected " + type.getSimpleName());
+      } catch (ExecutionException e) {
+         assertTrue(type.isInstance(e.getCause()), e.getCause().toString());
+      }
+   }
+
+   /**
+    * Creates messages with ids of the queue name and their body, recording the size of each batch.
+    */
+   private static class FakeQueues implements Function<String, MessageApi> {
+      private final Map<String, List<Integer>> batches = Maps.newConcurrentMap();
+      private volatile String missing;
+      private volatile int accepted = Integer.MAX_VALUE;
+
+      synchronized List<Integer> batchSizes(String queue) {
+         return batches.containsKey(queue) ? ImmutableList.copyOf(batches.get(queue))
+               : ImmutableList.<Integer> of();
+      }
+
+      @Override
+      public MessageApi apply(final String queue) {
+         MessageApi messageApi = createMock(MessageApi.class);
+         expect(messageApi.create(EasyMock.<List<CreateMessage>> anyObject())).andAnswer(
+               new IAnswer<MessagesCreated>() {
+                  @Override
+                  public MessagesCreated answer() {
+                     if (queue.equals(missing)) {
+                        return null;
+                     }
+                     @SuppressWarnings("unchecked")
+                     List<CreateMessage> messages = (List<CreateMessage>) getCurrentArguments()[0];
+                     List<String> ids = Lists.newArrayList();
+                     synchronized (FakeQueues.this) {
+                        if (!batches.containsKey(queue)) {
+                           batches.put(queue, Lists.<Integer> newArrayList());
+                        }
+                        batches.get(queue).add(messages.size());
+                        for (CreateMessage message : messages.subList(0, Math.min(accepted, messages.size()))) {
+                           ids.add(queue + "-" + message.getBody());
+                        }
+                     }
+                     return MessagesCreated.builder().messageIds(ids).partial(ids.size() < messages.size()).build();
+                  }
+               }).anyTimes();
+         replay(messageApi);
+         return messageApi;
+      }
+   }
+}
@@ -16,8 +16,24 @@
  */
 package org.jclouds.openstack.swift.v1;
 
+import static org.jclouds.Constants.PROPERTY_MAX_RETRIES;
+import static org.jclouds.Constants.PROPERTY_RETRY_DELAY_START;
 import static org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties.CREDENTIAL_TYPE;
 import static org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties.SERVICE_TYPE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_DIRECTORY;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_FRESHNESS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_MAX_OBJECT_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_MAX_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.COUNT_CONCURRENCY;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_MAX_OUTSTANDING;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_MIN_DELAY;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_PERCENTILE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_READS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.RETRY_MAX_DELAY;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_BACKOFF_FACTOR;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_MAX_RATE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_MIN_RATE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_RECOVERY_RATE;
 import static org.jclouds.reflect.Reflection2.typeToken;
 
 import java.net.URI;
@@ -60,6 +76,22 @@ public class SwiftApiMetadata extends BaseHttpApiMetadata<SwiftApi> {
       Properties properties = BaseHttpApiMetadata.defaultProperties();
       properties.setProperty(SERVICE_TYPE, ServiceType.OBJECT_STORE);
       properties.setProperty(CREDENTIAL_TYPE, CredentialTypes.PASSWORD_CREDENTIALS);
+      properties.setProperty(THROTTLE_MIN_RATE, "1");
+      properties.setProperty(THROTTLE_MAX_RATE, "500");
+      properties.setProperty(THROTTLE_BACKOFF_FACTOR, "0.5");
+      properties.setProperty(THROTTLE_RECOVERY_RATE, "5");
+      properties.setProperty(PROPERTY_MAX_RETRIES, "5");
+      properties.setProperty(PROPERTY_RETRY_DELAY_START, "50");
+      properties.setProperty(RETRY_MAX_DELAY, "30000");
+      properties.setProperty(HEDGE_READS, "false");
+      properties.setProperty(HEDGE_PERCENTILE, "95");
+      properties.setProperty(HEDGE_MIN_DELAY, "5");
+      properties.setProperty(HEDGE_MAX_OUTSTANDING, "16");
+      properties.setProperty(CACHE_DIRECTORY, "");
+      properties.setProperty(CACHE_MAX_SIZE, "268435456");
+      properties.setProperty(CACHE_MAX_OBJECT_SIZE, "16777216");
+      properties.setProperty(CACHE_FRESHNESS, "0");
+      properties.setProperty(COUNT_CONCURRENCY, "8");
       return properties;
    }
 
@@ -26,12 +26,15 @@ import static com.google.common.io.BaseEncoding.base16;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.util.List;
+
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.jclouds.openstack.swift.v1.features.AccountApi;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Use this utility to create temporary urls.
@@ -57,13 +60,37 @@ public class TemporaryUrlSigner {
       return base16().lowerCase().encode(hmacSHA1(hmacBody));
    }
 
+   /**
+    * Signs many paths for the same method and expiration, looking up the key and preparing the MAC only once.
+    *
+    * @return the signatures, in the order of {@code paths}.
+    */
+   public List<String> sign(String method, Iterable<String> paths, long expirationTimestampSeconds) {
+      checkNotNull(method, "method");
+      checkNotNull(paths, "paths");
+      checkArgument(expirationTimestampSeconds > 0, "expirationTimestamp must be a unix epoch timestamp");
+      String prefix = format("%s\n%s\n", method, expirationTimestampSeconds);
+      Mac mac = newMac();
+      ImmutableList.Builder<String> signatures = ImmutableList.builder();
+      for (String path : paths) {
+         // doFinal resets the MAC for the next path
+         byte[] hmac = mac.doFinal((prefix + checkNotNull(path, "path")).getBytes(UTF_8));
+         signatures.add(base16().lowerCase().encode(hmac));
+      }
+      return signatures.build();
+   }
+
    byte[] hmacSHA1(String data) {
+      return newMac().doFinal(data.getBytes(UTF_8));
+   }
+
+   private Mac newMac() {
       try {
          String key = keySupplier.get();
          checkState(key != null, "%s returned a null temporaryUrlKey!", keySupplier);
          Mac mac = Mac.getInstance("HmacSHA1");
          mac.init(new SecretKeySpec(key.getBytes(UTF_8), "HmacSHA1"));
-         return mac.doFinal(data.getBytes(UTF_8));
+         return mac;
       } catch (Exception e) {
          throw propagate(e);
       }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.io.Payloads.newByteSourcePayload;
+import static org.jclouds.util.Closeables2.closeQuietly;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.io.Payload;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Objects read concurrently by {@link RegionScopedSwiftBlobStore#getBlobs}, in the order they complete.
+ * <p/>
+ * Each object is read into memory as soon as it arrives, so that its connection can be reused for the next request.
+ * Objects that do not exist are failures, reported as {@link KeyNotFoundException}. Unless
+ * {@link GetBlobsOptions#continueOnError()} was given, the first failure is thrown from {@link #hasNext()} and the
+ * remaining requests are cancelled.
+ * <p/>
+ * Close the stream to cancel outstanding requests when not reading it to the end. The stream owns its executor and
+ * shuts it down once closed or read to the end.
+ */
+public class BlobStream extends AbstractIterator<Blob> implements Closeable {
+
+   private final String container;
+   private final Iterator<String> names;
+   private final Function<String, Blob> getBlob;
+   private final ListeningExecutorService executor;
+   private final GetBlobsOptions options;
+
+   private final BlockingQueue<Result> completed = new LinkedBlockingQueue<Result>();
+   private final Set<Read> inFlight = Sets.newHashSet();
+   private final Map<String, Exception> failures = Maps.newLinkedHashMap();
+   private long buffered;
+   private boolean closed;
+
+   BlobStream(String container, Iterable<String> names, Function<String, Blob> getBlob,
+         ListeningExecutorService executor, GetBlobsOptions options) {
+      this.container = checkNotNull(container, "container");
+      this.names = checkNotNull(names, "names").iterator();
+      this.getBlob = checkNotNull(getBlob, "getBlob");
+      this.executor = checkNotNull(executor, "executor");
+      this.options = checkNotNull(options, "options");
+      fill();
+   }
+
+   @Override
+   protected Blob computeNext() {
+      while (true) {
+         boolean done;
+         synchronized (this) {
+            done = closed || (inFlight.isEmpty() && completed.isEmpty() && !names.hasNext());
+         }
+         if (done) {
+            close();
+            return endOfData();
+         }
+         Result result;
+         try {
+            result = completed.take();
+         } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+         }
+         synchronized (this) {
+            buffered -= result.size;
+            if (result.exception != null) {
+               failures.put(result.name, result.exception);
+            }
+         }
+         if (result.exception != null && !options.isContinueOnError()) {
+            close();
+            throw Throwables.propagate(result.exception);
+         }
+         fill();
+         if (result.blob != null) {
+            return result.blob;
+         }
+      }
+   }
+
+   /**
+    * @return an executor running at most {@code concurrency} reads of one stream. Reads do not run on the user
+    *         executor, because with hedged reads a read waits on attempts it submits there. Idle threads exit, so a
+    *         stream that is never closed does not keep any.
+    */
+   static ListeningExecutorService newExecutor(int concurrency) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 1, SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("swift-get-blobs-%d").setDaemon(true).build());
+      executor.allowCoreThreadTimeOut(true);
+      return MoreExecutors.listeningDecorator(executor);
+   }
+
+   /**
+    * @return the objects that could not be read so far, keyed by name.
+    */
+   public synchronized Map<String, Exception> getFailures() {
+      return ImmutableMap.copyOf(failures);
+   }
+
+   /**
+    * Cancels requests that have not completed yet and shuts down the executor.
+    */
+   @Override
+   public void close() {
+      Set<Read> cancel;
+      synchronized (this) {
+         closed = true;
+         cancel = Sets.newHashSet(inFlight);
+         inFlight.clear();
+      }
+      for (Read read : cancel) {
+         read.future.cancel(true);
+      }
+      executor.shutdownNow();
+      completed.clear();
+   }
+
+   private synchronized void fill() {
+      while (!closed && inFlight.size() < options.getConcurrency() && buffered < options.getMemoryBudget()
+            && names.hasNext()) {
+         Read read = new Read(names.next());
+         // submitted under the lock, so the read cannot complete before it is in flight
+         inFlight.add(read);
+         read.future = executor.submit(read);
+      }
+   }
+
+   private synchronized void complete(Read read, Result result) {
+      if (closed) {
+         return;
+      }
+      // under the lock, so that computeNext never sees the read neither in flight nor completed
+      inFlight.remove(read);
+      buffered += result.size;
+      completed.add(result);
+   }
+
+   private class Read implements Runnable {
+      private final String name;
+      private Future<?> future;
+
+      Read(String name) {
+         this.name = name;
+      }
+
+      @Override
+      public void run() {
+         Result result;
+         try {
+            Blob blob = getBlob.apply(name);
+            if (blob == null) {
+               throw new KeyNotFoundException(container, name, "getBlobs");
+            }
+            result = new Result(name, blob, null, buffer(blob));
+         } catch (Exception e) {
+            result = new Result(name, null, e, 0);
+         }
+         complete(this, result);
+         fill();
+      }
+   }
+
+   private static long buffer(Blob blob) throws IOException {
+      Payload payload = blob.getPayload();
+      InputStream in = payload.openStream();
+      try {
+         byte[] bytes = ByteStreams.toByteArray(in);
+         Payload buffered = newByteSourcePayload(ByteSource.wrap(bytes));
+         buffered.setContentMetadata(payload.getContentMetadata());
+         blob.setPayload(buffered);
+         return bytes.length;
+      } finally {
+         closeQuietly(in);
+         closeQuietly(payload);
+      }
+   }
+
+   private static class Result {
+      private final String name;
+      private final Blob blob;
+      private final Exception exception;
+      private final long size;
+
+      Result(String name, Blob blob, Exception exception, long size) {
+         this.name = name;
+         this.blob = blob;
+         this.exception = exception;
+         this.size = size;
+      }
+   }
+}
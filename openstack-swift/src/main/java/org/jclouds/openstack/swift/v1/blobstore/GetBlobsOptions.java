@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Options for reading many objects at once.
+ *
+ * @see RegionScopedSwiftBlobStore#getBlobs(String, Iterable, GetBlobsOptions)
+ */
+public class GetBlobsOptions {
+   public static final GetBlobsOptions NONE = new GetBlobsOptions();
+
+   private int concurrency = 8;
+   private long memoryBudget = 64L * 1024 * 1024;
+   private boolean continueOnError;
+
+   /**
+    * Sets how many objects are requested at the same time, and so how many connections are used. Defaults to
+    * {@code 8}.
+    */
+   public GetBlobsOptions concurrency(int concurrency) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+   }
+
+   /**
+    * Sets how many bytes of objects that were read but not yet consumed may be held in memory before further requests
+    * wait. Requests already in flight are not counted, so the budget can be exceeded by up to {@link #concurrency}
+    * objects. Defaults to 64 MB.
+    */
+   public GetBlobsOptions memoryBudget(long bytes) {
+      checkArgument(bytes > 0, "memoryBudget must be positive");
+      this.memoryBudget = bytes;
+      return this;
+   }
+
+   /**
+    * Keeps reading the remaining objects after one fails, instead of cancelling them. Failures are then available
+    * from {@link BlobStream#getFailures()}.
+    */
+   public GetBlobsOptions continueOnError() {
+      this.continueOnError = true;
+      return this;
+   }
+
+   public int getConcurrency() {
+      return concurrency;
+   }
+
+   public long getMemoryBudget() {
+      return memoryBudget;
+   }
+
+   public boolean isContinueOnError() {
+      return continueOnError;
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).add("concurrency", concurrency).add("memoryBudget", memoryBudget)
+            .add("continueOnError", continueOnError).toString();
+   }
+
+   public static class Builder {
+
+      /**
+       * @see GetBlobsOptions#concurrency
+       */
+      public static GetBlobsOptions concurrency(int concurrency) {
+         GetBlobsOptions options = new GetBlobsOptions();
+         return options.concurrency(concurrency);
+      }
+
+      /**
+       * @see GetBlobsOptions#memoryBudget
+       */
+      public static GetBlobsOptions memoryBudget(long bytes) {
+         GetBlobsOptions options = new GetBlobsOptions();
+         return options.memoryBudget(bytes);
+      }
+
+      /**
+       * @see GetBlobsOptions#continueOnError
+       */
+      public static GetBlobsOptions continueOnError() {
+         GetBlobsOptions options = new GetBlobsOptions();
+         return options.continueOnError();
+      }
+   }
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.ContainerNotFoundException;
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobBuilder;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.domain.Location;
+import org.jclouds.openstack.swift.v1.blobstore.internal.RegionHealth;
+import org.jclouds.rest.AuthorizationException;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ForwardingObject;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * {@link BlobStore} that reads objects in replicated containers from the fastest healthy region.
+ * <p/>
+ * Writes, and reads of any other container, go to the primary region. Reads of containers listed as replicated (for
+ * example, via container sync) are sent to the region ranked first by {@link RegionHealth}; should that region fail,
+ * the read fails over to the next one. Regions whose circuit is open are skipped, so that a read fails fast when no
+ * region admits it.
+ * <p/>
+ * Replication is asynchronous, so a container or object missing from another region may just not have reached it
+ * yet: such a read also moves on to the next region. Only the primary region's not-found is final; should the primary
+ * region be unavailable, the not-found of the last region asked is returned.
+ */
+public class LatencyRoutedBlobStore extends ForwardingObject implements BlobStore {
+
+   private final BlobStore primary;
+   private final Map<String, BlobStore> regions;
+   private final Set<String> replicatedContainers;
+   private final RegionHealth health;
+
+   /**
+    * @param primaryRegionId
+    *           region receiving writes; must be a key of {@code regions}.
+    * @param regions
+    *           blob stores of each region eligible for reads.
+    * @param replicatedContainers
+    *           containers whose contents are present in every region.
+    */
+   public LatencyRoutedBlobStore(String primaryRegionId, Map<String, BlobStore> regions,
+         Iterable<String> replicatedContainers, RegionHealth health) {
+      checkNotNull(primaryRegionId, "primaryRegionId");
+      this.regions = ImmutableMap.copyOf(checkNotNull(regions, "regions"));
+      checkArgument(this.regions.containsKey(primaryRegionId), "region %s not in %s", primaryRegionId,
+            this.regions.keySet());
+      this.primary = this.regions.get(primaryRegionId);
+      this.replicatedContainers = ImmutableSet.copyOf(checkNotNull(replicatedContainers, "replicatedContainers"));
+      this.health = checkNotNull(health, "health");
+   }
+
+   @Override
+   protected BlobStore delegate() {
+      return primary;
+   }
+
+   public RegionHealth getRegionHealth() {
+      return health;
+   }
+
+   private <T> T read(String container, Function<BlobStore, T> read) {
+      if (!replicatedContainers.contains(container)) {
+         return read.apply(primary);
+      }
+      RuntimeException lastFailure = null;
+      RuntimeException notFound = null;
+      boolean missing = false;
+      T missingResult = null;
+      for (String regionId : health.rank(regions.keySet())) {
+         if (!health.tryAcquire(regionId)) {
+            continue;
+         }
+         BlobStore regionBlobStore = regions.get(regionId);
+         long start = health.getTicker().read();
+         T result;
+         try {
+            result = read.apply(regionBlobStore);
+         } catch (ContainerNotFoundException e) {
+            health.success(regionId, health.getTicker().read() - start);
+            if (regionBlobStore == primary) {
+               throw e;
+            }
+            notFound = e;
+            continue;
+         } catch (KeyNotFoundException e) {
+            health.success(regionId, health.getTicker().read() - start);
+            if (regionBlobStore == primary) {
+               throw e;
+            }
+            notFound = e;
+            continue;
+         } catch (AuthorizationException e) {
+            health.success(regionId, health.getTicker().read() - start);
+            throw e;
+         } catch (RuntimeException e) {
+            health.failure(regionId);
+            lastFailure = e;
+            continue;
+         }
+         health.success(regionId, health.getTicker().read() - start);
+         if (regionBlobStore != primary && isMissing(result)) {
+            missing = true;
+            missingResult = result;
+            notFound = null;
+            continue;
+         }
+         return result;
+      }
+      if (notFound != null) {
+         throw notFound;
+      }
+      if (missing) {
+         return missingResult;
+      }
+      if (lastFailure != null) {
+         throw lastFailure;
+      }
+      throw new IllegalStateException("no region admits reads of " + container + ": circuits of " + regions.keySet()
+            + " are open");
+   }
+
+   /**
+    * @return whether {@code result} says that the container or object does not exist.
+    */
+   private static boolean isMissing(Object result) {
+      return result == null || Boolean.FALSE.equals(result);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container) {
+      return list(container, ListContainerOptions.NONE);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(final String container, final ListContainerOptions options) {
+      return read(container, new Function<BlobStore, PageSet<? extends StorageMetadata>>() {
+         @Override
+         public PageSet<? extends StorageMetadata> apply(BlobStore input) {
+            return input.list(container, options);
+         }
+      });
+   }
+
+   @Override
+   public boolean blobExists(final String container, final String name) {
+      return read(container, new Function<BlobStore, Boolean>() {
+         @Override
+         public Boolean apply(BlobStore input) {
+            return input.blobExists(container, name);
+         }
+      });
+   }
+
+   @Override
+   public BlobMetadata blobMetadata(final String container, final String name) {
+      return read(container, new Function<BlobStore, BlobMetadata>() {
+         @Override
+         public BlobMetadata apply(BlobStore input) {
+            return input.blobMetadata(container, name);
+         }
+      });
+   }
+
+   @Override
+   public Blob getBlob(String container, String name) {
+      return getBlob(container, name, GetOptions.NONE);
+   }
+
+   @Override
+   public Blob getBlob(final String container, final String name, final GetOptions options) {
+      return read(container, new Function<BlobStore, Blob>() {
+         @Override
+         public Blob apply(BlobStore input) {
+            return input.getBlob(container, name, options);
+         }
+      });
+   }
+
+   @Override
+   public boolean directoryExists(final String container, final String directory) {
+      return read(container, new Function<BlobStore, Boolean>() {
+         @Override
+         public Boolean apply(BlobStore input) {
+            return input.directoryExists(container, directory);
+         }
+      });
+   }
+
+   @Override
+   public BlobStoreContext getContext() {
+      return delegate().getContext();
+   }
+
+   @Override
+   public BlobBuilder blobBuilder(String name) {
+      return delegate().blobBuilder(name);
+   }
+
+   @Override
+   public Set<? extends Location> listAssignableLocations() {
+      return delegate().listAssignableLocations();
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list() {
+      return delegate().list();
+   }
+
+   @Override
+   public boolean containerExists(String container) {
+      return delegate().containerExists(container);
+   }
+
+   @Override
+   public boolean createContainerInLocation(Location location, String container) {
+      return delegate().createContainerInLocation(location, container);
+   }
+
+   @Override
+   public boolean createContainerInLocation(Location location, String container, CreateContainerOptions options) {
+      return delegate().createContainerInLocation(location, container, options);
+   }
+
+   @Override
+   public void clearContainer(String container) {
+      delegate().clearContainer(container);
+   }
+
+   @Override
+   public void clearContainer(String container, ListContainerOptions options) {
+      delegate().clearContainer(container, options);
+   }
+
+   @Override
+   public void deleteContainer(String container) {
+      delegate().deleteContainer(container);
+   }
+
+   @Override
+   public boolean deleteContainerIfEmpty(String container) {
+      return delegate().deleteContainerIfEmpty(container);
+   }
+
+   @Override
+   public void createDirectory(String container, String directory) {
+      delegate().createDirectory(container, directory);
+   }
+
+   @Override
+   public void deleteDirectory(String container, String directory) {
+      delegate().deleteDirectory(container, directory);
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob) {
+      return delegate().putBlob(container, blob);
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob, PutOptions options) {
+      return delegate().putBlob(container, blob, options);
+   }
+
+   @Override
+   public void removeBlob(String container, String name) {
+      delegate().removeBlob(container, name);
+   }
+
+   @Override
+   public long countBlobs(String container) {
+      return delegate().countBlobs(container);
+   }
+
+   @Override
+   public long countBlobs(String container, ListContainerOptions options) {
+      return delegate().countBlobs(container, options);
+   }
+}
@@ -34,11 +34,16 @@ import org.jclouds.blobstore.attr.ConsistencyModel;
 import org.jclouds.internal.BaseView;
 import org.jclouds.location.Provider;
 import org.jclouds.location.Region;
+import org.jclouds.openstack.swift.v1.blobstore.internal.RegionHealth;
 import org.jclouds.openstack.swift.v1.blobstore.internal.SubmissionAsyncBlobStore;
 import org.jclouds.rest.Utils;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.ListeningExecutorService;
 
@@ -56,6 +61,9 @@ import com.google.common.util.concurrent.ListeningExecutorService;
  * // isolated to a specific region
  * BlobStore texasBlobStore = ctx.getBlobStore(&quot;US-TX&quot;);
  * BlobStore virginiaBlobStore = ctx.getBlobStore(&quot;US-VA&quot;);
+ *
+ * // reads of synchronized containers go to the fastest region
+ * BlobStore nearestBlobStore = ctx.getLatencyRoutedBlobStore(ImmutableSet.of(&quot;assets&quot;));
  * </pre>
  */
 public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreContext {
@@ -86,7 +94,7 @@ public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreC
     */
    public BlobRequestSigner getSigner(String regionId) {
       checkRegionId(regionId);
-      return blobRequestSigner.apply(regionId);
+      return blobRequestSigners.getUnchecked(regionId);
    }
 
    /**
@@ -104,6 +112,22 @@ public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreC
       return new SubmissionAsyncBlobStore(getBlobStore(regionId), executor);
    }
 
+   /**
+    * Returns a {@link BlobStore} that writes to the implicit region, but reads objects in
+    * {@code replicatedContainers} from whichever configured region currently answers fastest, failing over to the
+    * next region on errors. Latency and health are shared by all blob stores returned from this context.
+    *
+    * @param replicatedContainers
+    *           containers whose contents are synchronized across all configured regions.
+    */
+   public LatencyRoutedBlobStore getLatencyRoutedBlobStore(Iterable<String> replicatedContainers) {
+      ImmutableMap.Builder<String, BlobStore> regions = ImmutableMap.builder();
+      for (String regionId : getConfiguredRegions()) {
+         regions.put(regionId, blobStore.apply(regionId));
+      }
+      return new LatencyRoutedBlobStore(implicitRegionId.get(), regions.build(), replicatedContainers, regionHealth);
+   }
+
    protected void checkRegionId(String regionId) {
       checkArgument(getConfiguredRegions().contains(checkNotNull(regionId, "regionId was null")), "region %s not in %s",
             regionId, getConfiguredRegions());
@@ -114,9 +138,11 @@ public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreC
    // factory functions are decoupled so that you can exchange how requests are
    // signed or decorate without a class hierarchy dependency
    private final Function<String, BlobStore> blobStore;
-   private final Function<String, BlobRequestSigner> blobRequestSigner;
+   // signers are reused so that each region's temporary URL key is only looked up once per session interval
+   private final LoadingCache<String, BlobRequestSigner> blobRequestSigners;
    private final Utils utils;
    private final ListeningExecutorService executor;
+   private final RegionHealth regionHealth = RegionHealth.create();
 
    @Inject
    public RegionScopedBlobStoreContext(@Provider Context backend, @Provider TypeToken<? extends Context> backendType,
@@ -127,7 +153,8 @@ public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreC
       this.regionIds = checkNotNull(regionIds, "regionIds");
       this.implicitRegionId = checkNotNull(implicitRegionId, "implicitRegionId");
       this.blobStore = checkNotNull(blobStore, "blobStore");
-      this.blobRequestSigner = checkNotNull(blobRequestSigner, "blobRequestSigner");
+      this.blobRequestSigners = CacheBuilder.newBuilder().build(
+            CacheLoader.from(checkNotNull(blobRequestSigner, "blobRequestSigner")));
       this.utils = checkNotNull(utils, "utils");
       this.executor = checkNotNull(executor, "executor");
    }
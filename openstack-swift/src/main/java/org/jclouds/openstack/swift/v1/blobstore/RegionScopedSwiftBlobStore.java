@@ -55,6 +55,8 @@ import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.openstack.swift.v1.blobstore.functions.ToBlobMetadata;
 import org.jclouds.openstack.swift.v1.blobstore.functions.ToListContainerOptions;
 import org.jclouds.openstack.swift.v1.blobstore.functions.ToResourceMetadata;
+import org.jclouds.openstack.swift.v1.blobstore.internal.ObjectCache;
+import org.jclouds.openstack.swift.v1.blobstore.internal.ObjectCounter;
 import org.jclouds.openstack.swift.v1.domain.Container;
 import org.jclouds.openstack.swift.v1.domain.ObjectList;
 import org.jclouds.openstack.swift.v1.domain.SwiftObject;
@@ -78,7 +80,8 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
 
    @Inject
    protected RegionScopedSwiftBlobStore(Injector baseGraph, BlobStoreContext context, SwiftApi api,
-         @Memoized Supplier<Set<? extends Location>> locations, @Assisted String regionId) {
+         @Memoized Supplier<Set<? extends Location>> locations, ObjectCache objectCache,
+         ObjectCounter objectCounter, @Assisted String regionId) {
       checkNotNull(regionId, "regionId");
       Optional<? extends Location> found = tryFind(locations.get(), idEquals(regionId));
       checkArgument(found.isPresent(), "region %s not in %s", regionId, locations.get());
@@ -87,6 +90,8 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
       this.toResourceMetadata = new ToResourceMetadata(found.get());
       this.context = context;
       this.api = api;
+      this.objectCache = objectCache;
+      this.objectCounter = objectCounter;
       // until we parameterize ClearListStrategy with a factory
       this.clearList = baseGraph.createChildInjector(new AbstractModule() {
          @Override
@@ -99,6 +104,8 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
    private final BlobStoreContext context;
    private final ClearListStrategy clearList;
    private final SwiftApi api;
+   private final ObjectCache objectCache;
+   private final ObjectCounter objectCounter;
    private final Location region;
    private final String regionId;
    private final BlobToHttpGetOptions toGetOptions = new BlobToHttpGetOptions();
@@ -192,7 +199,13 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
          throw new UnsupportedOperationException();
       }
       ObjectApi objectApi = api.getObjectApi(regionId, container);
-      return objectApi.put(blob.getMetadata().getName(), blob.getPayload(), metadata(blob.getMetadata().getUserMetadata()));
+      try {
+         return objectApi.put(blob.getMetadata().getName(), blob.getPayload(), metadata(blob.getMetadata().getUserMetadata()));
+      } finally {
+         // after the write, so that a concurrent read cannot cache the old object again; a failed put may have
+         // replaced it as well
+         objectCache.invalidate(regionId, container, blob.getMetadata().getName());
+      }
    }
 
    @Override
@@ -212,7 +225,7 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
    @Override
    public Blob getBlob(String container, String name, GetOptions options) {
       ObjectApi objectApi = api.getObjectApi(regionId, container);
-      SwiftObject object = objectApi.get(name, toGetOptions.apply(options));
+      SwiftObject object = objectCache.get(objectApi, regionId, container, name, toGetOptions.apply(options));
       if (object == null) {
          return null;
       }
@@ -222,9 +235,36 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
       return blob;
    }
 
+   /**
+    * Reads many objects concurrently, returning them as they complete.
+    *
+    * @see #getBlobs(String, Iterable, GetBlobsOptions)
+    */
+   public BlobStream getBlobs(String container, Iterable<String> names) {
+      return getBlobs(container, names, GetBlobsOptions.NONE);
+   }
+
+   /**
+    * Reads many objects concurrently, returning them as they complete. At most
+    * {@link GetBlobsOptions#getConcurrency()} requests are outstanding at a time, and no new request is started while
+    * the objects waiting to be consumed exceed {@link GetBlobsOptions#getMemoryBudget()}.
+    */
+   public BlobStream getBlobs(final String container, Iterable<String> names, GetBlobsOptions options) {
+      return new BlobStream(container, names, new Function<String, Blob>() {
+         @Override
+         public Blob apply(String name) {
+            return getBlob(container, name);
+         }
+      }, BlobStream.newExecutor(options.getConcurrency()), options);
+   }
+
    @Override
    public void removeBlob(String container, String name) {
-      api.getObjectApi(regionId, container).delete(name);
+      try {
+         api.getObjectApi(regionId, container).delete(name);
+      } finally {
+         objectCache.invalidate(regionId, container, name);
+      }
    }
 
    @Override
@@ -305,8 +345,22 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
       return new ToBlobMetadata(containerCache.getUnchecked(container).get());
    }
 
+   /**
+    * Counts the objects under {@link ListContainerOptions#getDir()}, or the whole container when it is unset, either
+    * at any depth or only directly under it depending on {@link ListContainerOptions#isRecursive()}. Large prefixes
+    * are counted in parallel.
+    *
+    * @see ObjectCounter
+    */
    @Override
    public long countBlobs(String containerName, ListContainerOptions options) {
-      throw new UnsupportedOperationException();
+      checkNotNull(options, "set options to instance NONE instead of passing null");
+      ObjectApi objectApi = api.getObjectApi(regionId, containerName);
+      String dir = options.getDir();
+      if (options.isRecursive()) {
+         String prefix = dir == null ? "" : dir.endsWith("/") ? dir : dir + "/";
+         return objectCounter.countPrefix(objectApi, prefix, options.getMarker());
+      }
+      return objectCounter.countPath(objectApi, dir == null ? "" : dir, options.getMarker());
    }
 }
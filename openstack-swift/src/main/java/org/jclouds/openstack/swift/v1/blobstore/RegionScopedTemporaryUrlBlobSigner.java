@@ -17,10 +17,15 @@
 package org.jclouds.openstack.swift.v1.blobstore;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.allAsList;
+import static com.google.common.util.concurrent.Futures.transform;
 import static org.jclouds.Constants.PROPERTY_SESSION_INTERVAL;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Provider;
@@ -35,8 +40,21 @@ import org.jclouds.http.options.GetOptions;
 import org.jclouds.location.Region;
 import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.openstack.swift.v1.TemporaryUrlSigner;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
 
+import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.name.Named;
@@ -44,24 +62,36 @@ import com.google.inject.name.Named;
 /**
  * Uses {@link TemporaryUrlSigner} to sign requests for access to blobs. If no
  * interval is supplied, it defaults to a year.
+ * <p/>
+ * The {@code sign*Blobs} methods sign many objects in one call, in parallel
+ * for large lists, and return plain URLs instead of requests. They return
+ * without waiting, and their futures complete once every URL is signed.
  */
 public class RegionScopedTemporaryUrlBlobSigner implements BlobRequestSigner {
 
    @Inject
    protected RegionScopedTemporaryUrlBlobSigner(@Region Supplier<Map<String, Supplier<URI>>> regionToUris,
          @Named(PROPERTY_SESSION_INTERVAL) long seconds, @TimeStamp Provider<Long> timestamp, SwiftApi api,
-         @Assisted String regionId) {
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor, @Assisted String regionId) {
       checkNotNull(regionId, "regionId");
       this.timestamp = timestamp;
+      this.api = api;
+      this.regionId = regionId;
+      this.userExecutor = userExecutor;
       this.signer = TemporaryUrlSigner.checkApiEvery(api.getAccountApi(regionId), seconds);
       this.storageUrl = regionToUris.get().get(regionId).get();
    }
 
    private static final long YEAR = TimeUnit.DAYS.toSeconds(365);
+   private static final int SIGNATURES_PER_TASK = 256;
+   private static final int LISTING_LIMIT = 10000;
    private final BlobToHttpGetOptions toGetOptions = new BlobToHttpGetOptions();
    private final Provider<Long> timestamp;
    private final TemporaryUrlSigner signer;
    private final URI storageUrl;
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService userExecutor;
 
    @Override
    public HttpRequest signGetBlob(String container, String name) {
@@ -93,11 +123,119 @@ public class RegionScopedTemporaryUrlBlobSigner implements BlobRequestSigner {
       return sign("DELETE", container, name, GetOptions.NONE, timestamp.get() + YEAR);
    }
 
+   /**
+    * Signs {@code GET} URLs for many objects at once.
+    *
+    * @return the signed URLs, keyed by object name in the order given.
+    */
+   public ListenableFuture<Map<String, URI>> signGetBlobs(String container, Iterable<String> names,
+         long timeInSeconds) {
+      return signAll("GET", container, names, timestamp.get() + timeInSeconds);
+   }
+
+   /**
+    * Signs {@code GET} URLs for every object in the container whose name starts with {@code prefix}. The container
+    * is listed on the user executor as well.
+    *
+    * @return the signed URLs, keyed by object name in listing order.
+    */
+   public ListenableFuture<Map<String, URI>> signGetBlobsWithPrefix(final String container, final String prefix,
+         final long timeInSeconds) {
+      checkNotNull(container, "container");
+      checkNotNull(prefix, "prefix");
+      ListenableFuture<List<String>> names = userExecutor.submit(new Callable<List<String>>() {
+         @Override
+         public List<String> call() {
+            return list(container, prefix);
+         }
+      });
+      return transform(names, new AsyncFunction<List<String>, Map<String, URI>>() {
+         @Override
+         public ListenableFuture<Map<String, URI>> apply(List<String> input) {
+            return signGetBlobs(container, input, timeInSeconds);
+         }
+      });
+   }
+
+   /**
+    * Signs {@code PUT} URLs for many objects at once.
+    *
+    * @return the signed URLs, keyed by object name in the order given.
+    */
+   public ListenableFuture<Map<String, URI>> signPutBlobs(String container, Iterable<String> names,
+         long timeInSeconds) {
+      return signAll("PUT", container, names, timestamp.get() + timeInSeconds);
+   }
+
+   private List<String> list(String container, String prefix) {
+      ObjectApi objectApi = api.getObjectApi(regionId, container);
+      List<String> names = Lists.newArrayList();
+      ObjectList page = objectApi.list(ListContainerOptions.Builder.prefix(prefix).limit(LISTING_LIMIT));
+      while (page != null) {
+         for (SwiftObject object : page) {
+            names.add(object.getName());
+         }
+         if (page.size() < LISTING_LIMIT) {
+            break;
+         }
+         page = objectApi.list(ListContainerOptions.Builder.prefix(prefix).limit(LISTING_LIMIT)
+               .marker(Iterables.getLast(names)));
+      }
+      return names;
+   }
+
+   private ListenableFuture<Map<String, URI>> signAll(final String method, final String container,
+         Iterable<String> names, final long expires) {
+      checkNotNull(container, "container");
+      final List<String> distinct = ImmutableSet.copyOf(names).asList();
+      List<ListenableFuture<List<URI>>> futures = Lists.newArrayList();
+      for (final List<String> partition : Lists.partition(distinct, SIGNATURES_PER_TASK)) {
+         futures.add(userExecutor.submit(new Callable<List<URI>>() {
+            @Override
+            public List<URI> call() {
+               return signPartition(method, container, partition, expires);
+            }
+         }));
+      }
+      return transform(allAsList(futures), new Function<List<List<URI>>, Map<String, URI>>() {
+         @Override
+         public Map<String, URI> apply(List<List<URI>> partitions) {
+            List<URI> urls = ImmutableList.copyOf(Iterables.concat(partitions));
+            ImmutableMap.Builder<String, URI> signed = ImmutableMap.builder();
+            for (int i = 0; i < distinct.size(); i++) {
+               signed.put(distinct.get(i), urls.get(i));
+            }
+            return signed.build();
+         }
+      });
+   }
+
+   private List<URI> signPartition(String method, String container, List<String> names, long expires) {
+      List<URI> urls = Lists.newArrayListWithCapacity(names.size());
+      List<String> paths = Lists.newArrayListWithCapacity(names.size());
+      for (String name : names) {
+         URI url = Uris.uriBuilder(storageUrl).appendPath(container).appendPath(checkNotNull(name, "name")).build();
+         urls.add(url);
+         paths.add(url.getPath());
+      }
+      List<String> signatures = signer.sign(method, paths, expires);
+      List<URI> signed = Lists.newArrayListWithCapacity(names.size());
+      for (int i = 0; i < urls.size(); i++) {
+         signed.add(signedRequest(method, urls.get(i), GetOptions.NONE, signatures.get(i), expires).getEndpoint());
+      }
+      return signed;
+   }
+
    private HttpRequest sign(String method, String container, String name, GetOptions options, long expires) {
       checkNotNull(container, "container");
       checkNotNull(name, "name");
       URI url = Uris.uriBuilder(storageUrl).appendPath(container).appendPath(name).build();
       String signature = signer.sign(method, url.getPath(), expires);
+      return signedRequest(method, url, options, signature, expires);
+   }
+
+   private static HttpRequest signedRequest(String method, URI url, GetOptions options, String signature,
+         long expires) {
       return HttpRequest.builder()
                         .method(method)
                         .endpoint(url)
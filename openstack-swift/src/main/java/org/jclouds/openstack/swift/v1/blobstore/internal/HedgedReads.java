@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_MAX_OUTSTANDING;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_MIN_DELAY;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_PERCENTILE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.HEDGE_READS;
+import static org.jclouds.util.Closeables2.closeQuietly;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Issues object {@code GET}s that are duplicated when the first request is slow.
+ * <p/>
+ * The time to a response is tracked per region over a window of recent reads, as regions answer at different speeds.
+ * Once enough reads of a region have been seen, a read that has not answered within the configured percentile of that
+ * window sends a second, identical request. The first response wins; the other request is cancelled and its payload,
+ * if any, is closed. Since Swift answers as soon as the object headers are available, this mostly helps objects that
+ * are small enough for the time to first byte to dominate.
+ * <p/>
+ * Duplicate requests share the user executor with everything else, so only a bounded number of them are outstanding at
+ * a time; a slow read beyond that waits on its first request alone.
+ * 
+ * @see org.jclouds.openstack.swift.v1.config.SwiftProperties#HEDGE_READS
+ * @see org.jclouds.openstack.swift.v1.config.SwiftProperties#HEDGE_MAX_OUTSTANDING
+ */
+@Singleton
+public class HedgedReads {
+
+   private static final int WINDOW = 512;
+   private static final int RECALCULATE_EVERY = 64;
+   private static final int MIN_SAMPLES = 32;
+
+   private final boolean enabled;
+   private final double percentile;
+   private final long minDelayNanos;
+   private final Semaphore hedgePermits;
+   private final Executor executor;
+   private final Ticker ticker;
+
+   private final ConcurrentMap<String, Latency> latencies = Maps.newConcurrentMap();
+
+   private final AtomicLong reads = new AtomicLong();
+   private final AtomicLong hedges = new AtomicLong();
+   private final AtomicLong hedgeWins = new AtomicLong();
+
+   @Inject
+   HedgedReads(@Named(HEDGE_READS) boolean enabled, @Named(HEDGE_PERCENTILE) double percentile,
+         @Named(HEDGE_MIN_DELAY) long minDelayMillis, @Named(HEDGE_MAX_OUTSTANDING) int maxOutstanding,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor) {
+      this(enabled, percentile, MILLISECONDS.toNanos(minDelayMillis), maxOutstanding, executor,
+            Ticker.systemTicker());
+   }
+
+   @VisibleForTesting
+   HedgedReads(boolean enabled, double percentile, long minDelayNanos, int maxOutstanding, Executor executor,
+         Ticker ticker) {
+      checkArgument(percentile > 0 && percentile < 100, "percentile must be between 0 and 100");
+      checkArgument(minDelayNanos >= 0, "minDelay must not be negative");
+      checkArgument(maxOutstanding >= 0, "maxOutstanding must not be negative");
+      this.enabled = enabled;
+      this.percentile = percentile;
+      this.minDelayNanos = minDelayNanos;
+      this.hedgePermits = new Semaphore(maxOutstanding);
+      this.executor = checkNotNull(executor, "executor");
+      this.ticker = checkNotNull(ticker, "ticker");
+   }
+
+   /**
+    * Gets the object, hedging the request if enabled and the first attempt is slow for {@code regionId}.
+    * 
+    * @return the object, or {@code null} if it does not exist.
+    */
+   public SwiftObject get(ObjectApi objectApi, String regionId, String name, GetOptions options) {
+      if (!enabled) {
+         return objectApi.get(name, options);
+      }
+      reads.incrementAndGet();
+      Latency latency = latency(regionId);
+      AtomicBoolean claimed = new AtomicBoolean();
+      long delay = latency.getDelayNanos();
+      if (delay < 0) {
+         // not enough samples yet to know what slow is
+         return new Attempt(objectApi, name, options, latency, claimed, null).call();
+      }
+
+      CompletionService<SwiftObject> completion = new ExecutorCompletionService<SwiftObject>(executor);
+      Future<SwiftObject> primary = completion.submit(new Attempt(objectApi, name, options, latency, claimed, null));
+      Attempt hedgeAttempt = null;
+      Future<SwiftObject> hedge = null;
+      try {
+         Future<SwiftObject> done = completion.poll(delay, NANOSECONDS);
+         if (done == null && hedgePermits.tryAcquire()) {
+            hedges.incrementAndGet();
+            hedgeAttempt = new Attempt(objectApi, name, options, latency, claimed, hedgePermits);
+            hedge = completion.submit(hedgeAttempt);
+            done = completion.take();
+            if (failed(done)) {
+               // the other attempt may still succeed
+               done = completion.take();
+            }
+            if (done == hedge && !failed(done)) {
+               hedgeWins.incrementAndGet();
+            }
+         } else if (done == null) {
+            // too many duplicate requests outstanding
+            done = completion.take();
+         }
+         return done.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(e);
+      } catch (ExecutionException e) {
+         throw Throwables.propagate(e.getCause());
+      } finally {
+         primary.cancel(true);
+         if (hedge != null) {
+            hedge.cancel(true);
+         }
+         if (hedgeAttempt != null) {
+            hedgeAttempt.releaseIfNotStarted();
+         }
+      }
+   }
+
+   /**
+    * @return the number of reads issued while hedging was enabled.
+    */
+   public long getReads() {
+      return reads.get();
+   }
+
+   /**
+    * @return the number of reads that sent a duplicate request.
+    */
+   public long getHedges() {
+      return hedges.get();
+   }
+
+   /**
+    * @return the number of reads answered by the duplicate request.
+    */
+   public long getHedgeWins() {
+      return hedgeWins.get();
+   }
+
+   /**
+    * @return how long a read of {@code regionId} currently waits before sending a duplicate request, or {@code -1} if
+    *         not enough reads of it have been seen yet.
+    */
+   public long getDelayMillis(String regionId) {
+      long delayNanos = latency(regionId).getDelayNanos();
+      return delayNanos < 0 ? -1 : NANOSECONDS.toMillis(delayNanos);
+   }
+
+   private Latency latency(String regionId) {
+      checkNotNull(regionId, "regionId");
+      Latency latency = latencies.get(regionId);
+      if (latency == null) {
+         Latency created = new Latency();
+         latency = latencies.putIfAbsent(regionId, created);
+         if (latency == null) {
+            latency = created;
+         }
+      }
+      return latency;
+   }
+
+   private static boolean failed(Future<?> future) {
+      try {
+         future.get();
+         return false;
+      } catch (ExecutionException e) {
+         return true;
+      } catch (CancellationException e) {
+         return true;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return true;
+      }
+   }
+
+   /**
+    * Response times of the recent reads of one region.
+    */
+   private class Latency {
+      private final long[] samples = new long[WINDOW];
+      private long sampleCount;
+      private long delayNanos = -1;
+
+      synchronized long getDelayNanos() {
+         return delayNanos;
+      }
+
+      synchronized void record(long nanos) {
+         samples[(int) (sampleCount++ % WINDOW)] = nanos;
+         if (sampleCount >= MIN_SAMPLES && (delayNanos < 0 || sampleCount % RECALCULATE_EVERY == 0)) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(sampleCount, WINDOW));
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            delayNanos = Math.max(minDelayNanos, sorted[index]);
+         }
+      }
+   }
+
+   private class Attempt implements Callable<SwiftObject> {
+      private final ObjectApi objectApi;
+      private final String name;
+      private final GetOptions options;
+      private final Latency latency;
+      private final AtomicBoolean claimed;
+      private final Semaphore permit;
+      private final AtomicBoolean started = new AtomicBoolean();
+
+      /**
+       * @param permit given back once the attempt completed or will never run, or {@code null} if not a hedge.
+       */
+      Attempt(ObjectApi objectApi, String name, GetOptions options, Latency latency, AtomicBoolean claimed,
+            @Nullable Semaphore permit) {
+         this.objectApi = objectApi;
+         this.name = name;
+         this.options = options;
+         this.latency = latency;
+         this.claimed = claimed;
+         this.permit = permit;
+      }
+
+      @Override
+      public SwiftObject call() {
+         if (!started.compareAndSet(false, true)) {
+            throw new CancellationException("hedged read already answered");
+         }
+         try {
+            long start = ticker.read();
+            SwiftObject object = objectApi.get(name, options);
+            latency.record(ticker.read() - start);
+            if (!claimed.compareAndSet(false, true)) {
+               // lost the race; nobody will read this response
+               if (object != null) {
+                  closeQuietly(object.getPayload());
+               }
+               throw new CancellationException("hedged read already answered");
+            }
+            return object;
+         } finally {
+            if (permit != null) {
+               permit.release();
+            }
+         }
+      }
+
+      /**
+       * Gives back the permit of an attempt that was cancelled or rejected before it started.
+       */
+      void releaseIfNotStarted() {
+         if (started.compareAndSet(false, true) && permit != null) {
+            permit.release();
+         }
+      }
+   }
+}
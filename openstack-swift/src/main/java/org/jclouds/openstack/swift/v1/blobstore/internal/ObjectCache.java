@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.jclouds.io.Payloads.newByteSourcePayload;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_DIRECTORY;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_FRESHNESS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_MAX_OBJECT_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CACHE_MAX_SIZE;
+import static org.jclouds.util.Closeables2.closeQuietly;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.io.ContentMetadata;
+import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.BaseMutableContentMetadata;
+import org.jclouds.logging.Logger;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+
+/**
+ * Read-through cache of object bodies in memory-mapped files, bounded in total size and evicted least recently used
+ * first.
+ * <p/>
+ * Only plain reads are cached: requests with ranges or conditions always go to Swift. A cached object is served
+ * directly while it is fresh and afterwards revalidated with {@code If-None-Match}, so that only a changed object is
+ * transferred again. Each cache keeps its files in a private subdirectory of the configured directory, so that caches
+ * sharing the directory never touch each other's files. Cached files are removed on eviction; the index itself is not
+ * persisted.
+ * 
+ * @see org.jclouds.openstack.swift.v1.config.SwiftProperties#CACHE_DIRECTORY
+ */
+@Singleton
+public class ObjectCache {
+
+   private static final String SUFFIX = ".swiftobject";
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final File directory;
+   private final long maxObjectSize;
+   private final long freshnessNanos;
+   private final HedgedReads hedgedReads;
+   private final Ticker ticker;
+   private final Cache<String, Entry> entries;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong revalidations = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong invalidations = new AtomicLong();
+
+   @Inject
+   ObjectCache(@Named(CACHE_DIRECTORY) String directory, @Named(CACHE_MAX_SIZE) long maxSize,
+         @Named(CACHE_MAX_OBJECT_SIZE) long maxObjectSize, @Named(CACHE_FRESHNESS) long freshnessMillis,
+         HedgedReads hedgedReads) {
+      this(directory.isEmpty() ? null : new File(directory), maxSize, maxObjectSize,
+            MILLISECONDS.toNanos(freshnessMillis), hedgedReads, Ticker.systemTicker());
+   }
+
+   @VisibleForTesting
+   ObjectCache(File directory, long maxSize, long maxObjectSize, long freshnessNanos, HedgedReads hedgedReads,
+         Ticker ticker) {
+      checkArgument(maxObjectSize >= 0 && maxObjectSize <= Math.min(maxSize, Integer.MAX_VALUE),
+            "maxObjectSize must be between 0 and maxSize");
+      this.directory = directory != null ? createPrivateDirectory(directory) : null;
+      this.maxObjectSize = maxObjectSize;
+      this.freshnessNanos = freshnessNanos;
+      this.hedgedReads = checkNotNull(hedgedReads, "hedgedReads");
+      this.ticker = checkNotNull(ticker, "ticker");
+      this.entries = CacheBuilder.newBuilder()
+            .maximumWeight(maxSize)
+            .weigher(new Weigher<String, Entry>() {
+               public int weigh(String key, Entry entry) {
+                  return entry.buffer.capacity();
+               }
+            })
+            .removalListener(new RemovalListener<String, Entry>() {
+               public void onRemoval(RemovalNotification<String, Entry> notification) {
+                  // readers still holding the mapping keep working after the file is unlinked
+                  if (!notification.getValue().file.delete()) {
+                     logger.debug("could not delete cached object %s", notification.getValue().file);
+                  }
+               }
+            }).build();
+   }
+
+   /**
+    * Gets the object from the cache if it is still current, or from Swift otherwise.
+    * 
+    * @return the object, or {@code null} if it does not exist.
+    */
+   public SwiftObject get(ObjectApi objectApi, String regionId, String container, String name, GetOptions options) {
+      if (directory == null || !options.buildRequestHeaders().isEmpty()) {
+         return hedgedReads.get(objectApi, regionId, name, options);
+      }
+      String key = key(regionId, container, name);
+      long seen = invalidations.get();
+      Entry cached = entries.getIfPresent(key);
+      if (cached == null) {
+         misses.incrementAndGet();
+         return store(key, hedgedReads.get(objectApi, regionId, name, options), seen);
+      }
+      if (ticker.read() - cached.validated < freshnessNanos) {
+         hits.incrementAndGet();
+         return cached.toObject();
+      }
+      SwiftObject object;
+      try {
+         object = hedgedReads.get(objectApi, regionId, name,
+               GetOptions.Builder.ifETagDoesntMatch(cached.object.getETag()));
+      } catch (HttpResponseException e) {
+         if (e.getResponse() == null || e.getResponse().getStatusCode() != 304) {
+            throw e;
+         }
+         revalidations.incrementAndGet();
+         cached.validated = ticker.read();
+         return cached.toObject();
+      }
+      misses.incrementAndGet();
+      return store(key, object, seen);
+   }
+
+   /**
+    * Drops any cached copy of the object, so that the next read goes to Swift.
+    */
+   public void invalidate(String regionId, String container, String name) {
+      invalidations.incrementAndGet();
+      entries.invalidate(key(regionId, container, name));
+   }
+
+   /**
+    * @return the number of reads served without contacting Swift.
+    */
+   public long getHits() {
+      return hits.get();
+   }
+
+   /**
+    * @return the number of reads served from the cache after Swift confirmed the object had not changed.
+    */
+   public long getRevalidations() {
+      return revalidations.get();
+   }
+
+   /**
+    * @return the number of cacheable reads that transferred the object from Swift.
+    */
+   public long getMisses() {
+      return misses.get();
+   }
+
+   /**
+    * @return the total size, in bytes, of the cached objects.
+    */
+   public long getSize() {
+      long size = 0;
+      for (Entry entry : entries.asMap().values()) {
+         size += entry.buffer.capacity();
+      }
+      return size;
+   }
+
+   /**
+    * @param seen the number of invalidations before the object was read
+    */
+   private SwiftObject store(String key, SwiftObject object, long seen) {
+      if (object == null) {
+         entries.invalidate(key);
+         return null;
+      }
+      Payload payload = object.getPayload();
+      Long length = payload.getContentMetadata().getContentLength();
+      if (length == null || length > maxObjectSize) {
+         entries.invalidate(key);
+         return object;
+      }
+      File file;
+      try {
+         file = File.createTempFile("object", SUFFIX, directory);
+      } catch (IOException e) {
+         logger.warn(e, "could not cache %s in %s", key, directory);
+         entries.invalidate(key);
+         return object;
+      }
+      InputStream in = null;
+      try {
+         in = payload.openStream();
+         long written = Files.asByteSink(file).writeFrom(in);
+         checkState(written == length, "expected %s bytes for %s, but read %s", length, key, written);
+         Entry entry = new Entry(object, payload.getContentMetadata(), file, Files.map(file), ticker.read());
+         entries.put(key, entry);
+         if (invalidations.get() != seen) {
+            // an object was written or removed while this one was read, so this copy may already be stale
+            entries.invalidate(key);
+         }
+         return entry.toObject();
+      } catch (IOException e) {
+         file.delete();
+         throw new RuntimeException("could not read " + key, e);
+      } catch (RuntimeException e) {
+         file.delete();
+         throw e;
+      } finally {
+         closeQuietly(in);
+         closeQuietly(payload);
+      }
+   }
+
+   private static String key(String regionId, String container, String name) {
+      return regionId + '/' + container + '/' + name;
+   }
+
+   /**
+    * @return the directory in which this cache keeps its files.
+    */
+   @VisibleForTesting
+   File getDirectory() {
+      return directory;
+   }
+
+   private static File createPrivateDirectory(File directory) {
+      checkArgument(directory.isDirectory() || directory.mkdirs(), "could not create cache directory %s", directory);
+      try {
+         return java.nio.file.Files.createTempDirectory(directory.toPath(), "objects").toFile();
+      } catch (IOException e) {
+         throw new IllegalArgumentException("could not create cache directory in " + directory, e);
+      }
+   }
+
+   private static class Entry {
+      private final SwiftObject object;
+      private final ContentMetadata contentMetadata;
+      private final File file;
+      private final MappedByteBuffer buffer;
+      private volatile long validated;
+
+      Entry(SwiftObject object, ContentMetadata contentMetadata, File file, MappedByteBuffer buffer, long validated) {
+         this.object = object;
+         this.contentMetadata = contentMetadata.toBuilder().build();
+         this.file = file;
+         this.buffer = buffer;
+         this.validated = validated;
+      }
+
+      SwiftObject toObject() {
+         Payload payload = newByteSourcePayload(new MappedByteSource(buffer));
+         payload.setContentMetadata(BaseMutableContentMetadata.fromContentMetadata(contentMetadata));
+         return object.toBuilder().payload(payload).build();
+      }
+   }
+
+   private static class MappedByteSource extends ByteSource {
+      private final ByteBuffer buffer;
+
+      MappedByteSource(ByteBuffer buffer) {
+         this.buffer = buffer;
+      }
+
+      @Override
+      public InputStream openStream() {
+         final ByteBuffer view = buffer.duplicate();
+         return new InputStream() {
+            @Override
+            public int read() {
+               return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+               if (len == 0) {
+                  return 0;
+               }
+               if (!view.hasRemaining()) {
+                  return -1;
+               }
+               int count = Math.min(len, view.remaining());
+               view.get(b, off, count);
+               return count;
+            }
+
+            @Override
+            public int available() {
+               return view.remaining();
+            }
+         };
+      }
+
+      @Override
+      public long size() {
+         return buffer.capacity();
+      }
+   }
+}
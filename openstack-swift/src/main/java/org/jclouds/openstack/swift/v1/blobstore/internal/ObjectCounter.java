@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.COUNT_CONCURRENCY;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.openstack.swift.v1.domain.ObjectCount;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks.Task;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Counts the objects under a prefix or pseudo-directory of a container.
+ * <p/>
+ * Pages are read with {@link ObjectApi#count}, which streams object names instead of parsing their metadata. When the
+ * first page is full, the rest of the names are split at each letter and digit following the prefix, and the
+ * resulting ranges are counted in parallel using {@code marker} and {@code end_marker}.
+ *
+ * @see org.jclouds.openstack.swift.v1.config.SwiftProperties#COUNT_CONCURRENCY
+ */
+@Singleton
+public class ObjectCounter {
+
+   private static final int PAGE_SIZE = 10000;
+   private static final String SPLIT_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+   /**
+    * Appended to a split point to make it an inclusive {@code end_marker}. Swift rejects names containing a NUL
+    * character, so no name sorts between a split point and the split point followed by this character.
+    */
+   private static final char AFTER = '\u0001';
+
+   private final int concurrency;
+   private final Executor executor;
+
+   @Inject
+   ObjectCounter(@Named(COUNT_CONCURRENCY) int concurrency,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor) {
+      this(concurrency, (Executor) executor);
+   }
+
+   @VisibleForTesting
+   ObjectCounter(int concurrency, Executor executor) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      this.executor = checkNotNull(executor, "executor");
+   }
+
+   /**
+    * Counts the objects whose names start with {@code prefix}, at any depth.
+    *
+    * @return the number of objects, or {@code 0} if the container does not exist.
+    */
+   public long countPrefix(ObjectApi objectApi, String prefix, @Nullable String marker) {
+      return count(objectApi, checkNotNull(prefix, "prefix"), null, marker);
+   }
+
+   /**
+    * Counts the objects directly under the pseudo-directory {@code path}, {@code ""} being the top level.
+    *
+    * @return the number of objects, or {@code 0} if the container does not exist.
+    */
+   public long countPath(ObjectApi objectApi, String path, @Nullable String marker) {
+      checkNotNull(path, "path");
+      return count(objectApi, path.isEmpty() || path.endsWith("/") ? path : path + "/", path, marker);
+   }
+
+   private long count(final ObjectApi objectApi, final String prefix, @Nullable final String path,
+         @Nullable String marker) {
+      ObjectCount first = objectApi.count(options(prefix, path, marker, null));
+      if (first == null) {
+         return 0;
+      }
+      if (first.getCount() < PAGE_SIZE) {
+         return first.getCount();
+      }
+      final AtomicLong total = new AtomicLong(first.getCount());
+      ConcurrentTasks.forEach(executor, ranges(prefix, first.getLastName()), concurrency, new Task<String[]>() {
+         @Override
+         public void run(String[] range) {
+            total.addAndGet(countRange(objectApi, prefix, path, range[0], range[1]));
+         }
+      });
+      return total.get();
+   }
+
+   /**
+    * Splits the names after {@code lastName} that start with {@code prefix} into ranges of a {@code marker} and an
+    * {@code end_marker}, the last one being open ended.
+    */
+   @VisibleForTesting
+   static List<String[]> ranges(String prefix, String lastName) {
+      List<String[]> ranges = Lists.newArrayList();
+      String lower = lastName;
+      for (int i = 0; i < SPLIT_CHARACTERS.length(); i++) {
+         String split = prefix + SPLIT_CHARACTERS.charAt(i);
+         if (split.compareTo(lower) > 0) {
+            ranges.add(new String[] { lower, split + AFTER });
+            lower = split;
+         }
+      }
+      ranges.add(new String[] { lower, null });
+      return ranges;
+   }
+
+   private static long countRange(ObjectApi objectApi, String prefix, @Nullable String path, String marker,
+         @Nullable String endMarker) {
+      long count = 0;
+      while (true) {
+         ObjectCount page = objectApi.count(options(prefix, path, marker, endMarker));
+         if (page == null) {
+            return count;
+         }
+         count += page.getCount();
+         if (page.getCount() < PAGE_SIZE) {
+            return count;
+         }
+         marker = page.getLastName();
+      }
+   }
+
+   private static ListContainerOptions options(String prefix, @Nullable String path, @Nullable String marker,
+         @Nullable String endMarker) {
+      ListContainerOptions options = new ListContainerOptions().limit(PAGE_SIZE);
+      if (path != null) {
+         options.path(path);
+      } else {
+         options.prefix(prefix);
+      }
+      if (marker != null) {
+         options.marker(marker);
+      }
+      if (endMarker != null) {
+         options.endMarker(endMarker);
+      }
+      return options;
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Tracks the health of each region as seen from live requests: an exponentially weighted moving average (EWMA) of
+ * latency, and a circuit breaker that opens after consecutive failures.
+ * <p/>
+ * An open circuit admits a single trial request (half-open) once its cool-down elapses, while other requests keep
+ * failing fast; a success of the trial closes the circuit again, while a failure restarts the cool-down. Callers take
+ * the right to send a request with {@link #tryAcquire(String)} and report its outcome with
+ * {@link #success(String, long)} or {@link #failure(String)}.
+ */
+public class RegionHealth {
+
+   public static RegionHealth create() {
+      return new RegionHealth(0.3, 3, TimeUnit.SECONDS.toNanos(30), Ticker.systemTicker());
+   }
+
+   private final double alpha;
+   private final int failureThreshold;
+   private final long coolDownNanos;
+   private final Ticker ticker;
+   private final ConcurrentMap<String, Stats> stats = Maps.newConcurrentMap();
+
+   @VisibleForTesting
+   RegionHealth(double alpha, int failureThreshold, long coolDownNanos, Ticker ticker) {
+      checkArgument(alpha > 0 && alpha <= 1, "alpha must be in (0, 1]");
+      checkArgument(failureThreshold > 0, "failureThreshold must be positive");
+      this.alpha = alpha;
+      this.failureThreshold = failureThreshold;
+      this.coolDownNanos = coolDownNanos;
+      this.ticker = checkNotNull(ticker, "ticker");
+   }
+
+   public Ticker getTicker() {
+      return ticker;
+   }
+
+   /**
+    * Orders {@code regionIds} by preference: regions that admit requests come first, fastest first, with regions never
+    * measured ahead of all others so that they get probed. Regions with an open circuit, or whose half-open trial is
+    * in flight, are kept last.
+    */
+   public List<String> rank(Iterable<String> regionIds) {
+      long now = ticker.read();
+      // snapshot first, as concurrent updates would otherwise break the sort contract
+      final Map<String, Double> scores = Maps.newHashMap();
+      for (String regionId : regionIds) {
+         Stats region = stats(regionId);
+         scores.put(regionId, region.isAvailable(now) ? region.getLatencyNanos() : Double.MAX_VALUE);
+      }
+      List<String> ranked = Lists.newArrayList(regionIds);
+      Collections.sort(ranked, new Comparator<String>() {
+         @Override
+         public int compare(String left, String right) {
+            return Double.compare(scores.get(left), scores.get(right));
+         }
+      });
+      return ranked;
+   }
+
+   /**
+    * @return {@code true} if a request may be sent to the region, in which case its outcome must be reported; when
+    *         the circuit is half-open, only the first caller gets to send the trial request.
+    */
+   public boolean tryAcquire(String regionId) {
+      return stats(regionId).tryAcquire(ticker.read());
+   }
+
+   public void success(String regionId, long latencyNanos) {
+      stats(regionId).success(latencyNanos);
+   }
+
+   public void failure(String regionId) {
+      stats(regionId).failure(ticker.read());
+   }
+
+   /**
+    * @return the latency average in milliseconds, or {@code 0} if the region was never measured.
+    */
+   public double getLatencyMillis(String regionId) {
+      return stats(regionId).getLatencyNanos() / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   public boolean isAvailable(String regionId) {
+      return stats(regionId).isAvailable(ticker.read());
+   }
+
+   private Stats stats(String regionId) {
+      Stats existing = stats.get(checkNotNull(regionId, "regionId"));
+      if (existing != null) {
+         return existing;
+      }
+      Stats created = new Stats();
+      existing = stats.putIfAbsent(regionId, created);
+      return existing != null ? existing : created;
+   }
+
+   private class Stats {
+      private double latencyNanos;
+      private int consecutiveFailures;
+      private long openUntil;
+      private boolean trialInFlight;
+
+      synchronized boolean tryAcquire(long now) {
+         if (consecutiveFailures < failureThreshold) {
+            return true;
+         }
+         if (now - openUntil < 0 || trialInFlight) {
+            return false;
+         }
+         trialInFlight = true;
+         return true;
+      }
+
+      synchronized void success(long nanos) {
+         latencyNanos = latencyNanos == 0 ? nanos : alpha * nanos + (1 - alpha) * latencyNanos;
+         consecutiveFailures = 0;
+         trialInFlight = false;
+      }
+
+      synchronized void failure(long now) {
+         trialInFlight = false;
+         if (++consecutiveFailures >= failureThreshold) {
+            openUntil = now + coolDownNanos;
+         }
+      }
+
+      synchronized double getLatencyNanos() {
+         return latencyNanos;
+      }
+
+      synchronized boolean isAvailable(long now) {
+         return consecutiveFailures < failureThreshold || (now - openUntil >= 0 && !trialInFlight);
+      }
+   }
+}
@@ -17,11 +17,15 @@
 package org.jclouds.openstack.swift.v1.config;
 
 import org.jclouds.http.HttpErrorHandler;
+import org.jclouds.http.HttpRetryHandler;
 import org.jclouds.http.annotation.ClientError;
 import org.jclouds.http.annotation.Redirection;
 import org.jclouds.http.annotation.ServerError;
+import org.jclouds.http.handlers.DelegatingRetryHandler;
 import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.handlers.SwiftDelegatingRetryHandler;
 import org.jclouds.openstack.swift.v1.handlers.SwiftErrorHandler;
+import org.jclouds.openstack.swift.v1.handlers.SwiftRetryHandler;
 import org.jclouds.rest.ConfiguresHttpApi;
 import org.jclouds.rest.config.HttpApiModule;
 
@@ -43,4 +47,10 @@ public abstract class BaseSwiftHttpApiModule<A extends SwiftApi> extends HttpApi
       bind(HttpErrorHandler.class).annotatedWith(ClientError.class).to(SwiftErrorHandler.class);
       bind(HttpErrorHandler.class).annotatedWith(ServerError.class).to(SwiftErrorHandler.class);
    }
+
+   @Override
+   protected void bindRetryHandlers() {
+      bind(HttpRetryHandler.class).annotatedWith(ServerError.class).to(SwiftRetryHandler.class);
+      bind(DelegatingRetryHandler.class).to(SwiftDelegatingRetryHandler.class);
+   }
 }
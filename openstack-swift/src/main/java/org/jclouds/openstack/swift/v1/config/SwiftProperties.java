@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.config;
+
+/**
+ * Configuration properties and constants used in Swift connections.
+ */
+public final class SwiftProperties {
+
+   /**
+    * Lowest rate, in requests per second, that a throttled region will be slowed down to. Defaults to {@code 1}.
+    */
+   public static final String THROTTLE_MIN_RATE = "jclouds.swift.throttle.min-rate";
+
+   /**
+    * Rate, in requests per second, that each region starts at and that a throttled region recovers to. Defaults to
+    * {@code 500}.
+    */
+   public static final String THROTTLE_MAX_RATE = "jclouds.swift.throttle.max-rate";
+
+   /**
+    * Factor applied to the request rate of a region each time it answers {@code 429} or {@code 503}. Defaults to
+    * {@code 0.5}.
+    */
+   public static final String THROTTLE_BACKOFF_FACTOR = "jclouds.swift.throttle.backoff-factor";
+
+   /**
+    * Requests per second added back to a throttled region for every second it does not report overload. Defaults to
+    * {@code 5}.
+    */
+   public static final String THROTTLE_RECOVERY_RATE = "jclouds.swift.throttle.recovery-rate";
+
+   /**
+    * Upper bound, in milliseconds, of a single retry delay, whether computed or taken from {@code Retry-After}.
+    * Defaults to {@code 30000}.
+    */
+   public static final String RETRY_MAX_DELAY = "jclouds.swift.retry.max-delay";
+
+   /**
+    * When {@code true}, blob store reads send a duplicate {@code GET} if the first has not answered within
+    * {@link #HEDGE_PERCENTILE} of recent response times, and use whichever answers first. Defaults to {@code false}.
+    * <p/>
+    * Both requests run on the user executor, so enabling this with a bounded
+    * {@link org.jclouds.Constants#PROPERTY_USER_THREADS} pool requires room for the duplicates, of which at most
+    * {@link #HEDGE_MAX_OUTSTANDING} run at a time.
+    */
+   public static final String HEDGE_READS = "jclouds.swift.hedge.enabled";
+
+   /**
+    * Percentile of recent {@code GET} response times after which a hedged read sends its duplicate request. Defaults
+    * to {@code 95}.
+    */
+   public static final String HEDGE_PERCENTILE = "jclouds.swift.hedge.percentile";
+
+   /**
+    * Minimum time, in milliseconds, to wait before sending the duplicate request of a hedged read. Defaults to
+    * {@code 5}.
+    */
+   public static final String HEDGE_MIN_DELAY = "jclouds.swift.hedge.min-delay";
+
+   /**
+    * Maximum number of duplicate requests of hedged reads outstanding at a time. A slow read beyond that waits on its
+    * first request alone. Defaults to {@code 16}.
+    */
+   public static final String HEDGE_MAX_OUTSTANDING = "jclouds.swift.hedge.max-outstanding";
+
+   /**
+    * Directory in which blob store reads keep copies of recently read objects, revalidated by ETag. Caching is
+    * disabled when empty, which is the default.
+    */
+   public static final String CACHE_DIRECTORY = "jclouds.swift.cache.directory";
+
+   /**
+    * Total size, in bytes, of the objects kept in {@link #CACHE_DIRECTORY}. Defaults to {@code 268435456} (256 MB).
+    */
+   public static final String CACHE_MAX_SIZE = "jclouds.swift.cache.max-size";
+
+   /**
+    * Largest object, in bytes, that will be cached. Defaults to {@code 16777216} (16 MB).
+    */
+   public static final String CACHE_MAX_OBJECT_SIZE = "jclouds.swift.cache.max-object-size";
+
+   /**
+    * Time, in milliseconds, during which a cached object is served without asking Swift whether it changed. Defaults
+    * to {@code 0}, which revalidates every read with a conditional {@code GET}.
+    */
+   public static final String CACHE_FRESHNESS = "jclouds.swift.cache.freshness";
+
+   /**
+    * Number of listing requests a blob store {@code countBlobs} sends at the same time once a prefix holds more than
+    * 10,000 objects. Defaults to {@code 8}.
+    */
+   public static final String COUNT_CONCURRENCY = "jclouds.swift.count.concurrency";
+
+   private SwiftProperties() {
+      throw new AssertionError("intentionally unimplemented");
+   }
+}
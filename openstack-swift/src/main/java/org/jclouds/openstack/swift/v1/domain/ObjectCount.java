@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.domain;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Objects.equal;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects.ToStringHelper;
+import com.google.common.base.Objects;
+
+/**
+ * Represents the number of objects in one page of a container listing, without their metadata.
+ *
+ * @see org.jclouds.openstack.swift.v1.features.ObjectApi#count
+ */
+public class ObjectCount {
+   public static ObjectCount create(int count, @Nullable String lastName) {
+      return new ObjectCount(count, lastName);
+   }
+
+   private final int count;
+   private final String lastName;
+
+   private ObjectCount(int count, @Nullable String lastName) {
+      checkArgument(count >= 0, "count must be non-negative");
+      checkArgument(count == 0 || lastName != null, "lastName is required when count is positive");
+      this.count = count;
+      this.lastName = lastName;
+   }
+
+   /**
+    * @return The number of objects in the page.
+    */
+   public int getCount() {
+      return count;
+   }
+
+   /**
+    * @return The name of the last object in the page, which is the marker of the next page, or {@code null} if the
+    *         page is empty.
+    */
+   @Nullable
+   public String getLastName() {
+      return lastName;
+   }
+
+   @Override
+   public boolean equals(Object object) {
+      if (this == object) {
+         return true;
+      }
+      if (object instanceof ObjectCount) {
+         ObjectCount that = ObjectCount.class.cast(object);
+         return equal(getCount(), that.getCount())
+               && equal(getLastName(), that.getLastName());
+      } else {
+         return false;
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hashCode(getCount(), getLastName());
+   }
+
+   protected ToStringHelper string() {
+      return toStringHelper(this)
+            .add("count", getCount())
+            .add("lastName", getLastName());
+   }
+
+   @Override
+   public String toString() {
+      return string().toString();
+   }
+}
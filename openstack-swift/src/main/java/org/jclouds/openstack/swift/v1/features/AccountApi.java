@@ -32,6 +32,7 @@ import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindAccountMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindRemoveAccountMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.domain.Account;
+import org.jclouds.openstack.swift.v1.filters.ThrottleRequests;
 import org.jclouds.openstack.swift.v1.functions.ParseAccountFromHeaders;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.Fallback;
@@ -55,7 +56,7 @@ import com.google.common.annotations.Beta;
  * @see {@link Account}
  */
 @Beta
-@RequestFilters(AuthenticateRequest.class)
+@RequestFilters({ AuthenticateRequest.class, ThrottleRequests.class })
 @Consumes(APPLICATION_JSON)
 public interface AccountApi {
 
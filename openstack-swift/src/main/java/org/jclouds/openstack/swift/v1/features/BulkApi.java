@@ -36,6 +36,7 @@ import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.SetPayload;
 import org.jclouds.openstack.swift.v1.domain.BulkDeleteResponse;
 import org.jclouds.openstack.swift.v1.domain.ExtractArchiveResponse;
+import org.jclouds.openstack.swift.v1.filters.ThrottleRequests;
 import org.jclouds.rest.Binder;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.QueryParams;
@@ -52,7 +53,7 @@ import com.google.common.base.Joiner;
  * org.jclouds.openstack.swift.SwiftClient in jclouds 2.0 and it is recommended you adopt it sooner than later.
  */
 @Beta
-@RequestFilters(AuthenticateRequest.class)
+@RequestFilters({ AuthenticateRequest.class, ThrottleRequests.class })
 @Consumes(APPLICATION_JSON)
 public interface BulkApi {
 
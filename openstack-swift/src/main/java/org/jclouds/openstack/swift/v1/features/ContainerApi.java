@@ -39,6 +39,7 @@ import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindContainerMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindRemoveContainerMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.filters.ThrottleRequests;
 import org.jclouds.openstack.swift.v1.functions.FalseOnAccepted;
 import org.jclouds.openstack.swift.v1.functions.ParseContainerFromHeaders;
 import org.jclouds.openstack.swift.v1.options.CreateContainerOptions;
@@ -60,7 +61,7 @@ import com.google.common.collect.FluentIterable;
  * {@code org.jclouds.openstack.swift.SwiftClient} in jclouds 2.0 and it is recommended you adopt it sooner than later.
  */
 @Beta
-@RequestFilters(AuthenticateRequest.class)
+@RequestFilters({ AuthenticateRequest.class, ThrottleRequests.class })
 @Consumes(APPLICATION_JSON)
 public interface ContainerApi {
 
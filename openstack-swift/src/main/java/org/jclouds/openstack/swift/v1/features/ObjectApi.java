@@ -18,7 +18,9 @@ package org.jclouds.openstack.swift.v1.features;
 
 import static com.google.common.net.HttpHeaders.EXPECT;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_COPY_FROM;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_DELETE_AT;
 
 import java.util.Map;
 
@@ -27,6 +29,7 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -44,9 +47,12 @@ import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindObjectMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindRemoveObjectMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.binders.SetPayload;
+import org.jclouds.openstack.swift.v1.domain.ObjectCount;
 import org.jclouds.openstack.swift.v1.domain.ObjectList;
 import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.filters.ThrottleRequests;
 import org.jclouds.openstack.swift.v1.functions.ETagHeader;
+import org.jclouds.openstack.swift.v1.functions.ParseObjectCountFromResponse;
 import org.jclouds.openstack.swift.v1.functions.ParseObjectFromResponse;
 import org.jclouds.openstack.swift.v1.functions.ParseObjectListFromResponse;
 import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
@@ -67,7 +73,7 @@ import com.google.common.annotations.Beta;
  * org.jclouds.openstack.swift.SwiftClient in jclouds 2.0 and it is recommended you adopt it sooner than later.
  */
 @Beta
-@RequestFilters(AuthenticateRequest.class)
+@RequestFilters({ AuthenticateRequest.class, ThrottleRequests.class })
 @Consumes(APPLICATION_JSON)
 public interface ObjectApi {
 
@@ -100,6 +106,24 @@ public interface ObjectApi {
    @Nullable
    ObjectList list(ListContainerOptions options);
 
+   /**
+    * Counts up to 10,000 objects, reading only their names. This is cheaper than {@link #list(ListContainerOptions)}
+    * when the metadata of the objects is not needed. Use the {@code marker} and {@code endMarker} parameters in the
+    * {@link ListContainerOptions} class to count beyond 10,000 objects.
+    *
+    * @param options
+    *           the {@link ListContainerOptions} for controlling the counted objects.
+    *
+    * @return an {@link ObjectCount} of the page or {@code null}, if the container does not exist.
+    */
+   @Named("object:list")
+   @GET
+   @Consumes(TEXT_PLAIN)
+   @ResponseParser(ParseObjectCountFromResponse.class)
+   @Fallback(NullOnNotFoundOr404.class)
+   @Nullable
+   ObjectCount count(ListContainerOptions options);
+
    /**
     * Creates or updates a {@link SwiftObject}.
     *
@@ -206,6 +230,35 @@ public interface ObjectApi {
    boolean updateMetadata(@PathParam("objectName") String objectName,
          @BinderParam(BindObjectMetadataToHeaders.class) Map<String, String> metadata);
 
+   /**
+    * Replaces the metadata of a {@link SwiftObject} and schedules its deletion.
+    *
+    * <h3>NOTE</h3>
+    * Swift replaces all of the metadata of an object on update, including {@code Content-Disposition},
+    * {@code Content-Encoding} and {@code X-Object-Manifest}, so {@code metadata} and {@code options} must include any
+    * existing metadata and headers to keep.
+    *
+    * @param objectName
+    *           corresponds to {@link SwiftObject#getName()}.
+    * @param metadata
+    *           the metadata of the object after the update.
+    * @param deleteAt
+    *           seconds since the epoch after which Swift deletes the object.
+    * @param options
+    *           the other headers of the object after the update.
+    *
+    * @return {@code true} if the object was successfully updated,
+    *         {@code false} if not.
+    */
+   @Named("object:updateMetadata")
+   @POST
+   @Path("/{objectName}")
+   @Produces("")
+   @Fallback(FalseOnNotFoundOr404.class)
+   boolean updateMetadataAndDeleteAt(@PathParam("objectName") String objectName,
+         @BinderParam(BindObjectMetadataToHeaders.class) Map<String, String> metadata,
+         @HeaderParam(OBJECT_DELETE_AT) long deleteAt, PutOptions options);
+
    /**
     * Deletes the metadata from a {@link SwiftObject}.
     *
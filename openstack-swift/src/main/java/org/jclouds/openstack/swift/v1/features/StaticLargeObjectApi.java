@@ -32,6 +32,7 @@ import org.jclouds.Fallbacks.VoidOnNotFoundOr404;
 import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindObjectMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.filters.ThrottleRequests;
 import org.jclouds.openstack.swift.v1.functions.ETagHeader;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.Fallback;
@@ -50,7 +51,7 @@ import com.google.common.annotations.Beta;
  * org.jclouds.openstack.swift.SwiftClient in jclouds 2.0 and it is recommended you adopt it sooner than later.
  */
 @Beta
-@RequestFilters(AuthenticateRequest.class)
+@RequestFilters({ AuthenticateRequest.class, ThrottleRequests.class })
 @Consumes(APPLICATION_JSON)
 @Path("/{objectName}")
 public interface StaticLargeObjectApi {
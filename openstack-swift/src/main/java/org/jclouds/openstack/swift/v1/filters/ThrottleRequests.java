@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.filters;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpException;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpRequestFilter;
+import org.jclouds.openstack.swift.v1.handlers.RegionThrottle;
+
+/**
+ * Paces requests to each region according to its {@link RegionThrottle}. As filters run before every attempt, retries
+ * are paced as well.
+ */
+@Singleton
+public class ThrottleRequests implements HttpRequestFilter {
+
+   private final RegionThrottle throttle;
+
+   @Inject
+   ThrottleRequests(RegionThrottle throttle) {
+      this.throttle = throttle;
+   }
+
+   @Override
+   public HttpRequest filter(HttpRequest request) throws HttpException {
+      throttle.acquire(request.getEndpoint());
+      return request;
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+/**
+ * The headers a parser needs, read in a single pass over a response.
+ * <p/>
+ * {@link org.jclouds.http.HttpMessage#getFirstHeaderOrNull} copies all headers whenever the name is not found with
+ * the exact case the server used, and {@link EntriesWithoutMetaPrefix} scans them again. Parsers that need several
+ * values decode them together here instead. Names are matched ignoring case and the first value wins.
+ */
+final class DecodedHeaders {
+
+   private static final String META = "-meta-";
+
+   private final String[] names;
+   private final String[] values;
+   private final Map<String, String> metadata;
+
+   private DecodedHeaders(String[] names, String[] values, Map<String, String> metadata) {
+      this.names = names;
+      this.values = values;
+      this.metadata = metadata;
+   }
+
+   /**
+    * @param names
+    *           the headers whose first value should be kept, in addition to the metadata.
+    */
+   static DecodedHeaders decode(Multimap<String, String> headers, String... names) {
+      String[] values = new String[names.length];
+      Map<String, String> metadata = null;
+      for (Entry<String, String> header : headers.entries()) {
+         String key = header.getKey();
+         int index = indexOfMeta(key);
+         if (index != -1) {
+            if (metadata == null) {
+               metadata = Maps.newLinkedHashMap();
+            }
+            String name = key.substring(index + META.length());
+            if (!metadata.containsKey(name)) {
+               metadata.put(name, header.getValue());
+            }
+            continue;
+         }
+         for (int i = 0; i < names.length; i++) {
+            if (values[i] == null && names[i].equalsIgnoreCase(key)) {
+               values[i] = header.getValue();
+               break;
+            }
+         }
+      }
+      return new DecodedHeaders(names, values,
+            metadata == null ? ImmutableMap.<String, String> of() : ImmutableMap.copyOf(metadata));
+   }
+
+   /**
+    * @return the first value of a header passed to {@link #decode}, or {@code null} if it was not present.
+    */
+   String get(String name) {
+      for (int i = 0; i < names.length; i++) {
+         if (names[i].equals(name)) {
+            return values[i];
+         }
+      }
+      throw new IllegalArgumentException(name + " was not decoded");
+   }
+
+   /**
+    * @return the entries whose keys contain {@code -Meta-}, without the prefix.
+    */
+   Map<String, String> getMetadata() {
+      return metadata;
+   }
+
+   private static int indexOfMeta(String key) {
+      // Swift prefixes are X-Account-Meta-, X-Container-Meta- and X-Object-Meta-
+      for (int i = key.indexOf('-'); i != -1 && i + META.length() <= key.length(); i = key.indexOf('-', i + 1)) {
+         if (key.regionMatches(true, i, META, 0, META.length())) {
+            return i;
+         }
+      }
+      return -1;
+   }
+}
@@ -17,14 +17,12 @@
 package org.jclouds.openstack.swift.v1.functions;
 
 import java.util.Map;
-import java.util.Map.Entry;
 
 import com.google.common.base.Function;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
 
 /**
- * Extracts entries whose keys start with {@code .*-Meta-}.
+ * Extracts entries whose keys contain {@code -Meta-}, ignoring case.
  * 
  * @param from
  *           a {@link Multimap} containing the prefixed headers.
@@ -36,13 +34,6 @@ public enum EntriesWithoutMetaPrefix implements Function<Multimap<String, String
 
    @Override
    public Map<String, String> apply(Multimap<String, String> arg0) {
-      ImmutableMap.Builder<String, String> metadata = ImmutableMap.builder();
-      for (Entry<String, String> header : arg0.entries()) {
-         int index = header.getKey().indexOf("-Meta-");
-         if (index != -1) {
-            metadata.put(header.getKey().substring(index + 6), header.getValue());
-         }
-      }
-      return metadata.build();
+      return DecodedHeaders.decode(arg0).getMetadata();
    }
 }
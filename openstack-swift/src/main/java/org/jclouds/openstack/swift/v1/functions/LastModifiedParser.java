@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import java.util.Date;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.date.DateService;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Parses {@code Last-Modified} values, remembering recent ones.
+ * <p/>
+ * Objects written in the same second share the same value, so listings and {@code HEAD}-heavy workloads parse the
+ * same few strings over and over, each time through a synchronized date format.
+ */
+@Singleton
+public class LastModifiedParser {
+
+   private final DateService dates;
+   private final Cache<String, Long> parsed = CacheBuilder.newBuilder().maximumSize(1024).build();
+
+   @Inject
+   LastModifiedParser(DateService dates) {
+      this.dates = dates;
+   }
+
+   /**
+    * @return the date, or {@code null} if {@code value} is {@code null}.
+    */
+   public Date parse(String value) {
+      if (value == null) {
+         return null;
+      }
+      Long millis = parsed.getIfPresent(value);
+      if (millis == null) {
+         Date date = dates.rfc822DateParse(value);
+         if (date == null) {
+            return null;
+         }
+         millis = date.getTime();
+         parsed.put(value, millis);
+      }
+      // Date is mutable, so never hand out a shared instance
+      return new Date(millis);
+   }
+}
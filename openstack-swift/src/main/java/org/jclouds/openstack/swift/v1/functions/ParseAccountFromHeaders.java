@@ -29,10 +29,12 @@ public class ParseAccountFromHeaders implements Function<HttpResponse, Account>
 
    @Override
    public Account apply(HttpResponse from) {
+      DecodedHeaders headers = DecodedHeaders.decode(from.getHeaders(), ACCOUNT_BYTES_USED, ACCOUNT_CONTAINER_COUNT,
+            ACCOUNT_OBJECT_COUNT);
       return Account.builder()
-            .bytesUsed(Long.parseLong(from.getFirstHeaderOrNull(ACCOUNT_BYTES_USED)))
-            .containerCount(Long.parseLong(from.getFirstHeaderOrNull(ACCOUNT_CONTAINER_COUNT)))
-            .objectCount(Long.parseLong(from.getFirstHeaderOrNull(ACCOUNT_OBJECT_COUNT)))
-            .metadata(EntriesWithoutMetaPrefix.INSTANCE.apply(from.getHeaders())).build();
+            .bytesUsed(Long.parseLong(headers.get(ACCOUNT_BYTES_USED)))
+            .containerCount(Long.parseLong(headers.get(ACCOUNT_CONTAINER_COUNT)))
+            .objectCount(Long.parseLong(headers.get(ACCOUNT_OBJECT_COUNT)))
+            .metadata(headers.getMetadata()).build();
    }
 }
@@ -36,13 +36,15 @@ public class ParseContainerFromHeaders implements Function<HttpResponse, Contain
 
    @Override
    public Container apply(HttpResponse from) {
+      DecodedHeaders headers = DecodedHeaders.decode(from.getHeaders(), CONTAINER_BYTES_USED,
+            CONTAINER_OBJECT_COUNT, CONTAINER_READ);
       Container c = 
       Container.builder()
             .name(name)
-            .bytesUsed(Long.parseLong(from.getFirstHeaderOrNull(CONTAINER_BYTES_USED)))
-            .objectCount(Long.parseLong(from.getFirstHeaderOrNull(CONTAINER_OBJECT_COUNT)))
-            .anybodyRead(CONTAINER_ACL_ANYBODY_READ.equals(from.getFirstHeaderOrNull(CONTAINER_READ)))
-            .metadata(EntriesWithoutMetaPrefix.INSTANCE.apply(from.getHeaders())).build();
+            .bytesUsed(Long.parseLong(headers.get(CONTAINER_BYTES_USED)))
+            .objectCount(Long.parseLong(headers.get(CONTAINER_OBJECT_COUNT)))
+            .anybodyRead(CONTAINER_ACL_ANYBODY_READ.equals(headers.get(CONTAINER_READ)))
+            .metadata(headers.getMetadata()).build();
       return c;
    }
 
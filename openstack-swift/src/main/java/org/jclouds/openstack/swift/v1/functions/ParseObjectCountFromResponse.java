@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.openstack.swift.v1.domain.ObjectCount;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+
+/**
+ * Counts the names of a {@code text/plain} object listing as they stream in, keeping only the last one.
+ */
+public class ParseObjectCountFromResponse implements Function<HttpResponse, ObjectCount> {
+
+   @Override
+   public ObjectCount apply(HttpResponse from) {
+      // an empty container answers 204 without a body
+      if (from.getPayload() == null) {
+         return ObjectCount.create(0, null);
+      }
+      BufferedReader reader = null;
+      try {
+         reader = new BufferedReader(new InputStreamReader(from.getPayload().openStream(), UTF_8));
+         int count = 0;
+         String lastName = null;
+         for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!line.isEmpty()) {
+               count++;
+               lastName = line;
+            }
+         }
+         return ObjectCount.create(count, lastName);
+      } catch (IOException e) {
+         throw Throwables.propagate(e);
+      } finally {
+         Closeables.closeQuietly(reader);
+         from.getPayload().release();
+      }
+   }
+}
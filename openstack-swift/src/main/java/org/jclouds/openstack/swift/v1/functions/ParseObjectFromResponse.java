@@ -25,7 +25,6 @@ import java.util.Date;
 
 import javax.inject.Inject;
 
-import org.jclouds.date.DateService;
 import org.jclouds.http.HttpRequest;
 import org.jclouds.http.HttpResponse;
 import org.jclouds.io.MutableContentMetadata;
@@ -38,11 +37,11 @@ import com.google.common.base.Function;
 
 public class ParseObjectFromResponse implements Function<HttpResponse, SwiftObject>,
       InvocationContext<ParseObjectFromResponse> {
-   private final DateService dates;
+   private final LastModifiedParser lastModified;
 
    @Inject
-   ParseObjectFromResponse(DateService dates) {
-      this.dates = dates;
+   ParseObjectFromResponse(LastModifiedParser lastModified) {
+      this.lastModified = lastModified;
    }
 
    private String uri;
@@ -54,9 +53,11 @@ public class ParseObjectFromResponse implements Function<HttpResponse, SwiftObje
       Payload payload = from.getPayload();
       MutableContentMetadata contentMeta = payload.getContentMetadata();
 
-      String deleteAt = from.getFirstHeaderOrNull(OBJECT_DELETE_AT);
+      DecodedHeaders headers = DecodedHeaders.decode(from.getHeaders(), ETAG, LAST_MODIFIED, OBJECT_DELETE_AT);
+
+      String deleteAt = headers.get(OBJECT_DELETE_AT);
       if (deleteAt != null) {
-         long fromEpoch = Long.parseLong(from.getFirstHeaderOrNull(OBJECT_DELETE_AT)) * 1000;
+         long fromEpoch = Long.parseLong(deleteAt) * 1000;
          contentMeta.setExpires(new Date(fromEpoch));
          payload.setContentMetadata(contentMeta);
       }
@@ -64,11 +65,11 @@ public class ParseObjectFromResponse implements Function<HttpResponse, SwiftObje
       return SwiftObject.builder()
             .uri(URI.create(uri))
             .name(name)
-            .etag(from.getFirstHeaderOrNull(ETAG))
+            .etag(headers.get(ETAG))
             .payload(payload)
-            .lastModified(dates.rfc822DateParse(from.getFirstHeaderOrNull(LAST_MODIFIED)))
+            .lastModified(lastModified.parse(headers.get(LAST_MODIFIED)))
             .headers(from.getHeaders())
-            .metadata(EntriesWithoutMetaPrefix.INSTANCE.apply(from.getHeaders())).build();
+            .metadata(headers.getMetadata()).build();
    }
 
    @Override
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.handlers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_BACKOFF_FACTOR;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_MAX_RATE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_MIN_RATE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.THROTTLE_RECOVERY_RATE;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Keeps a token bucket per Swift endpoint (one per region) whose rate adapts to overload signals.
+ * <p/>
+ * Each region starts at {@link org.jclouds.openstack.swift.v1.config.SwiftProperties#THROTTLE_MAX_RATE}, so that
+ * requests are only held back once the region actually pushed back. Every {@code 429} or {@code 503} multiplies the
+ * rate by {@link org.jclouds.openstack.swift.v1.config.SwiftProperties#THROTTLE_BACKOFF_FACTOR}, down to
+ * {@link org.jclouds.openstack.swift.v1.config.SwiftProperties#THROTTLE_MIN_RATE}. While a region stays quiet, the rate
+ * grows back linearly to the ceiling.
+ */
+@Singleton
+public class RegionThrottle {
+
+   private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+   private final double minRate;
+   private final double maxRate;
+   private final double backoffFactor;
+   private final double recoveryRate;
+   private final Ticker ticker;
+
+   private final LoadingCache<String, Bucket> buckets = CacheBuilder.newBuilder().build(
+         new CacheLoader<String, Bucket>() {
+            public Bucket load(String authority) {
+               return new Bucket();
+            }
+         });
+
+   @Inject
+   RegionThrottle(@Named(THROTTLE_MIN_RATE) double minRate, @Named(THROTTLE_MAX_RATE) double maxRate,
+         @Named(THROTTLE_BACKOFF_FACTOR) double backoffFactor, @Named(THROTTLE_RECOVERY_RATE) double recoveryRate) {
+      this(minRate, maxRate, backoffFactor, recoveryRate, Ticker.systemTicker());
+   }
+
+   @VisibleForTesting
+   RegionThrottle(double minRate, double maxRate, double backoffFactor, double recoveryRate, Ticker ticker) {
+      checkArgument(minRate > 0 && minRate <= maxRate, "minRate must be positive and at most maxRate");
+      checkArgument(backoffFactor > 0 && backoffFactor < 1, "backoffFactor must be between 0 and 1");
+      checkArgument(recoveryRate >= 0, "recoveryRate must not be negative");
+      this.minRate = minRate;
+      this.maxRate = maxRate;
+      this.backoffFactor = backoffFactor;
+      this.recoveryRate = recoveryRate;
+      this.ticker = checkNotNull(ticker, "ticker");
+   }
+
+   /**
+    * Blocks until the region serving {@code endpoint} may receive another request.
+    */
+   public void acquire(URI endpoint) {
+      buckets.getUnchecked(authority(endpoint)).beforeRequest(ticker.read()).acquire();
+   }
+
+   /**
+    * Records that the region serving {@code endpoint} reported overload.
+    */
+   public void overloaded(URI endpoint) {
+      buckets.getUnchecked(authority(endpoint)).overloaded(ticker.read());
+   }
+
+   /**
+    * @return the current rate for the region serving {@code endpoint}, which is the ceiling until it reports overload.
+    */
+   public double getRate(URI endpoint) {
+      Bucket bucket = buckets.getIfPresent(authority(endpoint));
+      return bucket != null ? bucket.getRate() : maxRate;
+   }
+
+   private static String authority(URI endpoint) {
+      return checkNotNull(endpoint, "endpoint").getAuthority();
+   }
+
+   private class Bucket {
+      private final RateLimiter limiter = RateLimiter.create(maxRate);
+      private double rate = maxRate;
+      private long lastAdjusted;
+
+      synchronized RateLimiter beforeRequest(long now) {
+         if (rate < maxRate && now - lastAdjusted >= SECOND) {
+            rate = Math.min(maxRate, rate + recoveryRate * (now - lastAdjusted) / SECOND);
+            lastAdjusted = now;
+            limiter.setRate(rate);
+         }
+         return limiter;
+      }
+
+      synchronized void overloaded(long now) {
+         // concurrent requests tend to fail together; only back off once per second
+         if (rate < maxRate && now - lastAdjusted < SECOND) {
+            return;
+         }
+         rate = Math.max(minRate, rate * backoffFactor);
+         lastAdjusted = now;
+         limiter.setRate(rate);
+      }
+
+      synchronized double getRate() {
+         return rate;
+      }
+   }
+}
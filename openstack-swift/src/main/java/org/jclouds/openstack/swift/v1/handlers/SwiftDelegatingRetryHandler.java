@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.handlers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.handlers.BackoffLimitedRetryHandler;
+import org.jclouds.http.handlers.DelegatingRetryHandler;
+import org.jclouds.http.handlers.RedirectionRetryHandler;
+
+/**
+ * Routes {@code 429 Too Many Requests} to {@link SwiftRetryHandler}.
+ * <p/>
+ * The client error retry handler is already bound by Keystone to renew expired tokens, so throttled requests are
+ * picked out here rather than by rebinding it.
+ */
+@Singleton
+public class SwiftDelegatingRetryHandler extends DelegatingRetryHandler {
+
+   private final SwiftRetryHandler throttledRetryHandler;
+
+   @Inject
+   SwiftDelegatingRetryHandler(BackoffLimitedRetryHandler backoffHandler,
+         RedirectionRetryHandler redirectionRetryHandler, SwiftRetryHandler throttledRetryHandler) {
+      super(backoffHandler, redirectionRetryHandler);
+      this.throttledRetryHandler = checkNotNull(throttledRetryHandler, "throttledRetryHandler");
+   }
+
+   @Override
+   public boolean shouldRetryRequest(HttpCommand command, HttpResponse response) {
+      if (response.getStatusCode() == 429) {
+         return throttledRetryHandler.shouldRetryRequest(command, response);
+      }
+      return super.shouldRetryRequest(command, response);
+   }
+}
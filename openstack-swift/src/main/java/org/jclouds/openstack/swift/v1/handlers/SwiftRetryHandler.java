@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.handlers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.HttpHeaders.RETRY_AFTER;
+import static org.jclouds.Constants.PROPERTY_MAX_RETRIES;
+import static org.jclouds.Constants.PROPERTY_RETRY_DELAY_START;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.RETRY_MAX_DELAY;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.date.DateService;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpRetryHandler;
+import org.jclouds.http.handlers.BackoffLimitedRetryHandler;
+import org.jclouds.logging.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Longs;
+
+/**
+ * Retries requests rejected with {@code 429 Too Many Requests} or {@code 503 Service Unavailable}.
+ * <p/>
+ * The delay honors {@code Retry-After}, in either its seconds or HTTP-date form, and otherwise uses exponential
+ * backoff with full jitter so that concurrent clients do not retry in lockstep. Each overload is also reported to the
+ * {@link RegionThrottle}, which slows down subsequent requests to the same region. Other server errors are delegated
+ * to {@link BackoffLimitedRetryHandler}.
+ * <p/>
+ * Other client errors are left to the retry handler bound by Keystone; {@link SwiftDelegatingRetryHandler} routes
+ * {@code 429} here.
+ */
+@Singleton
+public class SwiftRetryHandler implements HttpRetryHandler {
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final RegionThrottle throttle;
+   private final BackoffLimitedRetryHandler backoffHandler;
+   private final DateService dates;
+   private final int retryCountLimit;
+   private final long delayStart;
+   private final long maxDelay;
+   private final Random random = new Random();
+
+   @Inject
+   SwiftRetryHandler(RegionThrottle throttle, BackoffLimitedRetryHandler backoffHandler, DateService dates,
+         @Named(PROPERTY_MAX_RETRIES) int retryCountLimit, @Named(PROPERTY_RETRY_DELAY_START) long delayStart,
+         @Named(RETRY_MAX_DELAY) long maxDelay) {
+      this.throttle = checkNotNull(throttle, "throttle");
+      this.backoffHandler = checkNotNull(backoffHandler, "backoffHandler");
+      this.dates = checkNotNull(dates, "dates");
+      this.retryCountLimit = retryCountLimit;
+      this.delayStart = delayStart;
+      this.maxDelay = maxDelay;
+   }
+
+   @Override
+   public boolean shouldRetryRequest(HttpCommand command, HttpResponse response) {
+      if (response.getStatusCode() != 429 && response.getStatusCode() != 503) {
+         return backoffHandler.shouldRetryRequest(command, response);
+      }
+      throttle.overloaded(command.getCurrentRequest().getEndpoint());
+      command.incrementFailureCount();
+      if (!command.isReplayable()) {
+         logger.error("Cannot retry after overload, command is not replayable: %1$s", command);
+         return false;
+      } else if (command.getFailureCount() > retryCountLimit) {
+         logger.error("Cannot retry after overload, command has exceeded retry limit %1$d: %2$s", retryCountLimit,
+               command);
+         return false;
+      }
+      long delay = delayMillis(command.getFailureCount(), response.getFirstHeaderOrNull(RETRY_AFTER));
+      logger.debug("Retrying after %1$s in %2$dms: %3$s", response.getStatusLine(), delay, command);
+      try {
+         TimeUnit.MILLISECONDS.sleep(delay);
+         return true;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+   }
+
+   @VisibleForTesting
+   long delayMillis(int failureCount, String retryAfter) {
+      long delay = retryAfterMillis(retryAfter);
+      if (delay < 0) {
+         long ceiling = Math.min(maxDelay, delayStart << Math.min(failureCount, 30));
+         delay = (long) (random.nextDouble() * ceiling);
+      }
+      return Math.min(delay, maxDelay);
+   }
+
+   /**
+    * @return milliseconds to wait according to a {@code Retry-After} value, or {@code -1} if absent or unparsable.
+    */
+   @VisibleForTesting
+   long retryAfterMillis(String retryAfter) {
+      if (retryAfter == null) {
+         return -1;
+      }
+      Long seconds = Longs.tryParse(retryAfter.trim());
+      if (seconds != null) {
+         return Math.max(0, TimeUnit.SECONDS.toMillis(seconds));
+      }
+      try {
+         Date date = dates.rfc822DateParse(retryAfter.trim());
+         return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+      } catch (IllegalArgumentException e) {
+         return -1;
+      }
+   }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.lifecycle;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+
+/**
+ * A retention rule for the objects whose names start with a prefix, such as "objects under {@code logs/} older than
+ * 30 days".
+ *
+ * @see LifecycleManager
+ */
+public class ExpirationRule {
+
+   public enum Action {
+      /**
+       * Sets {@code X-Delete-At} so that Swift deletes the object once it reaches the age. Objects already older are
+       * deleted right away.
+       */
+      EXPIRE,
+      /**
+       * Deletes the object once it is older than the age, leaving younger objects untouched.
+       */
+      DELETE;
+   }
+
+   /**
+    * Schedules objects under {@code prefix} for deletion by Swift once they are {@code age} old.
+    */
+   public static ExpirationRule expire(String prefix, long age, TimeUnit unit) {
+      return new ExpirationRule(prefix, unit.toMillis(age), Action.EXPIRE);
+   }
+
+   /**
+    * Deletes objects under {@code prefix} that are more than {@code age} old.
+    */
+   public static ExpirationRule delete(String prefix, long age, TimeUnit unit) {
+      return new ExpirationRule(prefix, unit.toMillis(age), Action.DELETE);
+   }
+
+   private final String prefix;
+   private final long ageMillis;
+   private final Action action;
+
+   private ExpirationRule(String prefix, long ageMillis, Action action) {
+      this.prefix = checkNotNull(prefix, "prefix");
+      checkArgument(ageMillis >= 0, "age must be non-negative");
+      this.ageMillis = ageMillis;
+      this.action = checkNotNull(action, "action");
+   }
+
+   public String getPrefix() {
+      return prefix;
+   }
+
+   public long getAgeMillis() {
+      return ageMillis;
+   }
+
+   public Action getAction() {
+      return action;
+   }
+
+   public boolean matches(String name) {
+      return name.startsWith(prefix);
+   }
+
+   /**
+    * @return when an object last modified at {@code lastModified} reaches the age of this rule.
+    */
+   public Date expiresAt(Date lastModified) {
+      return new Date(lastModified.getTime() + ageMillis);
+   }
+
+   @Override
+   public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (obj == null || getClass() != obj.getClass()) return false;
+      ExpirationRule that = ExpirationRule.class.cast(obj);
+      return prefix.equals(that.prefix) && ageMillis == that.ageMillis && action == that.action;
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hashCode(prefix, ageMillis, action);
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).add("prefix", prefix).add("ageMillis", ageMillis).add("action", action).toString();
+   }
+}
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.lifecycle;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.HttpHeaders.CONTENT_DISPOSITION;
+import static com.google.common.net.HttpHeaders.CONTENT_ENCODING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_MANIFEST;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.io.ContentMetadata;
+import org.jclouds.logging.Logger;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.BulkDeleteResponse;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.BulkApi;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.options.PutOptions;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Applies {@link ExpirationRule}s to the objects of a container.
+ * <p/>
+ * The container is listed a page at a time and each object is matched against the rules in order, the first matching
+ * rule winning. Objects to schedule are read with a {@code HEAD} and updated with a {@code POST} carrying their
+ * existing metadata, the headers Swift would otherwise drop, such as {@code X-Object-Manifest}, and {@code X-Delete-At},
+ * since Swift replaces all metadata on update. Objects already scheduled
+ * no later than the rule asks are left alone. Objects due now are deleted with {@link BulkApi#bulkDelete} in batches of
+ * {@link LifecycleOptions#getBulkDeleteSize()}. At most {@link LifecycleOptions#getConcurrency()} of these requests
+ * are outstanding at a time, and a failure of one object is reported rather than stopping the run.
+ */
+@Singleton
+public class LifecycleManager {
+
+   private static final int PAGE_SIZE = 10000;
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final SwiftApi api;
+   private final Executor executor;
+
+   @Inject
+   LifecycleManager(SwiftApi api, @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor) {
+      this(api, (Executor) executor);
+   }
+
+   @VisibleForTesting
+   LifecycleManager(SwiftApi api, Executor executor) {
+      this.api = checkNotNull(api, "api");
+      this.executor = checkNotNull(executor, "executor");
+   }
+
+   /**
+    * @see #apply(String, String, Iterable, LifecycleOptions)
+    */
+   public LifecycleReport apply(String regionId, String container, Iterable<ExpirationRule> rules) {
+      return apply(regionId, container, rules, LifecycleOptions.NONE);
+   }
+
+   public LifecycleReport apply(String regionId, String container, Iterable<ExpirationRule> rules,
+         LifecycleOptions options) {
+      return new Run(regionId, container, ImmutableList.copyOf(rules), options).call();
+   }
+
+   private class Run {
+      private final String regionId;
+      private final String container;
+      private final List<ExpirationRule> rules;
+      private final LifecycleOptions options;
+      private final ObjectApi objectApi;
+      private final Semaphore permits;
+      private final long now = System.currentTimeMillis();
+
+      private long scanned;
+      private long matched;
+      private final AtomicLong scheduled = new AtomicLong();
+      private final AtomicLong unchanged = new AtomicLong();
+      private final AtomicLong deleted = new AtomicLong();
+      private final Map<String, String> failures = Maps.newConcurrentMap();
+      private List<String> toDelete = Lists.newArrayList();
+
+      Run(String regionId, String container, List<ExpirationRule> rules, LifecycleOptions options) {
+         this.regionId = checkNotNull(regionId, "regionId");
+         this.container = checkNotNull(container, "container");
+         this.rules = rules;
+         this.options = checkNotNull(options, "options");
+         this.objectApi = api.getObjectApi(regionId, container);
+         this.permits = new Semaphore(options.getConcurrency());
+      }
+
+      LifecycleReport call() {
+         try {
+            ListContainerOptions listOptions = new ListContainerOptions().limit(PAGE_SIZE);
+            while (true) {
+               ObjectList page = objectApi.list(listOptions);
+               if (page == null) {
+                  break;
+               }
+               for (SwiftObject object : page) {
+                  evaluate(object);
+               }
+               if (page.size() < PAGE_SIZE) {
+                  break;
+               }
+               listOptions = new ListContainerOptions().limit(PAGE_SIZE).marker(Iterables.getLast(page).getName());
+            }
+            flushDeletes();
+            permits.acquire(options.getConcurrency());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+         }
+         LifecycleReport report = new LifecycleReport(container, options.isDryRun(), scanned, matched,
+               scheduled.get(), unchanged.get(), deleted.get(), failures);
+         logger.debug("applied %s to %s: %s", rules, regionId, report);
+         return report;
+      }
+
+      private void evaluate(SwiftObject object) throws InterruptedException {
+         scanned++;
+         ExpirationRule rule = null;
+         for (ExpirationRule candidate : rules) {
+            if (candidate.matches(object.getName())) {
+               rule = candidate;
+               break;
+            }
+         }
+         if (rule == null) {
+            return;
+         }
+         matched++;
+         Date expiresAt = rule.expiresAt(object.getLastModified());
+         if (expiresAt.getTime() <= now) {
+            delete(object.getName());
+         } else if (rule.getAction() == ExpirationRule.Action.EXPIRE) {
+            schedule(object.getName(), expiresAt);
+         } else {
+            unchanged.incrementAndGet();
+         }
+      }
+
+      private void delete(String name) throws InterruptedException {
+         toDelete.add(container + "/" + name);
+         if (toDelete.size() >= options.getBulkDeleteSize()) {
+            flushDeletes();
+         }
+      }
+
+      private void flushDeletes() throws InterruptedException {
+         if (toDelete.isEmpty()) {
+            return;
+         }
+         final List<String> paths = toDelete;
+         toDelete = Lists.newArrayList();
+         if (options.isDryRun()) {
+            deleted.addAndGet(paths.size());
+            return;
+         }
+         submit(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  BulkDeleteResponse response = api.getBulkApi(regionId).bulkDelete(paths);
+                  deleted.addAndGet(response.getDeleted());
+                  for (Map.Entry<String, String> error : response.getErrors().entrySet()) {
+                     failures.put(objectName(error.getKey()), error.getValue());
+                  }
+               } catch (RuntimeException e) {
+                  String reason = e.toString();
+                  for (String path : paths) {
+                     failures.put(objectName(path), reason);
+                  }
+               }
+            }
+         });
+      }
+
+      /**
+       * Bulk delete reports errors by path, with or without a leading slash.
+       */
+      private String objectName(String path) {
+         String prefix = container + "/";
+         int index = path.indexOf(prefix);
+         return index == 0 || index == 1 ? path.substring(index + prefix.length()) : path;
+      }
+
+      private void schedule(final String name, final Date expiresAt) throws InterruptedException {
+         if (options.isDryRun()) {
+            scheduled.incrementAndGet();
+            return;
+         }
+         submit(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  SwiftObject current = objectApi.getWithoutBody(name);
+                  if (current == null) {
+                     return;
+                  }
+                  Date existing = current.getPayload().getContentMetadata().getExpires();
+                  if (existing != null && !existing.after(expiresAt)) {
+                     unchanged.incrementAndGet();
+                  } else if (objectApi.updateMetadataAndDeleteAt(name, current.getMetadata(),
+                        MILLISECONDS.toSeconds(expiresAt.getTime()), headersToKeep(current))) {
+                     scheduled.incrementAndGet();
+                  }
+               } catch (RuntimeException e) {
+                  failures.put(name, e.toString());
+               }
+            }
+         });
+      }
+
+      /**
+       * @return the headers of {@code object} that Swift drops on update along with its metadata. Losing
+       *         {@code X-Object-Manifest} would turn a large object into an empty one.
+       */
+      private PutOptions headersToKeep(SwiftObject object) {
+         ImmutableMultimap.Builder<String, String> headers = ImmutableMultimap.builder();
+         ContentMetadata contentMetadata = object.getPayload().getContentMetadata();
+         if (contentMetadata.getContentDisposition() != null) {
+            headers.put(CONTENT_DISPOSITION, contentMetadata.getContentDisposition());
+         }
+         if (contentMetadata.getContentEncoding() != null) {
+            headers.put(CONTENT_ENCODING, contentMetadata.getContentEncoding());
+         }
+         for (Map.Entry<String, String> header : object.getHeaders().entries()) {
+            if (OBJECT_MANIFEST.equalsIgnoreCase(header.getKey())) {
+               headers.put(OBJECT_MANIFEST, header.getValue());
+            }
+         }
+         return PutOptions.Builder.headers(headers.build());
+      }
+
+      private void submit(final Runnable task) throws InterruptedException {
+         permits.acquire();
+         executor.execute(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  task.run();
+               } finally {
+                  permits.release();
+               }
+            }
+         });
+      }
+   }
+}
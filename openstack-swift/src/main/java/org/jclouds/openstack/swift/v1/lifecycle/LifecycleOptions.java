@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.lifecycle;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Options for applying expiration rules to a container.
+ *
+ * @see LifecycleManager#apply(String, String, Iterable, LifecycleOptions)
+ */
+public class LifecycleOptions {
+   public static final LifecycleOptions NONE = new LifecycleOptions();
+
+   private boolean dryRun;
+   private int concurrency = 8;
+   private int bulkDeleteSize = 10000;
+
+   /**
+    * Reports what would change without changing anything. Objects that would be scheduled are not read, so
+    * {@link LifecycleReport#getScheduled()} includes those already scheduled for the same time.
+    */
+   public LifecycleOptions dryRun() {
+      this.dryRun = true;
+      return this;
+   }
+
+   /**
+    * Sets how many requests that change objects are outstanding at a time. Defaults to {@code 8}.
+    */
+   public LifecycleOptions concurrency(int concurrency) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+   }
+
+   /**
+    * Sets how many objects are deleted by each bulk delete. Defaults to {@code 10000}, the default limit of the Swift
+    * bulk middleware.
+    */
+   public LifecycleOptions bulkDeleteSize(int bulkDeleteSize) {
+      checkArgument(bulkDeleteSize > 0, "bulkDeleteSize must be positive");
+      this.bulkDeleteSize = bulkDeleteSize;
+      return this;
+   }
+
+   public boolean isDryRun() {
+      return dryRun;
+   }
+
+   public int getConcurrency() {
+      return concurrency;
+   }
+
+   public int getBulkDeleteSize() {
+      return bulkDeleteSize;
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).add("dryRun", dryRun).add("concurrency", concurrency)
+            .add("bulkDeleteSize", bulkDeleteSize).toString();
+   }
+
+   public static class Builder {
+
+      /**
+       * @see LifecycleOptions#dryRun
+       */
+      public static LifecycleOptions dryRun() {
+         LifecycleOptions options = new LifecycleOptions();
+         return options.dryRun();
+      }
+
+      /**
+       * @see LifecycleOptions#concurrency
+       */
+      public static LifecycleOptions concurrency(int concurrency) {
+         LifecycleOptions options = new LifecycleOptions();
+         return options.concurrency(concurrency);
+      }
+
+      /**
+       * @see LifecycleOptions#bulkDeleteSize
+       */
+      public static LifecycleOptions bulkDeleteSize(int bulkDeleteSize) {
+         LifecycleOptions options = new LifecycleOptions();
+         return options.bulkDeleteSize(bulkDeleteSize);
+      }
+   }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.lifecycle;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Outcome of applying expiration rules to a container, or what it would have been on a dry run.
+ *
+ * @see LifecycleManager
+ */
+public class LifecycleReport {
+
+   private final String container;
+   private final boolean dryRun;
+   private final long scanned;
+   private final long matched;
+   private final long scheduled;
+   private final long unchanged;
+   private final long deleted;
+   private final Map<String, String> failures;
+
+   LifecycleReport(String container, boolean dryRun, long scanned, long matched, long scheduled, long unchanged,
+         long deleted, Map<String, String> failures) {
+      this.container = checkNotNull(container, "container");
+      this.dryRun = dryRun;
+      this.scanned = scanned;
+      this.matched = matched;
+      this.scheduled = scheduled;
+      this.unchanged = unchanged;
+      this.deleted = deleted;
+      this.failures = ImmutableMap.copyOf(checkNotNull(failures, "failures"));
+   }
+
+   public String getContainer() {
+      return container;
+   }
+
+   /**
+    * @return whether nothing was changed, the counts being what would have changed.
+    */
+   public boolean isDryRun() {
+      return dryRun;
+   }
+
+   /**
+    * @return the number of objects listed.
+    */
+   public long getScanned() {
+      return scanned;
+   }
+
+   /**
+    * @return the number of objects matching a rule.
+    */
+   public long getMatched() {
+      return matched;
+   }
+
+   /**
+    * @return the number of objects whose {@code X-Delete-At} was set.
+    */
+   public long getScheduled() {
+      return scheduled;
+   }
+
+   /**
+    * @return the number of matching objects left as they were, because they are already scheduled or not yet old
+    *         enough to be deleted.
+    */
+   public long getUnchanged() {
+      return unchanged;
+   }
+
+   /**
+    * @return the number of objects deleted.
+    */
+   public long getDeleted() {
+      return deleted;
+   }
+
+   /**
+    * @return the reason each object that could not be changed failed, by object name.
+    */
+   public Map<String, String> getFailures() {
+      return failures;
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).add("container", container).add("dryRun", dryRun).add("scanned", scanned)
+            .add("matched", matched).add("scheduled", scheduled).add("unchanged", unchanged).add("deleted", deleted)
+            .add("failures", failures.size()).toString();
+   }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.usage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.logging.Logger;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ContainerApi;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks.Task;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Collects the usage of the containers of an account.
+ * <p/>
+ * Container totals come from the account listing, 10,000 containers per request, which carries the same object
+ * count and bytes used as a {@code HEAD} of each container. Objects are only listed when a breakdown by prefix is
+ * requested with {@link UsageOptions#byPrefix(char)}, and then only those of the requested, non-empty containers,
+ * several containers at the same time. Reports of successive runs can be turned into deltas with
+ * {@link UsageReport#deltaSince(UsageReport)}.
+ */
+@Singleton
+public class AccountUsageCollector {
+
+   private static final int PAGE_SIZE = 10000;
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final SwiftApi api;
+   private final Executor executor;
+
+   @Inject
+   AccountUsageCollector(SwiftApi api, @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor) {
+      this(api, (Executor) executor);
+   }
+
+   @VisibleForTesting
+   AccountUsageCollector(SwiftApi api, Executor executor) {
+      this.api = checkNotNull(api, "api");
+      this.executor = checkNotNull(executor, "executor");
+   }
+
+   /**
+    * @see #collect(String, UsageOptions)
+    */
+   public UsageReport collect(String regionId) {
+      return collect(regionId, UsageOptions.NONE);
+   }
+
+   public UsageReport collect(final String regionId, UsageOptions options) {
+      checkNotNull(regionId, "regionId");
+      checkNotNull(options, "options");
+      Date collectedAt = new Date();
+      ImmutableSortedMap.Builder<String, Usage> containers = ImmutableSortedMap.naturalOrder();
+      ContainerApi containerApi = api.getContainerApi(regionId);
+      ListContainerOptions listOptions = listOptions(options.getContainerPrefix(), null);
+      while (true) {
+         List<Container> page = containerApi.list(listOptions).toList();
+         for (Container container : page) {
+            containers.put(container.getName(), new Usage(container.getObjectCount(), container.getBytesUsed()));
+         }
+         if (page.size() < PAGE_SIZE) {
+            break;
+         }
+         listOptions = listOptions(options.getContainerPrefix(), Iterables.getLast(page).getName());
+      }
+      SortedMap<String, Usage> usage = containers.build();
+
+      SortedMap<String, SortedMap<String, Usage>> prefixes = ImmutableSortedMap.of();
+      if (options.getDelimiter() != null) {
+         prefixes = sweep(regionId, toSweep(usage, options.getPrefixContainers()), options.getDelimiter(),
+               options.getConcurrency());
+      }
+      UsageReport report = UsageReport.of(regionId, collectedAt, usage, prefixes);
+      logger.debug("collected usage of %s", report);
+      return report;
+   }
+
+   /**
+    * @return the requested containers that hold objects. An empty container is reported without a breakdown.
+    */
+   private static List<String> toSweep(Map<String, Usage> usage, Set<String> requested) {
+      List<String> containers = Lists.newArrayList();
+      for (Map.Entry<String, Usage> entry : usage.entrySet()) {
+         if ((requested.isEmpty() || requested.contains(entry.getKey())) && entry.getValue().getObjectCount() > 0) {
+            containers.add(entry.getKey());
+         }
+      }
+      return containers;
+   }
+
+   private SortedMap<String, SortedMap<String, Usage>> sweep(final String regionId, Iterable<String> containers,
+         final char delimiter, int concurrency) {
+      final ConcurrentMap<String, SortedMap<String, Usage>> prefixes = Maps.newConcurrentMap();
+      ConcurrentTasks.forEach(executor, containers, concurrency, new Task<String>() {
+         @Override
+         public void run(String container) {
+            SortedMap<String, Usage> usage = usageByPrefix(api.getObjectApi(regionId, container), delimiter);
+            if (usage != null) {
+               prefixes.put(container, usage);
+            }
+         }
+      });
+      return ImmutableSortedMap.copyOf(prefixes);
+   }
+
+   /**
+    * @return the usage of each prefix of the container, or {@code null} if it was deleted meanwhile.
+    */
+   private static SortedMap<String, Usage> usageByPrefix(ObjectApi objectApi, char delimiter) {
+      Map<String, long[]> totals = Maps.newHashMap();
+      String marker = null;
+      while (true) {
+         ObjectList page = objectApi.list(listOptions(null, marker));
+         if (page == null) {
+            return null;
+         }
+         for (SwiftObject object : page) {
+            String name = object.getName();
+            int index = name.indexOf(delimiter);
+            String prefix = index != -1 ? name.substring(0, index + 1) : "";
+            long[] total = totals.get(prefix);
+            if (total == null) {
+               totals.put(prefix, total = new long[2]);
+            }
+            Long length = object.getPayload().getContentMetadata().getContentLength();
+            total[0]++;
+            total[1] += length != null ? length : 0;
+         }
+         if (page.size() < PAGE_SIZE) {
+            break;
+         }
+         marker = Iterables.getLast(page).getName();
+      }
+      ImmutableSortedMap.Builder<String, Usage> usage = ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+         usage.put(entry.getKey(), new Usage(entry.getValue()[0], entry.getValue()[1]));
+      }
+      return usage.build();
+   }
+
+   private static ListContainerOptions listOptions(String prefix, String marker) {
+      ListContainerOptions options = new ListContainerOptions().limit(PAGE_SIZE);
+      if (prefix != null) {
+         options.prefix(prefix);
+      }
+      if (marker != null) {
+         options.marker(marker);
+      }
+      return options;
+   }
+}
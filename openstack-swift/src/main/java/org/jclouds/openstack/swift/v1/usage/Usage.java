@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.usage;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+import com.google.common.base.Objects;
+
+/**
+ * Number of objects and bytes stored under a container or prefix.
+ */
+public class Usage {
+   public static final Usage ZERO = new Usage(0, 0);
+
+   private final long objectCount;
+   private final long bytesUsed;
+
+   public Usage(long objectCount, long bytesUsed) {
+      this.objectCount = objectCount;
+      this.bytesUsed = bytesUsed;
+   }
+
+   public long getObjectCount() {
+      return objectCount;
+   }
+
+   public long getBytesUsed() {
+      return bytesUsed;
+   }
+
+   public Usage plus(Usage that) {
+      return new Usage(objectCount + that.objectCount, bytesUsed + that.bytesUsed);
+   }
+
+   public Usage minus(Usage that) {
+      return new Usage(objectCount - that.objectCount, bytesUsed - that.bytesUsed);
+   }
+
+   @Override
+   public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (obj == null || getClass() != obj.getClass()) return false;
+      Usage that = Usage.class.cast(obj);
+      return objectCount == that.objectCount && bytesUsed == that.bytesUsed;
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hashCode(objectCount, bytesUsed);
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).add("objectCount", objectCount).add("bytesUsed", bytesUsed).toString();
+   }
+}
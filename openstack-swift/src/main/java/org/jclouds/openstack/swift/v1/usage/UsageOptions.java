@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.usage;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Set;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Options for collecting the usage of an account.
+ *
+ * @see AccountUsageCollector#collect(String, UsageOptions)
+ */
+public class UsageOptions {
+   public static final UsageOptions NONE = new UsageOptions();
+
+   private int concurrency = 8;
+   private String containerPrefix;
+   private Character delimiter;
+   private Set<String> prefixContainers = ImmutableSet.of();
+
+   /**
+    * Sets how many containers are listed at the same time when breaking usage down by prefix. Defaults to {@code 8}.
+    */
+   public UsageOptions concurrency(int concurrency) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+   }
+
+   /**
+    * Only reports containers whose names start with {@code prefix}.
+    */
+   public UsageOptions containerPrefix(String prefix) {
+      this.containerPrefix = checkNotNull(prefix, "prefix");
+      return this;
+   }
+
+   /**
+    * Breaks the usage of each container down by the part of object names up to and including the first
+    * {@code delimiter}. This lists every object of every non-empty container, so it costs one request per 10,000
+    * objects. Objects without the delimiter are reported under the empty prefix.
+    */
+   public UsageOptions byPrefix(char delimiter) {
+      return byPrefix(delimiter, ImmutableSet.<String> of());
+   }
+
+   /**
+    * Like {@link #byPrefix(char)}, but only lists the objects of {@code containers}. The other containers are reported
+    * with their totals only.
+    */
+   public UsageOptions byPrefix(char delimiter, Iterable<String> containers) {
+      this.delimiter = delimiter;
+      this.prefixContainers = ImmutableSet.copyOf(checkNotNull(containers, "containers"));
+      return this;
+   }
+
+   public int getConcurrency() {
+      return concurrency;
+   }
+
+   @Nullable
+   public String getContainerPrefix() {
+      return containerPrefix;
+   }
+
+   @Nullable
+   public Character getDelimiter() {
+      return delimiter;
+   }
+
+   /**
+    * @return the containers to break down by prefix, or an empty set for all containers.
+    */
+   public Set<String> getPrefixContainers() {
+      return prefixContainers;
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).omitNullValues().add("concurrency", concurrency)
+            .add("containerPrefix", containerPrefix).add("delimiter", delimiter).add("prefixContainers", prefixContainers).toString();
+   }
+
+   public static class Builder {
+
+      /**
+       * @see UsageOptions#concurrency
+       */
+      public static UsageOptions concurrency(int concurrency) {
+         UsageOptions options = new UsageOptions();
+         return options.concurrency(concurrency);
+      }
+
+      /**
+       * @see UsageOptions#containerPrefix
+       */
+      public static UsageOptions containerPrefix(String prefix) {
+         UsageOptions options = new UsageOptions();
+         return options.containerPrefix(prefix);
+      }
+
+      /**
+       * @see UsageOptions#byPrefix
+       */
+      public static UsageOptions byPrefix(char delimiter) {
+         UsageOptions options = new UsageOptions();
+         return options.byPrefix(delimiter);
+      }
+
+      /**
+       * @see UsageOptions#byPrefix(char, Iterable)
+       */
+      public static UsageOptions byPrefix(char delimiter, Iterable<String> containers) {
+         UsageOptions options = new UsageOptions();
+         return options.byPrefix(delimiter, containers);
+      }
+   }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.usage;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Sets;
+
+/**
+ * Usage of the containers of an account in one region, or the change in it between two reports.
+ *
+ * @see AccountUsageCollector
+ */
+public class UsageReport {
+
+   private final String regionId;
+   private final Date collectedAt;
+   private final Date since;
+   private final SortedMap<String, Usage> containers;
+   private final SortedMap<String, SortedMap<String, Usage>> prefixes;
+
+   /**
+    * Rebuilds a report, such as one stored by an earlier run, so that later reports can be turned into deltas since it.
+    *
+    * @see #of(String, Date, Map, Map)
+    */
+   public static UsageReport of(String regionId, Date collectedAt, Map<String, Usage> containers) {
+      return of(regionId, collectedAt, containers, ImmutableSortedMap.<String, Map<String, Usage>> of());
+   }
+
+   /**
+    * Rebuilds a report, such as one stored by an earlier run, so that later reports can be turned into deltas since it.
+    *
+    * @param containers the usage of each container, by name.
+    * @param prefixes the usage of each prefix, by container name.
+    */
+   public static UsageReport of(String regionId, Date collectedAt, Map<String, Usage> containers,
+         Map<String, ? extends Map<String, Usage>> prefixes) {
+      ImmutableSortedMap.Builder<String, SortedMap<String, Usage>> copy = ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, ? extends Map<String, Usage>> entry : checkNotNull(prefixes, "prefixes").entrySet()) {
+         copy.put(entry.getKey(), ImmutableSortedMap.copyOf(entry.getValue()));
+      }
+      return new UsageReport(regionId, collectedAt, null,
+            ImmutableSortedMap.copyOf(checkNotNull(containers, "containers")), copy.build());
+   }
+
+   private UsageReport(String regionId, Date collectedAt, @Nullable Date since, SortedMap<String, Usage> containers,
+         SortedMap<String, SortedMap<String, Usage>> prefixes) {
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.collectedAt = checkNotNull(collectedAt, "collectedAt");
+      this.since = since;
+      this.containers = checkNotNull(containers, "containers");
+      this.prefixes = checkNotNull(prefixes, "prefixes");
+   }
+
+   public String getRegionId() {
+      return regionId;
+   }
+
+   public Date getCollectedAt() {
+      return collectedAt;
+   }
+
+   /**
+    * @return when the report this one is the change from was collected, or {@code null} if this is not a delta.
+    */
+   @Nullable
+   public Date getSince() {
+      return since;
+   }
+
+   /**
+    * @return the usage of each container, by name. A delta only lists containers whose usage changed.
+    */
+   public SortedMap<String, Usage> getContainers() {
+      return containers;
+   }
+
+   /**
+    * @return the usage of each prefix, by container name, when collected with
+    *         {@link UsageOptions#byPrefix(char)}. A delta only lists prefixes whose usage changed.
+    */
+   public SortedMap<String, SortedMap<String, Usage>> getPrefixes() {
+      return prefixes;
+   }
+
+   /**
+    * @return the usage of all containers in the report.
+    */
+   public Usage getTotal() {
+      Usage total = Usage.ZERO;
+      for (Usage usage : containers.values()) {
+         total = total.plus(usage);
+      }
+      return total;
+   }
+
+   /**
+    * @return the change in usage since {@code previous}, which must be an earlier report, not a delta, of the same
+    *         region. Containers and prefixes that disappeared are reported with negative usage.
+    */
+   public UsageReport deltaSince(UsageReport previous) {
+      checkArgument(since == null && previous.since == null, "deltas are computed between full reports");
+      checkArgument(regionId.equals(previous.regionId), "reports are of different regions: %s and %s", regionId,
+            previous.regionId);
+      ImmutableSortedMap.Builder<String, SortedMap<String, Usage>> prefixDeltas = ImmutableSortedMap.naturalOrder();
+      for (String container : Sets.union(prefixes.keySet(), previous.prefixes.keySet())) {
+         SortedMap<String, Usage> delta = delta(prefixes.get(container), previous.prefixes.get(container));
+         if (!delta.isEmpty()) {
+            prefixDeltas.put(container, delta);
+         }
+      }
+      return new UsageReport(regionId, collectedAt, previous.collectedAt, delta(containers, previous.containers),
+            prefixDeltas.build());
+   }
+
+   private static SortedMap<String, Usage> delta(@Nullable Map<String, Usage> current,
+         @Nullable Map<String, Usage> previous) {
+      current = current != null ? current : ImmutableSortedMap.<String, Usage> of();
+      previous = previous != null ? previous : ImmutableSortedMap.<String, Usage> of();
+      ImmutableSortedMap.Builder<String, Usage> delta = ImmutableSortedMap.naturalOrder();
+      for (String name : Sets.union(current.keySet(), previous.keySet())) {
+         Usage change = usage(current.get(name)).minus(usage(previous.get(name)));
+         if (!change.equals(Usage.ZERO)) {
+            delta.put(name, change);
+         }
+      }
+      return delta.build();
+   }
+
+   private static Usage usage(@Nullable Usage usage) {
+      return usage != null ? usage : Usage.ZERO;
+   }
+
+   @Override
+   public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (obj == null || getClass() != obj.getClass()) return false;
+      UsageReport that = UsageReport.class.cast(obj);
+      return Objects.equal(this.regionId, that.regionId)
+               && Objects.equal(this.collectedAt, that.collectedAt)
+               && Objects.equal(this.since, that.since)
+               && Objects.equal(this.containers, that.containers)
+               && Objects.equal(this.prefixes, that.prefixes);
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hashCode(regionId, collectedAt, since, containers, prefixes);
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).omitNullValues().add("regionId", regionId).add("collectedAt", collectedAt)
+            .add("since", since).add("containers", containers.size()).add("total", getTotal()).toString();
+   }
+}
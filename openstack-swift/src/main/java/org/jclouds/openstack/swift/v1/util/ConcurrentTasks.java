@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Runs a task for many inputs on a shared executor without taking more than a few of its threads.
+ */
+public final class ConcurrentTasks {
+
+   /**
+    * Work done for one input of {@link ConcurrentTasks#forEach}.
+    */
+   public interface Task<T> {
+      void run(T input) throws Exception;
+   }
+
+   private ConcurrentTasks() {
+   }
+
+   /**
+    * Runs {@code task} for every input on {@code executor}, at most {@code concurrency} at a time, and returns once
+    * they all completed.
+    * <p/>
+    * Inputs are taken from {@code inputs} in order, and only when a task can start, so a lazily paged iterable is not
+    * read ahead. No input is taken after the first failure, including the executor rejecting a task, which is rethrown
+    * once the tasks in flight completed.
+    */
+   public static <T> void forEach(Executor executor, Iterable<T> inputs, int concurrency, final Task<? super T> task) {
+      checkNotNull(executor, "executor");
+      checkNotNull(inputs, "inputs");
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      checkNotNull(task, "task");
+      final Semaphore permits = new Semaphore(concurrency);
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      try {
+         for (final T input : inputs) {
+            permits.acquire();
+            if (failure.get() != null) {
+               permits.release();
+               break;
+            }
+            Runnable run = new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     task.run(input);
+                  } catch (Throwable t) {
+                     failure.compareAndSet(null, t);
+                  } finally {
+                     permits.release();
+                  }
+               }
+            };
+            try {
+               executor.execute(run);
+            } catch (RuntimeException e) {
+               // a rejected task never runs to give its permit back
+               permits.release();
+               failure.compareAndSet(null, e);
+               break;
+            }
+         }
+         permits.acquire(concurrency);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw Throwables.propagate(e);
+      }
+      if (failure.get() != null) {
+         throw Throwables.propagate(failure.get());
+      }
+   }
+}
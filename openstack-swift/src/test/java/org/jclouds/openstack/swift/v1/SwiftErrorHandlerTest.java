@@ -31,6 +31,7 @@ import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.http.HttpCommand;
 import org.jclouds.http.HttpRequest;
 import org.jclouds.http.HttpResponse;
+import org.jclouds.openstack.swift.v1.handlers.RegionThrottle;
 import org.jclouds.openstack.swift.v1.handlers.SwiftErrorHandler;
 import org.testng.annotations.Test;
 
@@ -78,7 +79,7 @@ public class SwiftErrorHandlerTest {
    private void assertCodeMakes(String method, URI uri, int statusCode, String message, String contentType,
             String content, Class<? extends Exception> expected) {
 
-      SwiftErrorHandler function = new SwiftErrorHandler();
+      SwiftErrorHandler function = new SwiftErrorHandler(createMock(RegionThrottle.class));
 
       HttpCommand command = createMock(HttpCommand.class);
       HttpRequest request = HttpRequest.builder().method(method).endpoint(uri).build();
@@ -20,9 +20,12 @@ import static org.jclouds.openstack.swift.v1.features.AccountApiMockTest.account
 import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.ACCOUNT_TEMPORARY_URL_KEY;
 import static org.testng.Assert.assertEquals;
 
+import java.util.List;
+
 import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 
@@ -55,6 +58,25 @@ public class TemporaryUrlSignerMockTest extends BaseOpenStackMockTest<SwiftApi>
       }
    }
 
+   public void whenSigningManyPathsLooksUpKeyOnce() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(accountResponse().addHeader(ACCOUNT_TEMPORARY_URL_KEY, "mykey")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         TemporaryUrlSigner signer = TemporaryUrlSigner.checkApiEvery(api.getAccountApi("DFW"), 10000);
+         List<String> signatures = signer.sign("GET",
+               ImmutableList.of("/v1/AUTH_account/container/object", "/v1/AUTH_account/container/other"), 1323479485l);
+
+         assertEquals(signatures, ImmutableList.of("d9fc2067e52b06598421664cf6610bfc8fc431f6",
+               signer.sign("GET", "/v1/AUTH_account/container/other", 1323479485l)));
+         assertEquals(server.getRequestCount(), 2);
+      } finally {
+         server.shutdown();
+      }
+   }
+
    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ".*returned a null temporaryUrlKey!")
    public void whenAccountApiDoesntHaveKey() throws Exception {
       MockWebServer server = mockOpenStackServer();
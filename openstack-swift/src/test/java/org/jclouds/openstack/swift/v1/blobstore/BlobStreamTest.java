@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.util.Strings2;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+@Test(groups = "unit", testName = "BlobStreamTest")
+public class BlobStreamTest {
+
+   private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+
+   @AfterClass
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   static class FakeGetBlob implements Function<String, Blob> {
+      final AtomicInteger calls = new AtomicInteger();
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+
+      @Override
+      public Blob apply(String name) {
+         calls.incrementAndGet();
+         int now = running.incrementAndGet();
+         synchronized (maxRunning) {
+            maxRunning.set(Math.max(maxRunning.get(), now));
+         }
+         try {
+            Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+            if (name.startsWith("missing")) {
+               return null;
+            }
+            return new BlobBuilderImpl().name(name).payload("body of " + name).build();
+         } finally {
+            running.decrementAndGet();
+         }
+      }
+   }
+
+   public void testReadsAllWithBoundedConcurrency() throws IOException {
+      FakeGetBlob getBlob = new FakeGetBlob();
+      List<String> names = Lists.newArrayList();
+      for (int i = 0; i < 20; i++) {
+         names.add("object" + i);
+      }
+      BlobStream stream = new BlobStream("container", names, getBlob, BlobStream.newExecutor(4),
+            GetBlobsOptions.Builder.concurrency(3));
+
+      List<String> read = Lists.newArrayList();
+      while (stream.hasNext()) {
+         Blob blob = stream.next();
+         String name = blob.getMetadata().getName();
+         assertEquals(Strings2.toStringAndClose(blob.getPayload().openStream()), "body of " + name);
+         read.add(name);
+      }
+      assertEquals(ImmutableSet.copyOf(read), ImmutableSet.copyOf(names));
+      assertEquals(read.size(), 20);
+      assertTrue(getBlob.maxRunning.get() <= 3, "ran " + getBlob.maxRunning.get() + " at once");
+      assertTrue(stream.getFailures().isEmpty());
+   }
+
+   public void testReadsWaitingOnABoundedExecutorDoNotStarveIt() throws Exception {
+      // like hedged reads, each read waits on an attempt it submits to the user executor
+      final ListeningExecutorService userExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(1));
+      final FakeGetBlob getBlob = new FakeGetBlob();
+      try {
+         final BlobStream stream = new BlobStream("container", ImmutableList.of("a", "b", "c", "d"),
+               new Function<String, Blob>() {
+                  @Override
+                  public Blob apply(final String name) {
+                     return Futures.getUnchecked(userExecutor.submit(new Callable<Blob>() {
+                        @Override
+                        public Blob call() {
+                           return getBlob.apply(name);
+                        }
+                     }));
+                  }
+               }, BlobStream.newExecutor(4), GetBlobsOptions.Builder.concurrency(4));
+         assertEquals(executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+               return ImmutableList.copyOf(stream).size();
+            }
+         }).get(10, TimeUnit.SECONDS).intValue(), 4);
+      } finally {
+         userExecutor.shutdownNow();
+      }
+   }
+
+   public void testFailsOnFirstMissingObject() {
+      BlobStream stream = new BlobStream("container", ImmutableList.of("missing"), new FakeGetBlob(), BlobStream.newExecutor(4),
+            GetBlobsOptions.NONE);
+      try {
+         stream.hasNext();
+         fail("expected KeyNotFoundException");
+      } catch (KeyNotFoundException e) {
+         assertEquals(e.getKey(), "missing");
+      }
+   }
+
+   public void testContinueOnErrorCollectsFailures() {
+      BlobStream stream = new BlobStream("container", ImmutableList.of("a", "missing1", "b", "missing2"),
+            new FakeGetBlob(), BlobStream.newExecutor(4), GetBlobsOptions.Builder.continueOnError());
+      List<String> read = Lists.newArrayList();
+      while (stream.hasNext()) {
+         read.add(stream.next().getMetadata().getName());
+      }
+      assertEquals(ImmutableSet.copyOf(read), ImmutableSet.of("a", "b"));
+      assertEquals(stream.getFailures().keySet(), ImmutableSet.of("missing1", "missing2"));
+   }
+
+   public void testMemoryBudgetHoldsBackRequests() {
+      FakeGetBlob getBlob = new FakeGetBlob();
+      BlobStream stream = new BlobStream("container", ImmutableList.of("a", "b", "c"), getBlob, BlobStream.newExecutor(4),
+            GetBlobsOptions.Builder.concurrency(1).memoryBudget(1));
+      Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+      assertEquals(getBlob.calls.get(), 1);
+      stream.next();
+      stream.next();
+      stream.next();
+      assertFalse(stream.hasNext());
+      assertEquals(getBlob.calls.get(), 3);
+   }
+
+   public void testCloseEndsStream() {
+      BlobStream stream = new BlobStream("container", ImmutableList.of("a", "b", "c"), new FakeGetBlob(), BlobStream.newExecutor(4),
+            GetBlobsOptions.Builder.concurrency(1));
+      stream.close();
+      assertFalse(stream.hasNext());
+   }
+
+   public void testCloseShutsDownExecutor() {
+      ListeningExecutorService streamExecutor = BlobStream.newExecutor(1);
+      BlobStream stream = new BlobStream("container", ImmutableList.of("a", "b", "c"), new FakeGetBlob(),
+            streamExecutor, GetBlobsOptions.Builder.concurrency(1));
+      stream.close();
+      assertTrue(streamExecutor.isShutdown());
+   }
+
+   public void testReadingToTheEndShutsDownExecutor() {
+      ListeningExecutorService streamExecutor = BlobStream.newExecutor(2);
+      BlobStream stream = new BlobStream("container", ImmutableList.of("a", "b"), new FakeGetBlob(),
+            streamExecutor, GetBlobsOptions.Builder.concurrency(2));
+      assertEquals(ImmutableList.copyOf(stream).size(), 2);
+      assertTrue(streamExecutor.isShutdown());
+   }
+}
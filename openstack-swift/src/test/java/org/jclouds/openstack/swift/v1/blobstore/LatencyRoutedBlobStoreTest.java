@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.openstack.swift.v1.blobstore.internal.RegionHealth;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+@Test(groups = "unit", testName = "LatencyRoutedBlobStoreTest")
+public class LatencyRoutedBlobStoreTest {
+
+   public void testUnreplicatedContainerReadsFromPrimary() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.blobExists("private", "key")).andReturn(true);
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), RegionHealth.create());
+      assertTrue(blobStore.blobExists("private", "key"));
+      verify(dfw, ord);
+   }
+
+   public void testFailsOverToNextRegion() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      Blob blob = createMock(Blob.class);
+      RegionHealth health = RegionHealth.create();
+      health.success("DFW", 1);
+      health.success("ORD", 2);
+      expect(dfw.getBlob("assets", "logo.png", GetOptions.NONE)).andThrow(new HttpResponseException("boom", null, null));
+      expect(ord.getBlob("assets", "logo.png", GetOptions.NONE)).andReturn(blob);
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), health);
+      assertSame(blobStore.getBlob("assets", "logo.png"), blob);
+      verify(dfw, ord);
+   }
+
+   public void testNotFoundOfPrimaryIsAnAnswer() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      RegionHealth health = RegionHealth.create();
+      health.success("DFW", 1);
+      health.success("ORD", 2);
+      expect(dfw.blobExists("assets", "missing")).andReturn(false);
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), health);
+      assertFalse(blobStore.blobExists("assets", "missing"));
+      verify(dfw, ord);
+   }
+
+   public void testMissingInLaggingRegionFailsOver() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      RegionHealth health = RegionHealth.create();
+      health.success("ORD", 1);
+      health.success("DFW", 2);
+      expect(ord.blobExists("assets", "new.png")).andReturn(false);
+      expect(dfw.blobExists("assets", "new.png")).andReturn(true);
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), health);
+      assertTrue(blobStore.blobExists("assets", "new.png"));
+      verify(dfw, ord);
+   }
+
+   public void testNotFoundOfLaggingRegionFailsOver() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      Blob blob = createMock(Blob.class);
+      RegionHealth health = RegionHealth.create();
+      health.success("ORD", 1);
+      health.success("DFW", 2);
+      expect(ord.getBlob("assets", "new.png", GetOptions.NONE)).andThrow(
+            new KeyNotFoundException("assets", "new.png", "not yet synchronized"));
+      expect(dfw.getBlob("assets", "new.png", GetOptions.NONE)).andReturn(blob);
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), health);
+      assertSame(blobStore.getBlob("assets", "new.png"), blob);
+      verify(dfw, ord);
+   }
+
+   public void testOpenCircuitsFailFast() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      RegionHealth health = RegionHealth.create();
+      for (int i = 0; i < 3; i++) {
+         health.failure("DFW");
+         health.failure("ORD");
+      }
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), health);
+      try {
+         blobStore.getBlob("assets", "logo.png");
+         fail("expected IllegalStateException");
+      } catch (IllegalStateException e) {
+         verify(dfw, ord);
+      }
+   }
+
+   public void testWritesGoToPrimary() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      dfw.removeBlob("assets", "logo.png");
+      replay(dfw, ord);
+
+      LatencyRoutedBlobStore blobStore = new LatencyRoutedBlobStore("DFW", ImmutableMap.of("DFW", dfw, "ORD", ord),
+            ImmutableSet.of("assets"), RegionHealth.create());
+      blobStore.removeBlob("assets", "logo.png");
+      verify(dfw, ord);
+   }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.openstack.swift.v1.features.AccountApiMockTest.accountResponse;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.ACCOUNT_TEMPORARY_URL_KEY;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.CONTAINER_BYTES_USED;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.CONTAINER_OBJECT_COUNT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import javax.inject.Provider;
+
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+@Test(groups = "unit", testName = "RegionScopedTemporaryUrlBlobSignerMockTest")
+public class RegionScopedTemporaryUrlBlobSignerMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   private static final URI STORAGE_URL = URI.create("https://storage101.dfw1.clouddrive.com/v1/AUTH_account");
+
+   public void testSignGetBlobsMatchesSingleSignatures() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(accountResponse().addHeader(ACCOUNT_TEMPORARY_URL_KEY, "mykey")));
+      ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+
+      try {
+         RegionScopedTemporaryUrlBlobSigner signer = signer(api(server.getUrl("/").toString(), "openstack-swift"),
+               executor);
+         List<String> names = Lists.newArrayList();
+         for (int i = 0; i < 600; i++) {
+            names.add("photos/image " + i + ".jpg");
+         }
+
+         Map<String, URI> urls = signer.signGetBlobs("gallery", names, 60).get(5, SECONDS);
+
+         assertEquals(ImmutableList.copyOf(urls.keySet()), names);
+         for (String name : ImmutableList.of(names.get(0), names.get(300), names.get(599))) {
+            assertEquals(urls.get(name), signer.signGetBlob("gallery", name, 60).getEndpoint());
+         }
+         assertEquals(urls.get("photos/image 0.jpg").getPath(), "/v1/AUTH_account/gallery/photos/image 0.jpg");
+         assertEquals(server.getRequestCount(), 2);
+      } finally {
+         executor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   public void testSignPutBlobsDoesNotWaitForTheExecutor() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(accountResponse().addHeader(ACCOUNT_TEMPORARY_URL_KEY, "mykey")));
+      ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+      final CountDownLatch busy = new CountDownLatch(1);
+      executor.execute(new Runnable() {
+         @Override
+         public void run() {
+            Uninterruptibles.awaitUninterruptibly(busy);
+         }
+      });
+
+      try {
+         RegionScopedTemporaryUrlBlobSigner signer = signer(api(server.getUrl("/").toString(), "openstack-swift"),
+               executor);
+         ListenableFuture<Map<String, URI>> urls = signer.signPutBlobs("gallery", ImmutableList.of("a", "b"), 60);
+         assertFalse(urls.isDone());
+
+         busy.countDown();
+         assertEquals(urls.get(5, SECONDS).get("b"), signer.signPutBlob("gallery",
+               new BlobBuilderImpl().name("b").build(), 60).getEndpoint());
+      } finally {
+         busy.countDown();
+         executor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   public void testSignGetBlobsWithPrefixListsContainer() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse()
+            .setBody("[{\"name\":\"photos/a.jpg\",\"hash\":\"abc\",\"bytes\":1,"
+                  + "\"content_type\":\"image/jpeg\",\"last_modified\":\"2014-10-15T21:08:59.000000\"}]")));
+      server.enqueue(addCommonHeaders(accountResponse().addHeader(ACCOUNT_TEMPORARY_URL_KEY, "mykey")));
+      ListeningExecutorService executor = MoreExecutors.newDirectExecutorService();
+
+      try {
+         RegionScopedTemporaryUrlBlobSigner signer = signer(api(server.getUrl("/").toString(), "openstack-swift"),
+               executor);
+         Map<String, URI> urls = signer.signGetBlobsWithPrefix("gallery", "photos/", 60).get(5, SECONDS);
+
+         assertEquals(urls.keySet(), ImmutableList.of("photos/a.jpg"));
+         assertEquals(server.getRequestCount(), 3);
+         server.takeRequest();
+         assertEquals(server.takeRequest().getRequestLine(), "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9"
+               + "/gallery?prefix=photos/&limit=10000 HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   private static MockResponse containerResponse() {
+      return new MockResponse().addHeader(CONTAINER_OBJECT_COUNT, "1").addHeader(CONTAINER_BYTES_USED, "1");
+   }
+
+   private static RegionScopedTemporaryUrlBlobSigner signer(SwiftApi api, ListeningExecutorService executor) {
+      Supplier<Map<String, Supplier<URI>>> regionToUris = Suppliers.<Map<String, Supplier<URI>>> ofInstance(
+            ImmutableMap.of("DFW", Suppliers.ofInstance(STORAGE_URL)));
+      Provider<Long> timestamp = new Provider<Long>() {
+         @Override
+         public Long get() {
+            return 1323479425l;
+         }
+      };
+      return new RegionScopedTemporaryUrlBlobSigner(regionToUris, 10000, timestamp, api, executor, "DFW");
+   }
+}
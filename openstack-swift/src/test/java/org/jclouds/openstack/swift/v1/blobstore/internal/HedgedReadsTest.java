@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.makeThreadSafe;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.http.options.GetOptions.NONE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IAnswer;
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.io.payloads.ByteSourcePayload;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.io.ByteSource;
+
+@Test(groups = "unit", testName = "HedgedReadsTest", singleThreaded = true)
+public class HedgedReadsTest {
+
+   private final ExecutorService executor = Executors.newCachedThreadPool();
+
+   @AfterClass
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   public void testDisabledReadsOnce() {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      SwiftObject object = object(new TrackingPayload());
+      answers.add(returning(object));
+
+      HedgedReads hedgedReads = new HedgedReads(false, 95, 0, 16, executor, Ticker.systemTicker());
+      assertSame(hedgedReads.get(objectApi(answers), "DFW", "foo", NONE), object);
+      assertEquals(hedgedReads.getReads(), 0);
+      assertTrue(answers.isEmpty());
+   }
+
+   public void testDoesNotHedgeBeforeEnoughSamples() {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      HedgedReads hedgedReads = new HedgedReads(true, 95, 0, 16, executor, Ticker.systemTicker());
+      ObjectApi objectApi = objectApi(answers);
+      for (int i = 0; i < 10; i++) {
+         answers.add(returning(null));
+         hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      }
+      assertEquals(hedgedReads.getReads(), 10);
+      assertEquals(hedgedReads.getHedges(), 0);
+      assertEquals(hedgedReads.getDelayMillis("DFW"), -1);
+   }
+
+   public void testSlowReadIsHedged() throws Exception {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      HedgedReads hedgedReads = new HedgedReads(true, 95, TimeUnit.MILLISECONDS.toNanos(20), 16, executor,
+            Ticker.systemTicker());
+      ObjectApi objectApi = objectApi(answers);
+      for (int i = 0; i < 40; i++) {
+         answers.add(returning(null));
+         hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      }
+      assertEquals(hedgedReads.getDelayMillis("DFW"), 20);
+
+      final CountDownLatch release = new CountDownLatch(1);
+      answers.add(new Callable<SwiftObject>() {
+         public SwiftObject call() throws Exception {
+            release.await();
+            return null;
+         }
+      });
+      SwiftObject fast = object(new TrackingPayload());
+      answers.add(returning(fast));
+
+      assertSame(hedgedReads.get(objectApi, "DFW", "foo", NONE), fast);
+      assertEquals(hedgedReads.getHedges(), 1);
+      assertEquals(hedgedReads.getHedgeWins(), 1);
+      release.countDown();
+   }
+
+   public void testFastReadIsNotHedged() {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      HedgedReads hedgedReads = new HedgedReads(true, 95, TimeUnit.SECONDS.toNanos(10), 16, executor,
+            Ticker.systemTicker());
+      ObjectApi objectApi = objectApi(answers);
+      for (int i = 0; i < 40; i++) {
+         answers.add(returning(null));
+         hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      }
+      SwiftObject object = object(new TrackingPayload());
+      answers.add(returning(object));
+      assertSame(hedgedReads.get(objectApi, "DFW", "foo", NONE), object);
+      assertEquals(hedgedReads.getHedges(), 0);
+   }
+
+   public void testLosingResponseIsClosed() throws Exception {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      HedgedReads hedgedReads = new HedgedReads(true, 95, TimeUnit.MILLISECONDS.toNanos(20), 16, executor,
+            Ticker.systemTicker());
+      ObjectApi objectApi = objectApi(answers);
+      for (int i = 0; i < 40; i++) {
+         answers.add(returning(null));
+         hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      }
+
+      final CountDownLatch release = new CountDownLatch(1);
+      final TrackingPayload slowPayload = new TrackingPayload();
+      answers.add(new Callable<SwiftObject>() {
+         public SwiftObject call() throws Exception {
+            // ignores interruption, like a socket read would
+            while (true) {
+               try {
+                  release.await();
+                  return object(slowPayload);
+               } catch (InterruptedException e) {
+                  continue;
+               }
+            }
+         }
+      });
+      answers.add(returning(object(new TrackingPayload())));
+
+      hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      release.countDown();
+      assertTrue(slowPayload.released.await(5, TimeUnit.SECONDS));
+   }
+
+   public void testTracksRegionsSeparately() {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      HedgedReads hedgedReads = new HedgedReads(true, 95, TimeUnit.MILLISECONDS.toNanos(20), 16, executor,
+            Ticker.systemTicker());
+      ObjectApi objectApi = objectApi(answers);
+      for (int i = 0; i < 40; i++) {
+         answers.add(returning(null));
+         hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      }
+      assertEquals(hedgedReads.getDelayMillis("DFW"), 20);
+      assertEquals(hedgedReads.getDelayMillis("ORD"), -1);
+   }
+
+   public void testHedgesAreBounded() throws Exception {
+      BlockingQueue<Callable<SwiftObject>> answers = new LinkedBlockingQueue<Callable<SwiftObject>>();
+      HedgedReads hedgedReads = new HedgedReads(true, 95, TimeUnit.MILLISECONDS.toNanos(20), 0, executor,
+            Ticker.systemTicker());
+      ObjectApi objectApi = objectApi(answers);
+      for (int i = 0; i < 40; i++) {
+         answers.add(returning(null));
+         hedgedReads.get(objectApi, "DFW", "foo", NONE);
+      }
+
+      final SwiftObject slow = object(new TrackingPayload());
+      answers.add(new Callable<SwiftObject>() {
+         public SwiftObject call() throws Exception {
+            Thread.sleep(100);
+            return slow;
+         }
+      });
+
+      assertSame(hedgedReads.get(objectApi, "DFW", "foo", NONE), slow);
+      assertEquals(hedgedReads.getHedges(), 0);
+   }
+
+   private static Callable<SwiftObject> returning(final SwiftObject object) {
+      return new Callable<SwiftObject>() {
+         public SwiftObject call() {
+            return object;
+         }
+      };
+   }
+
+   private static SwiftObject object(TrackingPayload payload) {
+      return SwiftObject.builder().name("foo").uri(URI.create("http://localhost/foo")).etag("etag")
+            .lastModified(new Date()).payload(payload).build();
+   }
+
+   private static ObjectApi objectApi(final BlockingQueue<Callable<SwiftObject>> answers) {
+      ObjectApi objectApi = createMock(ObjectApi.class);
+      expect(objectApi.get(anyString(), anyObject(GetOptions.class))).andAnswer(new IAnswer<SwiftObject>() {
+         @Override
+         public SwiftObject answer() throws Exception {
+            return answers.remove().call();
+         }
+      }).anyTimes();
+      // answers block until released, so the hedged read has to be let in concurrently
+      makeThreadSafe(objectApi, false);
+      replay(objectApi);
+      return objectApi;
+   }
+
+   static class TrackingPayload extends ByteSourcePayload {
+      final CountDownLatch released = new CountDownLatch(1);
+
+      TrackingPayload() {
+         super(ByteSource.wrap(new byte[0]));
+      }
+
+      @Override
+      public void release() {
+         released.countDown();
+      }
+   }
+}
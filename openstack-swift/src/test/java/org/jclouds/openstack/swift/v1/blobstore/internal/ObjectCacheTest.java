@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.jclouds.io.Payloads.newByteSourcePayload;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.IAnswer;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.io.Payload;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "ObjectCacheTest", singleThreaded = true)
+public class ObjectCacheTest {
+
+   static class ManualTicker extends Ticker {
+      long nanos;
+
+      @Override
+      public long read() {
+         return nanos;
+      }
+   }
+
+   private final HedgedReads direct = new HedgedReads(false, 95, 0, 0, MoreExecutors.newDirectExecutorService(),
+         Ticker.systemTicker());
+   private final ManualTicker ticker = new ManualTicker();
+   private final FakeObjectApi fake = new FakeObjectApi();
+   private final ObjectApi objectApi = fake.objectApi();
+   private File directory;
+
+   @BeforeMethod
+   public void createDirectory() {
+      directory = Files.createTempDir();
+      fake.responses.clear();
+      fake.requests.clear();
+   }
+
+   @AfterMethod
+   public void deleteDirectory() {
+      delete(directory);
+   }
+
+   public void testRevalidatesWithETag() throws IOException {
+      ObjectCache cache = new ObjectCache(directory, 1024, 64, 0, direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      assertEquals(read(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE)), "hello");
+      assertEquals(fake.requests.get(0).buildRequestHeaders().size(), 0);
+
+      fake.responses.add(notModified());
+      assertEquals(read(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE)), "hello");
+      assertEquals(fake.requests.get(1).getIfNoneMatch(), "\"etag1\"");
+      assertEquals(cache.getMisses(), 1);
+      assertEquals(cache.getRevalidations(), 1);
+   }
+
+   public void testChangedObjectReplacesCopy() throws IOException {
+      ObjectCache cache = new ObjectCache(directory, 1024, 64, 0, direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE);
+      fake.responses.add(object("etag2", "goodbye"));
+      assertEquals(read(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE)), "goodbye");
+      assertEquals(cache.getSize(), 7);
+      assertEquals(cache.getDirectory().listFiles().length, 1);
+   }
+
+   public void testFreshObjectIsServedLocally() throws IOException {
+      ObjectCache cache = new ObjectCache(directory, 1024, 64, TimeUnit.SECONDS.toNanos(10), direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE);
+      ticker.nanos += TimeUnit.SECONDS.toNanos(5);
+      assertEquals(read(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE)), "hello");
+      assertEquals(fake.requests.size(), 1);
+      assertEquals(cache.getHits(), 1);
+   }
+
+   public void testDeletedObjectIsDropped() {
+      ObjectCache cache = new ObjectCache(directory, 1024, 64, 0, direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE);
+      fake.responses.add(null);
+      assertNull(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE));
+      assertEquals(cache.getSize(), 0);
+      assertEquals(cache.getDirectory().listFiles().length, 0);
+   }
+
+   public void testReadRacingAWriteIsNotKept() throws IOException {
+      final ObjectCache cache = new ObjectCache(directory, 1024, 64, TimeUnit.SECONDS.toNanos(10), direct, ticker);
+      ObjectApi objectApi = createMock(ObjectApi.class);
+      expect(objectApi.get(eq("config"), anyObject(GetOptions.class))).andAnswer(new IAnswer<SwiftObject>() {
+         @Override
+         public SwiftObject answer() {
+            // the object is replaced while the old one is on the wire
+            cache.invalidate("DFW", "container", "config");
+            return object("etag1", "hello");
+         }
+      });
+      expect(objectApi.get(eq("config"), anyObject(GetOptions.class))).andReturn(object("etag2", "goodbye"));
+      replay(objectApi);
+
+      assertEquals(read(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE)), "hello");
+      assertEquals(read(cache.get(objectApi, "DFW", "container", "config", GetOptions.NONE)), "goodbye");
+      assertEquals(cache.getHits(), 0);
+
+      verify(objectApi);
+   }
+
+   public void testEvictsLeastRecentlyUsed() {
+      ObjectCache cache = new ObjectCache(directory, 8, 8, 0, direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      cache.get(objectApi, "DFW", "container", "one", GetOptions.NONE);
+      fake.responses.add(object("etag2", "world"));
+      cache.get(objectApi, "DFW", "container", "two", GetOptions.NONE);
+      assertEquals(cache.getSize(), 5);
+      assertEquals(cache.getDirectory().listFiles().length, 1);
+   }
+
+   public void testLargeAndRangedReadsBypassCache() {
+      ObjectCache cache = new ObjectCache(directory, 1024, 4, 0, direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      cache.get(objectApi, "DFW", "container", "large", GetOptions.NONE);
+      fake.responses.add(object("etag2", "hi"));
+      cache.get(objectApi, "DFW", "container", "small", GetOptions.Builder.range(0, 1));
+      assertEquals(cache.getSize(), 0);
+      assertEquals(cache.getDirectory().listFiles().length, 0);
+   }
+
+   public void testCachesSharingADirectoryKeepTheirOwnFiles() throws IOException {
+      File other = new File(directory, "object1.swiftobject");
+      Files.touch(other);
+      ObjectCache one = new ObjectCache(directory, 1024, 64, 0, direct, ticker);
+      ObjectCache two = new ObjectCache(directory, 1024, 64, 0, direct, ticker);
+      fake.responses.add(object("etag1", "hello"));
+      one.get(objectApi, "DFW", "container", "config", GetOptions.NONE);
+
+      assertTrue(other.exists());
+      assertEquals(one.getDirectory().getParentFile(), directory);
+      assertFalse(one.getDirectory().equals(two.getDirectory()));
+      assertEquals(one.getDirectory().listFiles().length, 1);
+      assertEquals(two.getDirectory().listFiles().length, 0);
+   }
+
+   private static void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) {
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+
+   private static String read(SwiftObject object) throws IOException {
+      return new PayloadSource(object.getPayload()).asCharSource(Charsets.UTF_8).read();
+   }
+
+   private static SwiftObject object(String etag, String body) {
+      Payload payload = newByteSourcePayload(ByteSource.wrap(body.getBytes(Charsets.UTF_8)));
+      payload.getContentMetadata().setContentLength((long) body.length());
+      return SwiftObject.builder().name("config").uri(URI.create("http://localhost/config")).etag(etag)
+            .lastModified(new Date()).payload(payload).build();
+   }
+
+   private static Object notModified() {
+      return new HttpResponseException("not modified", null, HttpResponse.builder().statusCode(304).build());
+   }
+
+   static class PayloadSource extends ByteSource {
+      private final Payload payload;
+
+      PayloadSource(Payload payload) {
+         this.payload = payload;
+      }
+
+      @Override
+      public InputStream openStream() throws IOException {
+         return payload.openStream();
+      }
+   }
+
+   static class FakeObjectApi {
+      final List<Object> responses = Lists.newArrayList();
+      final List<GetOptions> requests = Lists.newArrayList();
+
+      ObjectApi objectApi() {
+         ObjectApi objectApi = createMock(ObjectApi.class);
+         expect(objectApi.get(anyString(), anyObject(GetOptions.class))).andAnswer(new IAnswer<SwiftObject>() {
+            @Override
+            public SwiftObject answer() {
+               requests.add((GetOptions) getCurrentArguments()[1]);
+               Object response = responses.remove(0);
+               if (response instanceof RuntimeException) {
+                  throw (RuntimeException) response;
+               }
+               return (SwiftObject) response;
+            }
+         }).anyTimes();
+         replay(objectApi);
+         return objectApi;
+      }
+   }
+}
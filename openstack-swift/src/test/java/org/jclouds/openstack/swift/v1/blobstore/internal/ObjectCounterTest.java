@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.easymock.IAnswer;
+import org.jclouds.openstack.swift.v1.domain.ObjectCount;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "ObjectCounterTest")
+public class ObjectCounterTest {
+
+   private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+   @AfterClass
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   public void testSmallPrefixIsOneRequest() {
+      NavigableSet<String> names = Sets.newTreeSet();
+      for (int i = 0; i < 100; i++) {
+         names.add("photos/" + i);
+         names.add("videos/" + i);
+      }
+      List<ListContainerOptions> requests = Lists.newArrayList();
+      ObjectCounter counter = new ObjectCounter(4, MoreExecutors.newDirectExecutorService());
+
+      assertEquals(counter.countPrefix(objectApi(names, requests), "photos/", null), 100);
+      assertEquals(requests.size(), 1);
+   }
+
+   public void testLargePrefixIsCountedInRanges() {
+      NavigableSet<String> names = Sets.newTreeSet();
+      for (int i = 0; i < 35000; i++) {
+         names.add(String.format("logs/%s%05d", Character.forDigit(i % 36, 36), i));
+      }
+      names.add("logs/A");
+      names.add("logs/z");
+      names.add("logs/~tilde");
+      names.add("other/1");
+      List<ListContainerOptions> requests = Lists.newArrayList();
+      ObjectCounter counter = new ObjectCounter(4, executor);
+
+      assertEquals(counter.countPrefix(objectApi(names, requests), "logs/", null), 35003);
+      assertTrue(requests.size() > 4, "expected ranges, got " + requests.size());
+   }
+
+   public void testPathCountsOnlyDirectChildren() {
+      NavigableSet<String> names = Sets.newTreeSet();
+      for (int i = 0; i < 12000; i++) {
+         names.add(String.format("dir/%05d", i));
+         names.add(String.format("dir/sub/%05d", i));
+      }
+      ObjectCounter counter = new ObjectCounter(4, executor);
+
+      assertEquals(counter.countPath(objectApi(names, Lists.<ListContainerOptions> newArrayList()), "dir", null),
+            12000);
+   }
+
+   public void testMissingContainerCountsZero() {
+      ObjectCounter counter = new ObjectCounter(4, MoreExecutors.newDirectExecutorService());
+
+      assertEquals(counter.countPrefix(objectApi(null, Lists.<ListContainerOptions> newArrayList()), "", null), 0);
+   }
+
+   public void testRangesStartAfterLastName() {
+      List<String[]> ranges = ObjectCounter.ranges("p/", "p/x5");
+
+      assertEquals(ranges.size(), 3);
+      assertEquals(ranges.get(0), new String[] { "p/x5", "p/y\u0001" });
+      assertEquals(ranges.get(1), new String[] { "p/y", "p/z\u0001" });
+      assertEquals(ranges.get(2)[0], "p/z");
+      assertNull(ranges.get(2)[1]);
+   }
+
+   /**
+    * Answers like Swift: names after {@code marker}, before {@code end_marker}, starting with {@code prefix} or directly
+    * under {@code path}, at most {@code limit} of them.
+    */
+   private static ObjectApi objectApi(final NavigableSet<String> names, final List<ListContainerOptions> requests) {
+      ObjectApi objectApi = createMock(ObjectApi.class);
+      expect(objectApi.count(anyObject(ListContainerOptions.class))).andAnswer(new IAnswer<ObjectCount>() {
+         @Override
+         public ObjectCount answer() {
+            ListContainerOptions options = (ListContainerOptions) getCurrentArguments()[0];
+            synchronized (requests) {
+               requests.add(options);
+            }
+            if (names == null) {
+               return null;
+            }
+            String marker = param(options, "marker");
+            String endMarker = param(options, "end_marker");
+            String path = param(options, "path");
+            String prefix = path != null ? path + "/" : param(options, "prefix");
+            int limit = Integer.parseInt(param(options, "limit"));
+            int count = 0;
+            String last = null;
+            for (String name : marker != null ? names.tailSet(marker, false) : names) {
+               if ((endMarker != null && name.compareTo(endMarker) >= 0) || count == limit) {
+                  break;
+               }
+               if (name.startsWith(prefix) && (path == null || name.indexOf('/', prefix.length()) == -1)) {
+                  count++;
+                  last = name;
+               }
+            }
+            return ObjectCount.create(count, last);
+         }
+      }).anyTimes();
+      replay(objectApi);
+      return objectApi;
+   }
+
+   private static String param(ListContainerOptions options, String key) {
+      return Iterables.getFirst(options.buildQueryParameters().get(key), null);
+   }
+}
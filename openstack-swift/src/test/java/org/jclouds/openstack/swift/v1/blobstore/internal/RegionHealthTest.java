@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+
+@Test(groups = "unit", testName = "RegionHealthTest")
+public class RegionHealthTest {
+
+   static class ManualTicker extends Ticker {
+      long nanos;
+
+      @Override
+      public long read() {
+         return nanos;
+      }
+   }
+
+   private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   public void testRanksUnmeasuredThenFastest() {
+      RegionHealth health = new RegionHealth(0.5, 3, TimeUnit.SECONDS.toNanos(30), new ManualTicker());
+      health.success("DFW", 80 * MS);
+      health.success("ORD", 20 * MS);
+      assertEquals(health.rank(ImmutableList.of("DFW", "ORD", "IAD")), ImmutableList.of("IAD", "ORD", "DFW"));
+   }
+
+   public void testMovingAverage() {
+      RegionHealth health = new RegionHealth(0.5, 3, TimeUnit.SECONDS.toNanos(30), new ManualTicker());
+      health.success("DFW", 100 * MS);
+      health.success("DFW", 20 * MS);
+      assertEquals(health.getLatencyMillis("DFW"), 60.0);
+   }
+
+   public void testCircuitOpensAndHalfOpens() {
+      ManualTicker ticker = new ManualTicker();
+      RegionHealth health = new RegionHealth(0.5, 2, TimeUnit.SECONDS.toNanos(30), ticker);
+      health.success("DFW", 10 * MS);
+      health.success("ORD", 90 * MS);
+      health.failure("DFW");
+      assertTrue(health.isAvailable("DFW"));
+      health.failure("DFW");
+      assertFalse(health.isAvailable("DFW"));
+      assertEquals(health.rank(ImmutableList.of("DFW", "ORD")), ImmutableList.of("ORD", "DFW"));
+
+      ticker.nanos += TimeUnit.SECONDS.toNanos(30);
+      assertTrue(health.isAvailable("DFW"));
+      health.failure("DFW");
+      assertFalse(health.isAvailable("DFW"));
+
+      ticker.nanos += TimeUnit.SECONDS.toNanos(30);
+      health.success("DFW", 10 * MS);
+      health.failure("DFW");
+      assertTrue(health.isAvailable("DFW"));
+   }
+
+   public void testHalfOpenAdmitsASingleTrial() {
+      ManualTicker ticker = new ManualTicker();
+      RegionHealth health = new RegionHealth(0.5, 2, TimeUnit.SECONDS.toNanos(30), ticker);
+      health.failure("DFW");
+      health.failure("DFW");
+      assertFalse(health.tryAcquire("DFW"));
+
+      ticker.nanos += TimeUnit.SECONDS.toNanos(30);
+      assertTrue(health.tryAcquire("DFW"));
+      assertFalse(health.tryAcquire("DFW"));
+      assertFalse(health.isAvailable("DFW"));
+
+      health.success("DFW", 10 * MS);
+      assertTrue(health.tryAcquire("DFW"));
+      assertTrue(health.tryAcquire("DFW"));
+   }
+
+   public void testFailedTrialRestartsCoolDown() {
+      ManualTicker ticker = new ManualTicker();
+      RegionHealth health = new RegionHealth(0.5, 2, TimeUnit.SECONDS.toNanos(30), ticker);
+      health.failure("DFW");
+      health.failure("DFW");
+      ticker.nanos += TimeUnit.SECONDS.toNanos(30);
+      assertTrue(health.tryAcquire("DFW"));
+
+      health.failure("DFW");
+      assertFalse(health.tryAcquire("DFW"));
+      ticker.nanos += TimeUnit.SECONDS.toNanos(30);
+      assertTrue(health.tryAcquire("DFW"));
+   }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.LAST_MODIFIED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+
+import java.util.Date;
+
+import org.jclouds.date.internal.SimpleDateFormatDateService;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+
+@Test(groups = "unit", testName = "DecodedHeadersTest")
+public class DecodedHeadersTest {
+
+   public void testDecodesNamedHeadersAndMetadataIgnoringCase() {
+      DecodedHeaders headers = DecodedHeaders.decode(ImmutableMultimap.<String, String> builder()
+            .put("etag", "abc")
+            .put("Last-Modified", "Wed, 15 Oct 2014 21:08:59 GMT")
+            .put("X-Object-Meta-Color", "blue")
+            .put("x-object-meta-size", "large")
+            .put("X-Object-Meta-Color", "red")
+            .put("X-Timestamp", "1413407339.00000").build(), ETAG, LAST_MODIFIED, "X-Delete-At");
+
+      assertEquals(headers.get(ETAG), "abc");
+      assertEquals(headers.get(LAST_MODIFIED), "Wed, 15 Oct 2014 21:08:59 GMT");
+      assertNull(headers.get("X-Delete-At"));
+      assertEquals(headers.getMetadata(), ImmutableMap.of("Color", "blue", "size", "large"));
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testUndecodedHeader() {
+      DecodedHeaders.decode(ImmutableMultimap.of("ETag", "abc"), ETAG).get(LAST_MODIFIED);
+   }
+
+   public void testLastModifiedParserReturnsCopies() {
+      LastModifiedParser parser = new LastModifiedParser(new SimpleDateFormatDateService());
+      Date first = parser.parse("Wed, 15 Oct 2014 21:08:59 GMT");
+      Date second = parser.parse("Wed, 15 Oct 2014 21:08:59 GMT");
+      assertEquals(first, new SimpleDateFormatDateService().rfc822DateParse("Wed, 15 Oct 2014 21:08:59 GMT"));
+      assertEquals(second, first);
+      assertNotSame(second, first);
+      assertNull(parser.parse(null));
+   }
+}
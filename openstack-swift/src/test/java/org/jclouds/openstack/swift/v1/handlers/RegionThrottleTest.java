@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.handlers;
+
+import static org.testng.Assert.assertEquals;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+
+@Test(groups = "unit", testName = "RegionThrottleTest")
+public class RegionThrottleTest {
+
+   private static final URI DFW = URI.create("https://storage101.dfw1.clouddrive.com/v1/MossoCloudFS_1/container");
+   private static final URI ORD = URI.create("https://storage101.ord1.clouddrive.com/v1/MossoCloudFS_1/container");
+
+   static class ManualTicker extends Ticker {
+      long nanos = TimeUnit.HOURS.toNanos(1);
+
+      @Override
+      public long read() {
+         return nanos;
+      }
+
+      void advance(long duration, TimeUnit unit) {
+         nanos += unit.toNanos(duration);
+      }
+   }
+
+   public void testStartsAtCeiling() {
+      RegionThrottle throttle = new RegionThrottle(1, 500, 0.5, 5, new ManualTicker());
+      throttle.acquire(DFW);
+      assertEquals(throttle.getRate(DFW), 500.0);
+   }
+
+   public void testOverloadBacksOffFromCeiling() {
+      ManualTicker ticker = new ManualTicker();
+      RegionThrottle throttle = new RegionThrottle(1, 500, 0.5, 5, ticker);
+      throttle.acquire(DFW);
+      throttle.overloaded(DFW);
+      assertEquals(throttle.getRate(DFW), 250.0);
+      assertEquals(throttle.getRate(ORD), 500.0);
+   }
+
+   public void testBacksOffOncePerSecond() {
+      ManualTicker ticker = new ManualTicker();
+      RegionThrottle throttle = new RegionThrottle(1, 40, 0.5, 0, ticker);
+      throttle.overloaded(DFW);
+      assertEquals(throttle.getRate(DFW), 20.0);
+      throttle.overloaded(DFW);
+      assertEquals(throttle.getRate(DFW), 20.0);
+      ticker.advance(1, TimeUnit.SECONDS);
+      throttle.overloaded(DFW);
+      assertEquals(throttle.getRate(DFW), 10.0);
+   }
+
+   public void testDoesNotBackOffBelowFloor() {
+      ManualTicker ticker = new ManualTicker();
+      RegionThrottle throttle = new RegionThrottle(3, 4, 0.5, 0, ticker);
+      throttle.overloaded(DFW);
+      assertEquals(throttle.getRate(DFW), 3.0);
+   }
+
+   public void testRecoversToCeiling() {
+      ManualTicker ticker = new ManualTicker();
+      RegionThrottle throttle = new RegionThrottle(1, 10, 0.5, 3, ticker);
+      throttle.overloaded(DFW);
+      ticker.advance(1, TimeUnit.SECONDS);
+      throttle.acquire(DFW);
+      assertEquals(throttle.getRate(DFW), 8.0);
+      ticker.advance(1, TimeUnit.SECONDS);
+      throttle.acquire(DFW);
+      assertEquals(throttle.getRate(DFW), 10.0);
+   }
+}
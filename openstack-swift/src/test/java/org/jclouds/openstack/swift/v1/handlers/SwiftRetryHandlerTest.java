@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.handlers;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.jclouds.date.internal.SimpleDateFormatDateService;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.handlers.BackoffLimitedRetryHandler;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "SwiftRetryHandlerTest")
+public class SwiftRetryHandlerTest {
+
+   private final RegionThrottle throttle = new RegionThrottle(1, 500, 0.5, 5);
+   private final SwiftRetryHandler handler = new SwiftRetryHandler(throttle, new BackoffLimitedRetryHandler(),
+         new SimpleDateFormatDateService(), 5, 50, 1000);
+
+   public void testRetryAfterSeconds() {
+      assertEquals(handler.retryAfterMillis("2"), 2000);
+      assertEquals(handler.retryAfterMillis(" 0 "), 0);
+   }
+
+   public void testRetryAfterInThePast() {
+      assertEquals(handler.retryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT"), 0);
+   }
+
+   public void testRetryAfterMissingOrInvalid() {
+      assertEquals(handler.retryAfterMillis(null), -1);
+      assertEquals(handler.retryAfterMillis("soon"), -1);
+   }
+
+   public void testDelayIsCappedAndJittered() {
+      assertEquals(handler.delayMillis(1, "120"), 1000);
+      for (int failures = 1; failures < 40; failures++) {
+         long delay = handler.delayMillis(failures, null);
+         assertTrue(delay >= 0 && delay <= Math.min(1000, 50L << Math.min(failures, 30)), String.valueOf(delay));
+      }
+   }
+
+   public void test503IsRetriedAndThrottlesRegion() {
+      URI endpoint = URI.create("http://swift.example.com/v1/AUTH_1/container/key");
+      HttpCommand command = createMock(HttpCommand.class);
+      HttpRequest request = HttpRequest.builder().method("GET").endpoint(endpoint).build();
+      HttpResponse response = HttpResponse.builder().statusCode(503).message("Service Unavailable")
+            .addHeader("Retry-After", "0").build();
+
+      expect(command.getCurrentRequest()).andReturn(request).atLeastOnce();
+      expect(command.incrementFailureCount()).andReturn(1);
+      expect(command.isReplayable()).andReturn(true);
+      expect(command.getFailureCount()).andReturn(1).atLeastOnce();
+      replay(command);
+
+      assertTrue(handler.shouldRetryRequest(command, response));
+      assertEquals(throttle.getRate(endpoint), 250.0);
+      verify(command);
+   }
+
+   public void test429IsRetriedAndThrottlesRegion() {
+      URI endpoint = URI.create("http://swift2.example.com/v1/AUTH_1/container/key");
+      HttpCommand command = createMock(HttpCommand.class);
+      HttpRequest request = HttpRequest.builder().method("GET").endpoint(endpoint).build();
+      HttpResponse response = HttpResponse.builder().statusCode(429).message("Too Many Requests")
+            .addHeader("Retry-After", "0").build();
+
+      expect(command.getCurrentRequest()).andReturn(request).atLeastOnce();
+      expect(command.incrementFailureCount()).andReturn(1);
+      expect(command.isReplayable()).andReturn(true);
+      expect(command.getFailureCount()).andReturn(1).atLeastOnce();
+      replay(command);
+
+      assertTrue(handler.shouldRetryRequest(command, response));
+      assertEquals(throttle.getRate(endpoint), 250.0);
+      verify(command);
+   }
+
+   public void testDelegatingHandlerRoutes429ToSwift() {
+      HttpCommand command = createMock(HttpCommand.class);
+      HttpResponse response = HttpResponse.builder().statusCode(429).build();
+      SwiftRetryHandler swift = createMock(SwiftRetryHandler.class);
+
+      expect(swift.shouldRetryRequest(command, response)).andReturn(true);
+      replay(command, swift);
+
+      assertTrue(new SwiftDelegatingRetryHandler(new BackoffLimitedRetryHandler(), null, swift)
+            .shouldRetryRequest(command, response));
+      verify(swift);
+   }
+
+   public void testNotReplayableIsNotRetried() {
+      URI endpoint = URI.create("http://swift.example.com/v1/AUTH_1/container/key");
+      HttpCommand command = createMock(HttpCommand.class);
+      HttpRequest request = HttpRequest.builder().method("PUT").endpoint(endpoint).build();
+
+      expect(command.getCurrentRequest()).andReturn(request).atLeastOnce();
+      expect(command.incrementFailureCount()).andReturn(1);
+      expect(command.isReplayable()).andReturn(false);
+      replay(command);
+
+      assertFalse(handler.shouldRetryRequest(command, HttpResponse.builder().statusCode(503).build()));
+      verify(command);
+   }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.lifecycle;
+
+import static com.google.common.net.HttpHeaders.CONTENT_DISPOSITION;
+import static com.google.common.net.HttpHeaders.CONTENT_ENCODING;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_MANIFEST;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.BulkDeleteResponse;
+import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.BulkApi;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.options.PutOptions;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "LifecycleManagerTest")
+public class LifecycleManagerTest {
+
+   private static final long NOW = System.currentTimeMillis();
+
+   private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+   @AfterClass
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   public void testExpireSchedulesYoungObjectsAndDeletesOldOnes() {
+      FakeContainer container = new FakeContainer();
+      container.put("logs/old", daysAgo(40), null);
+      container.put("logs/new", daysAgo(10), null);
+      container.put("logs/scheduled", daysAgo(10), new Date(NOW + DAYS.toMillis(1)));
+      container.put("images/a.png", daysAgo(400), null);
+      LifecycleManager manager = new LifecycleManager(container.api(), executor);
+
+      LifecycleReport report = manager.apply("DFW", "c",
+            ImmutableList.of(ExpirationRule.expire("logs/", 30, DAYS)));
+
+      assertFalse(report.isDryRun());
+      assertEquals(report.getScanned(), 4);
+      assertEquals(report.getMatched(), 3);
+      assertEquals(report.getDeleted(), 1);
+      assertEquals(report.getScheduled(), 1);
+      assertEquals(report.getUnchanged(), 1);
+      assertTrue(report.getFailures().isEmpty());
+      assertEquals(container.bulkDeletes, ImmutableList.of(ImmutableList.of("c/logs/old")));
+      assertEquals(container.deleteAt.keySet(), ImmutableSet.of("logs/new"));
+      assertEquals((long) container.deleteAt.get("logs/new"),
+            MILLISECONDS.toSeconds(daysAgo(10).getTime() + DAYS.toMillis(30)));
+      assertEquals(container.metadataPosted.get("logs/new"), ImmutableMap.of("owner", "logs/new"));
+   }
+
+   public void testExpireKeepsHeadersSwiftDropsOnUpdate() {
+      FakeContainer container = new FakeContainer();
+      container.put("logs/new", daysAgo(10), null);
+      LifecycleManager manager = new LifecycleManager(container.api(), MoreExecutors.newDirectExecutorService());
+
+      manager.apply("DFW", "c", ImmutableList.of(ExpirationRule.expire("logs/", 30, DAYS)));
+
+      assertEquals(container.headersPosted.get("logs/new"), ImmutableMultimap.of(
+            CONTENT_DISPOSITION, "attachment; filename=new.log",
+            CONTENT_ENCODING, "gzip",
+            OBJECT_MANIFEST, "segments/logs/new/"));
+   }
+
+   public void testDeleteLeavesYoungObjectsAndBatches() {
+      FakeContainer container = new FakeContainer();
+      for (int i = 0; i < 5; i++) {
+         container.put("tmp/" + i, daysAgo(2), null);
+      }
+      container.put("tmp/young", daysAgo(0), null);
+      LifecycleManager manager = new LifecycleManager(container.api(), MoreExecutors.newDirectExecutorService());
+
+      LifecycleReport report = manager.apply("DFW", "c", ImmutableList.of(ExpirationRule.delete("tmp/", 1, DAYS)),
+            LifecycleOptions.Builder.bulkDeleteSize(2));
+
+      assertEquals(report.getDeleted(), 5);
+      assertEquals(report.getUnchanged(), 1);
+      assertEquals(container.bulkDeletes.size(), 3);
+      assertTrue(container.deleteAt.isEmpty());
+   }
+
+   public void testFirstMatchingRuleWins() {
+      FakeContainer container = new FakeContainer();
+      container.put("logs/keep/a", daysAgo(40), null);
+      container.put("logs/b", daysAgo(40), null);
+      LifecycleManager manager = new LifecycleManager(container.api(), MoreExecutors.newDirectExecutorService());
+
+      LifecycleReport report = manager.apply("DFW", "c", ImmutableList.of(
+            ExpirationRule.delete("logs/keep/", 365, DAYS), ExpirationRule.delete("logs/", 30, DAYS)));
+
+      assertEquals(report.getDeleted(), 1);
+      assertEquals(report.getUnchanged(), 1);
+      assertEquals(container.bulkDeletes, ImmutableList.of(ImmutableList.of("c/logs/b")));
+   }
+
+   public void testDryRunChangesNothing() {
+      FakeContainer container = new FakeContainer();
+      container.put("logs/old", daysAgo(40), null);
+      container.put("logs/new", daysAgo(10), null);
+      LifecycleManager manager = new LifecycleManager(container.api(), executor);
+
+      LifecycleReport report = manager.apply("DFW", "c", ImmutableList.of(ExpirationRule.expire("logs/", 30, DAYS)),
+            LifecycleOptions.Builder.dryRun());
+
+      assertTrue(report.isDryRun());
+      assertEquals(report.getDeleted(), 1);
+      assertEquals(report.getScheduled(), 1);
+      assertTrue(container.bulkDeletes.isEmpty());
+      assertTrue(container.deleteAt.isEmpty());
+      assertEquals(container.heads, 0);
+   }
+
+   public void testBulkErrorsAreReportedByObjectName() {
+      FakeContainer container = new FakeContainer();
+      container.put("logs/old", daysAgo(40), null);
+      container.bulkErrors = ImmutableMap.of("/c/logs/old", "403 Forbidden");
+      LifecycleManager manager = new LifecycleManager(container.api(), MoreExecutors.newDirectExecutorService());
+
+      LifecycleReport report = manager.apply("DFW", "c", ImmutableList.of(ExpirationRule.delete("logs/", 30, DAYS)));
+
+      assertEquals(report.getDeleted(), 0);
+      assertEquals(report.getFailures(), ImmutableMap.of("logs/old", "403 Forbidden"));
+   }
+
+   private static Date daysAgo(int days) {
+      return new Date(NOW - DAYS.toMillis(days));
+   }
+
+   private static class FakeContainer {
+      final Map<String, Date> lastModified = Maps.newTreeMap();
+      final Map<String, Date> expires = Maps.newHashMap();
+      final Map<String, Long> deleteAt = Maps.newConcurrentMap();
+      final Map<String, Map<String, String>> metadataPosted = Maps.newConcurrentMap();
+      final Map<String, Multimap<String, String>> headersPosted = Maps.newConcurrentMap();
+      final List<List<String>> bulkDeletes = Lists.newArrayList();
+      Map<String, String> bulkErrors = ImmutableMap.of();
+      volatile int heads;
+
+      void put(String name, Date modified, Date deleteAt) {
+         lastModified.put(name, modified);
+         if (deleteAt != null) {
+            expires.put(name, deleteAt);
+         }
+      }
+
+      SwiftObject object(String name) {
+         Payload payload = Payloads.newByteArrayPayload(new byte[0]);
+         payload.getContentMetadata().setExpires(expires.get(name));
+         payload.getContentMetadata().setContentDisposition("attachment; filename=" + name.substring(5) + ".log");
+         payload.getContentMetadata().setContentEncoding("gzip");
+         return SwiftObject.builder().name(name).uri(URI.create("http://localhost/c/" + name)).etag("e")
+               .lastModified(lastModified.get(name)).metadata(ImmutableMap.of("owner", name)).payload(payload)
+               .headers(ImmutableMultimap.of("x-object-manifest", "segments/" + name + "/")).build();
+      }
+
+      SwiftApi api() {
+         ObjectApi objectApi = createMock(ObjectApi.class);
+         expect(objectApi.list(anyObject(ListContainerOptions.class))).andAnswer(new IAnswer<ObjectList>() {
+            @Override
+            public ObjectList answer() {
+               String marker = Iterables.getFirst(
+                     ((ListContainerOptions) getCurrentArguments()[0]).buildQueryParameters().get("marker"), null);
+               List<SwiftObject> page = Lists.newArrayList();
+               for (String name : lastModified.keySet()) {
+                  if (marker == null || name.compareTo(marker) > 0) {
+                     page.add(object(name));
+                  }
+               }
+               return ObjectList.create(page, Container.builder().name("c").build());
+            }
+         }).anyTimes();
+         expect(objectApi.getWithoutBody(anyString())).andAnswer(new IAnswer<SwiftObject>() {
+            @Override
+            public SwiftObject answer() {
+               heads++;
+               return object((String) getCurrentArguments()[0]);
+            }
+         }).anyTimes();
+         expect(objectApi.updateMetadataAndDeleteAt(anyString(), EasyMock.<Map<String, String>> anyObject(),
+               anyLong(), anyObject(PutOptions.class))).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               @SuppressWarnings("unchecked")
+               Map<String, String> metadata = (Map<String, String>) getCurrentArguments()[1];
+               metadataPosted.put((String) getCurrentArguments()[0], metadata);
+               deleteAt.put((String) getCurrentArguments()[0], (Long) getCurrentArguments()[2]);
+               headersPosted.put((String) getCurrentArguments()[0],
+                     ImmutableMultimap.copyOf(((PutOptions) getCurrentArguments()[3]).buildRequestHeaders()));
+               return true;
+            }
+         }).anyTimes();
+         BulkApi bulkApi = createMock(BulkApi.class);
+         expect(bulkApi.bulkDelete(EasyMock.<Iterable<String>> anyObject())).andAnswer(
+               new IAnswer<BulkDeleteResponse>() {
+                  @Override
+                  public BulkDeleteResponse answer() {
+                     @SuppressWarnings("unchecked")
+                     List<String> paths = ImmutableList.copyOf((Iterable<String>) getCurrentArguments()[0]);
+                     synchronized (bulkDeletes) {
+                        bulkDeletes.add(paths);
+                     }
+                     return BulkDeleteResponse.create(paths.size() - bulkErrors.size(), 0, bulkErrors);
+                  }
+               }).anyTimes();
+         SwiftApi api = createMock(SwiftApi.class);
+         expect(api.getObjectApi(anyString(), anyString())).andReturn(objectApi).anyTimes();
+         expect(api.getBulkApi(anyString())).andReturn(bulkApi).anyTimes();
+         replay(objectApi, bulkApi, api);
+         return api;
+      }
+   }
+}
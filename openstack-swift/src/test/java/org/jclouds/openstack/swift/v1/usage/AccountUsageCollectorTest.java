@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.usage;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.easymock.IAnswer;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ContainerApi;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "AccountUsageCollectorTest")
+public class AccountUsageCollectorTest {
+
+   private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+   @AfterClass
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   public void testCollectsContainerTotalsFromListing() {
+      Map<String, Map<String, Integer>> account = ImmutableMap.<String, Map<String, Integer>> of(
+            "images", ImmutableMap.of("a.png", 10, "b.png", 20),
+            "logs", ImmutableMap.of("2014/01.log", 5));
+      List<String> calls = Lists.newArrayList();
+      AccountUsageCollector collector = new AccountUsageCollector(api(account, calls, 10000),
+            MoreExecutors.newDirectExecutorService());
+
+      UsageReport report = collector.collect("DFW");
+
+      assertEquals(report.getContainers(), ImmutableSortedMap.of("images", new Usage(2, 30), "logs", new Usage(1, 5)));
+      assertEquals(report.getTotal(), new Usage(3, 35));
+      assertTrue(report.getPrefixes().isEmpty());
+      assertEquals(calls, ImmutableList.of("containers"));
+   }
+
+   public void testPagesContainerListing() {
+      Map<String, Map<String, Integer>> account = Maps.newLinkedHashMap();
+      for (int i = 0; i < 10001; i++) {
+         account.put(String.format("c%05d", i), ImmutableMap.of("x", 1));
+      }
+      List<String> calls = Lists.newArrayList();
+      AccountUsageCollector collector = new AccountUsageCollector(api(account, calls, 10000),
+            MoreExecutors.newDirectExecutorService());
+
+      UsageReport report = collector.collect("DFW");
+
+      assertEquals(report.getContainers().size(), 10001);
+      assertEquals(report.getTotal(), new Usage(10001, 10001));
+      assertEquals(calls, ImmutableList.of("containers", "containers"));
+   }
+
+   public void testBreaksDownByPrefixInParallel() {
+      Map<String, Integer> logs = Maps.newLinkedHashMap();
+      for (int i = 0; i < 10002; i++) {
+         logs.put(String.format("2014/%05d.log", i), 1);
+      }
+      logs.put("README", 7);
+      Map<String, Map<String, Integer>> account = ImmutableMap.<String, Map<String, Integer>> of(
+            "images", ImmutableMap.of("thumbs/a.png", 10, "thumbs/b.png", 20, "full/a.png", 100),
+            "logs", logs);
+      List<String> calls = Lists.newArrayList();
+      AccountUsageCollector collector = new AccountUsageCollector(api(account, calls, 10000), executor);
+
+      UsageReport report = collector.collect("DFW", UsageOptions.Builder.byPrefix('/').concurrency(2));
+
+      assertEquals(report.getPrefixes().get("images"),
+            ImmutableSortedMap.of("full/", new Usage(1, 100), "thumbs/", new Usage(2, 30)));
+      assertEquals(report.getPrefixes().get("logs"),
+            ImmutableSortedMap.of("", new Usage(1, 7), "2014/", new Usage(10002, 10002)));
+   }
+
+   public void testOnlyListsObjectsOfRequestedNonEmptyContainers() {
+      Map<String, Map<String, Integer>> account = ImmutableMap.<String, Map<String, Integer>> of(
+            "empty", ImmutableMap.<String, Integer> of(),
+            "images", ImmutableMap.of("thumbs/a.png", 10),
+            "logs", ImmutableMap.of("2014/01.log", 5));
+      List<String> calls = Lists.newArrayList();
+      AccountUsageCollector collector = new AccountUsageCollector(api(account, calls, 10000),
+            MoreExecutors.newDirectExecutorService());
+
+      UsageReport report = collector.collect("DFW",
+            UsageOptions.Builder.byPrefix('/', ImmutableSet.of("empty", "images")));
+
+      assertEquals(report.getContainers(), ImmutableSortedMap.of("empty", Usage.ZERO, "images", new Usage(1, 10),
+            "logs", new Usage(1, 5)));
+      assertEquals(report.getPrefixes(), ImmutableSortedMap.of("images",
+            ImmutableSortedMap.of("thumbs/", new Usage(1, 10))));
+      assertEquals(calls, ImmutableList.of("containers", "objects images"));
+   }
+
+   public void testRebuiltReportGivesDelta() {
+      UsageReport stored = UsageReport.of("DFW", new Date(1000), ImmutableMap.of("images", new Usage(2, 30)));
+      UsageReport current = UsageReport.of("DFW", new Date(2000), ImmutableMap.of("images", new Usage(3, 40)));
+
+      assertEquals(current.deltaSince(stored).getContainers(), ImmutableSortedMap.of("images", new Usage(1, 10)));
+   }
+
+   public void testFiltersByContainerPrefix() {
+      Map<String, Map<String, Integer>> account = ImmutableMap.<String, Map<String, Integer>> of(
+            "images", ImmutableMap.of("a.png", 10), "logs", ImmutableMap.of("a.log", 5));
+      AccountUsageCollector collector = new AccountUsageCollector(api(account, Lists.<String> newArrayList(), 10000),
+            MoreExecutors.newDirectExecutorService());
+
+      UsageReport report = collector.collect("DFW", UsageOptions.Builder.containerPrefix("log"));
+
+      assertEquals(report.getContainers(), ImmutableSortedMap.of("logs", new Usage(1, 5)));
+   }
+
+   public void testDeltaSince() {
+      Date then = new Date(1000);
+      Date now = new Date(2000);
+      UsageReport previous = UsageReport.of("DFW", then,
+            ImmutableSortedMap.of("images", new Usage(2, 30), "old", new Usage(1, 1), "same", new Usage(4, 4)),
+            ImmutableSortedMap.<String, SortedMap<String, Usage>> of("images",
+                  ImmutableSortedMap.of("thumbs/", new Usage(2, 30))));
+      UsageReport current = UsageReport.of("DFW", now,
+            ImmutableSortedMap.of("images", new Usage(3, 130), "new", new Usage(1, 9), "same", new Usage(4, 4)),
+            ImmutableSortedMap.<String, SortedMap<String, Usage>> of("images",
+                  ImmutableSortedMap.of("thumbs/", new Usage(2, 30), "full/", new Usage(1, 100))));
+
+      UsageReport delta = current.deltaSince(previous);
+
+      assertEquals(delta.getSince(), then);
+      assertEquals(delta.getCollectedAt(), now);
+      assertEquals(delta.getContainers(), ImmutableSortedMap.of("images", new Usage(1, 100), "new", new Usage(1, 9),
+            "old", new Usage(-1, -1)));
+      assertEquals(delta.getPrefixes(), ImmutableSortedMap.of("images",
+            ImmutableSortedMap.of("full/", new Usage(1, 100))));
+      assertEquals(delta.getTotal(), new Usage(1, 108));
+      assertNull(current.getSince());
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testDeltaOfDifferentRegionsFails() {
+      UsageReport dfw = UsageReport.of("DFW", new Date(), ImmutableSortedMap.<String, Usage> of());
+      UsageReport ord = UsageReport.of("ORD", new Date(), ImmutableSortedMap.<String, Usage> of());
+      ord.deltaSince(dfw);
+   }
+
+   private static SwiftApi api(final Map<String, Map<String, Integer>> account, final List<String> calls,
+         final int limit) {
+      SwiftApi api = createMock(SwiftApi.class);
+      ContainerApi containerApi = createMock(ContainerApi.class);
+      expect(api.getContainerApi(anyString())).andReturn(containerApi).anyTimes();
+      expect(containerApi.list(anyObject(ListContainerOptions.class))).andAnswer(
+            new IAnswer<FluentIterable<Container>>() {
+               @Override
+               public FluentIterable<Container> answer() {
+                  synchronized (calls) {
+                     calls.add("containers");
+                  }
+                  List<Container> page = Lists.newArrayList();
+                  for (Map.Entry<String, Map<String, Integer>> entry : page(account,
+                        (ListContainerOptions) getCurrentArguments()[0], limit).entrySet()) {
+                     long bytes = 0;
+                     for (int size : entry.getValue().values()) {
+                        bytes += size;
+                     }
+                     page.add(Container.builder().name(entry.getKey()).objectCount(entry.getValue().size())
+                           .bytesUsed(bytes).build());
+                  }
+                  return FluentIterable.from(page);
+               }
+            }).anyTimes();
+      expect(api.getObjectApi(anyString(), anyString())).andAnswer(new IAnswer<ObjectApi>() {
+         @Override
+         public ObjectApi answer() {
+            String container = (String) getCurrentArguments()[1];
+            synchronized (calls) {
+               calls.add("objects " + container);
+            }
+            return objectApi(container, account.get(container), limit);
+         }
+      }).anyTimes();
+      replay(api, containerApi);
+      return api;
+   }
+
+   private static ObjectApi objectApi(final String container, final Map<String, Integer> objects, final int limit) {
+      ObjectApi objectApi = createMock(ObjectApi.class);
+      expect(objectApi.list(anyObject(ListContainerOptions.class))).andAnswer(new IAnswer<ObjectList>() {
+         @Override
+         public ObjectList answer() {
+            List<SwiftObject> page = Lists.newArrayList();
+            for (Map.Entry<String, Integer> entry : page(objects, (ListContainerOptions) getCurrentArguments()[0],
+                  limit).entrySet()) {
+               Payload payload = Payloads.newByteArrayPayload(new byte[0]);
+               payload.getContentMetadata().setContentLength((long) entry.getValue());
+               page.add(SwiftObject.builder().name(entry.getKey()).uri(URI.create("http://localhost/x"))
+                     .etag("e").lastModified(new Date()).payload(payload).build());
+            }
+            return ObjectList.create(page, Container.builder().name(container).build());
+         }
+      }).anyTimes();
+      replay(objectApi);
+      return objectApi;
+   }
+
+   private static <V> Map<String, V> page(Map<String, V> entries, ListContainerOptions options, int limit) {
+      String marker = Iterables.getFirst(options.buildQueryParameters().get("marker"), null);
+      String prefix = Iterables.getFirst(options.buildQueryParameters().get("prefix"), null);
+      Map<String, V> page = Maps.newLinkedHashMap();
+      for (Map.Entry<String, V> entry : ImmutableSortedMap.copyOf(entries).entrySet()) {
+         if ((marker == null || entry.getKey().compareTo(marker) > 0)
+               && (prefix == null || entry.getKey().startsWith(prefix)) && page.size() < limit) {
+            page.put(entry.getKey(), entry.getValue());
+         }
+      }
+      return page;
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks.Task;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+@Test(groups = "unit", testName = "ConcurrentTasksTest")
+public class ConcurrentTasksTest {
+
+   private final ExecutorService executor = Executors.newCachedThreadPool();
+
+   @AfterClass
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   public void testRunsEveryInputWithBoundedConcurrency() {
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+      final AtomicInteger sum = new AtomicInteger();
+      ConcurrentTasks.forEach(executor, ContiguousSet.create(Range.closed(1, 50), DiscreteDomain.integers()), 3,
+            new Task<Integer>() {
+               @Override
+               public void run(Integer input) {
+                  int now = running.incrementAndGet();
+                  synchronized (maxRunning) {
+                     maxRunning.set(Math.max(maxRunning.get(), now));
+                  }
+                  Uninterruptibles.sleepUninterruptibly(2, TimeUnit.MILLISECONDS);
+                  sum.addAndGet(input);
+                  running.decrementAndGet();
+               }
+            });
+      assertEquals(sum.get(), 50 * 51 / 2);
+      assertTrue(maxRunning.get() <= 3, "ran " + maxRunning.get() + " at once");
+   }
+
+   public void testStopsTakingInputsAfterFailure() {
+      final AtomicInteger taken = new AtomicInteger();
+      Iterable<Integer> inputs = new Iterable<Integer>() {
+         @Override
+         public Iterator<Integer> iterator() {
+            return new AbstractIterator<Integer>() {
+               @Override
+               protected Integer computeNext() {
+                  return taken.get() < 1000 ? taken.incrementAndGet() : endOfData();
+               }
+            };
+         }
+      };
+      try {
+         ConcurrentTasks.forEach(executor, inputs, 1, new Task<Integer>() {
+            @Override
+            public void run(Integer input) throws Exception {
+               if (input == 3) {
+                  throw new IllegalStateException("failed " + input);
+               }
+            }
+         });
+         fail("expected IllegalStateException");
+      } catch (IllegalStateException e) {
+         assertEquals(e.getMessage(), "failed 3");
+      }
+      // one task at a time, so at most the input taken while the failing one ran
+      assertTrue(taken.get() <= 4, "took " + taken.get());
+   }
+
+   public void testGivesBackThePermitOfARejectedTask() {
+      final AtomicInteger ran = new AtomicInteger();
+      Executor rejectSecond = new Executor() {
+         int submitted;
+
+         @Override
+         public void execute(Runnable command) {
+            if (++submitted == 2) {
+               throw new RejectedExecutionException("full");
+            }
+            executor.execute(command);
+         }
+      };
+      try {
+         ConcurrentTasks.forEach(rejectSecond, ContiguousSet.create(Range.closed(1, 5), DiscreteDomain.integers()), 2,
+               new Task<Integer>() {
+                  @Override
+                  public void run(Integer input) {
+                     Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                     ran.incrementAndGet();
+                  }
+               });
+         fail("expected RejectedExecutionException");
+      } catch (RejectedExecutionException e) {
+         assertEquals(e.getMessage(), "full");
+      }
+      // the rejection is rethrown only once the task in flight gave its permit back
+      assertEquals(ran.get(), 1);
+   }
+}
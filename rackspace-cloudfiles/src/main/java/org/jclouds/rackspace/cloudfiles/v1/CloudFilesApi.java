@@ -30,7 +30,8 @@ import com.google.common.annotations.Beta;
  * store an unlimited number of files. Each file can be as large as 5 gigabytes.
  * <p/>
  * Additionally, Cloud Files provides a simple yet powerful way to publish and distribute content
- * behind a Content Distribution Network.
+ * behind a Content Distribution Network. To upload a whole site and serve it through the CDN in one run,
+ * use the {@link org.jclouds.rackspace.cloudfiles.v1.cdn.CDNPublisher} bound in the context's injector.
  *
  * @see CDNApi
  * @see SwiftApi
@@ -18,6 +18,12 @@ package org.jclouds.rackspace.cloudfiles.v1;
 
 import static org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties.CREDENTIAL_TYPE;
 import static org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties.SERVICE_TYPE;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_CACHE_REFRESH;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_LOG_CONCURRENCY;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_MAX_RETRIES;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_RATE;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_RETRY_DELAY;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_WINDOW;
 import static org.jclouds.reflect.Reflection2.typeToken;
 
 import java.net.URI;
@@ -61,6 +67,12 @@ public class CloudFilesApiMetadata extends BaseHttpApiMetadata<CloudFilesApi> {
       Properties properties = SwiftApiMetadata.defaultProperties();
       properties.setProperty(CREDENTIAL_TYPE, CloudIdentityCredentialTypes.API_KEY_CREDENTIALS);
       properties.setProperty(SERVICE_TYPE, ServiceType.OBJECT_STORE);
+      properties.setProperty(CDN_CACHE_REFRESH, "300");
+      properties.setProperty(CDN_PURGE_RATE, "5");
+      properties.setProperty(CDN_PURGE_WINDOW, "1000");
+      properties.setProperty(CDN_PURGE_MAX_RETRIES, "5");
+      properties.setProperty(CDN_PURGE_RETRY_DELAY, "1000");
+      properties.setProperty(CDN_LOG_CONCURRENCY, "4");
       return properties;
    }
 
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_LOG_CONCURRENCY;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesConstants.CDN_ACCESS_LOGS_CONTAINER;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.io.Payload;
+import org.jclouds.javax.annotation.Nullable;
+import org.jclouds.logging.Logger;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks.Task;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNAccessLogRecord;
+import org.jclouds.util.Closeables2;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Reads the CDN access logs delivered into {@code .CDN_ACCESS_LOGS} incrementally.
+ * <p/>
+ * Each call lists the log objects after a marker, downloads up to
+ * {@link org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties#CDN_LOG_CONCURRENCY} of them at a time and
+ * decompresses and parses them line by line as they arrive, so no log is held in memory or on disk. Lines that are not
+ * in the combined log format are skipped.
+ * <p/>
+ * Whenever every log object up to a name has been read, that name is passed to {@link Listener#onMarker(String)}.
+ * Persisting it and passing it to the next call resumes after the last complete object; records of an object that was
+ * being read when a call failed are delivered again.
+ */
+@Singleton
+public class CDNAccessLogReader {
+
+   /**
+    * Receives what a {@link CDNAccessLogReader} reads. {@link #onRecord} is called from several threads at once, while
+    * calls to {@link #onMarker} are made one at a time and in order.
+    */
+   public interface Listener {
+
+      /**
+       * Called for every record of the log object {@code logObject}.
+       */
+      void onRecord(String logObject, CDNAccessLogRecord record);
+
+      /**
+       * Called once all log objects up to and including {@code marker} have been read.
+       */
+      void onMarker(String marker);
+   }
+
+   private static final int PAGE_SIZE = 10000;
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   // ip ident user [timestamp] "method path protocol" status bytes "referrer" "user agent"
+   private static final Pattern COMBINED_LOG_FORMAT = Pattern
+         .compile("^(\\S+) \\S+ \\S+ \\[([^\\]]+)\\] \"(\\S+) (\\S+) ([^\"]+)\" (\\d{3}) (\\d+|-)(?: \"([^\"]*)\" \"([^\"]*)\")?.*$");
+
+   private static final ThreadLocal<SimpleDateFormat> TIMESTAMP_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+      @Override
+      protected SimpleDateFormat initialValue() {
+         return new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+      }
+   };
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final CloudFilesApi api;
+   private final Executor executor;
+   private final int concurrency;
+
+   @Inject
+   CDNAccessLogReader(CloudFilesApi api, @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor,
+         @Named(CDN_LOG_CONCURRENCY) int concurrency) {
+      this(api, (Executor) executor, concurrency);
+   }
+
+   @VisibleForTesting
+   CDNAccessLogReader(CloudFilesApi api, Executor executor, int concurrency) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      this.api = checkNotNull(api, "api");
+      this.executor = checkNotNull(executor, "executor");
+      this.concurrency = concurrency;
+   }
+
+   /**
+    * Reads all access logs of the region delivered after {@code marker}.
+    *
+    * @param marker
+    *           the last marker passed to {@link Listener#onMarker(String)} by a previous call, or {@code null} to read
+    *           from the start.
+    */
+   public void read(String regionId, @Nullable String marker, Listener listener) {
+      read(regionId, null, marker, listener);
+   }
+
+   /**
+    * Reads the access logs of the region whose names start with {@code prefix}, delivered after {@code marker}. Logs
+    * of a single CDN container are selected with a prefix of the container name followed by {@code /}.
+    *
+    * @see #read(String, String, Listener)
+    */
+   public void read(String regionId, @Nullable String prefix, @Nullable String marker, final Listener listener) {
+      checkNotNull(listener, "listener");
+      final ObjectApi objectApi = api.getObjectApi(checkNotNull(regionId, "regionId"), CDN_ACCESS_LOGS_CONTAINER);
+      final Deque<LogObject> inOrder = new ArrayDeque<LogObject>();
+      ConcurrentTasks.forEach(executor, list(objectApi, prefix, marker, inOrder), concurrency, new Task<LogObject>() {
+         @Override
+         public void run(LogObject logObject) throws IOException {
+            read(objectApi, logObject.name, listener);
+            logObject.done = true;
+            advance(inOrder, listener);
+         }
+      });
+   }
+
+   /**
+    * Lists the log objects a page at a time as they are consumed, adding each to {@code inOrder} as it is listed.
+    */
+   private static Iterable<LogObject> list(final ObjectApi objectApi, @Nullable final String prefix,
+         @Nullable final String marker, final Deque<LogObject> inOrder) {
+      return new Iterable<LogObject>() {
+         @Override
+         public Iterator<LogObject> iterator() {
+            return new AbstractIterator<LogObject>() {
+               private String after = marker;
+               private Iterator<SwiftObject> page = ImmutableSet.<SwiftObject> of().iterator();
+               private boolean lastPage;
+
+               @Override
+               protected LogObject computeNext() {
+                  while (!page.hasNext()) {
+                     if (lastPage) {
+                        return endOfData();
+                     }
+                     ListContainerOptions options = new ListContainerOptions().limit(PAGE_SIZE);
+                     if (prefix != null) {
+                        options.prefix(prefix);
+                     }
+                     if (after != null) {
+                        options.marker(after);
+                     }
+                     ObjectList objects = objectApi.list(options);
+                     if (objects == null || objects.isEmpty()) {
+                        return endOfData();
+                     }
+                     lastPage = objects.size() < PAGE_SIZE;
+                     after = Iterables.getLast(objects).getName();
+                     page = objects.iterator();
+                  }
+                  LogObject logObject = new LogObject(page.next().getName());
+                  synchronized (inOrder) {
+                     inOrder.add(logObject);
+                  }
+                  return logObject;
+               }
+            };
+         }
+      };
+   }
+
+   private static void advance(Deque<LogObject> inOrder, Listener listener) {
+      synchronized (inOrder) {
+         String last = null;
+         while (!inOrder.isEmpty() && inOrder.peekFirst().done) {
+            last = inOrder.removeFirst().name;
+         }
+         if (last != null) {
+            listener.onMarker(last);
+         }
+      }
+   }
+
+   private void read(ObjectApi objectApi, String name, Listener listener) throws IOException {
+      SwiftObject object = objectApi.get(name);
+      if (object == null) {
+         // removed since it was listed
+         return;
+      }
+      Payload payload = object.getPayload();
+      InputStream in = null;
+      try {
+         in = payload.openStream();
+         if (name.endsWith(".gz")) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+         }
+         BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8), BUFFER_SIZE);
+         int skipped = 0;
+         String line;
+         while ((line = reader.readLine()) != null) {
+            CDNAccessLogRecord record = parse(line);
+            if (record != null) {
+               listener.onRecord(name, record);
+            } else if (!line.isEmpty()) {
+               skipped++;
+            }
+         }
+         if (skipped > 0) {
+            logger.debug("skipped %s unparseable lines in %s", skipped, name);
+         }
+      } finally {
+         Closeables2.closeQuietly(in);
+         payload.release();
+      }
+   }
+
+   /**
+    * @return the record in a line of a CDN access log, or {@code null} if it is not in the combined log format.
+    */
+   @VisibleForTesting
+   static CDNAccessLogRecord parse(String line) {
+      Matcher matcher = COMBINED_LOG_FORMAT.matcher(line);
+      if (!matcher.matches()) {
+         return null;
+      }
+      Date timestamp;
+      try {
+         timestamp = TIMESTAMP_FORMAT.get().parse(matcher.group(2));
+      } catch (ParseException e) {
+         return null;
+      }
+      String bytes = matcher.group(7);
+      return new CDNAccessLogRecord(matcher.group(1), timestamp, matcher.group(3), matcher.group(4), matcher.group(5),
+            Integer.parseInt(matcher.group(6)), bytes.equals("-") ? 0 : Long.parseLong(bytes),
+            emptyToNull(matcher.group(8)), emptyToNull(matcher.group(9)));
+   }
+
+   private static String emptyToNull(String value) {
+      return value == null || value.isEmpty() || value.equals("-") ? null : value;
+   }
+
+   private static class LogObject {
+      private final String name;
+      private volatile boolean done;
+
+      LogObject(String name) {
+         this.name = name;
+      }
+   }
+}
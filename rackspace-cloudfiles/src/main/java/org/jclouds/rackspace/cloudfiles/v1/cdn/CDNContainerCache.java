@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_CACHE_REFRESH;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.logging.Logger;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNContainer;
+import org.jclouds.rackspace.cloudfiles.v1.features.CDNApi;
+import org.jclouds.rackspace.cloudfiles.v1.functions.RegionToCDNEndpoint;
+import org.jclouds.rackspace.cloudfiles.v1.options.ListCDNContainerOptions;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Answers CDN lookups for containers from memory.
+ * <p/>
+ * The first lookup in a region loads every CDN-enabled container of that region with a paged
+ * {@link CDNApi#list(ListCDNContainerOptions)}. Once that listing is older than
+ * {@link org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties#CDN_CACHE_REFRESH} seconds, lookups keep
+ * answering from it while it is reloaded on the user executor. A container that is not in the listing is not
+ * CDN-enabled. Enabling, disabling or updating a container through {@link CDNApi} invalidates its entry once the
+ * change is acknowledged, and the next lookup asks the CDN management service with {@link CDNApi#get(String)}.
+ */
+@Singleton
+public class CDNContainerCache {
+
+   private static final int PAGE_SIZE = 10000;
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final CloudFilesApi api;
+   private final Function<Object, URI> cdnEndpoints;
+   private final Executor executor;
+   private final long refreshNanos;
+   private final Ticker ticker;
+   private final ConcurrentMap<String, Region> regions = Maps.newConcurrentMap();
+
+   @Inject
+   CDNContainerCache(CloudFilesApi api, RegionToCDNEndpoint cdnEndpoints,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor,
+         @Named(CDN_CACHE_REFRESH) long refreshSeconds) {
+      this(api, (Function<Object, URI>) cdnEndpoints, executor, refreshSeconds, Ticker.systemTicker());
+   }
+
+   @VisibleForTesting
+   CDNContainerCache(CloudFilesApi api, Function<Object, URI> cdnEndpoints, Executor executor, long refreshSeconds,
+         Ticker ticker) {
+      checkArgument(refreshSeconds > 0, "refreshSeconds must be positive");
+      this.api = checkNotNull(api, "api");
+      this.cdnEndpoints = checkNotNull(cdnEndpoints, "cdnEndpoints");
+      this.executor = checkNotNull(executor, "executor");
+      this.refreshNanos = SECONDS.toNanos(refreshSeconds);
+      this.ticker = checkNotNull(ticker, "ticker");
+   }
+
+   /**
+    * @return the CDN settings of the container, or {@code null} if it is not CDN-enabled.
+    */
+   public CDNContainer get(String regionId, String container) {
+      checkNotNull(container, "container");
+      Region region = region(regionId);
+      region.ensureLoaded();
+      return region.get(container);
+   }
+
+   /**
+    * @return the CDN URI of the container, or {@code null} if it is not CDN-enabled.
+    */
+   public URI getCdnUri(String regionId, String container) {
+      CDNContainer cdnContainer = get(regionId, container);
+      return cdnContainer != null ? cdnContainer.getUri() : null;
+   }
+
+   /**
+    * Forgets what is known about the container, so that the next lookup asks the CDN management service.
+    */
+   public void invalidate(String regionId, String container) {
+      Region region = regions.get(checkNotNull(regionId, "regionId"));
+      if (region != null) {
+         region.invalidate(checkNotNull(container, "container"));
+      }
+   }
+
+   /**
+    * Invalidates the container addressed by a request to the CDN management service, if it is in a region this cache
+    * has loaded.
+    */
+   public void invalidate(URI request) {
+      String path = request.getPath();
+      for (Region region : regions.values()) {
+         String base = region.endpoint.getPath();
+         if (region.endpoint.getAuthority().equals(request.getAuthority()) && path.startsWith(base + "/")
+               && path.length() > base.length() + 1) {
+            String rest = path.substring(base.length() + 1);
+            int slash = rest.indexOf('/');
+            region.invalidate(slash == -1 ? rest : rest.substring(0, slash));
+         }
+      }
+   }
+
+   /**
+    * Reloads the CDN-enabled containers of the region now.
+    */
+   public void refresh(String regionId) {
+      region(regionId).refresh();
+   }
+
+   private Region region(String regionId) {
+      checkNotNull(regionId, "regionId");
+      Region region = regions.get(regionId);
+      if (region == null) {
+         Region created = new Region(regionId, cdnEndpoints.apply(regionId));
+         region = regions.putIfAbsent(regionId, created);
+         if (region == null) {
+            region = created;
+         }
+      }
+      return region;
+   }
+
+   private class Region {
+      private final String id;
+      private final URI endpoint;
+      private volatile Map<String, CDNContainer> enabled = ImmutableMap.of();
+      // containers changed since the last listing started, looked up individually until the next one
+      private final ConcurrentMap<String, Optional<CDNContainer>> changed = Maps.newConcurrentMap();
+      private final ConcurrentMap<String, Invalidation> invalidated = Maps.newConcurrentMap();
+      private final AtomicBoolean refreshing = new AtomicBoolean();
+      private long generation;
+      private volatile boolean loaded;
+      private volatile long loadedAt;
+
+      Region(String id, URI endpoint) {
+         this.id = id;
+         this.endpoint = endpoint;
+      }
+
+      CDNContainer get(String container) {
+         Invalidation seen = invalidated.get(container);
+         if (seen != null) {
+            CDNContainer fetched = api.getCDNApi(id).get(container);
+            Optional<CDNContainer> value = Optional.fromNullable(fetched != null && fetched.isEnabled() ? fetched : null);
+            changed.put(container, value);
+            // an invalidation that arrived while the lookup was in flight stays, and the next lookup asks again
+            invalidated.remove(container, seen);
+            return value.orNull();
+         }
+         Optional<CDNContainer> value = changed.get(container);
+         if (value != null) {
+            return value.orNull();
+         }
+         return enabled.get(container);
+      }
+
+      void invalidate(String container) {
+         synchronized (this) {
+            invalidated.put(container, new Invalidation(generation));
+         }
+         changed.remove(container);
+      }
+
+      void ensureLoaded() {
+         if (!loaded) {
+            synchronized (this) {
+               if (!loaded) {
+                  refresh();
+               }
+            }
+         } else if (ticker.read() - loadedAt >= refreshNanos && refreshing.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     refresh();
+                  } catch (RuntimeException e) {
+                     // keep serving what we have, and try again on a later lookup
+                     logger.warn(e, "could not refresh CDN containers in %s", id);
+                  } finally {
+                     refreshing.set(false);
+                  }
+               }
+            });
+         }
+      }
+
+      void refresh() {
+         long started;
+         synchronized (this) {
+            started = ++generation;
+         }
+         long startedAt = ticker.read();
+         CDNApi cdnApi = api.getCDNApi(id);
+         ImmutableMap.Builder<String, CDNContainer> builder = ImmutableMap.builder();
+         ListCDNContainerOptions options = new ListCDNContainerOptions().limit(PAGE_SIZE);
+         while (true) {
+            Iterable<CDNContainer> page = cdnApi.list(options);
+            int size = 0;
+            for (CDNContainer container : page) {
+               builder.put(container.getName(), container);
+               size++;
+            }
+            if (size < PAGE_SIZE) {
+               break;
+            }
+            options = new ListCDNContainerOptions().limit(PAGE_SIZE).marker(Iterables.getLast(page).getName());
+         }
+         synchronized (this) {
+            enabled = builder.build();
+            // the listing reflects changes made before it started; later ones still need an individual lookup
+            for (Map.Entry<String, Invalidation> entry : invalidated.entrySet()) {
+               if (entry.getValue().generation < started) {
+                  invalidated.remove(entry.getKey(), entry.getValue());
+               }
+            }
+            changed.clear();
+            loadedAt = startedAt;
+            loaded = true;
+         }
+      }
+   }
+
+   /**
+    * Marks a container as changed. Compared by identity, so that only the invalidation a lookup saw is cleared by it.
+    */
+   private static final class Invalidation {
+      private final long generation;
+
+      Invalidation(long generation) {
+         this.generation = generation;
+      }
+   }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.logging.Logger;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks;
+import org.jclouds.openstack.swift.v1.util.ConcurrentTasks.Task;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNContainer;
+import org.jclouds.rackspace.cloudfiles.v1.features.CDNApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.net.MediaType;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Publishes content to a container served by the CDN in one run.
+ * <p/>
+ * The MD5 of each piece of content is compared with the ETag of the object already in the container, and only new or
+ * changed content is uploaded, several objects at a time. The container is then CDN-enabled, or its TTL updated, if
+ * needed, and objects that were changed or deleted while the CDN could have been serving them are queued on the
+ * {@link CDNPurgeQueue}.
+ */
+@Singleton
+public class CDNPublisher {
+
+   private static final int PAGE_SIZE = 10000;
+
+   // types the JDK does not know but static sites are made of
+   private static final Map<String, String> CONTENT_TYPES = ImmutableMap.<String, String> builder()
+         .put("css", MediaType.CSS_UTF_8.toString())
+         .put("js", MediaType.JAVASCRIPT_UTF_8.toString())
+         .put("json", MediaType.JSON_UTF_8.toString())
+         .put("svg", MediaType.SVG_UTF_8.toString())
+         .put("html", MediaType.HTML_UTF_8.toString())
+         .put("htm", MediaType.HTML_UTF_8.toString())
+         .put("txt", MediaType.PLAIN_TEXT_UTF_8.toString())
+         .build();
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final CloudFilesApi api;
+   private final CDNContainerCache cdnContainers;
+   private final CDNPurgeQueue purgeQueue;
+   private final Executor executor;
+
+   @Inject
+   CDNPublisher(CloudFilesApi api, CDNContainerCache cdnContainers, CDNPurgeQueue purgeQueue,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor) {
+      this(api, cdnContainers, purgeQueue, (Executor) executor);
+   }
+
+   @VisibleForTesting
+   CDNPublisher(CloudFilesApi api, CDNContainerCache cdnContainers, CDNPurgeQueue purgeQueue, Executor executor) {
+      this.api = checkNotNull(api, "api");
+      this.cdnContainers = checkNotNull(cdnContainers, "cdnContainers");
+      this.purgeQueue = checkNotNull(purgeQueue, "purgeQueue");
+      this.executor = checkNotNull(executor, "executor");
+   }
+
+   /**
+    * @see #publish(String, String, Map, PublishOptions)
+    */
+   public PublishReport publish(String regionId, String container, Map<String, ByteSource> content) {
+      return publish(regionId, container, content, PublishOptions.NONE);
+   }
+
+   /**
+    * Makes the container hold {@code content}, keyed by object name, and serves it through the CDN. The container is
+    * created if it does not exist.
+    *
+    * @return once everything is uploaded and the container is CDN-enabled; purges may still be in progress.
+    */
+   public PublishReport publish(final String regionId, final String container, final Map<String, ByteSource> content,
+         PublishOptions options) {
+      checkNotNull(regionId, "regionId");
+      checkNotNull(container, "container");
+      checkNotNull(content, "content");
+      checkNotNull(options, "options");
+      final ObjectApi objectApi = api.getObjectApi(regionId, container);
+      final Map<String, String> remote = listETags(objectApi);
+      if (remote == null) {
+         api.getContainerApi(regionId).create(container);
+      }
+      final Map<String, String> etags = remote != null ? remote : ImmutableMap.<String, String> of();
+      // only content the CDN may have cached needs purging
+      final CDNContainer cdnContainer = cdnContainers.get(regionId, container);
+
+      final AtomicInteger uploaded = new AtomicInteger();
+      final AtomicInteger unchanged = new AtomicInteger();
+      final AtomicLong bytesUploaded = new AtomicLong();
+      final Queue<String> changed = new ConcurrentLinkedQueue<String>();
+      ConcurrentTasks.forEach(executor, content.keySet(), options.getConcurrency(), new Task<String>() {
+         @Override
+         public void run(String name) throws Exception {
+            ByteSource source = content.get(name);
+            HashCode md5 = source.hash(Hashing.md5());
+            String etag = etags.get(name);
+            if (etag != null && etag.equalsIgnoreCase(md5.toString())) {
+               unchanged.incrementAndGet();
+               return;
+            }
+            long size = source.size();
+            Payload payload = Payloads.newByteSourcePayload(source);
+            payload.getContentMetadata().setContentLength(size);
+            payload.getContentMetadata().setContentMD5(md5);
+            payload.getContentMetadata().setContentType(contentType(name));
+            objectApi.put(name, payload);
+            uploaded.incrementAndGet();
+            bytesUploaded.addAndGet(size);
+            if (etag != null && cdnContainer != null) {
+               changed.add(name);
+            }
+         }
+      });
+
+      final AtomicInteger deleted = new AtomicInteger();
+      if (options.isDeleteRemoved()) {
+         Set<String> removed = Sets.difference(etags.keySet(), content.keySet());
+         ConcurrentTasks.forEach(executor, removed, options.getConcurrency(), new Task<String>() {
+            @Override
+            public void run(String name) {
+               objectApi.delete(name);
+               deleted.incrementAndGet();
+               if (cdnContainer != null) {
+                  changed.add(name);
+               }
+            }
+         });
+      }
+
+      URI cdnUri = enable(regionId, container, cdnContainer, options.getTtl());
+
+      List<String> purged = ImmutableList.copyOf(changed);
+      List<ListenableFuture<Boolean>> purges = Lists.newArrayListWithCapacity(purged.size());
+      for (String name : purged) {
+         purges.add(purgeQueue.purge(regionId, container, name));
+      }
+      PublishReport report = new PublishReport(uploaded.get(), unchanged.get(), deleted.get(), bytesUploaded.get(),
+            cdnUri, purged, Futures.allAsList(purges));
+      logger.debug("published %s to %s: %s", container, regionId, report);
+      return report;
+   }
+
+   private URI enable(String regionId, String container, CDNContainer cdnContainer, Integer ttl) {
+      if (cdnContainer != null && (ttl == null || ttl == cdnContainer.getTtl())) {
+         return cdnContainer.getUri();
+      }
+      CDNApi cdnApi = api.getCDNApi(regionId);
+      return ttl != null ? cdnApi.enable(container, ttl) : cdnApi.enable(container);
+   }
+
+   /**
+    * @return the ETag of every object in the container, or {@code null} if it does not exist.
+    */
+   private static Map<String, String> listETags(ObjectApi objectApi) {
+      Map<String, String> etags = null;
+      ListContainerOptions options = new ListContainerOptions().limit(PAGE_SIZE);
+      while (true) {
+         ObjectList page = objectApi.list(options);
+         if (page == null) {
+            return etags;
+         }
+         if (etags == null) {
+            etags = Maps.newHashMap();
+         }
+         for (SwiftObject object : page) {
+            etags.put(object.getName(), object.getETag());
+         }
+         if (page.size() < PAGE_SIZE) {
+            return etags;
+         }
+         options = new ListContainerOptions().limit(PAGE_SIZE).marker(Iterables.getLast(page).getName());
+      }
+   }
+
+   private static String contentType(String name) {
+      int dot = name.lastIndexOf('.');
+      if (dot == -1 || dot < name.lastIndexOf('/')) {
+         return MediaType.OCTET_STREAM.toString();
+      }
+      String extension = name.substring(dot + 1).toLowerCase();
+      String contentType = CONTENT_TYPES.get(extension);
+      if (contentType == null) {
+         contentType = URLConnection.getFileNameMap().getContentTypeFor(name);
+      }
+      return contentType != null ? contentType : MediaType.OCTET_STREAM.toString();
+   }
+}
@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.RETRY_MAX_DELAY;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_MAX_RETRIES;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_RATE;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_RETRY_DELAY;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_WINDOW;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.http.HttpException;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.logging.Logger;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sends CDN purges for many callers at a bounded rate.
+ * <p/>
+ * A purge is held for {@link org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties#CDN_PURGE_WINDOW}
+ * before it is sent, and further purges of the same object queued meanwhile share its request and its future. Purges
+ * then go out no faster than {@link org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties#CDN_PURGE_RATE},
+ * paced by a daemon thread of the queue's own while purges are waiting. Those that fail on the server or in transit
+ * are queued again with exponential backoff; {@code 429} and {@code 503} responses are not, since
+ * {@link org.jclouds.openstack.swift.v1.handlers.SwiftRetryHandler} already retried them.
+ * <p/>
+ * Each future completes with the result of {@link org.jclouds.rackspace.cloudfiles.v1.features.CDNApi#purgeObject},
+ * or fails with the last error once retries are exhausted.
+ */
+@Singleton
+public class CDNPurgeQueue {
+
+   @Resource
+   protected Logger logger = Logger.NULL;
+
+   private final CloudFilesApi api;
+   private final Executor executor;
+   private final Ticker ticker;
+   private final ThreadFactory drainers = new ThreadFactoryBuilder().setNameFormat("cloudfiles-cdn-purge-%d")
+         .setDaemon(true).build();
+   private final long intervalNanos;
+   private final long windowNanos;
+   private final int maxRetries;
+   private final long retryDelayNanos;
+   private final long maxRetryDelayNanos;
+
+   private final DelayQueue<Purge> queue = new DelayQueue<Purge>();
+   private final ConcurrentMap<String, Purge> waiting = Maps.newConcurrentMap();
+   private final AtomicBoolean draining = new AtomicBoolean();
+   private long nextSendAt;
+
+   @Inject
+   CDNPurgeQueue(CloudFilesApi api, @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor,
+         @Named(CDN_PURGE_RATE) double rate, @Named(CDN_PURGE_WINDOW) long windowMillis,
+         @Named(CDN_PURGE_MAX_RETRIES) int maxRetries, @Named(CDN_PURGE_RETRY_DELAY) long retryDelayMillis,
+         @Named(RETRY_MAX_DELAY) long maxRetryDelayMillis) {
+      this(api, (Executor) executor, rate, windowMillis, maxRetries, retryDelayMillis, maxRetryDelayMillis);
+   }
+
+   @VisibleForTesting
+   CDNPurgeQueue(CloudFilesApi api, Executor executor, double rate, long windowMillis, int maxRetries,
+         long retryDelayMillis, long maxRetryDelayMillis) {
+      this(api, executor, rate, windowMillis, maxRetries, retryDelayMillis, maxRetryDelayMillis,
+            Ticker.systemTicker());
+   }
+
+   @VisibleForTesting
+   CDNPurgeQueue(CloudFilesApi api, Executor executor, double rate, long windowMillis, int maxRetries,
+         long retryDelayMillis, long maxRetryDelayMillis, Ticker ticker) {
+      checkArgument(rate > 0, "rate must be positive");
+      checkArgument(windowMillis >= 0, "windowMillis must not be negative");
+      checkArgument(maxRetries >= 0, "maxRetries must not be negative");
+      checkArgument(retryDelayMillis >= 0 && retryDelayMillis <= maxRetryDelayMillis,
+            "retryDelayMillis must not be negative nor exceed maxRetryDelayMillis");
+      this.api = checkNotNull(api, "api");
+      this.executor = checkNotNull(executor, "executor");
+      this.ticker = checkNotNull(ticker, "ticker");
+      this.intervalNanos = (long) (SECONDS.toNanos(1) / rate);
+      this.nextSendAt = ticker.read();
+      this.windowNanos = MILLISECONDS.toNanos(windowMillis);
+      this.maxRetries = maxRetries;
+      this.retryDelayNanos = MILLISECONDS.toNanos(retryDelayMillis);
+      this.maxRetryDelayNanos = MILLISECONDS.toNanos(maxRetryDelayMillis);
+   }
+
+   /**
+    * Queues a purge of the object from the CDN.
+    *
+    * @return a future that completes with {@code true} once the object is purged, or {@code false} if the CDN does not
+    *         know it.
+    */
+   public ListenableFuture<Boolean> purge(String regionId, String container, String object) {
+      return purge(regionId, container, object, ImmutableList.<String> of());
+   }
+
+   /**
+    * Queues a purge of the object from the CDN, notifying {@code emails} once it is done. When the purge is coalesced
+    * with others of the same object, all of their addresses are notified.
+    *
+    * @see #purge(String, String, String)
+    */
+   public ListenableFuture<Boolean> purge(String regionId, String container, String object, Iterable<String> emails) {
+      checkNotNull(regionId, "regionId");
+      checkNotNull(container, "container");
+      checkNotNull(object, "object");
+      checkNotNull(emails, "emails");
+      String key = Joiner.on('/').join(regionId, container, object);
+      Purge purge;
+      while (true) {
+         purge = waiting.get(key);
+         if (purge == null) {
+            Purge created = new Purge(key, regionId, container, object, ticker.read() + windowNanos);
+            purge = waiting.putIfAbsent(key, created);
+            if (purge == null) {
+               purge = created;
+               purge.addEmails(emails);
+               queue.add(purge);
+               break;
+            }
+         }
+         if (purge.addEmails(emails)) {
+            break;
+         }
+         // it was taken off the queue meanwhile and can no longer be joined
+         waiting.remove(key, purge);
+      }
+      startDraining();
+      return purge.result;
+   }
+
+   /**
+    * @return the number of purges waiting to be sent, including those waiting to be retried.
+    */
+   public int getPending() {
+      return queue.size();
+   }
+
+   private void startDraining() {
+      if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+         drainers.newThread(new Runnable() {
+            @Override
+            public void run() {
+               drain();
+            }
+         }).start();
+      }
+   }
+
+   /**
+    * Sends the purges as they become ready, until none is left. Runs on a thread of its own so that waiting for the
+    * next purge never holds a thread of the executor.
+    */
+   private void drain() {
+      try {
+         while (!queue.isEmpty()) {
+            Purge purge = queue.take();
+            purge.close();
+            waiting.remove(purge.key, purge);
+            pace();
+            final Purge sending = purge;
+            executor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  send(sending);
+               }
+            });
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } finally {
+         draining.set(false);
+      }
+      // a purge queued just before the flag was cleared would otherwise wait for the next caller
+      startDraining();
+   }
+
+   /**
+    * Waits until the next purge may be sent at the configured rate.
+    */
+   private void pace() throws InterruptedException {
+      long now = ticker.read();
+      long wait = nextSendAt - now;
+      nextSendAt = Math.max(now, nextSendAt) + intervalNanos;
+      if (wait > 0) {
+         sleep(wait);
+      }
+   }
+
+   /**
+    * Waits between purges.
+    */
+   @VisibleForTesting
+   void sleep(long nanos) throws InterruptedException {
+      NANOSECONDS.sleep(nanos);
+   }
+
+   private void send(Purge purge) {
+      try {
+         purge.result.set(api.getCDNApi(purge.regionId).purgeObject(purge.container, purge.object,
+               purge.getEmails()));
+      } catch (RuntimeException e) {
+         if (purge.attempts < maxRetries && isRetryable(e)) {
+            long delay = Math.min(maxRetryDelayNanos, retryDelayNanos << Math.min(purge.attempts, 30));
+            logger.debug("retrying purge of %s in %sms: %s", purge.key, NANOSECONDS.toMillis(delay), e.getMessage());
+            purge.attempts++;
+            purge.readyAt = ticker.read() + delay;
+            queue.add(purge);
+            startDraining();
+         } else {
+            purge.result.setException(e);
+         }
+      }
+   }
+
+   private static boolean isRetryable(RuntimeException e) {
+      if (e instanceof HttpResponseException) {
+         int status = ((HttpResponseException) e).getResponse() != null
+               ? ((HttpResponseException) e).getResponse().getStatusCode() : 0;
+         // SwiftRetryHandler already retried 429 and 503 until its own limit
+         return status >= 500 && status != 503;
+      }
+      return e instanceof HttpException;
+   }
+
+   private class Purge implements Delayed {
+      private final String key;
+      private final String regionId;
+      private final String container;
+      private final String object;
+      private final SettableFuture<Boolean> result = SettableFuture.create();
+      private final Set<String> emails = Sets.newTreeSet();
+      private boolean closed;
+      private volatile long readyAt;
+      private int attempts;
+
+      Purge(String key, String regionId, String container, String object, long readyAt) {
+         this.key = key;
+         this.regionId = regionId;
+         this.container = container;
+         this.object = object;
+         this.readyAt = readyAt;
+      }
+
+      synchronized boolean addEmails(Iterable<String> toAdd) {
+         if (closed) {
+            return false;
+         }
+         Iterables.addAll(emails, toAdd);
+         return true;
+      }
+
+      synchronized void close() {
+         closed = true;
+      }
+
+      synchronized ImmutableList<String> getEmails() {
+         return ImmutableList.copyOf(emails);
+      }
+
+      @Override
+      public long getDelay(TimeUnit unit) {
+         return unit.convert(readyAt - ticker.read(), NANOSECONDS);
+      }
+
+      @Override
+      public int compareTo(Delayed that) {
+         return Longs.compare(readyAt, ((Purge) that).readyAt);
+      }
+   }
+}
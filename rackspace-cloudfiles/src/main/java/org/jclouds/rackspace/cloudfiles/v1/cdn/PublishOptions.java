@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesConstants.CDN_TTL_MAX;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesConstants.CDN_TTL_MIN;
+
+import org.jclouds.javax.annotation.Nullable;
+
+/**
+ * Options for publishing content to a CDN-enabled container.
+ *
+ * @see CDNPublisher#publish(String, String, java.util.Map, PublishOptions)
+ */
+public class PublishOptions {
+   public static final PublishOptions NONE = new PublishOptions();
+
+   private int concurrency = 8;
+   private Integer ttl;
+   private boolean deleteRemoved;
+
+   /**
+    * Sets how many objects are compared and uploaded at the same time. Defaults to {@code 8}.
+    */
+   public PublishOptions concurrency(int concurrency) {
+      checkArgument(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+   }
+
+   /**
+    * Sets the TTL, in seconds, the container is CDN-enabled with. When not set, a container that is already
+    * CDN-enabled keeps its TTL, and one that is not gets the default.
+    */
+   public PublishOptions ttl(int ttl) {
+      checkArgument(ttl >= CDN_TTL_MIN && ttl <= CDN_TTL_MAX, "ttl must be between %s and %s", CDN_TTL_MIN,
+            CDN_TTL_MAX);
+      this.ttl = ttl;
+      return this;
+   }
+
+   /**
+    * Deletes, and purges, objects of the container that are not part of the published content.
+    */
+   public PublishOptions deleteRemoved() {
+      this.deleteRemoved = true;
+      return this;
+   }
+
+   public int getConcurrency() {
+      return concurrency;
+   }
+
+   @Nullable
+   public Integer getTtl() {
+      return ttl;
+   }
+
+   public boolean isDeleteRemoved() {
+      return deleteRemoved;
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).omitNullValues().add("concurrency", concurrency).add("ttl", ttl)
+            .add("deleteRemoved", deleteRemoved).toString();
+   }
+
+   public static class Builder {
+
+      /**
+       * @see PublishOptions#concurrency
+       */
+      public static PublishOptions concurrency(int concurrency) {
+         PublishOptions options = new PublishOptions();
+         return options.concurrency(concurrency);
+      }
+
+      /**
+       * @see PublishOptions#ttl
+       */
+      public static PublishOptions ttl(int ttl) {
+         PublishOptions options = new PublishOptions();
+         return options.ttl(ttl);
+      }
+
+      /**
+       * @see PublishOptions#deleteRemoved
+       */
+      public static PublishOptions deleteRemoved() {
+         PublishOptions options = new PublishOptions();
+         return options.deleteRemoved();
+      }
+   }
+}
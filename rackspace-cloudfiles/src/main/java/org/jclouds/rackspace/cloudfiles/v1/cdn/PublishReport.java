@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.net.URI;
+import java.util.List;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * What a {@link CDNPublisher#publish} run did.
+ */
+public class PublishReport {
+
+   private final int uploaded;
+   private final int unchanged;
+   private final int deleted;
+   private final long bytesUploaded;
+   private final URI cdnUri;
+   private final List<String> purged;
+   private final ListenableFuture<List<Boolean>> purges;
+
+   PublishReport(int uploaded, int unchanged, int deleted, long bytesUploaded, URI cdnUri, List<String> purged,
+         ListenableFuture<List<Boolean>> purges) {
+      this.uploaded = uploaded;
+      this.unchanged = unchanged;
+      this.deleted = deleted;
+      this.bytesUploaded = bytesUploaded;
+      this.cdnUri = checkNotNull(cdnUri, "cdnUri");
+      this.purged = checkNotNull(purged, "purged");
+      this.purges = checkNotNull(purges, "purges");
+   }
+
+   /**
+    * @return the number of objects that were new or changed, and were uploaded.
+    */
+   public int getUploaded() {
+      return uploaded;
+   }
+
+   /**
+    * @return the number of objects whose ETag matched the published content.
+    */
+   public int getUnchanged() {
+      return unchanged;
+   }
+
+   /**
+    * @return the number of objects deleted because they were no longer part of the published content.
+    */
+   public int getDeleted() {
+      return deleted;
+   }
+
+   public long getBytesUploaded() {
+      return bytesUploaded;
+   }
+
+   /**
+    * @return the CDN URI the container is published at.
+    */
+   public URI getCdnUri() {
+      return cdnUri;
+   }
+
+   /**
+    * @return the objects that were changed or deleted while CDN-enabled, and were queued for purging.
+    */
+   public List<String> getPurged() {
+      return purged;
+   }
+
+   /**
+    * @return a future that completes once all purges in {@link #getPurged()} were sent.
+    */
+   public ListenableFuture<List<Boolean>> getPurges() {
+      return purges;
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).add("uploaded", uploaded).add("unchanged", unchanged).add("deleted", deleted)
+            .add("bytesUploaded", bytesUploaded).add("cdnUri", cdnUri).add("purged", purged.size()).toString();
+   }
+}
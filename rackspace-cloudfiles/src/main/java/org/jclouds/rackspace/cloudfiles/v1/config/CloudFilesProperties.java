@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.config;
+
+/**
+ * Configuration properties and constants used in Cloud Files connections.
+ */
+public final class CloudFilesProperties {
+
+   /**
+    * Age, in seconds, after which {@link org.jclouds.rackspace.cloudfiles.v1.cdn.CDNContainerCache} reloads the
+    * CDN-enabled containers of a region in the background. Defaults to {@code 300}.
+    */
+   public static final String CDN_CACHE_REFRESH = "jclouds.cloudfiles.cdn.cache-refresh";
+
+   /**
+    * Highest rate, in requests per second, at which {@link org.jclouds.rackspace.cloudfiles.v1.cdn.CDNPurgeQueue}
+    * sends purges to the CDN. Defaults to {@code 5}.
+    */
+   public static final String CDN_PURGE_RATE = "jclouds.cloudfiles.cdn.purge.rate";
+
+   /**
+    * Time, in milliseconds, a queued purge waits before it is sent. Purges of the same object queued during that
+    * time are sent once. Defaults to {@code 1000}.
+    */
+   public static final String CDN_PURGE_WINDOW = "jclouds.cloudfiles.cdn.purge.window";
+
+   /**
+    * Number of times a purge that was throttled or failed on the server is sent again. Defaults to {@code 5}.
+    */
+   public static final String CDN_PURGE_MAX_RETRIES = "jclouds.cloudfiles.cdn.purge.max-retries";
+
+   /**
+    * Delay, in milliseconds, before the first retry of a purge; it doubles with every further retry up to
+    * {@link org.jclouds.openstack.swift.v1.config.SwiftProperties#RETRY_MAX_DELAY}. Defaults to {@code 1000}.
+    */
+   public static final String CDN_PURGE_RETRY_DELAY = "jclouds.cloudfiles.cdn.purge.retry-delay";
+
+   /**
+    * Number of CDN access log objects {@link org.jclouds.rackspace.cloudfiles.v1.cdn.CDNAccessLogReader} downloads at
+    * the same time. Defaults to {@code 4}.
+    */
+   public static final String CDN_LOG_CONCURRENCY = "jclouds.cloudfiles.cdn.log.concurrency";
+
+   private CloudFilesProperties() {
+      throw new AssertionError("intentionally unimplemented");
+   }
+}
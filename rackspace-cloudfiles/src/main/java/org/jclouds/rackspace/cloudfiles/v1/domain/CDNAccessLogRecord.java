@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.domain;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+
+import org.jclouds.javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+
+/**
+ * One request served by the CDN, as recorded in a CDN access log.
+ */
+public class CDNAccessLogRecord {
+
+   private final String clientIp;
+   private final Date timestamp;
+   private final String method;
+   private final String path;
+   private final String protocol;
+   private final int status;
+   private final long bytes;
+   private final String referrer;
+   private final String userAgent;
+
+   public CDNAccessLogRecord(String clientIp, Date timestamp, String method, String path, String protocol, int status,
+         long bytes, @Nullable String referrer, @Nullable String userAgent) {
+      this.clientIp = checkNotNull(clientIp, "clientIp required");
+      this.timestamp = checkNotNull(timestamp, "timestamp required");
+      this.method = checkNotNull(method, "method required");
+      this.path = checkNotNull(path, "path required");
+      this.protocol = checkNotNull(protocol, "protocol required");
+      this.status = status;
+      this.bytes = bytes;
+      this.referrer = referrer;
+      this.userAgent = userAgent;
+   }
+
+   /**
+    * @return the address of the client that made the request.
+    */
+   public String getClientIp() {
+      return clientIp;
+   }
+
+   /**
+    * @return when the request was received.
+    */
+   public Date getTimestamp() {
+      return timestamp;
+   }
+
+   /**
+    * @return the HTTP method of the request.
+    */
+   public String getMethod() {
+      return method;
+   }
+
+   /**
+    * @return the requested path, including any query string.
+    */
+   public String getPath() {
+      return path;
+   }
+
+   /**
+    * @return the protocol of the request, such as {@code HTTP/1.1}.
+    */
+   public String getProtocol() {
+      return protocol;
+   }
+
+   /**
+    * @return the status code of the response.
+    */
+   public int getStatus() {
+      return status;
+   }
+
+   /**
+    * @return the size of the response body, or {@code 0} if none was sent.
+    */
+   public long getBytes() {
+      return bytes;
+   }
+
+   /**
+    * @return the {@code Referer} of the request, or {@code null} if it had none.
+    */
+   @Nullable
+   public String getReferrer() {
+      return referrer;
+   }
+
+   /**
+    * @return the {@code User-Agent} of the request, or {@code null} if it had none.
+    */
+   @Nullable
+   public String getUserAgent() {
+      return userAgent;
+   }
+
+   @Override
+   public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (obj == null || getClass() != obj.getClass()) return false;
+      CDNAccessLogRecord that = CDNAccessLogRecord.class.cast(obj);
+      return Objects.equal(this.clientIp, that.clientIp)
+               && Objects.equal(this.timestamp, that.timestamp)
+               && Objects.equal(this.method, that.method)
+               && Objects.equal(this.path, that.path)
+               && Objects.equal(this.protocol, that.protocol)
+               && this.status == that.status
+               && this.bytes == that.bytes
+               && Objects.equal(this.referrer, that.referrer)
+               && Objects.equal(this.userAgent, that.userAgent);
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hashCode(clientIp, timestamp, method, path, protocol, status, bytes, referrer, userAgent);
+   }
+
+   @Override
+   public String toString() {
+      return toStringHelper(this).omitNullValues()
+            .add("clientIp", clientIp).add("timestamp", timestamp).add("method", method).add("path", path)
+            .add("protocol", protocol).add("status", status).add("bytes", bytes).add("referrer", referrer)
+            .add("userAgent", userAgent).toString();
+   }
+}
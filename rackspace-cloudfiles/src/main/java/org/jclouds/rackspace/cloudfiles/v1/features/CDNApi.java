@@ -42,7 +42,8 @@ import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.rackspace.cloudfiles.v1.binders.BindCDNPurgeEmailAddressesToHeaders;
 import org.jclouds.rackspace.cloudfiles.v1.domain.CDNContainer;
 import org.jclouds.rackspace.cloudfiles.v1.functions.ParseCDNContainerFromHeaders;
-import org.jclouds.rackspace.cloudfiles.v1.functions.ParseCDNContainerURIFromHeaders;
+import org.jclouds.rackspace.cloudfiles.v1.functions.ParseCDNContainerURIAndInvalidateCache;
+import org.jclouds.rackspace.cloudfiles.v1.functions.ReturnTrueAndInvalidateCDNContainerCache;
 import org.jclouds.rackspace.cloudfiles.v1.options.ListCDNContainerOptions;
 import org.jclouds.rackspace.cloudfiles.v1.options.UpdateCDNContainerOptions;
 import org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders;
@@ -124,7 +125,7 @@ public interface CDNApi extends Closeable {
     */
    @Named("cdn:enable")
    @PUT
-   @ResponseParser(ParseCDNContainerURIFromHeaders.class)
+   @ResponseParser(ParseCDNContainerURIAndInvalidateCache.class)
    @Fallback(NullOnNotFoundOr404.class)
    @Path("/{containerName}")
    @Headers(keys = CDN_ENABLED, values = "true")
@@ -143,7 +144,7 @@ public interface CDNApi extends Closeable {
     */
    @Named("cdn:enable")
    @PUT
-   @ResponseParser(ParseCDNContainerURIFromHeaders.class)
+   @ResponseParser(ParseCDNContainerURIAndInvalidateCache.class)
    @Fallback(NullOnNotFoundOr404.class)
    @Path("/{containerName}")
    @Headers(keys = CDN_ENABLED, values = "true")
@@ -161,6 +162,7 @@ public interface CDNApi extends Closeable {
     */
    @Named("cdn:disable")
    @PUT
+   @ResponseParser(ReturnTrueAndInvalidateCDNContainerCache.class)
    @Fallback(FalseOnNotFoundOr404.class)
    @Path("/{containerName}")
    @Headers(keys = CDN_ENABLED, values = "False")
@@ -198,6 +200,7 @@ public interface CDNApi extends Closeable {
     */
    @Named("cdn:update")
    @POST
+   @ResponseParser(ReturnTrueAndInvalidateCDNContainerCache.class)
    @Fallback(FalseOnNotFoundOr404.class)
    @Path("/{containerName}")
    boolean update(@PathParam("containerName") String containerName, UpdateCDNContainerOptions options);
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.functions;
+
+import java.net.URI;
+
+import javax.inject.Inject;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.rackspace.cloudfiles.v1.cdn.CDNContainerCache;
+import org.jclouds.rest.InvocationContext;
+
+/**
+ * Parses the CDN URI of a container that was just enabled, and invalidates its {@link CDNContainerCache} entry.
+ */
+public class ParseCDNContainerURIAndInvalidateCache extends ParseCDNContainerURIFromHeaders implements
+      InvocationContext<ParseCDNContainerURIAndInvalidateCache> {
+
+   private final CDNContainerCache cache;
+   private HttpRequest request;
+
+   @Inject
+   ParseCDNContainerURIAndInvalidateCache(CDNContainerCache cache) {
+      this.cache = cache;
+   }
+
+   @Override
+   public URI apply(HttpResponse from) {
+      cache.invalidate(request.getEndpoint());
+      return super.apply(from);
+   }
+
+   @Override
+   public ParseCDNContainerURIAndInvalidateCache setContext(HttpRequest request) {
+      this.request = request;
+      return this;
+   }
+}
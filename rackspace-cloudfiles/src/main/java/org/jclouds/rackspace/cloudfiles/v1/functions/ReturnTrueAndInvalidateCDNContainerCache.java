@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.functions;
+
+import javax.inject.Inject;
+
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.functions.ReturnTrueIf2xx;
+import org.jclouds.rackspace.cloudfiles.v1.cdn.CDNContainerCache;
+import org.jclouds.rest.InvocationContext;
+
+/**
+ * Invalidates the {@link CDNContainerCache} entry of a container once a change to its CDN settings succeeded.
+ */
+public class ReturnTrueAndInvalidateCDNContainerCache extends ReturnTrueIf2xx implements
+      InvocationContext<ReturnTrueAndInvalidateCDNContainerCache> {
+
+   private final CDNContainerCache cache;
+   private HttpRequest request;
+
+   @Inject
+   ReturnTrueAndInvalidateCDNContainerCache(CDNContainerCache cache) {
+      this.cache = cache;
+   }
+
+   @Override
+   public Boolean apply(HttpResponse from) {
+      Boolean result = super.apply(from);
+      cache.invalidate(request.getEndpoint());
+      return result;
+   }
+
+   @Override
+   public ReturnTrueAndInvalidateCDNContainerCache setContext(HttpRequest request) {
+      this.request = request;
+      return this;
+   }
+}
@@ -16,11 +16,14 @@
  */
 package org.jclouds.rackspace.cloudfiles.v1.handlers;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.jclouds.http.HttpUtils.closeClientButKeepContentStream;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.inject.Inject;
+
 import org.jclouds.blobstore.ContainerNotFoundException;
 import org.jclouds.blobstore.KeyNotFoundException;
 import org.jclouds.http.HttpCommand;
@@ -28,6 +31,7 @@ import org.jclouds.http.HttpErrorHandler;
 import org.jclouds.http.HttpResponse;
 import org.jclouds.http.HttpResponseException;
 import org.jclouds.openstack.swift.v1.CopyObjectException;
+import org.jclouds.openstack.swift.v1.handlers.RegionThrottle;
 import org.jclouds.openstack.swift.v1.reference.SwiftHeaders;
 import org.jclouds.rest.AuthorizationException;
 import org.jclouds.rest.InsufficientResourcesException;
@@ -38,6 +42,13 @@ public class CloudFilesErrorHandler implements HttpErrorHandler {
    public static final Pattern CONTAINER_PATH = Pattern.compile(PREFIX + "([^/]+)$");
    public static final Pattern CONTAINER_KEY_PATH = Pattern.compile(PREFIX + "([^/]+)/(.*)");
 
+   private final RegionThrottle throttle;
+
+   @Inject
+   public CloudFilesErrorHandler(RegionThrottle throttle) {
+      this.throttle = checkNotNull(throttle, "throttle");
+   }
+
    public void handleError(HttpCommand command, HttpResponse response) {
       // it is important to always read fully and close streams
       byte[] data = closeClientButKeepContentStream(response);
@@ -85,6 +96,10 @@ public class CloudFilesErrorHandler implements HttpErrorHandler {
          case 413:
             exception = new InsufficientResourcesException(exception.getMessage(), exception);
             break;
+         case 429:
+            // slow down subsequent requests to this region
+            throttle.overloaded(command.getCurrentRequest().getEndpoint());
+            break;
       }
       command.setException(exception);
    }
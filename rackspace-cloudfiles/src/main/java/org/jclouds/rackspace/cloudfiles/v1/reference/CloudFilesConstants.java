@@ -24,4 +24,9 @@ public interface CloudFilesConstants {
    int CDN_TTL_MIN = 900;
    int CDN_TTL_MAX = 31536000;
    int CDN_TTL_DEFAULT = 259200;
+
+   /**
+    * Container into which CDN access logs of containers with log retention enabled are delivered.
+    */
+   String CDN_ACCESS_LOGS_CONTAINER = ".CDN_ACCESS_LOGS";
 }
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.easymock.IAnswer;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNAccessLogRecord;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+@Test(groups = "unit", testName = "CDNAccessLogReaderTest", singleThreaded = true)
+public class CDNAccessLogReaderTest {
+
+   private static final String LINE = "203.0.113.7 - - [10/Oct/2014:13:55:36 +0000] "
+         + "\"GET /images/logo.png?v=2 HTTP/1.1\" 200 2326 \"http://example.com/\" \"Mozilla/5.0 (X11)\"";
+
+   private ExecutorService executor;
+
+   @BeforeMethod
+   public void setUp() {
+      executor = Executors.newFixedThreadPool(4);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testParse() {
+      CDNAccessLogRecord record = CDNAccessLogReader.parse(LINE);
+      assertEquals(record, new CDNAccessLogRecord("203.0.113.7", new Date(1412949336000L), "GET",
+            "/images/logo.png?v=2", "HTTP/1.1", 200, 2326, "http://example.com/", "Mozilla/5.0 (X11)"));
+   }
+
+   public void testParseWithoutReferrerOrBody() {
+      CDNAccessLogRecord record = CDNAccessLogReader
+            .parse("203.0.113.7 - - [10/Oct/2014:13:55:36 +0000] \"HEAD / HTTP/1.0\" 304 - \"-\" \"-\"");
+      assertEquals(record.getStatus(), 304);
+      assertEquals(record.getBytes(), 0);
+      assertNull(record.getReferrer());
+      assertNull(record.getUserAgent());
+   }
+
+   public void testParseRejectsOtherFormats() {
+      assertNull(CDNAccessLogReader.parse("#Version: 1.0"));
+      assertNull(CDNAccessLogReader.parse("203.0.113.7 - - [yesterday] \"GET / HTTP/1.1\" 200 1"));
+   }
+
+   public void testReadsLogsAfterMarker() throws Exception {
+      FakeLogs logs = new FakeLogs();
+      logs.put("images/2014/10/10/13/a.log.gz", LINE, LINE);
+      logs.put("images/2014/10/10/14/b.log.gz", LINE);
+      logs.put("images/2014/10/10/15/c.log.gz", LINE, "garbage", LINE, LINE);
+      logs.put("videos/2014/10/10/13/a.log.gz", LINE);
+      RecordingListener listener = new RecordingListener();
+
+      new CDNAccessLogReader(logs.api(), executor, 2).read("DFW", "images/", "images/2014/10/10/13/a.log.gz",
+            listener);
+
+      assertEquals(listener.records.size(), 4);
+      assertEquals(Iterables.getLast(listener.markers), "images/2014/10/10/15/c.log.gz");
+      assertEquals(ImmutableSet.copyOf(logs.read),
+            ImmutableSet.of("images/2014/10/10/14/b.log.gz", "images/2014/10/10/15/c.log.gz"));
+   }
+
+   public void testMarkerStopsBeforeFailedLog() throws Exception {
+      FakeLogs logs = new FakeLogs();
+      logs.put("a.log.gz", LINE);
+      logs.put("b.log.gz", LINE);
+      logs.logs.put("c.log.gz", "not gzip".getBytes(UTF_8));
+      logs.put("d.log.gz", LINE);
+      RecordingListener listener = new RecordingListener();
+
+      try {
+         new CDNAccessLogReader(logs.api(), executor, 1).read("DFW", null, listener);
+         fail();
+      } catch (RuntimeException e) {
+         assertEquals(e.getCause().getClass(), ZipException.class);
+      }
+      assertEquals(Iterables.getLast(listener.markers), "b.log.gz");
+      assertEquals(listener.records.size(), 2);
+   }
+
+   static class RecordingListener implements CDNAccessLogReader.Listener {
+      final Queue<CDNAccessLogRecord> records = new ConcurrentLinkedQueue<CDNAccessLogRecord>();
+      final List<String> markers = Lists.newArrayList();
+
+      @Override
+      public void onRecord(String logObject, CDNAccessLogRecord record) {
+         records.add(record);
+      }
+
+      @Override
+      public synchronized void onMarker(String marker) {
+         if (!markers.isEmpty()) {
+            assertEquals(marker.compareTo(Iterables.getLast(markers)) > 0, true, marker);
+         }
+         markers.add(marker);
+      }
+   }
+
+   static class FakeLogs {
+      final NavigableMap<String, byte[]> logs = Maps.newTreeMap();
+      final Queue<String> read = new ConcurrentLinkedQueue<String>();
+
+      void put(String name, String... lines) throws IOException {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         GZIPOutputStream out = new GZIPOutputStream(bytes);
+         for (String line : lines) {
+            out.write((line + "\n").getBytes(UTF_8));
+         }
+         out.close();
+         logs.put(name, bytes.toByteArray());
+      }
+
+      CloudFilesApi api() {
+         ObjectApi objectApi = createMock(ObjectApi.class);
+         expect(objectApi.list(anyObject(ListContainerOptions.class))).andAnswer(new IAnswer<ObjectList>() {
+            @Override
+            public ObjectList answer() {
+               return list((ListContainerOptions) getCurrentArguments()[0]);
+            }
+         }).anyTimes();
+         expect(objectApi.get(anyString())).andAnswer(new IAnswer<SwiftObject>() {
+            @Override
+            public SwiftObject answer() {
+               String name = (String) getCurrentArguments()[0];
+               read.add(name);
+               return object(name).payload(Payloads.newByteArrayPayload(logs.get(name))).build();
+            }
+         }).anyTimes();
+         CloudFilesApi api = createMock(CloudFilesApi.class);
+         expect(api.getObjectApi(anyString(), eq(".CDN_ACCESS_LOGS"))).andReturn(objectApi).anyTimes();
+         replay(objectApi, api);
+         return api;
+      }
+
+      private ObjectList list(ListContainerOptions options) {
+         String marker = Iterables.getFirst(options.buildQueryParameters().get("marker"), null);
+         String prefix = Iterables.getFirst(options.buildQueryParameters().get("prefix"), "");
+         List<SwiftObject> objects = Lists.newArrayList();
+         for (Map.Entry<String, byte[]> entry : (marker == null ? logs : logs.tailMap(marker, false)).entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+               objects.add(object(entry.getKey()).payload(Payloads.newByteArrayPayload(new byte[0])).build());
+            }
+         }
+         return ObjectList.create(objects, Container.builder().name(".CDN_ACCESS_LOGS").build());
+      }
+
+      private static SwiftObject.Builder object(String name) {
+         return SwiftObject.builder().name(name).uri(URI.create("http://localhost/" + name)).etag("etag")
+               .lastModified(new Date());
+      }
+   }
+}
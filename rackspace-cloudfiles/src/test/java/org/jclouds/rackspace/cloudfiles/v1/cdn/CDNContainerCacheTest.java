@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.easymock.IAnswer;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNContainer;
+import org.jclouds.rackspace.cloudfiles.v1.features.CDNApi;
+import org.jclouds.rackspace.cloudfiles.v1.options.ListCDNContainerOptions;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(groups = "unit", testName = "CDNContainerCacheTest")
+public class CDNContainerCacheTest {
+
+   private static final URI ENDPOINT = URI.create("https://cdn.example.com/v1/MossoCloudFS_1234");
+
+   private static CDNContainer cdnContainer(String name) {
+      return CDNContainer.builder().name(name).enabled(true).ttl(259200)
+            .uri(URI.create("http://" + name + ".r1.cf1.rackcdn.com"))
+            .sslUri(URI.create("https://" + name + ".ssl.cf1.rackcdn.com"))
+            .streamingUri(URI.create("http://" + name + ".r1.stream.cf1.rackcdn.com"))
+            .iosUri(URI.create("http://" + name + ".iosr.cf1.rackcdn.com")).build();
+   }
+
+   private static CDNContainerCache cache(CloudFilesApi api) {
+      return cache(api, Ticker.systemTicker());
+   }
+
+   private static CDNContainerCache cache(CloudFilesApi api, Ticker ticker) {
+      return new CDNContainerCache(api, Functions.constant(ENDPOINT), MoreExecutors.newDirectExecutorService(), 300, ticker);
+   }
+
+   public void testAnswersFromListing() {
+      CloudFilesApi api = createMock(CloudFilesApi.class);
+      CDNApi cdnApi = createMock(CDNApi.class);
+      expect(api.getCDNApi("DFW")).andReturn(cdnApi).anyTimes();
+      expect(cdnApi.list(anyObject(ListCDNContainerOptions.class))).andReturn(
+            FluentIterable.from(ImmutableList.of(cdnContainer("images"), cdnContainer("videos"))));
+      replay(api, cdnApi);
+
+      CDNContainerCache cache = cache(api);
+      assertEquals(cache.getCdnUri("DFW", "images"), URI.create("http://images.r1.cf1.rackcdn.com"));
+      assertEquals(cache.get("DFW", "videos"), cdnContainer("videos"));
+      assertNull(cache.getCdnUri("DFW", "private"));
+
+      verify(api, cdnApi);
+   }
+
+   public void testInvalidatedContainerIsLookedUp() {
+      CloudFilesApi api = createMock(CloudFilesApi.class);
+      CDNApi cdnApi = createMock(CDNApi.class);
+      expect(api.getCDNApi("DFW")).andReturn(cdnApi).anyTimes();
+      expect(cdnApi.list(anyObject(ListCDNContainerOptions.class))).andReturn(
+            FluentIterable.from(ImmutableList.of(cdnContainer("images"))));
+      expect(cdnApi.get("private")).andReturn(cdnContainer("private"));
+      expect(cdnApi.get("images")).andReturn(null);
+      replay(api, cdnApi);
+
+      CDNContainerCache cache = cache(api);
+      assertNull(cache.get("DFW", "private"));
+
+      cache.invalidate(URI.create(ENDPOINT + "/private"));
+      cache.invalidate("DFW", "images");
+      assertEquals(cache.getCdnUri("DFW", "private"), URI.create("http://private.r1.cf1.rackcdn.com"));
+      assertNull(cache.get("DFW", "images"));
+      // answered from memory from now on
+      assertEquals(cache.getCdnUri("DFW", "private"), URI.create("http://private.r1.cf1.rackcdn.com"));
+      assertNull(cache.get("DFW", "images"));
+
+      verify(api, cdnApi);
+   }
+
+   public void testInvalidationDuringLookupIsKept() {
+      CloudFilesApi api = createMock(CloudFilesApi.class);
+      CDNApi cdnApi = createMock(CDNApi.class);
+      final AtomicReference<CDNContainerCache> cache = new AtomicReference<CDNContainerCache>();
+      expect(api.getCDNApi("DFW")).andReturn(cdnApi).anyTimes();
+      expect(cdnApi.list(anyObject(ListCDNContainerOptions.class))).andReturn(
+            FluentIterable.from(ImmutableList.<CDNContainer> of()));
+      // the container is enabled while the first lookup is on the wire
+      expect(cdnApi.get("images")).andAnswer(new IAnswer<CDNContainer>() {
+         @Override
+         public CDNContainer answer() {
+            cache.get().invalidate("DFW", "images");
+            return null;
+         }
+      });
+      expect(cdnApi.get("images")).andReturn(cdnContainer("images"));
+      replay(api, cdnApi);
+
+      cache.set(cache(api));
+      assertNull(cache.get().get("DFW", "images"));
+      cache.get().invalidate("DFW", "images");
+      assertNull(cache.get().get("DFW", "images"));
+      assertEquals(cache.get().get("DFW", "images"), cdnContainer("images"));
+
+      verify(api, cdnApi);
+   }
+
+   public void testRefreshPagesThroughListing() {
+      ImmutableList.Builder<CDNContainer> first = ImmutableList.builder();
+      for (int i = 0; i < 10000; i++) {
+         first.add(cdnContainer(String.format("c%05d", i)));
+      }
+      CloudFilesApi api = createMock(CloudFilesApi.class);
+      CDNApi cdnApi = createMock(CDNApi.class);
+      expect(api.getCDNApi("DFW")).andReturn(cdnApi).anyTimes();
+      expect(cdnApi.list(new ListCDNContainerOptions().limit(10000))).andReturn(FluentIterable.from(first.build()));
+      expect(cdnApi.list(new ListCDNContainerOptions().limit(10000).marker("c09999"))).andReturn(
+            FluentIterable.from(ImmutableList.of(cdnContainer("z"))));
+      replay(api, cdnApi);
+
+      CDNContainerCache cache = cache(api);
+      assertEquals(cache.get("DFW", "c00042"), cdnContainer("c00042"));
+      assertEquals(cache.get("DFW", "z"), cdnContainer("z"));
+
+      verify(api, cdnApi);
+   }
+
+   public void testReloadsStaleListing() {
+      final AtomicLong now = new AtomicLong();
+      Ticker ticker = new Ticker() {
+         @Override
+         public long read() {
+            return now.get();
+         }
+      };
+      CloudFilesApi api = createMock(CloudFilesApi.class);
+      CDNApi cdnApi = createMock(CDNApi.class);
+      expect(api.getCDNApi("DFW")).andReturn(cdnApi).anyTimes();
+      expect(cdnApi.list(anyObject(ListCDNContainerOptions.class))).andReturn(
+            FluentIterable.from(ImmutableList.of(cdnContainer("images"))));
+      expect(cdnApi.list(anyObject(ListCDNContainerOptions.class))).andReturn(
+            FluentIterable.from(ImmutableList.of(cdnContainer("videos"))));
+      replay(api, cdnApi);
+
+      CDNContainerCache cache = cache(api, ticker);
+      assertEquals(cache.get("DFW", "images"), cdnContainer("images"));
+      now.set(TimeUnit.SECONDS.toNanos(299));
+      assertEquals(cache.get("DFW", "images"), cdnContainer("images"));
+      now.set(TimeUnit.SECONDS.toNanos(300));
+      // the executor runs in the calling thread, so the reload is already visible
+      assertNull(cache.get("DFW", "images"));
+      assertEquals(cache.get("DFW", "videos"), cdnContainer("videos"));
+
+      verify(api, cdnApi);
+   }
+}
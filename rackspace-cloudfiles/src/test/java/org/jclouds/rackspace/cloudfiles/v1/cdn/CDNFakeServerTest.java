@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_RATE;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_RETRY_DELAY;
+import static org.jclouds.rackspace.cloudfiles.v1.config.CloudFilesProperties.CDN_PURGE_WINDOW;
+import static org.jclouds.rackspace.cloudfiles.v1.options.UpdateCDNContainerOptions.Builder.logRetention;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.lifecycle.Closer;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNAccessLogRecord;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNContainer;
+import org.jclouds.rackspace.cloudfiles.v1.features.CDNApi;
+import org.jclouds.rackspace.cloudfiles.v1.internal.CloudFilesFakeServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteSource;
+import com.google.inject.Injector;
+
+/**
+ * Drives the CDN helpers through a real client against {@link CloudFilesFakeServer}.
+ */
+@Test(groups = "unit", testName = "CDNFakeServerTest", singleThreaded = true)
+public class CDNFakeServerTest {
+
+   private CloudFilesFakeServer server;
+   private Injector injector;
+
+   @BeforeMethod
+   public void setUp() throws IOException {
+      // five purges a second, while the client tries twenty
+      server = new CloudFilesFakeServer(5).start();
+      Properties overrides = new Properties();
+      overrides.setProperty(CDN_PURGE_RATE, "20");
+      overrides.setProperty(CDN_PURGE_WINDOW, "0");
+      overrides.setProperty(CDN_PURGE_RETRY_DELAY, "200");
+      injector = ContextBuilder.newBuilder("rackspace-cloudfiles").credentials("jclouds:joe", "letmein")
+            .endpoint(server.getEndpoint()).overrides(overrides).buildInjector();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() throws IOException {
+      try {
+         injector.getInstance(Closer.class).close();
+      } finally {
+         server.close();
+      }
+   }
+
+   public void testCDNLifecycle() {
+      CloudFilesApi api = injector.getInstance(CloudFilesApi.class);
+      CDNApi cdnApi = api.getCDNApi("DFW");
+
+      assertNull(cdnApi.enable("missing"));
+      assertTrue(api.getContainerApi("DFW").create("site"));
+      assertEquals(cdnApi.enable("site", 3600), cdnApi.get("site").getUri());
+      assertEquals(server.getCDNTtl("site"), 3600);
+      assertEquals(cdnApi.list().transform(new Function<CDNContainer, String>() {
+         public String apply(CDNContainer input) {
+            return input.getName();
+         }
+      }).toList(), ImmutableList.of("site"));
+
+      assertTrue(cdnApi.update("site", logRetention(true)));
+      assertTrue(cdnApi.get("site").isLogRetentionEnabled());
+
+      assertTrue(cdnApi.disable("site"));
+      assertFalse(cdnApi.get("site").isEnabled());
+      assertTrue(cdnApi.list().isEmpty());
+   }
+
+   public void testPublishesAndPurgesWithinRateLimit() throws Exception {
+      CDNPublisher publisher = injector.getInstance(CDNPublisher.class);
+      Map<String, ByteSource> site = Maps.newHashMap();
+      for (int i = 0; i < 20; i++) {
+         site.put("page-" + i + ".html", ByteSource.wrap(("<p>" + i + "</p>").getBytes(UTF_8)));
+      }
+      PublishReport first = publisher.publish("DFW", "site", site, PublishOptions.Builder.ttl(3600));
+      assertEquals(first.getUploaded(), 20);
+      assertTrue(server.isCDNEnabled("site"));
+      assertEquals(first.getPurged(), ImmutableList.of());
+
+      for (int i = 0; i < 12; i++) {
+         site.put("page-" + i + ".html", ByteSource.wrap(("<p>" + i + " v2</p>").getBytes(UTF_8)));
+      }
+      PublishReport second = publisher.publish("DFW", "site", site, PublishOptions.Builder.ttl(3600));
+      assertEquals(second.getUploaded(), 12);
+      assertEquals(second.getUnchanged(), 8);
+
+      List<Boolean> purges = second.getPurges().get(30, SECONDS);
+      assertEquals(purges.size(), 12);
+      assertFalse(purges.contains(false));
+      assertEquals(server.getPurged().size(), 12);
+      assertTrue(server.getThrottledPurges() > 0, "purges were not rate limited");
+      assertEquals(new String(server.getObject("site", "page-3.html"), UTF_8), "<p>3 v2</p>");
+   }
+
+   public void testReadsDeliveredAccessLogs() throws Exception {
+      CloudFilesApi api = injector.getInstance(CloudFilesApi.class);
+      api.getContainerApi("DFW").create("site");
+      api.getCDNApi("DFW").enable("site");
+      assertNull(server.deliverAccessLog("site", "ignored"));
+      api.getCDNApi("DFW").update("site", logRetention(true));
+      String line = "203.0.113.7 - - [10/Oct/2014:13:55:36 +0000] \"GET /index.html HTTP/1.1\" 200 512 \"-\" \"curl\"";
+      String log = server.deliverAccessLog("site", line, line);
+
+      final List<CDNAccessLogRecord> records = Lists.newCopyOnWriteArrayList();
+      final List<String> markers = Lists.newCopyOnWriteArrayList();
+      injector.getInstance(CDNAccessLogReader.class).read("DFW", "site/", null, new CDNAccessLogReader.Listener() {
+         @Override
+         public void onRecord(String logObject, CDNAccessLogRecord record) {
+            records.add(record);
+         }
+
+         @Override
+         public void onMarker(String marker) {
+            markers.add(marker);
+         }
+      });
+
+      assertEquals(records.size(), 2);
+      assertEquals(records.get(0).getPath(), "/index.html");
+      assertEquals(markers, ImmutableList.of(log));
+   }
+}
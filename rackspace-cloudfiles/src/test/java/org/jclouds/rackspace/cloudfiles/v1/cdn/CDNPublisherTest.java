@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ContainerApi;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.domain.CDNContainer;
+import org.jclouds.rackspace.cloudfiles.v1.features.CDNApi;
+import org.jclouds.rackspace.cloudfiles.v1.options.ListCDNContainerOptions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+@Test(groups = "unit", testName = "CDNPublisherTest", singleThreaded = true)
+public class CDNPublisherTest {
+
+   private static final URI CDN_URI = URI.create("http://site.r1.cf1.rackcdn.com");
+
+   private ExecutorService executor;
+
+   @BeforeMethod
+   public void setUp() {
+      executor = Executors.newFixedThreadPool(4);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testPublishesToNewContainer() throws Exception {
+      FakeCloudFiles cloudFiles = new FakeCloudFiles();
+
+      PublishReport report = publisher(cloudFiles).publish("DFW", "site",
+            ImmutableMap.of("index.html", content("<html/>"), "css/site.css", content("body {}")),
+            PublishOptions.Builder.ttl(3600));
+
+      assertEquals(report.getUploaded(), 2);
+      assertEquals(report.getUnchanged(), 0);
+      assertEquals(report.getBytesUploaded(), 14);
+      assertEquals(report.getCdnUri(), CDN_URI);
+      assertEquals(report.getPurged(), ImmutableList.of());
+      assertEquals(ImmutableSet.copyOf(cloudFiles.calls),
+            ImmutableSet.of("create site", "put index.html", "put css/site.css", "enable site 3600"));
+      assertEquals(cloudFiles.contentTypes.get("css/site.css"), "text/css; charset=utf-8");
+      assertEquals(cloudFiles.contentTypes.get("index.html"), "text/html; charset=utf-8");
+   }
+
+   public void testNamesWithoutExtensionAreOctetStreams() throws Exception {
+      FakeCloudFiles cloudFiles = new FakeCloudFiles();
+
+      publisher(cloudFiles).publish("DFW", "site",
+            ImmutableMap.of("css", content("a"), "js.d/LICENSE", content("b")), PublishOptions.Builder.ttl(3600));
+
+      assertEquals(cloudFiles.contentTypes.get("css"), "application/octet-stream");
+      assertEquals(cloudFiles.contentTypes.get("js.d/LICENSE"), "application/octet-stream");
+   }
+
+   public void testUploadsAndPurgesOnlyChanges() throws Exception {
+      FakeCloudFiles cloudFiles = new FakeCloudFiles();
+      cloudFiles.put("index.html", "<html/>");
+      cloudFiles.put("app.js", "v1");
+      cloudFiles.put("old.png", "png");
+      cloudFiles.cdnTtl = 3600;
+
+      PublishReport report = publisher(cloudFiles).publish("DFW", "site",
+            ImmutableMap.of("index.html", content("<html/>"), "app.js", content("v2"), "new.js", content("new")),
+            PublishOptions.Builder.ttl(3600).deleteRemoved());
+
+      assertEquals(report.getUploaded(), 2);
+      assertEquals(report.getUnchanged(), 1);
+      assertEquals(report.getDeleted(), 1);
+      assertEquals(ImmutableSet.copyOf(report.getPurged()), ImmutableSet.of("app.js", "old.png"));
+      assertEquals(report.getPurges().get(5, SECONDS), ImmutableList.of(true, true));
+      assertEquals(ImmutableSet.copyOf(cloudFiles.calls),
+            ImmutableSet.of("put app.js", "put new.js", "delete old.png", "purge app.js", "purge old.png"));
+      assertTrue(cloudFiles.objects.containsKey("new.js"));
+   }
+
+   public void testUpdatesTtl() throws Exception {
+      FakeCloudFiles cloudFiles = new FakeCloudFiles();
+      cloudFiles.put("index.html", "<html/>");
+      cloudFiles.cdnTtl = 3600;
+
+      PublishReport report = publisher(cloudFiles).publish("DFW", "site",
+            ImmutableMap.of("index.html", content("<html/>")), PublishOptions.Builder.ttl(86400));
+
+      assertEquals(report.getUnchanged(), 1);
+      assertEquals(cloudFiles.calls, ImmutableList.of("enable site 86400"));
+   }
+
+   private CDNPublisher publisher(FakeCloudFiles cloudFiles) {
+      CloudFilesApi api = cloudFiles.api();
+      CDNContainerCache cache = new CDNContainerCache(api, Functions.constant(URI.create("https://cdn.example.com/v1")),
+            executor, 300, Ticker.systemTicker());
+      CDNPurgeQueue purgeQueue = new CDNPurgeQueue(api, executor, 100, 0, 0, 0, 0);
+      return new CDNPublisher(api, cache, purgeQueue, executor);
+   }
+
+   private static ByteSource content(String content) {
+      return ByteSource.wrap(content.getBytes(UTF_8));
+   }
+
+   static class FakeCloudFiles {
+      final ConcurrentMap<String, byte[]> objects = Maps.newConcurrentMap();
+      final ConcurrentMap<String, String> contentTypes = Maps.newConcurrentMap();
+      final Queue<String> calls = new ConcurrentLinkedQueue<String>();
+      boolean containerExists;
+      Integer cdnTtl;
+
+      void put(String name, String content) {
+         containerExists = true;
+         objects.put(name, content.getBytes(UTF_8));
+      }
+
+      CloudFilesApi api() {
+         ObjectApi objectApi = createMock(ObjectApi.class);
+         expect(objectApi.list(anyObject(ListContainerOptions.class))).andAnswer(new IAnswer<ObjectList>() {
+            @Override
+            public ObjectList answer() {
+               if (!containerExists) {
+                  return null;
+               }
+               List<SwiftObject> list = Lists.newArrayList();
+               for (Map.Entry<String, byte[]> entry : objects.entrySet()) {
+                  list.add(SwiftObject.builder().name(entry.getKey()).uri(URI.create("http://localhost/"))
+                        .etag(Hashing.md5().hashBytes(entry.getValue()).toString()).lastModified(new Date())
+                        .payload(Payloads.newByteArrayPayload(new byte[0])).build());
+               }
+               return ObjectList.create(list, Container.builder().name("site").build());
+            }
+         }).anyTimes();
+         expect(objectApi.put(anyString(), anyObject(Payload.class))).andAnswer(new IAnswer<String>() {
+            @Override
+            public String answer() throws Exception {
+               String name = (String) getCurrentArguments()[0];
+               Payload payload = (Payload) getCurrentArguments()[1];
+               calls.add("put " + name);
+               objects.put(name, ByteStreams.toByteArray(payload.openStream()));
+               contentTypes.put(name, payload.getContentMetadata().getContentType());
+               return "etag";
+            }
+         }).anyTimes();
+         objectApi.delete(anyString());
+         expectLastCall().andAnswer(new IAnswer<Void>() {
+            @Override
+            public Void answer() {
+               calls.add("delete " + getCurrentArguments()[0]);
+               objects.remove(getCurrentArguments()[0]);
+               return null;
+            }
+         }).anyTimes();
+         ContainerApi containerApi = createMock(ContainerApi.class);
+         expect(containerApi.create(anyString())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+               calls.add("create " + getCurrentArguments()[0]);
+               containerExists = true;
+               return true;
+            }
+         }).anyTimes();
+         CDNApi cdnApi = createMock(CDNApi.class);
+         expect(cdnApi.list(anyObject(ListCDNContainerOptions.class))).andAnswer(
+               new IAnswer<FluentIterable<CDNContainer>>() {
+                  @Override
+                  public FluentIterable<CDNContainer> answer() {
+                     return FluentIterable.from(cdnTtl == null ? ImmutableList.<CDNContainer> of()
+                           : ImmutableList.of(CDNContainer.builder().name("site").enabled(true).ttl(cdnTtl)
+                                 .uri(CDN_URI).sslUri(CDN_URI).streamingUri(CDN_URI).iosUri(CDN_URI).build()));
+                  }
+               }).anyTimes();
+         expect(cdnApi.enable(anyString(), anyInt())).andAnswer(new IAnswer<URI>() {
+            @Override
+            public URI answer() {
+               calls.add("enable " + getCurrentArguments()[0] + " " + getCurrentArguments()[1]);
+               return CDN_URI;
+            }
+         }).anyTimes();
+         expect(cdnApi.purgeObject(anyString(), anyString(), EasyMock.<Iterable<String>> anyObject())).andAnswer(
+               new IAnswer<Boolean>() {
+                  @Override
+                  public Boolean answer() {
+                     calls.add("purge " + getCurrentArguments()[1]);
+                     return true;
+                  }
+               }).anyTimes();
+         CloudFilesApi api = createMock(CloudFilesApi.class);
+         expect(api.getObjectApi(anyString(), anyString())).andReturn(objectApi).anyTimes();
+         expect(api.getContainerApi(anyString())).andReturn(containerApi).anyTimes();
+         expect(api.getCDNApi(anyString())).andReturn(cdnApi).anyTimes();
+         replay(objectApi, containerApi, cdnApi, api);
+         return api;
+      }
+   }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.cdn;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jclouds.http.HttpCommand;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.rackspace.cloudfiles.v1.CloudFilesApi;
+import org.jclouds.rackspace.cloudfiles.v1.features.CDNApi;
+import org.jclouds.rest.AuthorizationException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+@Test(groups = "unit", testName = "CDNPurgeQueueTest", singleThreaded = true)
+public class CDNPurgeQueueTest {
+
+   private ExecutorService executor;
+
+   @BeforeMethod
+   public void setUp() {
+      executor = Executors.newCachedThreadPool();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   public void testCoalescesRepeatsWithinWindow() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), executor, 100, 200, 0, 0, 0);
+
+      ListenableFuture<Boolean> first = queue.purge("DFW", "assets", "app.js", ImmutableList.of("a@example.com"));
+      ListenableFuture<Boolean> second = queue.purge("DFW", "assets", "app.js", ImmutableList.of("b@example.com"));
+      ListenableFuture<Boolean> other = queue.purge("DFW", "assets", "app.css");
+
+      assertSame(second, first);
+      assertTrue(first.get(5, SECONDS));
+      assertTrue(other.get(5, SECONDS));
+      assertEquals(cdn.purges.size(), 2);
+      assertTrue(cdn.purges.contains("assets/app.js [a@example.com, b@example.com]"), cdn.purges.toString());
+      assertTrue(cdn.purges.contains("assets/app.css []"), cdn.purges.toString());
+
+      // once sent, a purge of the same object is sent again
+      assertTrue(queue.purge("DFW", "assets", "app.js").get(5, SECONDS));
+      assertEquals(cdn.purges.size(), 3);
+   }
+
+   public void testRetriesServerErrors() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      cdn.answers.add(overloaded(500));
+      cdn.answers.add(overloaded(502));
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), executor, 100, 0, 5, 10, 100);
+
+      assertTrue(queue.purge("DFW", "assets", "app.js").get(5, SECONDS));
+      assertEquals(cdn.purges.size(), 3);
+      assertEquals(queue.getPending(), 0);
+   }
+
+   public void testFailsAfterRetries() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      cdn.answers.add(overloaded(500));
+      cdn.answers.add(overloaded(500));
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), executor, 100, 0, 1, 10, 100);
+
+      try {
+         queue.purge("DFW", "assets", "app.js").get(5, SECONDS);
+         fail();
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause() instanceof HttpResponseException, e.getCause().toString());
+      }
+      assertEquals(cdn.purges.size(), 2);
+   }
+
+   public void testDoesNotRetryWhatSwiftRetryHandlerRetried() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      cdn.answers.add(overloaded(503));
+      cdn.answers.add(overloaded(429));
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), executor, 100, 0, 5, 10, 100);
+
+      try {
+         queue.purge("DFW", "assets", "app.js").get(5, SECONDS);
+         fail();
+      } catch (ExecutionException e) {
+         assertEquals(((HttpResponseException) e.getCause()).getResponse().getStatusCode(), 503);
+      }
+      try {
+         queue.purge("DFW", "assets", "app.css").get(5, SECONDS);
+         fail();
+      } catch (ExecutionException e) {
+         assertEquals(((HttpResponseException) e.getCause()).getResponse().getStatusCode(), 429);
+      }
+      assertEquals(cdn.purges.size(), 2);
+   }
+
+   public void testDoesNotRetryClientErrors() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      cdn.answers.add(new AuthorizationException());
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), executor, 100, 0, 5, 10, 100);
+
+      try {
+         queue.purge("DFW", "assets", "app.js").get(5, SECONDS);
+         fail();
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause() instanceof AuthorizationException, e.getCause().toString());
+      }
+      assertEquals(cdn.purges.size(), 1);
+   }
+
+   public void testPacesPurges() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      final AtomicLong now = new AtomicLong();
+      Ticker ticker = new Ticker() {
+         @Override
+         public long read() {
+            return now.get();
+         }
+      };
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), executor, 20, 0, 0, 0, 0, ticker) {
+         @Override
+         void sleep(long nanos) {
+            now.addAndGet(nanos);
+         }
+      };
+
+      List<ListenableFuture<Boolean>> futures = Lists.newArrayList();
+      for (int i = 0; i < 11; i++) {
+         futures.add(queue.purge("DFW", "assets", "asset-" + i));
+      }
+      for (ListenableFuture<Boolean> future : futures) {
+         assertTrue(future.get(5, SECONDS));
+      }
+      // the first purge goes out right away, then one every 50ms
+      assertEquals(NANOSECONDS.toMillis(now.get()), 500);
+      assertEquals(cdn.purges.size(), 11);
+   }
+
+   public void testDrainsOnAThreadOfItsOwn() throws Exception {
+      FakeCDNApi cdn = new FakeCDNApi();
+      final Queue<String> threads = new ConcurrentLinkedQueue<String>();
+      Executor recording = new Executor() {
+         @Override
+         public void execute(Runnable command) {
+            threads.add(Thread.currentThread().getName());
+            executor.execute(command);
+         }
+      };
+      CDNPurgeQueue queue = new CDNPurgeQueue(cdn.api(), recording, 100, 100, 0, 0, 0);
+
+      assertTrue(queue.purge("DFW", "assets", "app.js").get(5, SECONDS));
+      // only the send is handed to the executor, from the queue's own thread
+      assertEquals(threads.size(), 1);
+      assertTrue(threads.peek().startsWith("cloudfiles-cdn-purge-"), threads.toString());
+   }
+
+   private static HttpResponseException overloaded(int status) {
+      HttpRequest request = HttpRequest.builder().method("DELETE")
+            .endpoint(URI.create("https://cdn.example.com/v1/MossoCloudFS_1234/assets/app.js")).build();
+      return new HttpResponseException(new HttpCommand(request),
+            HttpResponse.builder().statusCode(status).build());
+   }
+
+   static class FakeCDNApi {
+      final Queue<RuntimeException> answers = new ConcurrentLinkedQueue<RuntimeException>();
+      final Queue<String> purges = new ConcurrentLinkedQueue<String>();
+
+      CloudFilesApi api() {
+         CDNApi cdnApi = createMock(CDNApi.class);
+         expect(cdnApi.purgeObject(anyString(), anyString(), EasyMock.<Iterable<String>> anyObject())).andAnswer(
+               new IAnswer<Boolean>() {
+                  @Override
+                  public Boolean answer() {
+                     Object[] args = getCurrentArguments();
+                     purges.add(args[0] + "/" + args[1] + " " + args[2]);
+                     RuntimeException answer = answers.poll();
+                     if (answer != null) {
+                        throw answer;
+                     }
+                     return true;
+                  }
+               }).anyTimes();
+         CloudFilesApi api = createMock(CloudFilesApi.class);
+         expect(api.getCDNApi(anyString())).andReturn(cdnApi).anyTimes();
+         replay(cdnApi, api);
+         return api;
+      }
+   }
+}
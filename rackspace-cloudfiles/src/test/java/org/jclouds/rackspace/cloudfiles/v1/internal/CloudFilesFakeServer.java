@@ -0,0 +1,540 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.rackspace.cloudfiles.v1.internal;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesConstants.CDN_ACCESS_LOGS_CONTAINER;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesConstants.CDN_TTL_DEFAULT;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_ENABLED;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_IOS_URI;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_LOG_RETENTION;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_SSL_URI;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_STREAMING_URI;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_TTL;
+import static org.jclouds.rackspace.cloudfiles.v1.reference.CloudFilesHeaders.CDN_URI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.jclouds.date.DateService;
+import org.jclouds.date.internal.SimpleDateFormatDateService;
+import org.jclouds.util.Strings2;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * A stateful stand-in for Cloud Files, for tests that drive many requests through the client without credentials.
+ * <p/>
+ * One server authenticates and stores containers and objects like Swift; the other manages CDN settings like the CDN
+ * management API, including TTLs, log retention and a rate limit on purges, answering {@code 429} with a
+ * {@code Retry-After} beyond it. Access logs of containers with log retention can be delivered into
+ * {@code .CDN_ACCESS_LOGS} with {@link #deliverAccessLog(String, String...)}.
+ * <p/>
+ * Point a context at {@link #getEndpoint()} with the {@code rackspace-cloudfiles} provider; any credentials are
+ * accepted.
+ */
+public class CloudFilesFakeServer implements Closeable {
+
+   public static final String ACCOUNT_PATH = "/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9";
+
+   private static final DateService DATES = new SimpleDateFormatDateService();
+   private static final Gson GSON = new Gson();
+
+   private final MockWebServer storage = new MockWebServer();
+   private final MockWebServer cdn = new MockWebServer();
+   private final int purgesPerSecond;
+
+   private final ConcurrentNavigableMap<String, ConcurrentNavigableMap<String, StoredObject>> containers =
+         new ConcurrentSkipListMap<String, ConcurrentNavigableMap<String, StoredObject>>();
+   private final ConcurrentNavigableMap<String, CDNSettings> cdnContainers = new ConcurrentSkipListMap<String, CDNSettings>();
+   private final Multiset<String> requests = ConcurrentHashMultiset.create();
+   private final List<String> purged = Lists.newCopyOnWriteArrayList();
+   private final AtomicInteger throttledPurges = new AtomicInteger();
+   private final AtomicInteger logSequence = new AtomicInteger();
+   private long purgeWindowStart;
+   private int purgesInWindow;
+
+   public CloudFilesFakeServer() {
+      this(Integer.MAX_VALUE);
+   }
+
+   /**
+    * @param purgesPerSecond
+    *           purges accepted per second before further ones are answered with {@code 429}.
+    */
+   public CloudFilesFakeServer(int purgesPerSecond) {
+      checkArgument(purgesPerSecond > 0, "purgesPerSecond must be positive");
+      this.purgesPerSecond = purgesPerSecond;
+   }
+
+   public CloudFilesFakeServer start() throws IOException {
+      storage.setDispatcher(new StorageDispatcher());
+      cdn.setDispatcher(new CDNDispatcher());
+      storage.play();
+      cdn.play();
+      return this;
+   }
+
+   /**
+    * @return the identity endpoint of the fake.
+    */
+   public String getEndpoint() {
+      return storage.getUrl("/").toString();
+   }
+
+   /**
+    * @return the content of the object, or {@code null} if it does not exist.
+    */
+   public byte[] getObject(String container, String name) {
+      Map<String, StoredObject> objects = containers.get(container);
+      StoredObject object = objects != null ? objects.get(name) : null;
+      return object != null ? object.content : null;
+   }
+
+   public boolean isCDNEnabled(String container) {
+      CDNSettings settings = cdnContainers.get(container);
+      return settings != null && settings.enabled;
+   }
+
+   /**
+    * @return the TTL of the container, or {@code -1} if it was never CDN-enabled.
+    */
+   public int getCDNTtl(String container) {
+      CDNSettings settings = cdnContainers.get(container);
+      return settings != null ? settings.ttl : -1;
+   }
+
+   /**
+    * @return {@code container/object} of every accepted purge, in the order they were accepted.
+    */
+   public List<String> getPurged() {
+      return purged;
+   }
+
+   /**
+    * @return the number of purges answered with {@code 429}.
+    */
+   public int getThrottledPurges() {
+      return throttledPurges.get();
+   }
+
+   /**
+    * @return the requests served so far, counted by {@code storage|cdn METHOD}.
+    */
+   public Multiset<String> getRequests() {
+      return ImmutableMultiset.copyOf(requests);
+   }
+
+   /**
+    * Delivers a gzipped access log for the container into {@code .CDN_ACCESS_LOGS}, as the CDN does for containers
+    * with log retention enabled.
+    *
+    * @return the name of the delivered log object, or {@code null} if log retention is not enabled.
+    */
+   public String deliverAccessLog(String container, String... lines) throws IOException {
+      CDNSettings settings = cdnContainers.get(container);
+      if (settings == null || !settings.logRetention) {
+         return null;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      GZIPOutputStream out = new GZIPOutputStream(bytes);
+      for (String line : lines) {
+         out.write((line + "\n").getBytes(UTF_8));
+      }
+      out.close();
+      String name = String.format("%s/%tY/%<tm/%<td/%<tH/%06d.log.gz", container, new Date(),
+            logSequence.incrementAndGet());
+      objects(CDN_ACCESS_LOGS_CONTAINER, true).put(name, new StoredObject(bytes.toByteArray(), "application/x-gzip"));
+      return name;
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         storage.shutdown();
+      } finally {
+         cdn.shutdown();
+      }
+   }
+
+   private ConcurrentNavigableMap<String, StoredObject> objects(String container, boolean create) {
+      ConcurrentNavigableMap<String, StoredObject> objects = containers.get(container);
+      if (objects == null && create) {
+         containers.putIfAbsent(container, new ConcurrentSkipListMap<String, StoredObject>());
+         objects = containers.get(container);
+      }
+      return objects;
+   }
+
+   private abstract class FakeDispatcher extends Dispatcher {
+      private final String name;
+
+      FakeDispatcher(String name) {
+         this.name = name;
+      }
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+         requests.add(name + " " + request.getMethod());
+         String path = request.getPath();
+         Map<String, String> query = ImmutableMap.of();
+         int queryIndex = path.indexOf('?');
+         if (queryIndex != -1) {
+            query = Splitter.on('&').withKeyValueSeparator('=').split(path.substring(queryIndex + 1));
+            path = path.substring(0, queryIndex);
+         }
+         if (!path.startsWith(ACCOUNT_PATH)) {
+            return dispatchOther(request, path);
+         }
+         List<String> parts = Lists.newArrayList(Splitter.on('/').limit(2).omitEmptyStrings()
+               .split(path.substring(ACCOUNT_PATH.length())));
+         String container = parts.size() > 0 ? Strings2.urlDecode(parts.get(0)) : null;
+         String object = parts.size() > 1 ? Strings2.urlDecode(parts.get(1)) : null;
+         return dispatch(request, query, container, object);
+      }
+
+      MockResponse dispatchOther(RecordedRequest request, String path) {
+         return new MockResponse().setResponseCode(404);
+      }
+
+      abstract MockResponse dispatch(RecordedRequest request, Map<String, String> query, String container,
+            String object);
+   }
+
+   private class StorageDispatcher extends FakeDispatcher {
+
+      StorageDispatcher() {
+         super("storage");
+      }
+
+      @Override
+      MockResponse dispatchOther(RecordedRequest request, String path) {
+         if (request.getMethod().equals("POST") && path.endsWith("/tokens")) {
+            return json(access());
+         }
+         return super.dispatchOther(request, path);
+      }
+
+      @Override
+      MockResponse dispatch(RecordedRequest request, Map<String, String> query, String container, String object) {
+         if (container == null) {
+            return account(request);
+         } else if (object == null) {
+            return container(request, query, container);
+         }
+         return object(request, container, object);
+      }
+
+      private MockResponse account(RecordedRequest request) {
+         long objectCount = 0;
+         long bytesUsed = 0;
+         List<Map<String, Object>> listing = Lists.newArrayList();
+         for (Map.Entry<String, ConcurrentNavigableMap<String, StoredObject>> entry : containers.entrySet()) {
+            long bytes = bytesUsed(entry.getValue());
+            objectCount += entry.getValue().size();
+            bytesUsed += bytes;
+            listing.add(ImmutableMap.<String, Object> of("name", entry.getKey(), "count", entry.getValue().size(),
+                  "bytes", bytes));
+         }
+         MockResponse response = request.getMethod().equals("GET") ? json(GSON.toJson(listing))
+               : new MockResponse().setResponseCode(204);
+         return response.addHeader("X-Account-Container-Count", containers.size())
+               .addHeader("X-Account-Object-Count", objectCount).addHeader("X-Account-Bytes-Used", bytesUsed);
+      }
+
+      private MockResponse container(RecordedRequest request, Map<String, String> query, String container) {
+         String method = request.getMethod();
+         if (method.equals("PUT")) {
+            boolean created = !containers.containsKey(container);
+            objects(container, true);
+            return new MockResponse().setResponseCode(created ? 201 : 202);
+         }
+         NavigableMap<String, StoredObject> objects = objects(container, false);
+         if (objects == null) {
+            return new MockResponse().setResponseCode(404);
+         }
+         if (method.equals("DELETE")) {
+            if (!objects.isEmpty()) {
+               return new MockResponse().setResponseCode(409);
+            }
+            containers.remove(container);
+            return new MockResponse().setResponseCode(204);
+         }
+         MockResponse response;
+         if (method.equals("GET")) {
+            response = json(GSON.toJson(list(objects, query)));
+         } else if (method.equals("HEAD") || method.equals("POST")) {
+            response = new MockResponse().setResponseCode(204);
+         } else {
+            return new MockResponse().setResponseCode(405);
+         }
+         return response.addHeader("X-Container-Object-Count", objects.size())
+               .addHeader("X-Container-Bytes-Used", bytesUsed(objects));
+      }
+
+      private List<Map<String, Object>> list(NavigableMap<String, StoredObject> objects, Map<String, String> query) {
+         String marker = query.containsKey("marker") ? Strings2.urlDecode(query.get("marker")) : null;
+         String prefix = query.containsKey("prefix") ? Strings2.urlDecode(query.get("prefix")) : "";
+         int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10000;
+         List<Map<String, Object>> listing = Lists.newArrayList();
+         for (Map.Entry<String, StoredObject> entry : (marker != null ? objects.tailMap(marker, false) : objects)
+               .entrySet()) {
+            if (listing.size() == limit) {
+               break;
+            }
+            if (entry.getKey().startsWith(prefix)) {
+               StoredObject object = entry.getValue();
+               listing.add(ImmutableMap.<String, Object> of("name", entry.getKey(), "hash", object.etag, "bytes",
+                     object.content.length, "content_type", object.contentType, "last_modified",
+                     DATES.iso8601DateFormat(object.lastModified)));
+            }
+         }
+         return listing;
+      }
+
+      private MockResponse object(RecordedRequest request, String container, String name) {
+         ConcurrentNavigableMap<String, StoredObject> objects = objects(container, false);
+         if (objects == null) {
+            return new MockResponse().setResponseCode(404);
+         }
+         String method = request.getMethod();
+         if (method.equals("PUT")) {
+            String contentType = request.getHeader("Content-Type");
+            StoredObject object = new StoredObject(request.getBody(),
+                  contentType != null ? contentType : "application/octet-stream");
+            String expected = request.getHeader("ETag");
+            if (expected != null && !expected.equalsIgnoreCase(object.etag)) {
+               return new MockResponse().setResponseCode(422);
+            }
+            objects.put(name, object);
+            return new MockResponse().setResponseCode(201).addHeader("ETag", object.etag);
+         }
+         StoredObject object = objects.get(name);
+         if (object == null) {
+            return new MockResponse().setResponseCode(404);
+         }
+         if (method.equals("DELETE")) {
+            objects.remove(name, object);
+            return new MockResponse().setResponseCode(204);
+         }
+         if (object.etag.equals(request.getHeader("If-None-Match"))) {
+            return new MockResponse().setResponseCode(304).addHeader("ETag", object.etag);
+         }
+         MockResponse response = new MockResponse().setResponseCode(200);
+         if (method.equals("GET")) {
+            response.setBody(object.content);
+         } else {
+            response.setHeader("Content-Length", object.content.length);
+         }
+         return response.addHeader("ETag", object.etag).addHeader("Content-Type", object.contentType)
+               .addHeader("Last-Modified", DATES.rfc822DateFormat(object.lastModified));
+      }
+
+      private String access() {
+         String access;
+         try {
+            access = Strings2.toStringAndClose(getClass().getResourceAsStream("/access.json"));
+         } catch (IOException e) {
+            throw new AssertionError(e);
+         }
+         // the CDN endpoints come first in the service catalog
+         int storageStart = access.indexOf("\"name\":\"cloudFiles\"");
+         return access.substring(0, storageStart).replace("\"URL/", "\"" + baseUrl(cdn) + "/")
+               + access.substring(storageStart).replace("\"URL/", "\"" + baseUrl(storage) + "/");
+      }
+   }
+
+   private class CDNDispatcher extends FakeDispatcher {
+
+      CDNDispatcher() {
+         super("cdn");
+      }
+
+      @Override
+      MockResponse dispatch(RecordedRequest request, Map<String, String> query, String container, String object) {
+         String method = request.getMethod();
+         if (container == null) {
+            return method.equals("GET") ? list(query) : new MockResponse().setResponseCode(405);
+         } else if (object != null) {
+            return method.equals("DELETE") ? purge(request, container, object)
+                  : new MockResponse().setResponseCode(405);
+         }
+         CDNSettings settings = cdnContainers.get(container);
+         if (method.equals("PUT")) {
+            if (!containers.containsKey(container)) {
+               return new MockResponse().setResponseCode(404);
+            }
+            boolean created = settings == null;
+            if (created) {
+               cdnContainers.putIfAbsent(container, new CDNSettings(container));
+               settings = cdnContainers.get(container);
+            }
+            synchronized (settings) {
+               settings.enabled = Boolean.parseBoolean(request.getHeader(CDN_ENABLED));
+               if (request.getHeader(CDN_TTL) != null) {
+                  settings.ttl = Integer.parseInt(request.getHeader(CDN_TTL));
+               }
+            }
+            return headers(new MockResponse().setResponseCode(created ? 201 : 202), settings);
+         } else if (settings == null) {
+            return new MockResponse().setResponseCode(404);
+         } else if (method.equals("POST")) {
+            synchronized (settings) {
+               if (request.getHeader(CDN_ENABLED) != null) {
+                  settings.enabled = Boolean.parseBoolean(request.getHeader(CDN_ENABLED));
+               }
+               if (request.getHeader(CDN_TTL) != null) {
+                  settings.ttl = Integer.parseInt(request.getHeader(CDN_TTL));
+               }
+               if (request.getHeader(CDN_LOG_RETENTION) != null) {
+                  settings.logRetention = Boolean.parseBoolean(request.getHeader(CDN_LOG_RETENTION));
+               }
+            }
+            return new MockResponse().setResponseCode(202);
+         } else if (method.equals("HEAD")) {
+            return headers(new MockResponse().setResponseCode(204), settings);
+         }
+         return new MockResponse().setResponseCode(405);
+      }
+
+      private MockResponse list(Map<String, String> query) {
+         String marker = query.containsKey("marker") ? Strings2.urlDecode(query.get("marker")) : null;
+         int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10000;
+         boolean enabledOnly = Boolean.parseBoolean(query.get("enabled_only"));
+         List<Map<String, Object>> listing = Lists.newArrayList();
+         for (CDNSettings settings : (marker != null ? cdnContainers.tailMap(marker, false) : cdnContainers)
+               .values()) {
+            if (listing.size() == limit) {
+               break;
+            }
+            synchronized (settings) {
+               if (settings.enabled || !enabledOnly) {
+                  listing.add(ImmutableMap.<String, Object> builder().put("name", settings.name)
+                        .put("cdn_enabled", settings.enabled).put("log_retention", settings.logRetention)
+                        .put("ttl", settings.ttl).put("cdn_uri", settings.uri("http", "r1.cf1"))
+                        .put("cdn_ssl_uri", settings.uri("https", "ssl.cf1"))
+                        .put("cdn_streaming_uri", settings.uri("http", "r1.stream.cf1"))
+                        .put("cdn_ios_uri", settings.uri("http", "iosr.cf1")).build());
+               }
+            }
+         }
+         return json(GSON.toJson(listing));
+      }
+
+      private MockResponse purge(RecordedRequest request, String container, String object) {
+         if (!isCDNEnabled(container) || getObject(container, object) == null) {
+            return new MockResponse().setResponseCode(404);
+         }
+         synchronized (this) {
+            long now = System.nanoTime();
+            if (now - purgeWindowStart >= TimeUnit.SECONDS.toNanos(1)) {
+               purgeWindowStart = now;
+               purgesInWindow = 0;
+            }
+            if (purgesInWindow == purgesPerSecond) {
+               throttledPurges.incrementAndGet();
+               // the window is a second long
+               return new MockResponse().setResponseCode(429).addHeader("Retry-After", "1");
+            }
+            purgesInWindow++;
+         }
+         purged.add(container + "/" + object);
+         return new MockResponse().setResponseCode(204);
+      }
+
+      private MockResponse headers(MockResponse response, CDNSettings settings) {
+         synchronized (settings) {
+            return response.addHeader(CDN_ENABLED, settings.enabled ? "True" : "False")
+                  .addHeader(CDN_LOG_RETENTION, settings.logRetention ? "True" : "False")
+                  .addHeader(CDN_TTL, settings.ttl).addHeader(CDN_URI, settings.uri("http", "r1.cf1"))
+                  .addHeader(CDN_SSL_URI, settings.uri("https", "ssl.cf1"))
+                  .addHeader(CDN_STREAMING_URI, settings.uri("http", "r1.stream.cf1"))
+                  .addHeader(CDN_IOS_URI, settings.uri("http", "iosr.cf1"));
+         }
+      }
+   }
+
+   private static String baseUrl(MockWebServer server) {
+      String url = server.getUrl("/").toString();
+      return url.substring(0, url.length() - 1);
+   }
+
+   private static MockResponse json(String body) {
+      return new MockResponse().setResponseCode(200).addHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody(body);
+   }
+
+   private static long bytesUsed(Map<String, StoredObject> objects) {
+      long bytes = 0;
+      for (StoredObject object : objects.values()) {
+         bytes += object.content.length;
+      }
+      return bytes;
+   }
+
+   private static class StoredObject {
+      private final byte[] content;
+      private final String etag;
+      private final String contentType;
+      private final Date lastModified = new Date();
+
+      StoredObject(byte[] content, String contentType) {
+         this.content = content;
+         this.etag = Hashing.md5().hashBytes(content).toString();
+         this.contentType = contentType;
+      }
+   }
+
+   private static class CDNSettings {
+      private final String name;
+      private final String host;
+      private boolean enabled;
+      private boolean logRetention;
+      private int ttl = CDN_TTL_DEFAULT;
+
+      CDNSettings(String name) {
+         this.name = name;
+         this.host = Hashing.md5().hashString(name, UTF_8).toString().substring(0, 20);
+      }
+
+      String uri(String scheme, String domain) {
+         return scheme + "://" + host + "." + domain + ".rackcdn.com";
+      }
+   }
+}